@@ -43,17 +43,21 @@ import java.util.Map.Entry;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.joliciel.jochre.analyser.BeamSearchImageAnalyser;
+import com.joliciel.jochre.analyser.CrossValidator;
 import com.joliciel.jochre.analyser.ErrorLogger;
 import com.joliciel.jochre.analyser.FScoreObserver;
 import com.joliciel.jochre.analyser.ImageAnalyser;
+import com.joliciel.jochre.analyser.ImageAnalyserFactory;
 import com.joliciel.jochre.analyser.LetterAssigner;
 import com.joliciel.jochre.analyser.LetterGuessObserver;
 import com.joliciel.jochre.analyser.OriginalShapeLetterAssigner;
+import com.joliciel.jochre.analyser.ParallelImageAnalyser;
 import com.joliciel.jochre.analyser.SimpleLetterFScoreObserver;
 import com.joliciel.jochre.boundaries.BoundaryDetector;
 import com.joliciel.jochre.boundaries.DeterministicBoundaryDetector;
@@ -73,6 +77,7 @@ import com.joliciel.jochre.boundaries.features.MergeFeature;
 import com.joliciel.jochre.boundaries.features.MergeFeatureParser;
 import com.joliciel.jochre.boundaries.features.SplitFeature;
 import com.joliciel.jochre.boundaries.features.SplitFeatureParser;
+import com.joliciel.jochre.doc.AsyncDocumentObserver;
 import com.joliciel.jochre.doc.DocumentDao;
 import com.joliciel.jochre.doc.DocumentObserver;
 import com.joliciel.jochre.doc.ImageDocumentExtractor;
@@ -88,6 +93,7 @@ import com.joliciel.jochre.graphics.JochreCorpusImageProcessor;
 import com.joliciel.jochre.graphics.JochreCorpusImageReader;
 import com.joliciel.jochre.graphics.JochreCorpusShapeReader;
 import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.graphics.SegmentationCache;
 import com.joliciel.jochre.graphics.Shape;
 import com.joliciel.jochre.graphics.features.ShapeFeature;
 import com.joliciel.jochre.graphics.features.VerticalElongationFeature;
@@ -104,6 +110,7 @@ import com.joliciel.jochre.lexicon.MostLikelyWordChooser;
 import com.joliciel.jochre.lexicon.TextFileLexicon;
 import com.joliciel.jochre.lexicon.UnknownWordListWriter;
 import com.joliciel.jochre.output.AbbyyFineReader8Exporter;
+import com.joliciel.jochre.output.AbstractExporter;
 import com.joliciel.jochre.output.AltoXMLExporter;
 import com.joliciel.jochre.output.ImageExtractor;
 import com.joliciel.jochre.output.JochrePageByPageExporter;
@@ -117,6 +124,7 @@ import com.joliciel.jochre.pdf.PdfImageVisitor;
 import com.joliciel.jochre.security.SecurityDao;
 import com.joliciel.jochre.security.User;
 import com.joliciel.jochre.stats.FScoreCalculator;
+import com.joliciel.jochre.training.ClassificationEventCache;
 import com.joliciel.jochre.utils.JochreException;
 import com.joliciel.jochre.utils.JochreLogUtils;
 import com.joliciel.talismane.machineLearning.ClassificationEventStream;
@@ -202,6 +210,27 @@ public class Jochre {
 					values.put("jochre.boundaries.splitter.beam-width", Integer.parseInt(argValue));
 				} else if (argName.equals("lexicon")) {
 					values.put("jochre.lexicon", argValue);
+				} else if (argName.equals("featureCacheDir")) {
+					values.put("jochre.training.feature-cache-dir", argValue);
+				} else if (argName.equals("threads")) {
+					values.put("jochre.image-analyser.threads", Integer.parseInt(argValue));
+					values.put("jochre.training.cross-validation-threads", Integer.parseInt(argValue));
+				} else if (argName.equals("boundaryThreads")) {
+					values.put("jochre.boundaries.threads", Integer.parseInt(argValue));
+				} else if (argName.equals("layoutScale")) {
+					values.put("jochre.segmenter.layout-scale", Integer.parseInt(argValue));
+				} else if (argName.equals("segmentationCacheDir")) {
+					values.put("jochre.segmenter.cache-dir", argValue);
+				} else if (argName.equals("columnThreads")) {
+					values.put("jochre.segmenter.column-threads", Integer.parseInt(argValue));
+				} else if (argName.equals("compiledScoring")) {
+					values.put("jochre.image-analyser.compiled-scoring", argValue.equalsIgnoreCase("true"));
+				} else if (argName.equals("observerQueueSize")) {
+					values.put("jochre.output.observer-queue-size", Integer.parseInt(argValue));
+				} else if (argName.equals("zipThreads")) {
+					values.put("jochre.output.zip-threads", Integer.parseInt(argValue));
+				} else if (argName.equals("zipCompressionLevel")) {
+					values.put("jochre.output.zip-compression-level", Integer.parseInt(argValue));
 				} else {
 					handled = false;
 				}
@@ -228,7 +257,11 @@ public class Jochre {
 		}
 
 		Jochre jochre = new Jochre(ConfigFactory.load(), argMap);
-		jochre.execute(argMap);
+		try {
+			jochre.execute(argMap);
+		} finally {
+			jochre.close();
+		}
 	}
 
 	/**
@@ -473,6 +506,8 @@ public class Jochre {
 				this.doCommandApplyFeatures(imageId, shapeId, featureDescriptors);
 			} else if (command.equals("train")) {
 				this.doCommandTrain(featureDescriptors, criteria, reconstructLetters);
+			} else if (command.equals("crossValidate")) {
+				this.doCommandCrossValidate(featureDescriptors, criteria, reconstructLetters, outputDirPath, suffix);
 			} else if (command.equals("evaluate") || command.equals("evaluateComplex")) {
 				this.doCommandEvaluate(criteria, outputDirPath, wordChooser, reconstructLetters, save, suffix, includeBeam, observers);
 			} else if (command.equals("evaluateFull")) {
@@ -839,7 +874,14 @@ public class Jochre {
 
 		LetterValidator letterValidator = new ComponentCharacterValidator(jochreSession);
 
-		ClassificationEventStream corpusEventStream = new JochreLetterEventStream(features, boundaryDetector, letterValidator, criteria, jochreSession);
+		JochreLetterEventStream corpusEventStream = new JochreLetterEventStream(features, boundaryDetector, letterValidator, criteria, jochreSession);
+
+		if (jochreSession.getConfig().hasPath("jochre.training.feature-cache-dir")) {
+			String streamName = reconstructLetters ? "lettersReconstructed" : "letters";
+			String corpusVersion = ClassificationEventCache.getCorpusVersion(jochreSession);
+			corpusEventStream
+					.setFeatureCache(ClassificationEventCache.getConfiguredCache(streamName, featureDescriptors, criteria, corpusVersion, jochreSession));
+		}
 
 		File letterModelFile = new File(jochreSession.getLetterModelPath());
 		letterModelFile.getParentFile().mkdirs();
@@ -851,6 +893,44 @@ public class Jochre {
 		letterModel.persist(letterModelFile);
 	}
 
+	/**
+	 * Train and evaluate a letter guessing model on each fold of a
+	 * cross-validation corpus, writing each fold's model and f-scores, as well
+	 * as the f-scores merged across all folds, to the output directory.
+	 * 
+	 * @param featureDescriptors
+	 *            the feature descriptors for training
+	 * @param criteria
+	 *            criteria for selecting images, including the
+	 *            cross-validation size
+	 * @param reconstructLetters
+	 *            whether or not complete letters should be reconstructed, from
+	 *            merged/split letters
+	 * @param outputDirPath
+	 *            the directory to which we write the models and evaluation
+	 *            files
+	 */
+	public void doCommandCrossValidate(List<String> featureDescriptors, CorpusSelectionCriteria criteria, boolean reconstructLetters, String outputDirPath,
+			String suffix) throws InterruptedException, ExecutionException {
+		if (jochreSession.getLetterModelPath() == null)
+			throw new RuntimeException("Missing argument: letterModel");
+		if (featureDescriptors == null)
+			throw new JochreException("features is required");
+		if (outputDirPath == null || outputDirPath.length() == 0)
+			throw new RuntimeException("Missing argument: outputDir");
+
+		File outputDir = new File(outputDirPath);
+		outputDir.mkdirs();
+
+		String baseName = jochreSession.getLetterModelPath().substring(0, jochreSession.getLetterModelPath().indexOf("."));
+		if (baseName.lastIndexOf("/") > 0)
+			baseName = baseName.substring(baseName.lastIndexOf("/") + 1);
+		baseName += suffix;
+
+		CrossValidator crossValidator = new CrossValidator(featureDescriptors, criteria, reconstructLetters, jochreSession);
+		crossValidator.crossValidate(outputDir, baseName);
+	}
+
 	/**
 	 * Evaluate a given letter guessing model.
 	 * 
@@ -861,56 +941,41 @@ public class Jochre {
 	 * @param outputDirPath
 	 *            the directory to which we write the evaluation files
 	 */
-	public void doCommandEvaluate(CorpusSelectionCriteria criteria, String outputDirPath, MostLikelyWordChooser wordChooser, boolean reconstructLetters,
-			boolean save, String suffix, boolean includeBeam, List<DocumentObserver> observers) throws IOException {
+	public void doCommandEvaluate(CorpusSelectionCriteria criteria, String outputDirPath, MostLikelyWordChooser wordChooser, final boolean reconstructLetters,
+			final boolean save, String suffix, boolean includeBeam, List<DocumentObserver> observers) throws IOException {
 		if (outputDirPath == null || outputDirPath.length() == 0)
 			throw new RuntimeException("Missing argument: outputDir");
 
 		File outputDir = new File(outputDirPath);
 		outputDir.mkdirs();
-		ClassificationModel letterModel = jochreSession.getLetterModel();
-
-		List<String> letterFeatureDescriptors = letterModel.getFeatureDescriptors();
-		LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
-		Set<LetterFeature<?>> letterFeatures = letterFeatureParser.getLetterFeatureSet(letterFeatureDescriptors);
-
-		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel.getDecisionMaker());
 
 		String baseName = jochreSession.getLetterModelPath().substring(0, jochreSession.getLetterModelPath().indexOf("."));
 		if (baseName.lastIndexOf("/") > 0)
 			baseName = baseName.substring(baseName.lastIndexOf("/") + 1);
 		baseName += suffix;
 
-		BoundaryDetector boundaryDetector = null;
-		if (reconstructLetters) {
-			ShapeSplitter splitter = new TrainingCorpusShapeSplitter(jochreSession);
-			ShapeMerger merger = new TrainingCorpusShapeMerger();
-			boundaryDetector = new LetterByLetterBoundaryDetector(splitter, merger, jochreSession);
-		} else {
-			boundaryDetector = new OriginalBoundaryDetector();
-		}
-
-		ImageAnalyser evaluator = new BeamSearchImageAnalyser(boundaryDetector, letterGuesser, wordChooser, jochreSession);
-
-		FScoreObserver fScoreObserver = null;
-		LetterValidator letterValidator = new ComponentCharacterValidator(jochreSession);
-		if (reconstructLetters) {
-			OriginalShapeLetterAssigner originalShapeLetterAssigner = new OriginalShapeLetterAssigner();
-			originalShapeLetterAssigner.setEvaluate(true);
-			originalShapeLetterAssigner.setSave(save);
-			originalShapeLetterAssigner.setLetterValidator(letterValidator);
-
-			fScoreObserver = originalShapeLetterAssigner;
+		final List<FScoreObserver> fScoreObservers = new ArrayList<FScoreObserver>();
+		int threadCount = jochreSession.getConfig().getInt("jochre.image-analyser.threads");
+		ImageAnalyser evaluator = null;
+		if (threadCount > 1) {
+			ParallelImageAnalyser parallelAnalyser = new ParallelImageAnalyser(new ImageAnalyserFactory() {
+				@Override
+				public ImageAnalyser getImageAnalyser() {
+					synchronized (fScoreObservers) {
+						try {
+							return getEvaluationAnalyser(new MostLikelyWordChooser(jochreSession), reconstructLetters, save, fScoreObservers);
+						} catch (IOException e) {
+							throw new JochreException(e);
+						}
+					}
+				}
+			}, threadCount, jochreSession);
+			parallelAnalyser.setLoadSplits(reconstructLetters);
+			evaluator = parallelAnalyser;
 		} else {
-			LetterAssigner letterAssigner = new LetterAssigner();
-			letterAssigner.setSave(save);
-			evaluator.addObserver(letterAssigner);
-
-			fScoreObserver = new SimpleLetterFScoreObserver(letterValidator, jochreSession);
+			evaluator = this.getEvaluationAnalyser(wordChooser, reconstructLetters, save, fScoreObservers);
 		}
 
-		evaluator.addObserver(fScoreObserver);
-
 		ErrorLogger errorLogger = new ErrorLogger(jochreSession);
 		Writer errorWriter = null;
 
@@ -959,7 +1024,11 @@ public class Jochre {
 			if (errorWriter != null)
 				errorWriter.close();
 		}
-		LOG.debug("F-score for " + jochreSession.getLetterModelPath() + ": " + fScoreObserver.getFScoreCalculator().getTotalFScore());
+
+		FScoreCalculator<String> fScoreCalculator = new FScoreCalculator<String>();
+		for (FScoreObserver fScoreObserver : fScoreObservers)
+			fScoreCalculator.merge(fScoreObserver.getFScoreCalculator());
+		LOG.debug("F-score for " + jochreSession.getLetterModelPath() + ": " + fScoreCalculator.getTotalFScore());
 
 		String modelFileName = baseName;
 		if (reconstructLetters)
@@ -967,8 +1036,55 @@ public class Jochre {
 
 		File fscoreFile = new File(outputDir, modelFileName + "_fscores.csv");
 		Writer fscoreWriter = errorWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fscoreFile, true), jochreSession.getCsvEncoding()));
-		fScoreObserver.getFScoreCalculator().writeScoresToCSV(fscoreWriter);
+		fScoreCalculator.writeScoresToCSV(fscoreWriter);
+
+	}
+
+	/**
+	 * Construct an image analyser for evaluation, with its own letter guesser
+	 * and observers, adding its f-score observer to the list provided.
+	 */
+	private ImageAnalyser getEvaluationAnalyser(MostLikelyWordChooser wordChooser, boolean reconstructLetters, boolean save,
+			List<FScoreObserver> fScoreObservers) throws IOException {
+		ClassificationModel letterModel = jochreSession.getLetterModel();
+
+		List<String> letterFeatureDescriptors = letterModel.getFeatureDescriptors();
+		LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
+		Set<LetterFeature<?>> letterFeatures = letterFeatureParser.getLetterFeatureSet(letterFeatureDescriptors);
+
+		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel, jochreSession);
+
+		BoundaryDetector boundaryDetector = null;
+		if (reconstructLetters) {
+			ShapeSplitter splitter = new TrainingCorpusShapeSplitter(jochreSession);
+			ShapeMerger merger = new TrainingCorpusShapeMerger();
+			boundaryDetector = new LetterByLetterBoundaryDetector(splitter, merger, jochreSession);
+		} else {
+			boundaryDetector = new OriginalBoundaryDetector();
+		}
+
+		ImageAnalyser evaluator = new BeamSearchImageAnalyser(boundaryDetector, letterGuesser, wordChooser, jochreSession);
+
+		FScoreObserver fScoreObserver = null;
+		LetterValidator letterValidator = new ComponentCharacterValidator(jochreSession);
+		if (reconstructLetters) {
+			OriginalShapeLetterAssigner originalShapeLetterAssigner = new OriginalShapeLetterAssigner();
+			originalShapeLetterAssigner.setEvaluate(true);
+			originalShapeLetterAssigner.setSave(save);
+			originalShapeLetterAssigner.setLetterValidator(letterValidator);
 
+			fScoreObserver = originalShapeLetterAssigner;
+		} else {
+			LetterAssigner letterAssigner = new LetterAssigner();
+			letterAssigner.setSave(save);
+			evaluator.addObserver(letterAssigner);
+
+			fScoreObserver = new SimpleLetterFScoreObserver(letterValidator, jochreSession);
+		}
+
+		evaluator.addObserver(fScoreObserver);
+		fScoreObservers.add(fScoreObserver);
+		return evaluator;
 	}
 
 	/**
@@ -990,7 +1106,7 @@ public class Jochre {
 		LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
 		Set<LetterFeature<?>> letterFeatures = letterFeatureParser.getLetterFeatureSet(letterFeatureDescriptors);
 
-		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel.getDecisionMaker());
+		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel, jochreSession);
 
 		ImageAnalyser analyser = new BeamSearchImageAnalyser(null, letterGuesser, wordChooser, jochreSession);
 		LetterAssigner letterAssigner = new LetterAssigner();
@@ -1015,7 +1131,7 @@ public class Jochre {
 		List<String> letterFeatureDescriptors = letterModel.getFeatureDescriptors();
 		LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
 		Set<LetterFeature<?>> letterFeatures = letterFeatureParser.getLetterFeatureSet(letterFeatureDescriptors);
-		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel.getDecisionMaker());
+		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel, jochreSession);
 		BoundaryDetector boundaryDetector = null;
 		LetterGuessObserver letterGuessObserver = null;
 
@@ -1046,6 +1162,10 @@ public class Jochre {
 		if (!sourceFile.exists())
 			throw new JochreException("The file " + sourceFile.getPath() + " does not exist");
 
+		SegmentationCache segmentationCache = SegmentationCache.getConfiguredCache(jochreSession);
+		if (segmentationCache != null)
+			documentGenerator.requestSegmentationCache(segmentationCache, sourceFile);
+
 		if (sourceFile.getName().toLowerCase().endsWith(".pdf")) {
 			PdfImageVisitor pdfImageVisitor = new PdfImageVisitor(sourceFile, firstPage, lastPage, documentGenerator);
 
@@ -1072,7 +1192,7 @@ public class Jochre {
 	 * @param outputDirPath
 	 *            the output directory where we write the evaluation results
 	 */
-	public void doCommandEvaluateFull(CorpusSelectionCriteria criteria, boolean save, String outputDirPath, MostLikelyWordChooser wordChooser,
+	public void doCommandEvaluateFull(CorpusSelectionCriteria criteria, final boolean save, String outputDirPath, MostLikelyWordChooser wordChooser,
 			String suffix, List<DocumentObserver> observers) throws IOException {
 		if (outputDirPath == null || outputDirPath.length() == 0)
 			throw new RuntimeException("Missing argument: outputDir");
@@ -1083,12 +1203,67 @@ public class Jochre {
 		if (baseName.lastIndexOf("/") > 0)
 			baseName = baseName.substring(baseName.lastIndexOf("/") + 1);
 
+		final List<FScoreObserver> fScoreObservers = new ArrayList<FScoreObserver>();
+		int threadCount = jochreSession.getConfig().getInt("jochre.image-analyser.threads");
+		ImageAnalyser imageAnalyser = null;
+		if (threadCount > 1) {
+			imageAnalyser = new ParallelImageAnalyser(new ImageAnalyserFactory() {
+				@Override
+				public ImageAnalyser getImageAnalyser() {
+					synchronized (fScoreObservers) {
+						try {
+							return getFullEvaluationAnalyser(new MostLikelyWordChooser(jochreSession), save, fScoreObservers);
+						} catch (IOException e) {
+							throw new JochreException(e);
+						}
+					}
+				}
+			}, threadCount, jochreSession);
+		} else {
+			imageAnalyser = this.getFullEvaluationAnalyser(wordChooser, save, fScoreObservers);
+		}
+
+		ErrorLogger errorLogger = new ErrorLogger(jochreSession);
+		Writer errorWriter = null;
+
+		File errorFile = new File(outputDir, baseName + suffix + "errors.txt");
+		errorFile.delete();
+		errorWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(errorFile, true), "UTF8"));
+
+		errorLogger.setErrorWriter(errorWriter);
+		imageAnalyser.addObserver(errorLogger);
+
+		JochreCorpusImageProcessor imageProcessor = new JochreCorpusImageProcessor(criteria, jochreSession);
+		imageProcessor.addObserver(imageAnalyser);
+		for (DocumentObserver observer : observers)
+			imageProcessor.addObserver(observer);
+		imageProcessor.process();
+
+		FScoreCalculator<String> fScoreCalculator = new FScoreCalculator<String>();
+		for (FScoreObserver fScoreObserver : fScoreObservers)
+			fScoreCalculator.merge(fScoreObserver.getFScoreCalculator());
+		LOG.debug("F-score for " + jochreSession.getLetterModelPath() + ": " + fScoreCalculator.getTotalFScore());
+
+		String modelFileName = baseName + suffix + "_full";
+
+		File fscoreFile = new File(outputDir, modelFileName + "_fscores.csv");
+		Writer fscoreWriter = errorWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fscoreFile, true), jochreSession.getCsvEncoding()));
+		fScoreCalculator.writeScoresToCSV(fscoreWriter);
+	}
+
+	/**
+	 * Construct an image analyser for full evaluation, including split and
+	 * merge, with its own letter guesser and observers, adding its f-score
+	 * observer to the list provided.
+	 */
+	private ImageAnalyser getFullEvaluationAnalyser(MostLikelyWordChooser wordChooser, boolean save, List<FScoreObserver> fScoreObservers)
+			throws IOException {
 		ClassificationModel letterModel = jochreSession.getLetterModel();
 		List<String> letterFeatureDescriptors = letterModel.getFeatureDescriptors();
 		LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
 		Set<LetterFeature<?>> letterFeatures = letterFeatureParser.getLetterFeatureSet(letterFeatureDescriptors);
 
-		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel.getDecisionMaker());
+		LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel, jochreSession);
 
 		ClassificationModel splitModel = jochreSession.getSplitModel();
 		if (splitModel == null)
@@ -1135,30 +1310,8 @@ public class Jochre {
 		shapeLetterAssigner.setLetterValidator(letterValidator);
 		shapeLetterAssigner.setSingleLetterMethod(false);
 		imageAnalyser.addObserver(shapeLetterAssigner);
-
-		ErrorLogger errorLogger = new ErrorLogger(jochreSession);
-		Writer errorWriter = null;
-
-		File errorFile = new File(outputDir, baseName + suffix + "errors.txt");
-		errorFile.delete();
-		errorWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(errorFile, true), "UTF8"));
-
-		errorLogger.setErrorWriter(errorWriter);
-		imageAnalyser.addObserver(errorLogger);
-
-		JochreCorpusImageProcessor imageProcessor = new JochreCorpusImageProcessor(criteria, jochreSession);
-		imageProcessor.addObserver(imageAnalyser);
-		for (DocumentObserver observer : observers)
-			imageProcessor.addObserver(observer);
-		imageProcessor.process();
-
-		LOG.debug("F-score for " + jochreSession.getLetterModelPath() + ": " + shapeLetterAssigner.getFScoreCalculator().getTotalFScore());
-
-		String modelFileName = baseName + suffix + "_full";
-
-		File fscoreFile = new File(outputDir, modelFileName + "_fscores.csv");
-		Writer fscoreWriter = errorWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fscoreFile, true), jochreSession.getCsvEncoding()));
-		shapeLetterAssigner.getFScoreCalculator().writeScoresToCSV(fscoreWriter);
+		fScoreObservers.add(shapeLetterAssigner);
+		return imageAnalyser;
 	}
 
 	/**
@@ -1279,6 +1432,9 @@ public class Jochre {
 				jochreDocumentGenerator.requestSegmentation(outputDir);
 			}
 		}
+		SegmentationCache segmentationCache = SegmentationCache.getConfiguredCache(jochreSession);
+		if (segmentationCache != null)
+			jochreDocumentGenerator.requestSegmentationCache(segmentationCache, file);
 
 		if (filename.toLowerCase().endsWith(".pdf")) {
 			PdfImageVisitor pdfImageVisitor = new PdfImageVisitor(file, firstPage, lastPage, jochreDocumentGenerator);
@@ -1357,6 +1513,10 @@ public class Jochre {
 	public List<DocumentObserver> getObservers(List<OutputFormat> outputFormats, String baseName, File outputDir, boolean includeDate) {
 		try {
 			List<DocumentObserver> observers = new ArrayList<DocumentObserver>();
+			int zipCompressionLevel = jochreSession.getConfig().getInt("jochre.output.zip-compression-level");
+			int zipThreads = jochreSession.getConfig().getInt("jochre.output.zip-threads");
+			if (zipThreads <= 0)
+				zipThreads = Runtime.getRuntime().availableProcessors();
 
 			for (OutputFormat outputFormat : outputFormats) {
 				switch (outputFormat) {
@@ -1414,7 +1574,7 @@ public class Jochre {
 					outputDir.mkdirs();
 					File zipFile = new File(outputDir, baseName + "_jochre.zip");
 
-					DocumentObserver observer = new JochrePageByPageExporter(zipFile, baseName);
+					DocumentObserver observer = new JochrePageByPageExporter(zipFile, baseName, zipCompressionLevel, zipThreads);
 					observers.add(observer);
 					break;
 				}
@@ -1434,6 +1594,32 @@ public class Jochre {
 				}
 				}
 			}
+
+			for (DocumentObserver observer : observers) {
+				if (observer instanceof AbstractExporter) {
+					AbstractExporter exporter = (AbstractExporter) observer;
+					exporter.setCompressionLevel(zipCompressionLevel);
+					exporter.setZipThreads(zipThreads);
+				}
+			}
+
+			int observerQueueSize = jochreSession.getConfig().getInt("jochre.output.observer-queue-size");
+			if (observerQueueSize > 0 && observers.size() > 0) {
+				// the image extractor reads the original image when an image
+				// starts, which segmentation then replaces temporarily, so it
+				// needs to run on the calling thread
+				List<DocumentObserver> syncObservers = new ArrayList<DocumentObserver>();
+				List<DocumentObserver> asyncObservers = new ArrayList<DocumentObserver>();
+				for (DocumentObserver observer : observers) {
+					if (observer instanceof ImageExtractor)
+						syncObservers.add(observer);
+					else
+						asyncObservers.add(observer);
+				}
+				if (asyncObservers.size() > 0)
+					syncObservers.add(new AsyncDocumentObserver(asyncObservers, observerQueueSize));
+				return syncObservers;
+			}
 			return observers;
 		} catch (IOException e) {
 			LOG.error("Couldn't configure observers", e);
@@ -1445,4 +1631,12 @@ public class Jochre {
 		return jochreSession;
 	}
 
+	/**
+	 * Release the shared resources held by this instance's session. This
+	 * instance should not be used afterwards.
+	 */
+	public void close() {
+		jochreSession.close();
+	}
+
 }
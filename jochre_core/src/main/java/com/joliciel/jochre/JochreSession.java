@@ -23,7 +23,13 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
@@ -35,6 +41,8 @@ import com.joliciel.jochre.lexicon.FakeLexicon;
 import com.joliciel.jochre.lexicon.Lexicon;
 import com.joliciel.jochre.lexicon.LexiconMerger;
 import com.joliciel.jochre.lexicon.TextFileLexicon;
+import com.joliciel.jochre.machineLearning.CompiledClassificationModel;
+import com.joliciel.jochre.utils.JochreException;
 import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.MachineLearningModelFactory;
 import com.joliciel.talismane.utils.CSVFormatter;
@@ -64,6 +72,12 @@ public class JochreSession {
 	private ClassificationModel letterModel;
 	private ClassificationModel mergeModel;
 	private ClassificationModel splitModel;
+	private final List<Object> sharedResources = new ArrayList<Object>();
+	private final boolean compiledScoring;
+
+	private static final Map<ClassificationModel, CompiledClassificationModel> compiledModels = new WeakHashMap<ClassificationModel, CompiledClassificationModel>();
+	private static final Set<ClassificationModel> uncompilableModels = Collections
+			.newSetFromMap(new WeakHashMap<ClassificationModel, Boolean>());
 
 	/**
 	 * 
@@ -101,8 +115,19 @@ public class JochreSession {
 		if (jochreConfig.hasPath("lexicon")) {
 			String lexiconPath = jochreConfig.getString("lexicon");
 			File lexiconDir = new File(lexiconPath);
-			Lexicon myLexicon = this.readLexicon(lexiconDir);
-			this.lexicon = new DefaultLexiconWrapper(myLexicon, this.locale);
+			String key = "lexicon:" + lexiconDir.getAbsolutePath() + "|" + this.encoding.name() + "|" + this.locale.toLanguageTag();
+			try {
+				this.lexicon = ResourceRegistry.getInstance().acquire(key, lexiconDir, new ResourceRegistry.ResourceLoader<Lexicon>() {
+					@Override
+					public Lexicon load(File file) throws IOException {
+						Lexicon myLexicon = JochreSession.this.readLexicon(file);
+						return new DefaultLexiconWrapper(myLexicon, JochreSession.this.locale);
+					}
+				});
+			} catch (IOException e) {
+				throw new JochreException(e);
+			}
+			sharedResources.add(this.lexicon);
 		} else {
 			this.lexicon = new FakeLexicon();
 		}
@@ -120,6 +145,7 @@ public class JochreSession {
 
 		Config imageAnalyserConfig = jochreConfig.getConfig("image-analyser");
 		this.junkConfidenceThreshold = imageAnalyserConfig.getDouble("junk-threshold");
+		this.compiledScoring = imageAnalyserConfig.getBoolean("compiled-scoring");
 
 		if (imageAnalyserConfig.hasPath("letter-model")) {
 			letterModelPath = imageAnalyserConfig.getString("letter-model");
@@ -211,18 +237,12 @@ public class JochreSession {
 	 * @throws IOException
 	 *             if unable to load the letter model
 	 */
-	public ClassificationModel getLetterModel() throws IOException {
+	public synchronized ClassificationModel getLetterModel() throws IOException {
 		if (letterModel == null) {
 			if (letterModelPath == null) {
 				throw new IllegalArgumentException("Missing config setting: jochre.image-analyser.letter-model");
 			}
-			Config imageAnalyserConfig = config.getConfig("jochre.image-analyser");
-			MachineLearningModelFactory modelFactory = new MachineLearningModelFactory();
-
-			String letterModelPath = imageAnalyserConfig.getString("letter-model");
-			try (ZipInputStream zis = new ZipInputStream(new FileInputStream(letterModelPath))) {
-				letterModel = modelFactory.getClassificationModel(zis);
-			}
+			letterModel = this.acquireModel(letterModelPath);
 		}
 		return letterModel;
 	}
@@ -233,15 +253,9 @@ public class JochreSession {
 	 * @throws IOException
 	 *             if unable to load the merge model
 	 */
-	public ClassificationModel getMergeModel() throws IOException {
+	public synchronized ClassificationModel getMergeModel() throws IOException {
 		if (mergeModel == null && mergeModelPath != null) {
-			Config imageAnalyserConfig = config.getConfig("jochre.image-analyser");
-			MachineLearningModelFactory modelFactory = new MachineLearningModelFactory();
-
-			String mergeModelPath = imageAnalyserConfig.getString("merge-model");
-			try (ZipInputStream zis = new ZipInputStream(new FileInputStream(mergeModelPath))) {
-				mergeModel = modelFactory.getClassificationModel(zis);
-			}
+			mergeModel = this.acquireModel(mergeModelPath);
 		}
 		return mergeModel;
 	}
@@ -252,17 +266,76 @@ public class JochreSession {
 	 * @throws IOException
 	 *             if unable to load the split model
 	 */
-	public ClassificationModel getSplitModel() throws IOException {
+	public synchronized ClassificationModel getSplitModel() throws IOException {
 		if (splitModel == null && splitModelPath != null) {
-			Config imageAnalyserConfig = config.getConfig("jochre.image-analyser");
-			MachineLearningModelFactory modelFactory = new MachineLearningModelFactory();
+			splitModel = this.acquireModel(splitModelPath);
+		}
+		return splitModel;
+	}
+
+	/**
+	 * Get a model from the process-wide registry, so that it is only loaded
+	 * once for all sessions using it.
+	 */
+	private ClassificationModel acquireModel(String modelPath) throws IOException {
+		File modelFile = new File(modelPath);
+		ClassificationModel model = ResourceRegistry.getInstance().acquire("model:" + modelFile.getAbsolutePath(), modelFile,
+				new ResourceRegistry.ResourceLoader<ClassificationModel>() {
+					@Override
+					public ClassificationModel load(File file) throws IOException {
+						MachineLearningModelFactory modelFactory = new MachineLearningModelFactory();
+						try (ZipInputStream zis = new ZipInputStream(new FileInputStream(file))) {
+							return modelFactory.getClassificationModel(zis);
+						}
+					}
+				});
+		sharedResources.add(model);
+		return model;
+	}
 
-			String splitModelPath = imageAnalyserConfig.getString("split-model");
-			try (ZipInputStream zis = new ZipInputStream(new FileInputStream(splitModelPath))) {
-				splitModel = modelFactory.getClassificationModel(zis);
+	/**
+	 * Release the models and lexicon held by this session, allowing them to be
+	 * discarded from the process-wide registry once they have changed on disk.
+	 * The session should not be used afterwards.
+	 */
+	public synchronized void close() {
+		for (Object resource : sharedResources)
+			ResourceRegistry.getInstance().release(resource);
+		sharedResources.clear();
+	}
+
+	/**
+	 * Should classification models be compiled into dense weight matrices for
+	 * scoring, rather than using their own decision makers?
+	 */
+	public boolean isCompiledScoring() {
+		return compiledScoring;
+	}
+
+	/**
+	 * Return the compiled version of a given model, if compiled scoring is
+	 * enabled for this session and the model can be compiled, or null
+	 * otherwise. Each model is only compiled once, and compiled models are
+	 * shared by all sessions.
+	 */
+	public CompiledClassificationModel getCompiledModel(ClassificationModel model) {
+		if (!compiledScoring)
+			return null;
+		synchronized (compiledModels) {
+			if (uncompilableModels.contains(model))
+				return null;
+			CompiledClassificationModel compiledModel = compiledModels.get(model);
+			if (compiledModel == null) {
+				if (!CompiledClassificationModel.isSupported(model)) {
+					LOG.warn("Cannot compile model of type " + model.getClass().getSimpleName() + ", using its decision maker instead");
+					uncompilableModels.add(model);
+					return null;
+				}
+				compiledModel = CompiledClassificationModel.compile(model);
+				compiledModels.put(model, compiledModel);
 			}
+			return compiledModel;
 		}
-		return splitModel;
 	}
 
 	public String getLetterModelPath() {
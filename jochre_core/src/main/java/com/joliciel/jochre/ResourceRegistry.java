@@ -0,0 +1,209 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A process-wide registry of read-only resources loaded from disk, such as
+ * models and lexicons, so that several sessions in the same JVM share a single
+ * copy of each.<br/>
+ * Resources are keyed by their path and last modification time: if the file
+ * changes on disk, the next session to acquire it gets a freshly loaded copy,
+ * while sessions which already hold the previous copy keep using it.<br/>
+ * Each resource is loaded at most once per version, by the first thread to
+ * request it, with other threads requesting the same resource waiting for it
+ * to be loaded.<br/>
+ * Acquired resources should be released when no longer needed. The current
+ * version of a resource is kept even when it is no longer referenced, so that
+ * short-lived sessions don't reload it, unless {@link #evictUnused()} is
+ * called. Previous versions are discarded as soon as they are released.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public final class ResourceRegistry {
+	private static final Logger LOG = LoggerFactory.getLogger(ResourceRegistry.class);
+	private static final ResourceRegistry instance = new ResourceRegistry();
+
+	private final Map<String, Entry<?>> currentEntries = new HashMap<String, Entry<?>>();
+	private final Map<Object, Entry<?>> entriesByResource = new IdentityHashMap<Object, Entry<?>>();
+
+	/**
+	 * Loads a resource from a file or directory.
+	 */
+	public interface ResourceLoader<T> {
+		public T load(File file) throws IOException;
+	}
+
+	private static final class Entry<T> {
+		private final String key;
+		private final long version;
+		private volatile T resource = null;
+		private int referenceCount = 0;
+		private boolean superseded = false;
+
+		public Entry(String key, long version) {
+			this.key = key;
+			this.version = version;
+		}
+
+		public T getResource(File file, ResourceLoader<T> loader) throws IOException {
+			T result = resource;
+			if (result == null) {
+				synchronized (this) {
+					result = resource;
+					if (result == null) {
+						LOG.info("Loading " + key);
+						result = loader.load(file);
+						resource = result;
+					}
+				}
+			}
+			return result;
+		}
+	}
+
+	private ResourceRegistry() {
+	}
+
+	public static ResourceRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Acquire the resource stored in a given file or directory, loading it if
+	 * it hasn't yet been loaded, or if it has changed on disk since it was
+	 * loaded.
+	 *
+	 * @param key
+	 *            a key uniquely identifying the resource, including the file
+	 *            path and any other parameters affecting the loaded resource
+	 * @param file
+	 *            the file or directory from which the resource is loaded
+	 * @param loader
+	 *            loads the resource if required
+	 * @throws IOException
+	 *             if the resource needed to be loaded and loading failed
+	 */
+	public <T> T acquire(String key, File file, ResourceLoader<T> loader) throws IOException {
+		long version = getLastModified(file);
+		Entry<T> entry;
+		synchronized (this) {
+			@SuppressWarnings("unchecked")
+			Entry<T> currentEntry = (Entry<T>) currentEntries.get(key);
+			if (currentEntry == null || currentEntry.version != version) {
+				if (currentEntry != null) {
+					LOG.info("Resource changed on disk: " + key);
+					this.supersede(currentEntry);
+				}
+				currentEntry = new Entry<T>(key, version);
+				currentEntries.put(key, currentEntry);
+			}
+			entry = currentEntry;
+			entry.referenceCount++;
+		}
+
+		boolean loaded = false;
+		try {
+			T resource = entry.getResource(file, loader);
+			loaded = true;
+			synchronized (this) {
+				entriesByResource.put(resource, entry);
+			}
+			return resource;
+		} finally {
+			if (!loaded) {
+				synchronized (this) {
+					entry.referenceCount--;
+					if (currentEntries.get(key) == entry && entry.resource == null)
+						currentEntries.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release a resource previously acquired. Previous versions of a resource
+	 * are discarded once nobody holds them.
+	 */
+	public synchronized void release(Object resource) {
+		Entry<?> entry = entriesByResource.get(resource);
+		if (entry == null)
+			return;
+		entry.referenceCount--;
+		if (entry.referenceCount <= 0 && entry.superseded)
+			entriesByResource.remove(resource);
+	}
+
+	/**
+	 * Discard all resources which are not currently held by anybody.
+	 */
+	public synchronized void evictUnused() {
+		Iterator<Entry<?>> entries = currentEntries.values().iterator();
+		while (entries.hasNext()) {
+			Entry<?> entry = entries.next();
+			if (entry.referenceCount <= 0) {
+				entries.remove();
+				if (entry.resource != null)
+					entriesByResource.remove(entry.resource);
+			}
+		}
+	}
+
+	/**
+	 * The number of references currently held to a given resource.
+	 */
+	public synchronized int getReferenceCount(Object resource) {
+		Entry<?> entry = entriesByResource.get(resource);
+		if (entry == null)
+			return 0;
+		return entry.referenceCount;
+	}
+
+	private void supersede(Entry<?> entry) {
+		entry.superseded = true;
+		if (entry.referenceCount <= 0 && entry.resource != null)
+			entriesByResource.remove(entry.resource);
+	}
+
+	/**
+	 * The last modification time of a file, or of the most recently modified
+	 * file in a directory.
+	 */
+	private static long getLastModified(File file) {
+		long lastModified = file.lastModified();
+		if (file.isDirectory()) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children)
+					lastModified = Math.max(lastModified, child.lastModified());
+			}
+		}
+		return lastModified;
+	}
+}
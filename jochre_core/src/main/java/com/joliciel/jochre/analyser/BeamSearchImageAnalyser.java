@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import com.joliciel.jochre.JochreSession;
 import com.joliciel.jochre.boundaries.BoundaryDetector;
+import com.joliciel.jochre.boundaries.DeterministicBoundaryDetector;
 import com.joliciel.jochre.boundaries.ShapeInSequence;
 import com.joliciel.jochre.boundaries.ShapeSequence;
 import com.joliciel.jochre.doc.JochreDocument;
@@ -362,6 +363,8 @@ public class BeamSearchImageAnalyser implements ImageAnalyser, Monitorable {
 		for (LetterGuessObserver observer : observers) {
 			observer.onFinish();
 		}
+		if (boundaryDetector instanceof DeterministicBoundaryDetector)
+			((DeterministicBoundaryDetector) boundaryDetector).close();
 	}
 	
 	
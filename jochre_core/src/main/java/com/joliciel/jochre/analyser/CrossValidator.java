@@ -0,0 +1,331 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.analyser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.boundaries.BoundaryDetector;
+import com.joliciel.jochre.boundaries.LetterByLetterBoundaryDetector;
+import com.joliciel.jochre.boundaries.OriginalBoundaryDetector;
+import com.joliciel.jochre.boundaries.ShapeMerger;
+import com.joliciel.jochre.boundaries.ShapeSplitter;
+import com.joliciel.jochre.boundaries.TrainingCorpusShapeMerger;
+import com.joliciel.jochre.boundaries.TrainingCorpusShapeSplitter;
+import com.joliciel.jochre.graphics.CorpusSelectionCriteria;
+import com.joliciel.jochre.graphics.GroupOfShapes;
+import com.joliciel.jochre.graphics.JochreCorpusGroupReader;
+import com.joliciel.jochre.graphics.JochreCorpusImageReader;
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.Shape;
+import com.joliciel.jochre.letterGuesser.ComponentCharacterValidator;
+import com.joliciel.jochre.letterGuesser.JochreLetterEventStream;
+import com.joliciel.jochre.letterGuesser.LetterGuesser;
+import com.joliciel.jochre.letterGuesser.LetterValidator;
+import com.joliciel.jochre.letterGuesser.features.LetterFeature;
+import com.joliciel.jochre.letterGuesser.features.LetterFeatureParser;
+import com.joliciel.jochre.lexicon.MostLikelyWordChooser;
+import com.joliciel.jochre.stats.FScoreCalculator;
+import com.joliciel.jochre.training.ClassificationEventCache;
+import com.joliciel.jochre.utils.JochreException;
+import com.joliciel.talismane.machineLearning.ClassificationEvent;
+import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ClassificationModel;
+import com.joliciel.talismane.machineLearning.ClassificationModelTrainer;
+import com.joliciel.talismane.machineLearning.ModelTrainerFactory;
+
+/**
+ * Trains and evaluates a letter model for each fold of a cross-validation set
+ * in a single run.<br/>
+ * The corpus is loaded once, and the training events for each fold are
+ * calculated once and kept in memory, so that each fold's model is trained on
+ * the events of all other folds without recalculating any features. Training
+ * and evaluation for the different folds are then run concurrently, and the
+ * f-scores for all folds are merged into a single aggregate result.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class CrossValidator {
+	private static final Logger LOG = LoggerFactory.getLogger(CrossValidator.class);
+
+	private final List<String> featureDescriptors;
+	private final CorpusSelectionCriteria criteria;
+	private final boolean reconstructLetters;
+	private final int threadCount;
+	private final JochreSession jochreSession;
+
+	/**
+	 * @param featureDescriptors
+	 *            the feature descriptors used to train each fold's model
+	 * @param criteria
+	 *            the criteria used to select the corpus, which must include a
+	 *            cross-validation size greater than 1
+	 * @param reconstructLetters
+	 *            whether or not complete letters should be reconstructed for
+	 *            training and evaluation, from merged/split letters
+	 */
+	public CrossValidator(List<String> featureDescriptors, CorpusSelectionCriteria criteria, boolean reconstructLetters, JochreSession jochreSession) {
+		if (criteria.getCrossValidationSize() <= 1)
+			throw new JochreException("crossValidationSize > 1 is required for cross-validation");
+		this.featureDescriptors = featureDescriptors;
+		this.criteria = criteria;
+		this.reconstructLetters = reconstructLetters;
+		this.jochreSession = jochreSession;
+
+		int threadCount = jochreSession.getConfig().getInt("jochre.training.cross-validation-threads");
+		if (threadCount <= 0)
+			threadCount = Runtime.getRuntime().availableProcessors();
+		this.threadCount = Math.min(threadCount, criteria.getCrossValidationSize());
+	}
+
+	/**
+	 * Train and evaluate all folds, writing each fold's model and f-scores to
+	 * the output directory, as well as the aggregate f-scores.
+	 *
+	 * @param outputDir
+	 *            the directory to which models and evaluation files are written
+	 * @param baseName
+	 *            the base name for all files written
+	 * @return the f-scores merged across all folds
+	 */
+	public FScoreCalculator<String> crossValidate(File outputDir, String baseName) throws InterruptedException, ExecutionException {
+		int foldCount = criteria.getCrossValidationSize();
+
+		// read the whole corpus once, and divide it into folds
+		JochreCorpusImageReader imageReader = new JochreCorpusImageReader(jochreSession);
+		imageReader.setSelectionCriteria(this.getFoldCriteria(-1));
+		// initialises the image list
+		imageReader.hasNext();
+
+		List<List<JochreImage>> foldImages = new ArrayList<>(foldCount);
+		for (int i = 0; i < foldCount; i++)
+			foldImages.add(new ArrayList<JochreImage>());
+		for (JochreImage image : imageReader.getImages()) {
+			foldImages.get(imageReader.getCrossValidationIndex(image)).add(image);
+		}
+
+		// calculate each fold's events once, keeping the images in memory for
+		// evaluation
+		String corpusVersion = null;
+		if (jochreSession.getConfig().hasPath("jochre.training.feature-cache-dir"))
+			corpusVersion = ClassificationEventCache.getCorpusVersion(jochreSession);
+
+		List<List<ClassificationEvent>> foldEvents = new ArrayList<>(foldCount);
+		for (int i = 0; i < foldCount; i++) {
+			LOG.info("Calculating events for fold " + i + ", " + foldImages.get(i).size() + " images");
+			JochreCorpusGroupReader groupReader = new JochreCorpusGroupReader(jochreSession);
+			groupReader.setSelectionCriteria(this.getFoldCriteria(i));
+			groupReader.setImages(foldImages.get(i));
+			groupReader.setClearMemory(false);
+
+			LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
+			Set<LetterFeature<?>> features = letterFeatureParser.getLetterFeatureSet(featureDescriptors);
+			JochreLetterEventStream eventStream = new JochreLetterEventStream(features, this.getBoundaryDetector(),
+					new ComponentCharacterValidator(jochreSession), groupReader, jochreSession);
+			if (corpusVersion != null) {
+				String streamName = reconstructLetters ? "lettersReconstructed" : "letters";
+				eventStream.setFeatureCache(
+						ClassificationEventCache.getConfiguredCache(streamName, featureDescriptors, groupReader.getSelectionCriteria(), corpusVersion, jochreSession));
+			}
+
+			List<ClassificationEvent> events = new ArrayList<>();
+			while (eventStream.hasNext())
+				events.add(eventStream.next());
+			foldEvents.add(events);
+
+			// images not read above (because the events were cached) are loaded
+			// here, since lazy loading is not thread-safe
+			for (JochreImage image : foldImages.get(i))
+				this.loadImage(image);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		List<FScoreCalculator<String>> foldResults = new ArrayList<>(foldCount);
+		try {
+			List<Future<FScoreCalculator<String>>> futures = new ArrayList<>(foldCount);
+			for (int i = 0; i < foldCount; i++) {
+				futures.add(executor.submit(new FoldTask(i, foldEvents, foldImages.get(i), outputDir, baseName)));
+			}
+			for (Future<FScoreCalculator<String>> future : futures)
+				foldResults.add(future.get());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		FScoreCalculator<String> fScoreCalculator = new FScoreCalculator<String>();
+		for (FScoreCalculator<String> foldResult : foldResults)
+			fScoreCalculator.merge(foldResult);
+
+		LOG.info("Cross-validation f-score: " + fScoreCalculator.getTotalFScore());
+		fScoreCalculator.writeScoresToCSVFile(new File(outputDir, baseName + "_crossValidation_fscores.csv"));
+		return fScoreCalculator;
+	}
+
+	private CorpusSelectionCriteria getFoldCriteria(int includeIndex) {
+		CorpusSelectionCriteria foldCriteria = new CorpusSelectionCriteria();
+		foldCriteria.setImageId(criteria.getImageId());
+		foldCriteria.setImageCount(criteria.getImageCount());
+		foldCriteria.setImageStatusesToInclude(criteria.getImageStatusesToInclude());
+		foldCriteria.setExcludeImageId(criteria.getExcludeImageId());
+		foldCriteria.setCrossValidationSize(criteria.getCrossValidationSize());
+		foldCriteria.setIncludeIndex(includeIndex);
+		foldCriteria.setExcludeIndex(-1);
+		foldCriteria.setDocumentId(criteria.getDocumentId());
+		foldCriteria.setDocumentIds(criteria.getDocumentIds());
+		foldCriteria.setDocumentSelections(criteria.getDocumentSelections());
+		return foldCriteria;
+	}
+
+	private BoundaryDetector getBoundaryDetector() {
+		if (reconstructLetters) {
+			ShapeSplitter splitter = new TrainingCorpusShapeSplitter(jochreSession);
+			ShapeMerger merger = new TrainingCorpusShapeMerger();
+			return new LetterByLetterBoundaryDetector(splitter, merger, jochreSession);
+		}
+		return new OriginalBoundaryDetector();
+	}
+
+	private void loadImage(JochreImage image) {
+		image.getPage().getDocument();
+		for (Paragraph paragraph : image.getParagraphs()) {
+			for (RowOfShapes row : paragraph.getRows()) {
+				for (GroupOfShapes group : row.getGroups()) {
+					for (Shape shape : group.getShapes()) {
+						if (reconstructLetters)
+							shape.getSplits();
+					}
+				}
+			}
+		}
+	}
+
+	private final class FoldTask implements Callable<FScoreCalculator<String>> {
+		private final int foldIndex;
+		private final List<List<ClassificationEvent>> foldEvents;
+		private final List<JochreImage> images;
+		private final File outputDir;
+		private final String baseName;
+
+		public FoldTask(int foldIndex, List<List<ClassificationEvent>> foldEvents, List<JochreImage> images, File outputDir, String baseName) {
+			this.foldIndex = foldIndex;
+			this.foldEvents = foldEvents;
+			this.images = images;
+			this.outputDir = outputDir;
+			this.baseName = baseName;
+		}
+
+		@Override
+		public FScoreCalculator<String> call() throws Exception {
+			String foldName = baseName + "_fold" + foldIndex;
+			LOG.info("Training " + foldName);
+			List<List<ClassificationEvent>> trainingEvents = new ArrayList<>(foldEvents);
+			trainingEvents.set(foldIndex, Collections.<ClassificationEvent> emptyList());
+			ClassificationEventStream eventStream = new InMemoryEventStream(trainingEvents, getFoldCriteria(-1).getAttributes(), foldIndex);
+
+			ModelTrainerFactory modelTrainerFactory = new ModelTrainerFactory();
+			ClassificationModelTrainer trainer = modelTrainerFactory.constructTrainer(jochreSession.getConfig());
+			ClassificationModel letterModel = trainer.trainModel(eventStream, featureDescriptors);
+			letterModel.persist(new File(outputDir, foldName + ".zip"));
+
+			LOG.info("Evaluating " + foldName);
+			LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
+			Set<LetterFeature<?>> letterFeatures = letterFeatureParser.getLetterFeatureSet(letterModel.getFeatureDescriptors());
+			LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel, jochreSession);
+			MostLikelyWordChooser wordChooser = new MostLikelyWordChooser(jochreSession);
+			ImageAnalyser analyser = new BeamSearchImageAnalyser(getBoundaryDetector(), letterGuesser, wordChooser, jochreSession);
+
+			LetterValidator letterValidator = new ComponentCharacterValidator(jochreSession);
+			FScoreObserver fScoreObserver = null;
+			if (reconstructLetters) {
+				OriginalShapeLetterAssigner originalShapeLetterAssigner = new OriginalShapeLetterAssigner();
+				originalShapeLetterAssigner.setEvaluate(true);
+				originalShapeLetterAssigner.setLetterValidator(letterValidator);
+				fScoreObserver = originalShapeLetterAssigner;
+			} else {
+				fScoreObserver = new SimpleLetterFScoreObserver(letterValidator, jochreSession);
+			}
+			analyser.addObserver(fScoreObserver);
+
+			for (JochreImage image : images) {
+				analyser.onImageComplete(image);
+			}
+			analyser.onAnalysisComplete();
+
+			FScoreCalculator<String> fScoreCalculator = fScoreObserver.getFScoreCalculator();
+			LOG.info("F-score for " + foldName + ": " + fScoreCalculator.getTotalFScore());
+			fScoreCalculator.writeScoresToCSVFile(new File(outputDir, foldName + "_fscores.csv"));
+			return fScoreCalculator;
+		}
+	}
+
+	/**
+	 * Replays events already held in memory, skipping the fold being
+	 * evaluated.
+	 */
+	private static final class InMemoryEventStream implements ClassificationEventStream {
+		private final Iterator<List<ClassificationEvent>> folds;
+		private final Map<String, String> attributes;
+		private Iterator<ClassificationEvent> events = Collections.<ClassificationEvent> emptyList().iterator();
+
+		public InMemoryEventStream(List<List<ClassificationEvent>> foldEvents, Map<String, String> criteriaAttributes, int excludeIndex) {
+			this.folds = foldEvents.iterator();
+			this.attributes = new LinkedHashMap<>();
+			this.attributes.put("eventStream", JochreLetterEventStream.class.getSimpleName());
+			this.attributes.putAll(criteriaAttributes);
+			this.attributes.put("excludeIndex", "" + excludeIndex);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!events.hasNext() && folds.hasNext())
+				events = folds.next().iterator();
+			return events.hasNext();
+		}
+
+		@Override
+		public ClassificationEvent next() {
+			if (!this.hasNext())
+				return null;
+			return events.next();
+		}
+
+		@Override
+		public Map<String, String> getAttributes() {
+			return attributes;
+		}
+	}
+}
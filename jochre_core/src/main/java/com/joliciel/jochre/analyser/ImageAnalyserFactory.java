@@ -0,0 +1,35 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.analyser;
+
+/**
+ * Constructs new image analysers, each of which can be confined to a single
+ * thread.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public interface ImageAnalyserFactory {
+	/**
+	 * Construct a new image analyser, with its own letter guesser, word
+	 * chooser and letter guess observers, which shares no mutable state with
+	 * any other analyser constructed by this factory.
+	 */
+	public ImageAnalyser getImageAnalyser();
+}
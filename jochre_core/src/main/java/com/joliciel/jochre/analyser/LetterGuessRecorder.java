@@ -0,0 +1,160 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.analyser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.joliciel.jochre.boundaries.ShapeInSequence;
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.letterGuesser.LetterSequence;
+
+/**
+ * Records the letter guess events for an image, so that they can be replayed
+ * later to other observers, on another thread.<br/>
+ * {@link #onFinish()} is not recorded.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+class LetterGuessRecorder implements LetterGuessObserver {
+	private enum EventType {
+		IMAGE_START,
+		GUESS_LETTER,
+		START_SEQUENCE,
+		BEAM_SEARCH_END,
+		GUESS_SEQUENCE,
+		IMAGE_END
+	}
+
+	private static final class Event {
+		private final EventType type;
+		private JochreImage image;
+		private ShapeInSequence shapeInSequence;
+		private String bestGuess;
+		private LetterSequence sequence;
+		private List<LetterSequence> finalSequences;
+		private List<LetterSequence> holdoverSequences;
+
+		private Event(EventType type) {
+			this.type = type;
+		}
+	}
+
+	private List<Event> events = new ArrayList<Event>();
+
+	@Override
+	public void onImageStart(JochreImage jochreImage) {
+		Event event = new Event(EventType.IMAGE_START);
+		event.image = jochreImage;
+		events.add(event);
+	}
+
+	@Override
+	public void onGuessLetter(ShapeInSequence shapeInSequence, String bestGuess) {
+		Event event = new Event(EventType.GUESS_LETTER);
+		event.shapeInSequence = shapeInSequence;
+		event.bestGuess = bestGuess;
+		events.add(event);
+	}
+
+	@Override
+	public void onStartSequence(LetterSequence letterSequence) {
+		Event event = new Event(EventType.START_SEQUENCE);
+		event.sequence = letterSequence;
+		events.add(event);
+	}
+
+	@Override
+	public void onBeamSearchEnd(LetterSequence bestSequence, List<LetterSequence> finalSequences, List<LetterSequence> holdoverSequences) {
+		Event event = new Event(EventType.BEAM_SEARCH_END);
+		event.sequence = bestSequence;
+		event.finalSequences = finalSequences;
+		event.holdoverSequences = holdoverSequences;
+		events.add(event);
+	}
+
+	@Override
+	public void onGuessSequence(LetterSequence bestSequence) {
+		Event event = new Event(EventType.GUESS_SEQUENCE);
+		event.sequence = bestSequence;
+		events.add(event);
+	}
+
+	@Override
+	public void onImageEnd() {
+		events.add(new Event(EventType.IMAGE_END));
+	}
+
+	@Override
+	public void onFinish() {
+	}
+
+	/**
+	 * Return the events recorded since the last call, and start a new
+	 * recording.
+	 */
+	public Recording reset() {
+		Recording recording = new Recording(events);
+		events = new ArrayList<Event>();
+		return recording;
+	}
+
+	/**
+	 * A sequence of recorded events.
+	 */
+	static final class Recording {
+		private final List<Event> events;
+
+		private Recording(List<Event> events) {
+			this.events = events;
+		}
+
+		/**
+		 * Replay the recorded events to the observers provided, in the
+		 * original order.
+		 */
+		public void replay(List<LetterGuessObserver> observers) {
+			for (Event event : events) {
+				for (LetterGuessObserver observer : observers) {
+					switch (event.type) {
+					case IMAGE_START:
+						observer.onImageStart(event.image);
+						break;
+					case GUESS_LETTER:
+						observer.onGuessLetter(event.shapeInSequence, event.bestGuess);
+						break;
+					case START_SEQUENCE:
+						observer.onStartSequence(event.sequence);
+						break;
+					case BEAM_SEARCH_END:
+						observer.onBeamSearchEnd(event.sequence, event.finalSequences, event.holdoverSequences);
+						break;
+					case GUESS_SEQUENCE:
+						observer.onGuessSequence(event.sequence);
+						break;
+					case IMAGE_END:
+						observer.onImageEnd();
+						break;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,267 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.analyser;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.doc.JochreDocument;
+import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.doc.LookaheadDocumentObserver;
+import com.joliciel.jochre.graphics.GroupOfShapes;
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.Shape;
+import com.joliciel.jochre.utils.JochreException;
+import com.typesafe.config.Config;
+
+/**
+ * Analyses several images concurrently, each one on a worker thread with its
+ * own image analyser.<br/>
+ * Each worker analyser is constructed by an {@link ImageAnalyserFactory}, and
+ * notifies its own observers directly: these are typically used for
+ * evaluation, and their results need to be combined once analysis is
+ * complete, e.g. via {@link com.joliciel.jochre.stats.FScoreCalculator#merge}.
+ * <br/>
+ * Observers added directly to this analyser are notified on the calling
+ * thread, image by image, in the original image order, so that any output
+ * they write is identical to a serial analysis.<br/>
+ * Images are only analysed ahead of time if they are queued via
+ * {@link #onImageQueued(JochreImage)}, otherwise each image is analysed when
+ * it is reached.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class ParallelImageAnalyser implements ImageAnalyser, LookaheadDocumentObserver {
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelImageAnalyser.class);
+
+	private final ImageAnalyserFactory imageAnalyserFactory;
+	private final int threadCount;
+	private final int beamWidth;
+	private final double minOutcomeWeight;
+
+	private final List<LetterGuessObserver> observers = new ArrayList<LetterGuessObserver>();
+	private final List<Worker> workers = new ArrayList<Worker>();
+	private final ThreadLocal<Worker> currentWorker = new ThreadLocal<Worker>();
+	private final Map<JochreImage, Future<LetterGuessRecorder.Recording>> pendingImages = new IdentityHashMap<JochreImage, Future<LetterGuessRecorder.Recording>>();
+
+	private ExecutorService executor = null;
+	private LetterGuessRecorder.Recording currentRecording = null;
+	private boolean loadSplits = false;
+
+	/**
+	 * @param imageAnalyserFactory
+	 *            constructs the analyser used by each worker thread
+	 * @param threadCount
+	 *            the number of images to analyse concurrently
+	 */
+	public ParallelImageAnalyser(ImageAnalyserFactory imageAnalyserFactory, int threadCount, JochreSession jochreSession) {
+		if (threadCount < 1)
+			throw new JochreException("threadCount must be at least 1");
+		this.imageAnalyserFactory = imageAnalyserFactory;
+		this.threadCount = threadCount;
+		Config imageAnalyserConfig = jochreSession.getConfig().getConfig("jochre.image-analyser");
+		this.beamWidth = imageAnalyserConfig.getInt("beam-width");
+		this.minOutcomeWeight = imageAnalyserConfig.getDouble("min-outcome-prob");
+	}
+
+	@Override
+	public void analyse(JochreImage image) {
+		this.onImageQueued(image);
+		this.onImageComplete(image);
+		this.onAnalysisComplete();
+	}
+
+	@Override
+	public void onImageQueued(JochreImage jochreImage) {
+		// lazy loading isn't thread-safe, so load the image on this thread
+		this.loadImage(jochreImage);
+
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				private int threadIndex = 0;
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ImageAnalyser-" + threadIndex++);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		pendingImages.put(jochreImage, executor.submit(new AnalysisTask(jochreImage)));
+	}
+
+	@Override
+	public int getLookahead() {
+		return threadCount * 2;
+	}
+
+	@Override
+	public void onDocumentStart(JochreDocument jochreDocument) {
+	}
+
+	@Override
+	public void onPageStart(JochrePage jochrePage) {
+	}
+
+	@Override
+	public void onImageStart(JochreImage jochreImage) {
+		// wait for the worker to complete, so that other observers can safely
+		// access the image
+		currentRecording = this.getRecording(jochreImage);
+	}
+
+	@Override
+	public void onImageComplete(JochreImage jochreImage) {
+		if (currentRecording == null)
+			currentRecording = this.getRecording(jochreImage);
+		currentRecording.replay(observers);
+		currentRecording = null;
+	}
+
+	@Override
+	public void onPageComplete(JochrePage jochrePage) {
+	}
+
+	@Override
+	public void onDocumentComplete(JochreDocument jochreDocument) {
+	}
+
+	@Override
+	public void onAnalysisComplete() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+		synchronized (workers) {
+			for (Worker worker : workers) {
+				worker.imageAnalyser.onAnalysisComplete();
+			}
+		}
+		for (LetterGuessObserver observer : observers) {
+			observer.onFinish();
+		}
+	}
+
+	private LetterGuessRecorder.Recording getRecording(JochreImage jochreImage) {
+		Future<LetterGuessRecorder.Recording> future = pendingImages.remove(jochreImage);
+		if (future == null) {
+			this.onImageQueued(jochreImage);
+			future = pendingImages.remove(jochreImage);
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JochreException(e);
+		} catch (ExecutionException e) {
+			throw new JochreException("Failed to analyse image " + jochreImage.getId(), e.getCause());
+		}
+	}
+
+	private void loadImage(JochreImage jochreImage) {
+		jochreImage.getPage().getDocument();
+		for (Paragraph paragraph : jochreImage.getParagraphs()) {
+			for (RowOfShapes row : paragraph.getRows()) {
+				for (GroupOfShapes group : row.getGroups()) {
+					for (Shape shape : group.getShapes()) {
+						if (loadSplits)
+							shape.getSplits();
+					}
+				}
+			}
+		}
+	}
+
+	private final class AnalysisTask implements Callable<LetterGuessRecorder.Recording> {
+		private final JochreImage jochreImage;
+
+		public AnalysisTask(JochreImage jochreImage) {
+			this.jochreImage = jochreImage;
+		}
+
+		@Override
+		public LetterGuessRecorder.Recording call() throws Exception {
+			Worker worker = currentWorker.get();
+			if (worker == null) {
+				worker = new Worker(imageAnalyserFactory.getImageAnalyser());
+				synchronized (workers) {
+					workers.add(worker);
+				}
+				currentWorker.set(worker);
+			}
+			LOG.debug("Analysing image " + jochreImage.getId() + " on " + Thread.currentThread().getName());
+			worker.imageAnalyser.onImageComplete(jochreImage);
+			return worker.recorder.reset();
+		}
+	}
+
+	private static final class Worker {
+		private final ImageAnalyser imageAnalyser;
+		private final LetterGuessRecorder recorder = new LetterGuessRecorder();
+
+		public Worker(ImageAnalyser imageAnalyser) {
+			this.imageAnalyser = imageAnalyser;
+			this.imageAnalyser.addObserver(recorder);
+		}
+	}
+
+	@Override
+	public void addObserver(LetterGuessObserver letterGuessObserver) {
+		this.observers.add(letterGuessObserver);
+	}
+
+	@Override
+	public int getBeamWidth() {
+		return beamWidth;
+	}
+
+	@Override
+	public double getMinOutcomeWeight() {
+		return minOutcomeWeight;
+	}
+
+	/**
+	 * Whether the splits stored for each shape in the corpus should be loaded
+	 * before analysis, e.g. when letters are reconstructed from the training
+	 * corpus. Default is false.
+	 */
+	public boolean isLoadSplits() {
+		return loadSplits;
+	}
+
+	public void setLoadSplits(boolean loadSplits) {
+		this.loadSplits = loadSplits;
+	}
+}
@@ -20,8 +20,20 @@ package com.joliciel.jochre.boundaries;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.joliciel.jochre.JochreSession;
 import com.joliciel.jochre.boundaries.features.MergeFeature;
@@ -29,19 +41,31 @@ import com.joliciel.jochre.boundaries.features.MergeFeatureParser;
 import com.joliciel.jochre.boundaries.features.SplitFeature;
 import com.joliciel.jochre.boundaries.features.SplitFeatureParser;
 import com.joliciel.jochre.graphics.GroupOfShapes;
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.RowOfShapes;
 import com.joliciel.jochre.graphics.Shape;
+import com.joliciel.jochre.utils.JochreException;
 import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.typesafe.config.Config;
 
 /**
  * Returns a single "most likely" shape boundary guess, regardless of the
- * original boundaries.
+ * original boundaries.<br/>
+ * If configured with several threads, the first time a group is requested
+ * from a given image, split decisions are calculated concurrently for all of
+ * the image's shapes, followed by the merge checks for each group, on the
+ * assumption that the previous shape wasn't merged. The serial pass then
+ * re-uses these results wherever the assumption holds, and calculates any
+ * others directly, so that the result is identical to a serial analysis. The
+ * threads are shared by all images, until {@link #close()} is called.
  * 
  * @author Assaf Urieli
  *
  */
 public class DeterministicBoundaryDetector implements BoundaryDetector {
+	private static final Logger LOG = LoggerFactory.getLogger(DeterministicBoundaryDetector.class);
 	private final ShapeSplitter shapeSplitter;
 	private final ShapeMerger shapeMerger;
 	private double minWidthRatioForSplit;
@@ -49,6 +73,26 @@ public class DeterministicBoundaryDetector implements BoundaryDetector {
 	private double maxWidthRatioForMerge;
 	private double maxDistanceRatioForMerge;
 	private double minProbabilityForDecision;
+	private int threadCount;
+	private ExecutorService executor = null;
+
+	private JochreImage preparedImage = null;
+	private final Map<Shape, ShapeSequence> preparedSplits = new IdentityHashMap<Shape, ShapeSequence>();
+	private final Map<Shape, PreparedMerge> preparedMerges = new IdentityHashMap<Shape, PreparedMerge>();
+
+	/**
+	 * The merge probability for a shape and the shape preceding it, if it
+	 * wasn't itself merged.
+	 */
+	private static final class PreparedMerge {
+		private final Shape previousShape;
+		private final double probability;
+
+		public PreparedMerge(Shape previousShape, double probability) {
+			this.previousShape = previousShape;
+			this.probability = probability;
+		}
+	}
 
 	private void configure(JochreSession jochreSession) {
 		Config splitterConfig = jochreSession.getConfig().getConfig("jochre.boundaries.splitter");
@@ -61,6 +105,7 @@ public class DeterministicBoundaryDetector implements BoundaryDetector {
 
 		Config boundaryConfig = jochreSession.getConfig().getConfig("jochre.boundaries");
 		minProbabilityForDecision = boundaryConfig.getDouble("min-prob-for-decision");
+		threadCount = boundaryConfig.getInt("threads");
 	}
 
 	public DeterministicBoundaryDetector(ShapeSplitter shapeSplitter, ShapeMerger shapeMerger, JochreSession jochreSession) {
@@ -90,36 +135,19 @@ public class DeterministicBoundaryDetector implements BoundaryDetector {
 
 	@Override
 	public List<ShapeSequence> findBoundaries(GroupOfShapes group) {
+		if (threadCount > 1) {
+			JochreImage image = group.getRow().getParagraph().getImage();
+			if (image != preparedImage)
+				this.prepare(image);
+		}
+
 		// find the possible shape sequences that make up this group
 		ShapeSequence bestSequence = new ShapeSequence();
 		for (Shape shape : group.getShapes()) {
-			// check if shape is wide enough to bother with
-			double widthRatio = (double) shape.getWidth() / (double) shape.getXHeight();
-			double heightRatio = (double) shape.getHeight() / (double) shape.getXHeight();
-
 			// Splitting/merging shapes as required
-			ShapeSequence bestSplitSequence = null;
-			if (this.shapeSplitter != null && widthRatio >= minWidthRatioForSplit && heightRatio >= minHeightRatioForSplit) {
-				List<ShapeSequence> splitSequences = shapeSplitter.split(shape);
-				double bestProb = 0;
-				for (ShapeSequence splitSequence : splitSequences) {
-					if (splitSequence.getScore() > bestProb) {
-						bestSplitSequence = splitSequence;
-						bestProb = splitSequence.getScore();
-					}
-				}
-				if (bestProb < minProbabilityForDecision) {
-					// create a sequence containing only this shape
-					ShapeSequence singleShapeSequence = new ShapeSequence();
-					singleShapeSequence.addShape(shape);
-					bestSplitSequence = singleShapeSequence;
-				}
-			} else {
-				// create a sequence containing only this shape
-				ShapeSequence singleShapeSequence = new ShapeSequence();
-				singleShapeSequence.addShape(shape);
-				bestSplitSequence = singleShapeSequence;
-			}
+			ShapeSequence bestSplitSequence = preparedSplits.remove(shape);
+			if (bestSplitSequence == null)
+				bestSplitSequence = this.getBestSplitSequence(shape);
 
 			ShapeInSequence previousShapeInSequence = null;
 			Shape previousShape = null;
@@ -133,16 +161,11 @@ public class DeterministicBoundaryDetector implements BoundaryDetector {
 
 			double mergeProb = 0;
 			if (this.shapeMerger != null && previousShape != null) {
-				ShapePair mergeCandidate = new ShapePair(previousShape, shape);
-				double mergeCandidateWidthRatio = 0;
-				double mergeCandidateDistanceRatio = 0;
-
-				mergeCandidateWidthRatio = (double) mergeCandidate.getWidth() / (double) mergeCandidate.getXHeight();
-				mergeCandidateDistanceRatio = (double) mergeCandidate.getInnerDistance() / (double) mergeCandidate.getXHeight();
-
-				if (mergeCandidateWidthRatio <= maxWidthRatioForMerge && mergeCandidateDistanceRatio <= maxDistanceRatioForMerge) {
-					mergeProb = shapeMerger.checkMerge(previousShape, firstShape);
-				}
+				PreparedMerge preparedMerge = preparedMerges.remove(firstShape);
+				if (preparedMerge != null && preparedMerge.previousShape == previousShape)
+					mergeProb = preparedMerge.probability;
+				else
+					mergeProb = this.getMergeProbability(previousShape, shape, firstShape);
 			}
 			if (mergeProb > minProbabilityForDecision) {
 				Shape mergedShape = shapeMerger.merge(previousShape, firstShape);
@@ -183,6 +206,171 @@ public class DeterministicBoundaryDetector implements BoundaryDetector {
 		return result;
 	}
 
+	/**
+	 * The most likely sequence resulting from splitting this shape, or a
+	 * sequence containing only this shape if it shouldn't be split.
+	 */
+	ShapeSequence getBestSplitSequence(Shape shape) {
+		// check if shape is wide enough to bother with
+		double widthRatio = (double) shape.getWidth() / (double) shape.getXHeight();
+		double heightRatio = (double) shape.getHeight() / (double) shape.getXHeight();
+
+		ShapeSequence bestSplitSequence = null;
+		if (this.shapeSplitter != null && widthRatio >= minWidthRatioForSplit && heightRatio >= minHeightRatioForSplit) {
+			List<ShapeSequence> splitSequences = shapeSplitter.split(shape);
+			double bestProb = 0;
+			for (ShapeSequence splitSequence : splitSequences) {
+				if (splitSequence.getScore() > bestProb) {
+					bestSplitSequence = splitSequence;
+					bestProb = splitSequence.getScore();
+				}
+			}
+			if (bestProb < minProbabilityForDecision) {
+				// create a sequence containing only this shape
+				ShapeSequence singleShapeSequence = new ShapeSequence();
+				singleShapeSequence.addShape(shape);
+				bestSplitSequence = singleShapeSequence;
+			}
+		} else {
+			// create a sequence containing only this shape
+			ShapeSequence singleShapeSequence = new ShapeSequence();
+			singleShapeSequence.addShape(shape);
+			bestSplitSequence = singleShapeSequence;
+		}
+		return bestSplitSequence;
+	}
+
+	/**
+	 * The probability of merging previousShape with firstShape, the first shape
+	 * resulting from splitting shape, or 0 if they are too wide or too far
+	 * apart to be considered.
+	 */
+	double getMergeProbability(Shape previousShape, Shape shape, Shape firstShape) {
+		double mergeProb = 0;
+		ShapePair mergeCandidate = new ShapePair(previousShape, shape);
+		double mergeCandidateWidthRatio = 0;
+		double mergeCandidateDistanceRatio = 0;
+
+		mergeCandidateWidthRatio = (double) mergeCandidate.getWidth() / (double) mergeCandidate.getXHeight();
+		mergeCandidateDistanceRatio = (double) mergeCandidate.getInnerDistance() / (double) mergeCandidate.getXHeight();
+
+		if (mergeCandidateWidthRatio <= maxWidthRatioForMerge && mergeCandidateDistanceRatio <= maxDistanceRatioForMerge) {
+			mergeProb = shapeMerger.checkMerge(previousShape, firstShape);
+		}
+		return mergeProb;
+	}
+
+	/**
+	 * Calculate split decisions for all shapes in this image concurrently,
+	 * followed by merge decisions for each group, assuming no merges.
+	 */
+	private void prepare(JochreImage image) {
+		LOG.debug("Preparing boundaries for image " + image.getId());
+		preparedImage = image;
+		preparedSplits.clear();
+		preparedMerges.clear();
+
+		final List<GroupOfShapes> groups = new ArrayList<GroupOfShapes>();
+		for (Paragraph paragraph : image.getParagraphs()) {
+			for (RowOfShapes row : paragraph.getRows()) {
+				for (GroupOfShapes group : row.getGroups()) {
+					if (!group.isSkip())
+						groups.add(group);
+				}
+			}
+		}
+
+		// fill the lazy state shared by several shapes on this thread, before
+		// the shapes are analysed concurrently
+		image.getOriginalImage();
+		image.normalize(0);
+		List<Shape> shapes = new ArrayList<Shape>();
+		for (GroupOfShapes group : groups) {
+			for (Shape shape : group.getShapes()) {
+				shape.getJochreImage();
+				shape.getImage();
+				shapes.add(shape);
+			}
+		}
+
+		ExecutorService executor = this.getExecutor();
+		try {
+			// split decisions for each shape are independent
+			List<Future<ShapeSequence>> splitFutures = new ArrayList<Future<ShapeSequence>>();
+			for (final Shape shape : shapes) {
+				splitFutures.add(executor.submit(new Callable<ShapeSequence>() {
+					@Override
+					public ShapeSequence call() {
+						return getBestSplitSequence(shape);
+					}
+				}));
+			}
+			for (int i = 0; i < shapes.size(); i++)
+				preparedSplits.put(shapes.get(i), splitFutures.get(i).get());
+
+			// merge checks are batched by group, since a shape can take part in
+			// two checks
+			if (shapeMerger != null) {
+				List<Future<Map<Shape, PreparedMerge>>> mergeFutures = new ArrayList<Future<Map<Shape, PreparedMerge>>>();
+				for (final GroupOfShapes group : groups) {
+					final List<ShapeSequence> splitSequences = new ArrayList<ShapeSequence>();
+					for (Shape shape : group.getShapes())
+						splitSequences.add(preparedSplits.get(shape));
+
+					mergeFutures.add(executor.submit(new Callable<Map<Shape, PreparedMerge>>() {
+						@Override
+						public Map<Shape, PreparedMerge> call() {
+							Map<Shape, PreparedMerge> merges = new IdentityHashMap<Shape, PreparedMerge>();
+							List<Shape> groupShapes = group.getShapes();
+							for (int i = 1; i < groupShapes.size(); i++) {
+								ShapeSequence previousSequence = splitSequences.get(i - 1);
+								Shape previousShape = previousSequence.get(previousSequence.size() - 1).getShape();
+								Shape firstShape = splitSequences.get(i).get(0).getShape();
+								double mergeProb = getMergeProbability(previousShape, groupShapes.get(i), firstShape);
+								merges.put(firstShape, new PreparedMerge(previousShape, mergeProb));
+							}
+							return merges;
+						}
+					}));
+				}
+				for (Future<Map<Shape, PreparedMerge>> mergeFuture : mergeFutures)
+					preparedMerges.putAll(mergeFuture.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JochreException(e);
+		} catch (ExecutionException e) {
+			throw new JochreException("Failed to prepare boundaries for image " + image.getId(), e.getCause());
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+				private final AtomicInteger threadIndex = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "BoundaryDetector-" + threadIndex.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Shut down the threads used to prepare boundaries concurrently. If the
+	 * detector is used again, new threads are started.
+	 */
+	public synchronized void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
 	public ShapeSplitter getShapeSplitter() {
 		return shapeSplitter;
 	}
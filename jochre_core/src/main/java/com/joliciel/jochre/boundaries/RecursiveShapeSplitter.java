@@ -19,7 +19,9 @@
 package com.joliciel.jochre.boundaries;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -59,7 +61,10 @@ import com.typesafe.config.Config;
  * of recursion, we set the highest probability option to 1, and set all of the
  * other probabilities proportionally to the highest. This will give
  * equiprobable sequences in the above case, and gives the intuitive response in
- * other cases.
+ * other cases.<br/>
+ * The same sub-shape can be reached through different orders of splits: its
+ * split candidates, their probabilities and its resulting sequences are only
+ * calculated once per original shape, and re-used thereafter.
  * 
  * @author Assaf Urieli
  *
@@ -109,6 +114,17 @@ public class RecursiveShapeSplitter implements ShapeSplitter {
 	}
 
 	List<ShapeSequence> split(Shape shape, int depth, Shape originalShape, boolean leftToRight) {
+		return this.split(shape, depth, originalShape, leftToRight, new SplitMemo());
+	}
+
+	private List<ShapeSequence> split(Shape shape, int depth, Shape originalShape, boolean leftToRight, SplitMemo memo) {
+		List<ShapeSequence> memoisedSequences = memo.getSequences(shape, depth);
+		if (memoisedSequences != null) {
+			if (LOG.isTraceEnabled())
+				LOG.trace("Re-using sequences for shape: " + shape.getLeft() + " , " + shape.getRight() + ", depth " + depth);
+			return memoisedSequences;
+		}
+
 		String padding = "-";
 		for (int i = 0; i < depth; i++)
 			padding += "-";
@@ -130,28 +146,31 @@ public class RecursiveShapeSplitter implements ShapeSplitter {
 			shapeSequence.addShape(shape, originalShape);
 			shapeSequences.add(shapeSequence);
 		} else {
-			List<Split> splitCandidates = this.splitCandidateFinder.findSplitCandidates(shape);
 			TreeSet<ShapeSequence> myShapeSequences = new TreeSet<ShapeSequence>();
 
-			TreeSet<WeightedOutcome<Split>> weightedSplits = new TreeSet<WeightedOutcome<Split>>();
-			for (Split splitCandidate : splitCandidates) {
-				double splitProb = this.shouldSplit(splitCandidate);
-				WeightedOutcome<Split> weightedSplit = new WeightedOutcome<Split>(splitCandidate, splitProb);
-				weightedSplits.add(weightedSplit);
-			}
+			TreeSet<WeightedOutcome<Split>> weightedSplits = memo.getWeightedSplits(shape);
+			if (weightedSplits == null) {
+				weightedSplits = new TreeSet<WeightedOutcome<Split>>();
+				List<Split> splitCandidates = this.splitCandidateFinder.findSplitCandidates(shape);
+				for (Split splitCandidate : splitCandidates) {
+					double splitProb = this.shouldSplit(splitCandidate);
+					WeightedOutcome<Split> weightedSplit = new WeightedOutcome<Split>(splitCandidate, splitProb);
+					weightedSplits.add(weightedSplit);
+				}
 
-			double maxSplitProb = 0.0;
-			if (weightedSplits.size() > 0)
-				maxSplitProb = weightedSplits.first().getWeight();
+				double maxSplitProb = 0.0;
+				if (weightedSplits.size() > 0)
+					maxSplitProb = weightedSplits.first().getWeight();
 
-			double noSplitProb = 1 - maxSplitProb;
-			if (noSplitProb > maxSplitProb)
-				maxSplitProb = noSplitProb;
+				Split noSplit = new Split(shape, jochreSession);
+				noSplit.setPosition(-1);
+				WeightedOutcome<Split> weightedNoSplit = new WeightedOutcome<Split>(noSplit, 1 - maxSplitProb);
+				weightedSplits.add(weightedNoSplit);
+				memo.putWeightedSplits(shape, weightedSplits);
+			}
 
-			Split noSplit = new Split(shape, jochreSession);
-			noSplit.setPosition(-1);
-			WeightedOutcome<Split> weightedNoSplit = new WeightedOutcome<Split>(noSplit, noSplitProb);
-			weightedSplits.add(weightedNoSplit);
+			// the highest probability, whether split or no-split
+			double maxSplitProb = weightedSplits.first().getWeight();
 
 			boolean topCandidate = true;
 			double topCandidateWeight = 1.0;
@@ -184,15 +203,14 @@ public class RecursiveShapeSplitter implements ShapeSplitter {
 					myShapeSequences.add(shapeSequence);
 				} else {
 					// a proper split
-					Shape leftShape = shape.getJochreImage().getShape(shape.getLeft(), shape.getTop(), shape.getLeft() + splitCandidate.getPosition(), shape.getBottom());
-					Shape rightShape = shape.getJochreImage().getShape(shape.getLeft() + splitCandidate.getPosition() + 1, shape.getTop(), shape.getRight(),
-							shape.getBottom());
+					Shape leftShape = memo.getShape(shape, shape.getLeft(), shape.getLeft() + splitCandidate.getPosition());
+					Shape rightShape = memo.getShape(shape, shape.getLeft() + splitCandidate.getPosition() + 1, shape.getRight());
 
 					// for each split recursively try to split it again up to depth of m
 					// Note: m=2 is probably enough, since we're not expecting more than 4
 					// letters per shape (3 splits)
-					List<ShapeSequence> leftShapeSequences = this.split(leftShape, depth + 1, originalShape, leftToRight);
-					List<ShapeSequence> rightShapeSequences = this.split(rightShape, depth + 1, originalShape, leftToRight);
+					List<ShapeSequence> leftShapeSequences = this.split(leftShape, depth + 1, originalShape, leftToRight, memo);
+					List<ShapeSequence> rightShapeSequences = this.split(rightShape, depth + 1, originalShape, leftToRight, memo);
 
 					if (topCandidate) {
 						// find the no-split sequence in each sub-sequence
@@ -270,6 +288,7 @@ public class RecursiveShapeSplitter implements ShapeSplitter {
 			}
 		}
 
+		memo.putSequences(shape, depth, shapeSequences);
 		return shapeSequences;
 	}
 
@@ -345,4 +364,56 @@ public class RecursiveShapeSplitter implements ShapeSplitter {
 	public void setMaxDepth(int maxDepth) {
 		this.maxDepth = maxDepth;
 	}
+
+	/**
+	 * Results already calculated for the sub-shapes of a single original shape,
+	 * keyed by their horizontal pixel interval, since all sub-shapes share the
+	 * original shape's top and bottom.
+	 */
+	private static final class SplitMemo {
+		private final Map<Long, Shape> shapes = new HashMap<Long, Shape>();
+		private final Map<Long, TreeSet<WeightedOutcome<Split>>> weightedSplits = new HashMap<Long, TreeSet<WeightedOutcome<Split>>>();
+		private final List<Map<Long, List<ShapeSequence>>> sequencesByDepth = new ArrayList<Map<Long, List<ShapeSequence>>>();
+
+		private static long getKey(int left, int right) {
+			return ((long) left << 32) | (right & 0xffffffffL);
+		}
+
+		/**
+		 * Get the sub-shape of parent covering the interval provided.
+		 */
+		public Shape getShape(Shape parent, int left, int right) {
+			long key = getKey(left, right);
+			Shape shape = shapes.get(key);
+			if (shape == null) {
+				shape = parent.getJochreImage().getShape(left, parent.getTop(), right, parent.getBottom());
+				shapes.put(key, shape);
+			}
+			return shape;
+		}
+
+		public TreeSet<WeightedOutcome<Split>> getWeightedSplits(Shape shape) {
+			return weightedSplits.get(getKey(shape.getLeft(), shape.getRight()));
+		}
+
+		public void putWeightedSplits(Shape shape, TreeSet<WeightedOutcome<Split>> splits) {
+			weightedSplits.put(getKey(shape.getLeft(), shape.getRight()), splits);
+		}
+
+		/**
+		 * The sequences for a sub-shape at a given depth, since the depth limits
+		 * further splitting.
+		 */
+		public List<ShapeSequence> getSequences(Shape shape, int depth) {
+			if (depth >= sequencesByDepth.size())
+				return null;
+			return sequencesByDepth.get(depth).get(getKey(shape.getLeft(), shape.getRight()));
+		}
+
+		public void putSequences(Shape shape, int depth, List<ShapeSequence> shapeSequences) {
+			while (depth >= sequencesByDepth.size())
+				sequencesByDepth.add(new HashMap<Long, List<ShapeSequence>>());
+			sequencesByDepth.get(depth).put(getKey(shape.getLeft(), shape.getRight()), shapeSequences);
+		}
+	}
 }
@@ -0,0 +1,309 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.doc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.utils.JochreException;
+
+/**
+ * Dispatches document events to several observers asynchronously, so that
+ * slow observers such as exporters don't hold up the analysis of the
+ * following pages.<br/>
+ * Each observer gets its own thread and its own bounded event queue, and
+ * receives events in the original order. When a queue is full, the calling
+ * thread waits for the observer to catch up.<br/>
+ * If an observer fails, the failure is thrown on the calling thread by the
+ * next event, and by {@link #onAnalysisComplete()}, which always waits for
+ * all queues to be drained.<br/>
+ * Since the observers read documents, pages and images after the calling
+ * thread has moved on, memory should only be cleared once they're done with
+ * them, via {@link #afterPendingEvents(List, Runnable)}.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class AsyncDocumentObserver implements DocumentObserver {
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncDocumentObserver.class);
+	private static final AtomicInteger threadIndex = new AtomicInteger();
+
+	private enum EventType {
+		DOCUMENT_START,
+		PAGE_START,
+		IMAGE_START,
+		IMAGE_COMPLETE,
+		PAGE_COMPLETE,
+		DOCUMENT_COMPLETE,
+		ANALYSIS_COMPLETE,
+		ACTION,
+		STOP
+	}
+
+	private static final class Event {
+		private final EventType type;
+		private JochreDocument document;
+		private JochrePage page;
+		private JochreImage image;
+		private Runnable action;
+
+		private Event(EventType type) {
+			this.type = type;
+		}
+	}
+
+	private final List<Worker> workers = new ArrayList<Worker>();
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+	private boolean stopped = false;
+
+	/**
+	 * @param observers
+	 *            the observers to notify
+	 * @param queueSize
+	 *            the maximum number of events waiting for each observer
+	 */
+	public AsyncDocumentObserver(List<DocumentObserver> observers, int queueSize) {
+		if (queueSize < 1)
+			throw new JochreException("queueSize must be at least 1");
+		for (DocumentObserver observer : observers) {
+			Worker worker = new Worker(observer, queueSize);
+			workers.add(worker);
+			worker.start();
+		}
+	}
+
+	@Override
+	public void onDocumentStart(JochreDocument jochreDocument) {
+		Event event = new Event(EventType.DOCUMENT_START);
+		event.document = jochreDocument;
+		this.dispatch(event);
+	}
+
+	@Override
+	public void onPageStart(JochrePage jochrePage) {
+		Event event = new Event(EventType.PAGE_START);
+		event.page = jochrePage;
+		this.dispatch(event);
+	}
+
+	@Override
+	public void onImageStart(JochreImage jochreImage) {
+		Event event = new Event(EventType.IMAGE_START);
+		event.image = jochreImage;
+		this.dispatch(event);
+	}
+
+	@Override
+	public void onImageComplete(JochreImage jochreImage) {
+		Event event = new Event(EventType.IMAGE_COMPLETE);
+		event.image = jochreImage;
+		this.dispatch(event);
+	}
+
+	@Override
+	public void onPageComplete(JochrePage jochrePage) {
+		Event event = new Event(EventType.PAGE_COMPLETE);
+		event.page = jochrePage;
+		this.dispatch(event);
+	}
+
+	@Override
+	public void onDocumentComplete(JochreDocument jochreDocument) {
+		Event event = new Event(EventType.DOCUMENT_COMPLETE);
+		event.document = jochreDocument;
+		this.dispatch(event);
+	}
+
+	/**
+	 * Notifies the observers, and waits for all of them to process all
+	 * remaining events.
+	 */
+	@Override
+	public void onAnalysisComplete() {
+		if (!stopped) {
+			stopped = true;
+			for (Worker worker : workers)
+				worker.put(new Event(EventType.ANALYSIS_COMPLETE));
+			for (Worker worker : workers)
+				worker.put(new Event(EventType.STOP));
+			for (Worker worker : workers) {
+				try {
+					worker.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new JochreException(e);
+				}
+			}
+		}
+		this.checkFailure();
+	}
+
+	/**
+	 * Run an action once every observer has processed all events sent so far,
+	 * on the thread of the last observer to get there.
+	 */
+	public void afterPendingEvents(final Runnable action) {
+		if (stopped || workers.size() == 0) {
+			action.run();
+			return;
+		}
+		final AtomicInteger remaining = new AtomicInteger(workers.size());
+		Runnable countdown = new Runnable() {
+			@Override
+			public void run() {
+				if (remaining.decrementAndGet() == 0)
+					action.run();
+			}
+		};
+		for (Worker worker : workers) {
+			Event event = new Event(EventType.ACTION);
+			event.action = countdown;
+			worker.put(event);
+		}
+	}
+
+	/**
+	 * Run an action once any asynchronous observer in the list provided has
+	 * processed all events sent so far, or immediately if there are none.
+	 */
+	public static void afterPendingEvents(List<DocumentObserver> observers, final Runnable action) {
+		List<AsyncDocumentObserver> asyncObservers = new ArrayList<AsyncDocumentObserver>();
+		for (DocumentObserver observer : observers) {
+			if (observer instanceof AsyncDocumentObserver)
+				asyncObservers.add((AsyncDocumentObserver) observer);
+		}
+		if (asyncObservers.size() == 0) {
+			action.run();
+			return;
+		}
+		final AtomicInteger remaining = new AtomicInteger(asyncObservers.size());
+		Runnable countdown = new Runnable() {
+			@Override
+			public void run() {
+				if (remaining.decrementAndGet() == 0)
+					action.run();
+			}
+		};
+		for (AsyncDocumentObserver asyncObserver : asyncObservers)
+			asyncObserver.afterPendingEvents(countdown);
+	}
+
+	private void dispatch(Event event) {
+		if (stopped)
+			throw new JochreException("Cannot notify observers after analysis is complete");
+		this.checkFailure();
+		for (Worker worker : workers)
+			worker.put(event);
+	}
+
+	private void checkFailure() {
+		Throwable t = failure.get();
+		if (t != null)
+			throw new JochreException("Document observer failed", t);
+	}
+
+	private final class Worker extends Thread {
+		private final DocumentObserver observer;
+		private final BlockingQueue<Event> queue;
+
+		public Worker(DocumentObserver observer, int queueSize) {
+			super("DocumentObserver-" + threadIndex.getAndIncrement());
+			this.setDaemon(true);
+			this.observer = observer;
+			this.queue = new ArrayBlockingQueue<Event>(queueSize);
+		}
+
+		public void put(Event event) {
+			try {
+				queue.put(event);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new JochreException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			boolean failed = false;
+			while (true) {
+				Event event;
+				try {
+					event = queue.take();
+				} catch (InterruptedException e) {
+					failure.compareAndSet(null, e);
+					return;
+				}
+				if (event.type == EventType.STOP)
+					return;
+				try {
+					if (event.type == EventType.ACTION) {
+						// actions are run even after a failure, so that memory is
+						// released
+						event.action.run();
+					} else if (!failed) {
+						this.notifyObserver(event);
+					}
+				} catch (Throwable t) {
+					LOG.error("Failure in " + observer.getClass().getSimpleName(), t);
+					failure.compareAndSet(null, t);
+					// keep on draining the queue, so that the calling thread
+					// isn't blocked
+					failed = true;
+				}
+			}
+		}
+
+		private void notifyObserver(Event event) {
+			switch (event.type) {
+			case DOCUMENT_START:
+				observer.onDocumentStart(event.document);
+				break;
+			case PAGE_START:
+				observer.onPageStart(event.page);
+				break;
+			case IMAGE_START:
+				observer.onImageStart(event.image);
+				break;
+			case IMAGE_COMPLETE:
+				observer.onImageComplete(event.image);
+				break;
+			case PAGE_COMPLETE:
+				observer.onPageComplete(event.page);
+				break;
+			case DOCUMENT_COMPLETE:
+				observer.onDocumentComplete(event.document);
+				break;
+			case ANALYSIS_COMPLETE:
+				observer.onAnalysisComplete();
+				break;
+			case ACTION:
+			case STOP:
+				break;
+			}
+		}
+	}
+}
@@ -41,6 +41,7 @@ import com.joliciel.jochre.boundaries.DeterministicBoundaryDetector;
 import com.joliciel.jochre.boundaries.OriginalBoundaryDetector;
 import com.joliciel.jochre.graphics.ImageStatus;
 import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.graphics.SegmentationCache;
 import com.joliciel.jochre.graphics.Segmenter;
 import com.joliciel.jochre.graphics.SourceImage;
 import com.joliciel.jochre.letterGuesser.LetterGuesser;
@@ -80,6 +81,9 @@ public class JochreDocumentGenerator implements SourceFileProcessor, Monitorable
 
 	private MultiTaskProgressMonitor currentMonitor;
 
+	private SegmentationCache segmentationCache = null;
+	private String sourceFileHash = null;
+
 	private List<DocumentObserver> documentObservers = new ArrayList<DocumentObserver>();
 
 	private final JochreSession jochreSession;
@@ -172,11 +176,17 @@ public class JochreDocumentGenerator implements SourceFileProcessor, Monitorable
 	}
 
 	@Override
-	public void onPageComplete(JochrePage jochrePage) {
+	public void onPageComplete(final JochrePage jochrePage) {
 		LOG.debug("JochreDocumentGeneratorImpl.onPageComplete(" + jochrePage.getIndex() + ")");
 		for (DocumentObserver observer : documentObservers)
 			observer.onPageComplete(jochrePage);
-		jochrePage.clearMemory();
+		// asynchronous observers may still be reading the page
+		AsyncDocumentObserver.afterPendingEvents(documentObservers, new Runnable() {
+			@Override
+			public void run() {
+				jochrePage.clearMemory();
+			}
+		});
 	}
 
 	@Override
@@ -192,8 +202,16 @@ public class JochreDocumentGenerator implements SourceFileProcessor, Monitorable
 			if (currentMonitor != null) {
 				currentMonitor.setCurrentAction("imageMonitor.segmentingImage", new Object[] { jochrePage.getIndex() });
 			}
-			LOG.debug("Creating source image object");
-			SourceImage sourceImage = jochrePage.newJochreImage(image, imageName + '.' + SUFFIX);
+			SourceImage sourceImage = null;
+			if (segmentationCache != null && !drawSegmentedImage) {
+				LOG.debug("Looking for cached segmentation");
+				sourceImage = segmentationCache.load(jochrePage, image, imageName + '.' + SUFFIX, sourceFileHash);
+			}
+			boolean segmented = sourceImage != null;
+			if (!segmented) {
+				LOG.debug("Creating source image object");
+				sourceImage = jochrePage.newJochreImage(image, imageName + '.' + SUFFIX);
+			}
 			sourceImage.setDrawPixelSpread(drawPixelSpread);
 
 			if (currentUser != null)
@@ -203,31 +221,38 @@ public class JochreDocumentGenerator implements SourceFileProcessor, Monitorable
 			for (DocumentObserver observer : documentObservers)
 				observer.onImageStart(sourceImage);
 
-			LOG.debug("Segmenting image");
-			Segmenter segmenter = new Segmenter(sourceImage, jochreSession);
-			segmenter.setDrawSegmentation(drawSegmentedImage);
-			if (currentMonitor != null) {
-				ProgressMonitor monitor = segmenter.monitorTask();
-				double percentAlloted = 1;
-				if (monitorableCount > 0 && save) {
-					percentAlloted = 0.3;
-				} else if (monitorableCount > 0) {
-					percentAlloted = 0.4;
-				} else if (save) {
-					percentAlloted = 0.8;
+			if (!segmented) {
+				LOG.debug("Segmenting image");
+				Segmenter segmenter = new Segmenter(sourceImage, jochreSession);
+				segmenter.setDrawSegmentation(drawSegmentedImage);
+				if (currentMonitor != null) {
+					ProgressMonitor monitor = segmenter.monitorTask();
+					double percentAlloted = 1;
+					if (monitorableCount > 0 && save) {
+						percentAlloted = 0.3;
+					} else if (monitorableCount > 0) {
+						percentAlloted = 0.4;
+					} else if (save) {
+						percentAlloted = 0.8;
+					}
+					currentMonitor.startTask(monitor, percentAlloted);
+				}
+				segmenter.segment();
+				if (currentMonitor != null)
+					currentMonitor.endTask();
+
+				if (drawSegmentedImage) {
+					LOG.debug("Writing segmentation file");
+					BufferedImage segmentedImage = segmenter.getSegmentedImage();
+					File imageFile = new File(outputDirectory, imageName + "_seg.png");
+					LOG.debug("Writing segmented image to " + imageFile.getAbsolutePath());
+					ImageIO.write(segmentedImage, "PNG", imageFile);
+				}
+
+				if (segmentationCache != null) {
+					LOG.debug("Caching segmentation");
+					segmentationCache.save(sourceImage, sourceFileHash);
 				}
-				currentMonitor.startTask(monitor, percentAlloted);
-			}
-			segmenter.segment();
-			if (currentMonitor != null)
-				currentMonitor.endTask();
-
-			if (drawSegmentedImage) {
-				LOG.debug("Writing segmentation file");
-				BufferedImage segmentedImage = segmenter.getSegmentedImage();
-				File imageFile = new File(outputDirectory, imageName + "_seg.png");
-				LOG.debug("Writing segmented image to " + imageFile.getAbsolutePath());
-				ImageIO.write(segmentedImage, "PNG", imageFile);
 			}
 			sourceImage.setImageStatus(ImageStatus.AUTO_NEW);
 
@@ -337,7 +362,7 @@ public class JochreDocumentGenerator implements SourceFileProcessor, Monitorable
 			List<String> letterFeatureDescriptors = letterModel.getFeatureDescriptors();
 			LetterFeatureParser letterFeatureParser = new LetterFeatureParser();
 			Set<LetterFeature<?>> letterFeatures = letterFeatureParser.getLetterFeatureSet(letterFeatureDescriptors);
-			LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel.getDecisionMaker());
+			LetterGuesser letterGuesser = new LetterGuesser(letterFeatures, letterModel, jochreSession);
 
 			BoundaryDetector boundaryDetector = null;
 			LetterGuessObserver observer = null;
@@ -384,6 +409,19 @@ public class JochreDocumentGenerator implements SourceFileProcessor, Monitorable
 		this.outputDirectory = outputDirectory;
 	}
 
+	/**
+	 * Call if segmentation should be restored from a cache when available, and
+	 * cached otherwise.
+	 * 
+	 * @param sourceFile
+	 *            the file from which images are read, identifying them in the
+	 *            cache
+	 */
+	public void requestSegmentationCache(SegmentationCache segmentationCache, File sourceFile) {
+		this.segmentationCache = segmentationCache;
+		this.sourceFileHash = SegmentationCache.getFileHash(sourceFile);
+	}
+
 	public boolean isDrawPixelSpread() {
 		return drawPixelSpread;
 	}
@@ -0,0 +1,46 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.doc;
+
+import com.joliciel.jochre.graphics.JochreImage;
+
+/**
+ * A document observer which can start processing images before they are
+ * reached, e.g. in order to process several images concurrently.<br/>
+ * When supported by the caller, each image is queued via
+ * {@link #onImageQueued(JochreImage)} in document order, at most
+ * {@link #getLookahead()} images ahead of the image currently being
+ * observed, and before any other event is sent for this image.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public interface LookaheadDocumentObserver extends DocumentObserver {
+	/**
+	 * Called when an image is queued for processing, ahead of the other
+	 * events for this image.
+	 */
+	public void onImageQueued(JochreImage jochreImage);
+
+	/**
+	 * The maximum number of images which should be queued ahead of the image
+	 * currently being observed.
+	 */
+	public int getLookahead();
+}
@@ -0,0 +1,217 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+
+/**
+ * A shape analysis cache which keeps the approximate memory it takes under a
+ * maximum, by discarding the analysis of the least recently used shapes
+ * first.<br/>
+ * Shapes are identified by identity rather than by coordinates.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public final class BoundedShapeAnalysisCache implements ShapeAnalysisCache {
+	private static final Logger LOG = LoggerFactory.getLogger(BoundedShapeAnalysisCache.class);
+
+	/**
+	 * The approximate fixed cost of each shape's entry.
+	 */
+	static final int ENTRY_BYTES = 96;
+
+	/**
+	 * The approximate cost of storing a single feature result.
+	 */
+	static final int FEATURE_RESULT_BYTES = 56;
+
+	private static final int VALUE_BYTES = 48;
+
+	private final long maxBytes;
+	private final Map<Shape, Entry> entries = new IdentityHashMap<Shape, Entry>();
+	private long bytes = 0;
+	private int evictionCount = 0;
+
+	// a doubly-linked list from the least to the most recently used entry
+	private Entry head = null;
+	private Entry tail = null;
+
+	private static final class Entry {
+		private final Shape shape;
+		private FeatureResult<?>[] featureResults = null;
+		private Map<String, Object> values = null;
+		private long bytes = ENTRY_BYTES;
+		private Entry previous = null;
+		private Entry next = null;
+
+		public Entry(Shape shape) {
+			this.shape = shape;
+		}
+	}
+
+	/**
+	 * @param maxBytes
+	 *            the approximate maximum memory to take
+	 */
+	public BoundedShapeAnalysisCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public synchronized FeatureResult<?> getFeatureResult(Shape shape, int slot) {
+		Entry entry = this.getEntry(shape);
+		if (entry == null || entry.featureResults == null || slot >= entry.featureResults.length)
+			return null;
+		return entry.featureResults[slot];
+	}
+
+	@Override
+	public synchronized void putFeatureResult(Shape shape, int slot, FeatureResult<?> featureResult) {
+		Entry entry = this.getOrCreateEntry(shape);
+		long added = 0;
+		if (entry.featureResults == null || slot >= entry.featureResults.length) {
+			int length = Math.max(slot + 1, entry.featureResults == null ? 16 : entry.featureResults.length * 2);
+			FeatureResult<?>[] featureResults = new FeatureResult<?>[length];
+			if (entry.featureResults != null) {
+				System.arraycopy(entry.featureResults, 0, featureResults, 0, entry.featureResults.length);
+				added -= 8 * entry.featureResults.length;
+			}
+			added += 8 * length;
+			entry.featureResults = featureResults;
+		}
+		if (entry.featureResults[slot] == null)
+			added += FEATURE_RESULT_BYTES;
+		entry.featureResults[slot] = featureResult;
+		this.addBytes(entry, added);
+	}
+
+	@Override
+	public synchronized Object get(Shape shape, String key) {
+		Entry entry = this.getEntry(shape);
+		if (entry == null || entry.values == null)
+			return null;
+		return entry.values.get(key);
+	}
+
+	@Override
+	public synchronized void put(Shape shape, String key, Object value, long bytes) {
+		Entry entry = this.getOrCreateEntry(shape);
+		if (entry.values == null)
+			entry.values = new HashMap<String, Object>();
+		// we don't know how much the replaced value took
+		if (entry.values.put(key, value) == null)
+			this.addBytes(entry, VALUE_BYTES + bytes);
+	}
+
+	@Override
+	public synchronized void remove(Shape shape) {
+		Entry entry = entries.remove(shape);
+		if (entry != null) {
+			this.unlink(entry);
+			bytes -= entry.bytes;
+		}
+	}
+
+	@Override
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * The number of shapes whose analysis is currently stored.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized void clear() {
+		if (LOG.isDebugEnabled())
+			LOG.debug("Clearing shape analysis: " + entries.size() + " shapes, " + bytes + " bytes, " + evictionCount + " evicted");
+		entries.clear();
+		head = null;
+		tail = null;
+		bytes = 0;
+		evictionCount = 0;
+	}
+
+	private Entry getEntry(Shape shape) {
+		Entry entry = entries.get(shape);
+		if (entry != null && entry != tail) {
+			this.unlink(entry);
+			this.append(entry);
+		}
+		return entry;
+	}
+
+	private Entry getOrCreateEntry(Shape shape) {
+		Entry entry = this.getEntry(shape);
+		if (entry == null) {
+			entry = new Entry(shape);
+			entries.put(shape, entry);
+			this.append(entry);
+			bytes += entry.bytes;
+		}
+		return entry;
+	}
+
+	private void addBytes(Entry entry, long added) {
+		entry.bytes += added;
+		bytes += added;
+		// evict the least recently used shapes, but never the current one
+		while (bytes > maxBytes && head != null && head != entry) {
+			Entry eldest = head;
+			this.unlink(eldest);
+			entries.remove(eldest.shape);
+			bytes -= eldest.bytes;
+			evictionCount++;
+		}
+	}
+
+	private void append(Entry entry) {
+		entry.previous = tail;
+		entry.next = null;
+		if (tail != null)
+			tail.next = entry;
+		else
+			head = entry;
+		tail = entry;
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.previous != null)
+			entry.previous.next = entry.next;
+		else
+			head = entry.next;
+		if (entry.next != null)
+			entry.next.previous = entry.previous;
+		else
+			tail = entry.previous;
+		entry.previous = null;
+		entry.next = null;
+	}
+}
@@ -55,13 +55,17 @@ import java.awt.image.ByteLookupTable;
 import java.awt.image.ColorConvertOp;
 import java.awt.image.ColorModel;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
 import java.awt.image.IndexColorModel;
 import java.awt.image.LookupOp;
+import java.awt.image.PixelInterleavedSampleModel;
 import java.awt.image.Raster;
 import java.awt.image.RasterOp;
 import java.awt.image.RescaleOp;
 import java.awt.image.SampleModel;
 import java.awt.image.ShortLookupTable;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.awt.image.WritableRaster;
 import java.awt.RenderingHints;
 import sun.awt.image.ImagingLib;
@@ -252,6 +256,76 @@ public class BrightnessContrastOp implements BufferedImageOp, RasterOp {
     }
 
 
+    /**
+     * Applies a 256-entry lookup table directly to the data buffer of
+     * an image without alpha whose samples are stored in bytes, or packed
+     * into ints, giving the same result as the raster operation.
+     * @return false if the image's type or layout isn't supported, in
+     *         which case nothing has been done.
+     */
+    private boolean filterWithLookupTable(BufferedImage src, BufferedImage dst) {
+        int type = src.getType();
+        if (dst.getType() != type)
+            return false;
+        Raster srcRaster = src.getRaster();
+        Raster dstRaster = dst.getRaster();
+        if (!isWholeBuffer(srcRaster) || !isWholeBuffer(dstRaster))
+            return false;
+
+        byte[] lut = createByteLut(scaleFactors, offsets, 1, 256).getTable()[0];
+        switch (type) {
+        case BufferedImage.TYPE_BYTE_GRAY:
+        case BufferedImage.TYPE_3BYTE_BGR: {
+            byte[] srcData = ((DataBufferByte) srcRaster.getDataBuffer()).getData();
+            byte[] dstData = ((DataBufferByte) dstRaster.getDataBuffer()).getData();
+            for (int i = 0; i < srcData.length; i++)
+                dstData[i] = lut[srcData[i] & 0xff];
+            return true;
+        }
+        case BufferedImage.TYPE_INT_RGB:
+        case BufferedImage.TYPE_INT_BGR: {
+            int[] srcData = ((DataBufferInt) srcRaster.getDataBuffer()).getData();
+            int[] dstData = ((DataBufferInt) dstRaster.getDataBuffer()).getData();
+            for (int i = 0; i < srcData.length; i++) {
+                int pixel = srcData[i];
+                dstData[i] = ((lut[(pixel >> 16) & 0xff] & 0xff) << 16)
+                    | ((lut[(pixel >> 8) & 0xff] & 0xff) << 8)
+                    | (lut[pixel & 0xff] & 0xff);
+            }
+            return true;
+        }
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Is this raster's data buffer made up of exactly its own pixels, in
+     * order, with no padding?
+     */
+    private boolean isWholeBuffer(Raster raster) {
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        if (raster.getParent() != null
+            || raster.getSampleModelTranslateX() != 0
+            || raster.getSampleModelTranslateY() != 0
+            || dataBuffer.getNumBanks() != 1 || dataBuffer.getOffset() != 0)
+            return false;
+        SampleModel sampleModel = raster.getSampleModel();
+        int width = raster.getWidth();
+        if (sampleModel instanceof PixelInterleavedSampleModel) {
+            PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) sampleModel;
+            int bands = model.getNumBands();
+            return model.getPixelStride() == bands
+                && model.getScanlineStride() == width * bands
+                && dataBuffer.getSize() == width * raster.getHeight() * bands;
+        } else if (sampleModel instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) sampleModel;
+            return model.getScanlineStride() == width
+                && dataBuffer.getSize() == width * raster.getHeight();
+        }
+        return false;
+    }
+
     /**
      * Determines if the rescale can be performed as a lookup.
      * The dst must be a byte or short type.
@@ -383,6 +457,14 @@ public class BrightnessContrastOp implements BufferedImageOp, RasterOp {
 
         BufferedImage origDst = dst;
 
+        //
+        // For common image types without alpha, apply a lookup table
+        // directly to the pixel data
+        //
+        if (!needToConvert && length == 1 && filterWithLookupTable(src, dst)) {
+            return origDst;
+        }
+
         //
         // Try to use a native BI rescale operation first
         //
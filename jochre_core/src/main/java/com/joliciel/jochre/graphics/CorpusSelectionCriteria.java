@@ -201,4 +201,8 @@ public class CorpusSelectionCriteria {
 		return documentSelections;
 	}
 
+	public void setDocumentSelections(Map<String, Set<Integer>> documentSelections) {
+		this.documentSelections = documentSelections;
+	}
+
 }
\ No newline at end of file
@@ -797,6 +797,25 @@ public final class GraphicsDao {
 		return shapeIds;
 	}
 
+	/**
+	 * A fingerprint of the current training corpus content, which changes
+	 * whenever shapes are added, removed, moved or re-lettered, or images change
+	 * status. Used to detect when cached training data is out of date.
+	 */
+	public String getCorpusVersion() {
+		NamedParameterJdbcTemplate jt = new NamedParameterJdbcTemplate(this.getDataSource());
+		String sql = "SELECT count(*) || '-' || coalesce(max(shape_id),0) || '-'"
+				+ " || md5(coalesce(string_agg(shape_id || ':' || shape_left || ',' || shape_top || ',' || shape_right || ',' || shape_bottom"
+				+ " || ':' || image_imgstatus_id || ':' || coalesce(shape_letter,''), '|' ORDER BY shape_id),''))" + " FROM ocr_shape"
+				+ " INNER JOIN ocr_group ON shape_group_id = group_id" + " INNER JOIN ocr_row ON group_row_id = row_id"
+				+ " INNER JOIN ocr_paragraph ON row_paragraph_id = paragraph_id" + " INNER JOIN ocr_image ON paragraph_image_id = image_id";
+		MapSqlParameterSource paramSource = new MapSqlParameterSource();
+
+		LOG.debug(sql);
+		String version = jt.queryForObject(sql, paramSource, String.class);
+		return version;
+	}
+
 	private DataSource getDataSource() {
 		return dataSource;
 	}
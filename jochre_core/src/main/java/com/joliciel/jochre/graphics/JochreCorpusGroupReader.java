@@ -38,6 +38,7 @@ public class JochreCorpusGroupReader extends JochreCorpusReader {
 	private int groupIndex = 0;
 
 	private GroupOfShapes group = null;
+	private boolean clearMemory = true;
 
 	public JochreCorpusGroupReader(JochreSession jochreSession) {
 		super(jochreSession);
@@ -80,7 +81,8 @@ public class JochreCorpusGroupReader extends JochreCorpusReader {
 				}
 			}
 			if (group == null) {
-				image.clearMemory();
+				if (clearMemory)
+					image.clearMemory();
 				imageIndex++;
 				paragraphIndex = 0;
 				rowIndex = 0;
@@ -91,4 +93,16 @@ public class JochreCorpusGroupReader extends JochreCorpusReader {
 		return group != null;
 	}
 
+	/**
+	 * Whether each image's memory should be cleared once all of its groups have
+	 * been read. Default is true. Should be false if the images are to be
+	 * re-used after reading.
+	 */
+	public boolean isClearMemory() {
+		return clearMemory;
+	}
+
+	public void setClearMemory(boolean clearMemory) {
+		this.clearMemory = clearMemory;
+	}
 }
@@ -25,9 +25,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.doc.AsyncDocumentObserver;
 import com.joliciel.jochre.doc.DocumentObserver;
 import com.joliciel.jochre.doc.JochreDocument;
 import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.doc.LookaheadDocumentObserver;
 
 /**
  * An interface used for processing pages within an existing Jochre database
@@ -49,7 +51,29 @@ public class JochreCorpusImageProcessor extends JochreCorpusReader {
 		this.initialiseStream();
 		JochreDocument currentDoc = null;
 		JochrePage currentPage = null;
-		for (JochreImage image : this.getImages()) {
+
+		List<LookaheadDocumentObserver> lookaheadObservers = new ArrayList<LookaheadDocumentObserver>();
+		int lookahead = 0;
+		for (DocumentObserver observer : observers) {
+			if (observer instanceof LookaheadDocumentObserver) {
+				LookaheadDocumentObserver lookaheadObserver = (LookaheadDocumentObserver) observer;
+				lookaheadObservers.add(lookaheadObserver);
+				lookahead = Math.max(lookahead, lookaheadObserver.getLookahead());
+			}
+		}
+		int queuedCount = 0;
+
+		List<JochreImage> images = this.getImages();
+		for (int i = 0; i < images.size(); i++) {
+			final JochreImage image = images.get(i);
+			if (lookaheadObservers.size() > 0) {
+				for (; queuedCount < images.size() && queuedCount <= i + lookahead; queuedCount++) {
+					for (LookaheadDocumentObserver observer : lookaheadObservers) {
+						observer.onImageQueued(images.get(queuedCount));
+					}
+				}
+			}
+
 			if (!image.getPage().equals(currentPage)) {
 				if (currentPage != null) {
 					for (DocumentObserver observer : observers) {
@@ -91,7 +115,13 @@ public class JochreCorpusImageProcessor extends JochreCorpusReader {
 				observer.onImageComplete(image);
 			}
 			LOG.debug("completed image: " + image);
-			image.clearMemory();
+			// asynchronous observers may still be reading the image
+			AsyncDocumentObserver.afterPendingEvents(observers, new Runnable() {
+				@Override
+				public void run() {
+					image.clearMemory();
+				}
+			});
 		}
 
 		if (currentPage != null) {
@@ -19,7 +19,9 @@
 package com.joliciel.jochre.graphics;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -34,6 +36,7 @@ public abstract class JochreCorpusReader {
 	private static final Logger LOG = LoggerFactory.getLogger(JochreCorpusReader.class);
 
 	private List<JochreImage> images = null;
+	private final Map<Integer, Integer> crossValidationIndexes = new HashMap<>();
 
 	private CorpusSelectionCriteria selectionCriteria = null;
 
@@ -52,13 +55,18 @@ public abstract class JochreCorpusReader {
 				JochreImage jochreImage = this.graphicsDao.loadJochreImage(selectionCriteria.getImageId());
 				images.add(jochreImage);
 			} else if (selectionCriteria.getDocumentSelections() != null) {
+				int i = 0;
 				for (String docName : selectionCriteria.getDocumentSelections().keySet()) {
-					DocumentDao documentDao = DocumentDao.getInstance(jochreSession);
-					JochreDocument doc = documentDao.loadJochreDocument(docName);
+					JochreDocument doc = this.loadDocument(docName);
 					Set<Integer> pageIds = selectionCriteria.getDocumentSelections().get(docName);
 					for (JochrePage page : doc.getPages()) {
 						if (pageIds.size() == 0 || pageIds.contains(page.getIndex())) {
 							for (JochreImage jochreImage : page.getImages()) {
+								if (selectionCriteria.getCrossValidationSize() > 0) {
+									i++;
+									if (!this.isInFold(jochreImage, i))
+										continue;
+								}
 								images.add(jochreImage);
 							}
 						}
@@ -78,15 +86,8 @@ public abstract class JochreCorpusReader {
 						continue;
 					if (selectionCriteria.getCrossValidationSize() > 0) {
 						i++;
-						if (selectionCriteria.getIncludeIndex() >= 0) {
-							if (i % selectionCriteria.getCrossValidationSize() != selectionCriteria.getIncludeIndex()) {
-								continue;
-							}
-						} else if (selectionCriteria.getExcludeIndex() >= 0) {
-							if (i % selectionCriteria.getCrossValidationSize() == selectionCriteria.getExcludeIndex()) {
-								continue;
-							}
-						}
+						if (!this.isInFold(image, i))
+							continue;
 					}
 					images.add(image);
 				}
@@ -101,10 +102,50 @@ public abstract class JochreCorpusReader {
 		}
 	}
 
+	/**
+	 * Record the cross-validation index of the i-th image selected, and return
+	 * whether it belongs to the images included by the selection criteria.
+	 */
+	private boolean isInFold(JochreImage image, int i) {
+		int crossValidationIndex = i % selectionCriteria.getCrossValidationSize();
+		crossValidationIndexes.put(image.getId(), crossValidationIndex);
+		if (selectionCriteria.getIncludeIndex() >= 0)
+			return crossValidationIndex == selectionCriteria.getIncludeIndex();
+		if (selectionCriteria.getExcludeIndex() >= 0)
+			return crossValidationIndex != selectionCriteria.getExcludeIndex();
+		return true;
+	}
+
+	/**
+	 * Load a document selected by name in the selection criteria.
+	 */
+	protected JochreDocument loadDocument(String docName) {
+		DocumentDao documentDao = DocumentDao.getInstance(jochreSession);
+		return documentDao.loadJochreDocument(docName);
+	}
+
 	public List<JochreImage> getImages() {
 		return images;
 	}
 
+	/**
+	 * Read the images provided instead of selecting them from the corpus. Used
+	 * to share images which have already been loaded between several readers.
+	 */
+	public void setImages(List<JochreImage> images) {
+		this.images = images;
+	}
+
+	/**
+	 * If the selection criteria include a cross-validation size, the
+	 * cross-validation index of a given image read by this reader, from 0 to
+	 * crossValidationSize-1. Otherwise -1.
+	 */
+	public int getCrossValidationIndex(JochreImage image) {
+		Integer index = crossValidationIndexes.get(image.getId());
+		return index == null ? -1 : index;
+	}
+
 	/**
 	 * The selection criteria driving the choice of images in this reader.
 	 */
@@ -20,9 +20,7 @@ package com.joliciel.jochre.graphics;
 
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
 import org.slf4j.Logger;
@@ -76,7 +74,8 @@ public class JochreImage implements Entity, ImageGrid, Monitorable {
 	private double confidence = -1;
 	ImageStatus imageStatus;
 
-	private Map<String, Shape> shapeMap = null;
+	private ShapeRegistry shapeRegistry = null;
+	private volatile ShapeAnalysisCache shapeAnalysisCache = null;
 	SimpleProgressMonitor currentMonitor = null;
 	int shapesSaved = 0;
 
@@ -345,7 +344,12 @@ public class JochreImage implements Entity, ImageGrid, Monitorable {
 		this.paragraphs = null;
 		this.originalImage = null;
 		this.pixelGrabber = null;
-		this.shapeMap = null;
+		if (this.shapeRegistry != null)
+			this.shapeRegistry.clear();
+		this.shapeRegistry = null;
+		if (this.shapeAnalysisCache != null)
+			this.shapeAnalysisCache.clear();
+		this.shapeAnalysisCache = null;
 		System.gc();
 	}
 
@@ -448,23 +452,58 @@ public class JochreImage implements Entity, ImageGrid, Monitorable {
 	}
 
 	/**
-	 * Returns a shape with the coordinates provided.
+	 * Returns a shape with the coordinates provided, which is the same shape
+	 * as long as somebody still refers to it. Can be called from several
+	 * threads at once.
 	 */
-	public Shape getShape(int left, int top, int right, int bottom) {
-		String key = left + "," + top + "," + right + "," + bottom;
-
-		if (this.shapeMap == null)
-			this.shapeMap = new HashMap<String, Shape>();
-		Shape shape = this.shapeMap.get(key);
-		if (shape == null) {
-			shape = new Shape(this, jochreSession);
-			shape.setLeft(left);
-			shape.setTop(top);
-			shape.setRight(right);
-			shape.setBottom(bottom);
-			this.shapeMap.put(key, shape);
+	public synchronized Shape getShape(int left, int top, int right, int bottom) {
+		if (this.shapeRegistry == null)
+			this.shapeRegistry = new ShapeRegistry(this, jochreSession);
+		return this.shapeRegistry.getShape(left, top, right, bottom);
+	}
+
+	/**
+	 * The number of shapes currently registered via
+	 * {@link #getShape(int, int, int, int)}.
+	 */
+	public synchronized int getRegisteredShapeCount() {
+		if (this.shapeRegistry == null)
+			return 0;
+		return this.shapeRegistry.size();
+	}
+
+	/**
+	 * The approximate number of bytes taken by shapes retained in memory after
+	 * being created via {@link #getShape(int, int, int, int)}, regardless of
+	 * whether anybody else refers to them.
+	 */
+	public synchronized long getRetainedShapeBytes() {
+		if (this.shapeRegistry == null)
+			return 0;
+		return this.shapeRegistry.getRetainedBytes();
+	}
+
+	/**
+	 * Where the analysis of this image's shapes is cached. By default, a
+	 * {@link BoundedShapeAnalysisCache} limited to
+	 * jochre.image.analysis-cache-max-bytes.
+	 */
+	public ShapeAnalysisCache getShapeAnalysisCache() {
+		ShapeAnalysisCache cache = this.shapeAnalysisCache;
+		if (cache == null) {
+			synchronized (this) {
+				cache = this.shapeAnalysisCache;
+				if (cache == null) {
+					cache = new BoundedShapeAnalysisCache(jochreSession.getConfig().getBytes("jochre.image.analysis-cache-max-bytes"));
+					this.shapeAnalysisCache = cache;
+				}
+			}
 		}
-		return shape;
+		return cache;
+	}
+
+	public synchronized void setShapeAnalysisCache(ShapeAnalysisCache shapeAnalysisCache) {
+		this.shapeAnalysisCache = shapeAnalysisCache;
 	}
 
 	/**
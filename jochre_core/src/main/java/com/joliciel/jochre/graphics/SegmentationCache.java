@@ -0,0 +1,321 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.utils.JochreException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigRenderOptions;
+
+/**
+ * An on-disk cache of the segmentation of each image in a source file, so that
+ * re-analysing the same file (e.g. with newly trained models) can skip
+ * segmentation.<br/>
+ * Each image's thresholds, paragraphs, rows, groups and shapes (rectangles and
+ * guide lines) are stored in a compressed binary file, keyed by a hash of the
+ * source file, the page and image index, and a hash of the segmentation
+ * configuration. A cache file is only made visible once completely written.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class SegmentationCache {
+	private static final Logger LOG = LoggerFactory.getLogger(SegmentationCache.class);
+	private static final int MAGIC = 0x4A534731; // JSG1
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Segmenter settings which have no effect on the segmentation itself.
+	 */
+	private static final List<String> IGNORED_SETTINGS = Arrays.asList("cache-dir", "draw-segmented-image", "draw-pixel-spread");
+
+	private final File cacheDir;
+	private final String configHash;
+	private final JochreSession jochreSession;
+
+	/**
+	 * @param cacheDir
+	 *            the directory in which cache files are stored
+	 */
+	public SegmentationCache(File cacheDir, JochreSession jochreSession) {
+		this.cacheDir = cacheDir;
+		this.jochreSession = jochreSession;
+
+		Config segmenterConfig = jochreSession.getConfig().getConfig("jochre.segmenter");
+		for (String setting : IGNORED_SETTINGS)
+			segmenterConfig = segmenterConfig.withoutPath(setting);
+		String settings = segmenterConfig.root().render(ConfigRenderOptions.concise()) + "|" + jochreSession.getLinguistics().isLeftToRight();
+		MessageDigest digest = getDigest();
+		digest.update(settings.getBytes(StandardCharsets.UTF_8));
+		this.configHash = toHex(digest.digest());
+	}
+
+	/**
+	 * Get the segmentation cache configured in jochre.segmenter.cache-dir, or
+	 * null if no cache directory is configured.
+	 */
+	public static SegmentationCache getConfiguredCache(JochreSession jochreSession) {
+		Config segmenterConfig = jochreSession.getConfig().getConfig("jochre.segmenter");
+		if (!segmenterConfig.hasPath("cache-dir"))
+			return null;
+		return new SegmentationCache(new File(segmenterConfig.getString("cache-dir")), jochreSession);
+	}
+
+	/**
+	 * A hash of a source file's content, identifying it in cache keys. For a
+	 * directory of images, the names and content of all files directly inside
+	 * it are hashed.
+	 */
+	public static String getFileHash(File sourceFile) {
+		MessageDigest digest = getDigest();
+		try {
+			if (sourceFile.isDirectory()) {
+				File[] files = sourceFile.listFiles();
+				Arrays.sort(files);
+				for (File file : files) {
+					if (file.isFile()) {
+						digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+						digest.update((byte) '\n');
+						updateDigest(digest, file);
+					}
+				}
+			} else {
+				updateDigest(digest, sourceFile);
+			}
+		} catch (IOException e) {
+			throw new JochreException(e);
+		}
+		return toHex(digest.digest());
+	}
+
+	private static void updateDigest(MessageDigest digest, File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] buffer = new byte[1 << 16];
+			int count;
+			while ((count = in.read(buffer)) >= 0)
+				digest.update(buffer, 0, count);
+		}
+	}
+
+	/**
+	 * The cache file for a given image.
+	 */
+	public File getFile(String fileHash, int pageIndex, int imageIndex) {
+		return new File(cacheDir, fileHash + "_" + pageIndex + "_" + imageIndex + "_" + configHash + ".seg");
+	}
+
+	/**
+	 * Restore the segmentation of the next image on a page, if it was stored.
+	 * If it was, the image is added to the page, and returned fully segmented.
+	 *
+	 * @param fileHash
+	 *            the hash of the source file, as returned by
+	 *            {@link #getFileHash(File)}
+	 * @return the segmented image, or null if it wasn't stored
+	 */
+	public SourceImage load(JochrePage page, BufferedImage image, String imageName, String fileHash) {
+		int imageIndex = page.getImages().size() + 1;
+		File file = this.getFile(fileHash, page.getIndex(), imageIndex);
+		if (!file.exists())
+			return null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 1 << 16)))) {
+			int magic = in.readInt();
+			int version = in.readInt();
+			if (magic != MAGIC || version != FORMAT_VERSION) {
+				LOG.warn("Ignoring segmentation cache " + file.getPath() + ": corrupt or from an incompatible version");
+				return null;
+			}
+			int width = in.readInt();
+			int height = in.readInt();
+			if (width != image.getWidth() || height != image.getHeight()) {
+				LOG.warn("Ignoring segmentation cache " + file.getPath() + ": image size " + width + "x" + height + " does not match");
+				return null;
+			}
+			int blackLimit = in.readInt();
+			int whiteLimit = in.readInt();
+			int blackThreshold = in.readInt();
+			int separationThreshold = in.readInt();
+			SourceImage sourceImage = new SourceImage(page, imageName, image, blackLimit, whiteLimit, blackThreshold, separationThreshold, jochreSession);
+			sourceImage.setWhiteGapFillFactor(in.readInt());
+
+			int rowCount = in.readInt();
+			List<RowOfShapes> rows = new ArrayList<RowOfShapes>(rowCount);
+			for (int i = 0; i < rowCount; i++) {
+				RowOfShapes row = new RowOfShapes(sourceImage, jochreSession);
+				row.setXHeight(in.readInt());
+				row.setXHeightMax(in.readInt());
+				int groupCount = in.readInt();
+				for (int j = 0; j < groupCount; j++) {
+					GroupOfShapes group = new GroupOfShapes(jochreSession);
+					int shapeCount = in.readInt();
+					for (int k = 0; k < shapeCount; k++) {
+						int left = in.readInt();
+						int top = in.readInt();
+						int right = in.readInt();
+						int bottom = in.readInt();
+						Shape shape = new Shape(sourceImage, left, top, right, bottom, jochreSession);
+						shape.setCapLine(in.readInt());
+						shape.setMeanLine(in.readInt());
+						shape.setBaseLine(in.readInt());
+						group.addShape(shape);
+					}
+					row.addGroup(group);
+				}
+				if (in.readBoolean())
+					sourceImage.addRow(row);
+				rows.add(row);
+			}
+
+			int paragraphCount = in.readInt();
+			for (int i = 0; i < paragraphCount; i++) {
+				Paragraph paragraph = sourceImage.newParagraph();
+				int paragraphRowCount = in.readInt();
+				for (int j = 0; j < paragraphRowCount; j++)
+					paragraph.addRow(rows.get(in.readInt()));
+			}
+
+			sourceImage.recalculateIndexes();
+			sourceImage.setShapeCount(sourceImage.getShapeCount());
+
+			page.getImages().add(sourceImage);
+			sourceImage.setIndex(imageIndex);
+			LOG.debug("Restored segmentation of page " + page.getIndex() + ", image " + imageIndex + " from " + file.getPath());
+			return sourceImage;
+		} catch (IOException e) {
+			throw new JochreException(e);
+		}
+	}
+
+	/**
+	 * Store the segmentation of an image, which must belong to a page.
+	 *
+	 * @param fileHash
+	 *            the hash of the source file, as returned by
+	 *            {@link #getFileHash(File)}
+	 */
+	public void save(SourceImage sourceImage, String fileHash) {
+		File file = this.getFile(fileHash, sourceImage.getPage().getIndex(), sourceImage.getIndex());
+		try {
+			cacheDir.mkdirs();
+			File tempFile = File.createTempFile(file.getName(), ".tmp", cacheDir);
+			tempFile.deleteOnExit();
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile), 1 << 16)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(sourceImage.getWidth());
+				out.writeInt(sourceImage.getHeight());
+				out.writeInt(sourceImage.getBlackLimit());
+				out.writeInt(sourceImage.getWhiteLimit());
+				out.writeInt(sourceImage.getBlackThreshold());
+				out.writeInt(sourceImage.getSeparationThreshold());
+				out.writeInt(sourceImage.getWhiteGapFillFactor());
+
+				// the image's rows, followed by any rows only found in
+				// paragraphs
+				List<RowOfShapes> rows = new ArrayList<RowOfShapes>(sourceImage.getRows());
+				Map<RowOfShapes, Integer> rowIndexes = new IdentityHashMap<RowOfShapes, Integer>();
+				for (RowOfShapes row : rows)
+					rowIndexes.put(row, rowIndexes.size());
+				for (Paragraph paragraph : sourceImage.getParagraphs()) {
+					for (RowOfShapes row : paragraph.getRows()) {
+						if (!rowIndexes.containsKey(row)) {
+							rowIndexes.put(row, rowIndexes.size());
+							rows.add(row);
+						}
+					}
+				}
+				out.writeInt(rows.size());
+				for (int i = 0; i < rows.size(); i++) {
+					RowOfShapes row = rows.get(i);
+					out.writeInt(row.getXHeight());
+					out.writeInt(row.getXHeightMax());
+					out.writeInt(row.getGroups().size());
+					for (GroupOfShapes group : row.getGroups()) {
+						out.writeInt(group.getShapes().size());
+						for (Shape shape : group.getShapes()) {
+							out.writeInt(shape.getLeft());
+							out.writeInt(shape.getTop());
+							out.writeInt(shape.getRight());
+							out.writeInt(shape.getBottom());
+							out.writeInt(shape.getCapLine());
+							out.writeInt(shape.getMeanLine());
+							out.writeInt(shape.getBaseLine());
+						}
+					}
+					out.writeBoolean(i < sourceImage.getRows().size());
+				}
+
+				out.writeInt(sourceImage.getParagraphs().size());
+				for (Paragraph paragraph : sourceImage.getParagraphs()) {
+					out.writeInt(paragraph.getRows().size());
+					for (RowOfShapes row : paragraph.getRows())
+						out.writeInt(rowIndexes.get(row));
+				}
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOG.debug("Wrote segmentation cache " + file.getPath());
+		} catch (IOException e) {
+			throw new JochreException(e);
+		}
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new JochreException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
@@ -26,6 +26,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -35,6 +36,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math.stat.descriptive.moment.Mean;
@@ -46,7 +54,9 @@ import org.slf4j.LoggerFactory;
 import com.joliciel.jochre.JochreSession;
 import com.joliciel.jochre.stats.CardinalityComparator;
 import com.joliciel.jochre.stats.DBSCANClusterer;
+import com.joliciel.jochre.stats.KDTreeDBSCANClusterer;
 import com.joliciel.jochre.stats.MeanAbsoluteDeviation;
+import com.joliciel.jochre.utils.JochreException;
 import com.joliciel.talismane.utils.Monitorable;
 import com.joliciel.talismane.utils.ProgressMonitor;
 import com.joliciel.talismane.utils.SimpleProgressMonitor;
@@ -67,6 +77,8 @@ public class Segmenter implements Monitorable {
 	private Graphics2D graphics2D = null;
 	private SimpleProgressMonitor currentMonitor;
 	private boolean splitAndJoin = false;
+	private boolean fastVectorizer = false;
+	private int columnThreads = 1;
 
 	private final SourceImage sourceImage;
 	private final JochreSession jochreSession;
@@ -76,6 +88,8 @@ public class Segmenter implements Monitorable {
 		this.jochreSession = jochreSession;
 		Config segmenterConfig = jochreSession.getConfig().getConfig("jochre.segmenter");
 		drawSegmentation = segmenterConfig.getBoolean("draw-segmented-image");
+		fastVectorizer = segmenterConfig.getBoolean("fast-vectorizer");
+		columnThreads = segmenterConfig.getInt("column-threads");
 	}
 
 	/**
@@ -147,51 +161,55 @@ public class Segmenter implements Monitorable {
 
 		this.addRowsToJochreImage(sourceImage, rows);
 
-		this.findGuideLines(sourceImage);
+		if (columnThreads > 1) {
+			this.segmentColumns(sourceImage, columnSeparators);
+		} else {
+			this.findGuideLines(sourceImage);
 
-		this.splitRows(sourceImage);
+			this.splitRows(sourceImage);
 
-		if (this.splitAndJoin) {
-			// figure out if the shapes contain a lot of "holes"
-			// if they do, join them together
-			// if they don't, try to split them
-			int fillFactor = this.getFillFactor(sourceImage);
-			if (fillFactor >= 2) {
-				this.joinShapesHorizontally(sourceImage);
-			}
+			if (this.splitAndJoin) {
+				// figure out if the shapes contain a lot of "holes"
+				// if they do, join them together
+				// if they don't, try to split them
+				int fillFactor = this.getFillFactor(sourceImage);
+				if (fillFactor >= 2) {
+					this.joinShapesHorizontally(sourceImage);
+				}
 
-			if (currentMonitor != null) {
-				currentMonitor.setCurrentAction("imageMonitor.splittingShapes");
-				currentMonitor.setPercentComplete(0.4);
+				if (currentMonitor != null) {
+					currentMonitor.setCurrentAction("imageMonitor.splittingShapes");
+					currentMonitor.setPercentComplete(0.4);
+				}
+				this.splitShapes(sourceImage, fillFactor);
 			}
-			this.splitShapes(sourceImage, fillFactor);
-		}
 
-		// this.removeSpecks(sourceImage);
+			// this.removeSpecks(sourceImage);
 
-		this.joinShapesVertically(sourceImage);
+			this.joinShapesVertically(sourceImage);
 
-		this.findGuideLines(sourceImage);
-		this.combineRowsVertically(sourceImage);
+			this.findGuideLines(sourceImage);
+			this.combineRowsVertically(sourceImage);
 
-		this.removeOrphans(sourceImage, false);
+			this.removeOrphans(sourceImage, false);
 
-		this.removeFalseColumns(sourceImage, columnSeparators);
+			this.removeFalseColumns(sourceImage, columnSeparators);
 
-		if (currentMonitor != null) {
-			currentMonitor.setCurrentAction("imageMonitor.groupingShapesIntoWords");
-			currentMonitor.setPercentComplete(0.6);
-		}
-		this.groupShapesIntoWords(sourceImage);
+			if (currentMonitor != null) {
+				currentMonitor.setCurrentAction("imageMonitor.groupingShapesIntoWords");
+				currentMonitor.setPercentComplete(0.6);
+			}
+			this.groupShapesIntoWords(sourceImage);
 
-		this.removeOrphans(sourceImage, true);
-		this.cleanMargins(sourceImage);
+			this.removeOrphans(sourceImage, true);
+			this.cleanMargins(sourceImage);
 
-		if (currentMonitor != null) {
-			currentMonitor.setCurrentAction("imageMonitor.analysingFontSize");
-			currentMonitor.setPercentComplete(0.7);
+			if (currentMonitor != null) {
+				currentMonitor.setCurrentAction("imageMonitor.analysingFontSize");
+				currentMonitor.setPercentComplete(0.7);
+			}
+			this.splitRowsByFontSize(sourceImage);
 		}
-		this.splitRowsByFontSize(sourceImage);
 
 		if (currentMonitor != null) {
 			currentMonitor.setCurrentAction("imageMonitor.groupingRowsIntoParagraphs");
@@ -213,6 +231,208 @@ public class Segmenter implements Monitorable {
 		}
 	}
 
+	/**
+	 * Run the stages following the second row grouping separately for each
+	 * column area, with the columns handled concurrently. Stages which need to
+	 * see the whole page are run between the concurrent stages.
+	 */
+	void segmentColumns(final SourceImage sourceImage, List<Rectangle> columnSeparators) {
+		LOG.debug("########## segmentColumns #########");
+		ExecutorService executor = Executors.newFixedThreadPool(columnThreads, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "segmenter-column-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<List<RowOfShapes>> columns = this.getRowsByColumn(sourceImage, columnSeparators);
+			List<Callable<Map<RowOfShapes, List<RowOfShapes>>>> splitTasks = new ArrayList<Callable<Map<RowOfShapes, List<RowOfShapes>>>>();
+			for (final List<RowOfShapes> column : columns) {
+				splitTasks.add(new Callable<Map<RowOfShapes, List<RowOfShapes>>>() {
+					@Override
+					public Map<RowOfShapes, List<RowOfShapes>> call() {
+						findGuideLines(column);
+						return getRowSplits(sourceImage, column);
+					}
+				});
+			}
+			this.calculatePageStatistics(sourceImage);
+			for (Map<RowOfShapes, List<RowOfShapes>> splitRows : this.invokeAll(executor, splitTasks)) {
+				for (RowOfShapes row : splitRows.keySet()) {
+					sourceImage.replaceRow(row, splitRows.get(row));
+				}
+			}
+
+			if (this.splitAndJoin) {
+				int fillFactor = this.getFillFactor(sourceImage);
+				if (fillFactor >= 2) {
+					this.joinShapesHorizontally(sourceImage);
+				}
+
+				if (currentMonitor != null) {
+					currentMonitor.setCurrentAction("imageMonitor.splittingShapes");
+					currentMonitor.setPercentComplete(0.4);
+				}
+				this.splitShapes(sourceImage, fillFactor);
+			}
+
+			columns = this.getRowsByColumn(sourceImage, columnSeparators);
+			List<Callable<Object>> joinTasks = new ArrayList<Callable<Object>>();
+			for (final List<RowOfShapes> column : columns) {
+				joinTasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						joinShapesVertically(column);
+						findGuideLines(column);
+						return null;
+					}
+				});
+			}
+			this.calculatePageStatistics(sourceImage);
+			this.invokeAll(executor, joinTasks);
+
+			final int maxRowHeight = this.getMaxRowHeight(sourceImage.getRows());
+			List<Callable<List<RowOfShapes>>> combineTasks = new ArrayList<Callable<List<RowOfShapes>>>();
+			for (final List<RowOfShapes> column : columns) {
+				combineTasks.add(new Callable<List<RowOfShapes>>() {
+					@Override
+					public List<RowOfShapes> call() {
+						return combineRowsVertically(sourceImage, column, maxRowHeight);
+					}
+				});
+			}
+			this.calculatePageStatistics(sourceImage);
+			for (List<RowOfShapes> rowsToDelete : this.invokeAll(executor, combineTasks)) {
+				for (RowOfShapes rowToDelete : rowsToDelete) {
+					sourceImage.getRows().remove(rowToDelete);
+				}
+			}
+
+			this.removeOrphans(sourceImage, false);
+
+			this.removeFalseColumns(sourceImage, columnSeparators);
+
+			if (currentMonitor != null) {
+				currentMonitor.setCurrentAction("imageMonitor.groupingShapesIntoWords");
+				currentMonitor.setPercentComplete(0.6);
+			}
+			// word spacing is estimated per row cluster, which spans the page
+			List<Callable<Object>> wordTasks = new ArrayList<Callable<Object>>();
+			for (final Set<RowOfShapes> rowCluster : sourceImage.getRowClusters()) {
+				wordTasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						groupShapesIntoWords(rowCluster);
+						return null;
+					}
+				});
+			}
+			this.calculatePageStatistics(sourceImage);
+			this.invokeAll(executor, wordTasks);
+
+			this.removeOrphans(sourceImage, true);
+			this.cleanMargins(sourceImage);
+
+			if (currentMonitor != null) {
+				currentMonitor.setCurrentAction("imageMonitor.analysingFontSize");
+				currentMonitor.setPercentComplete(0.7);
+			}
+			columns = this.getRowsByColumn(sourceImage, columnSeparators);
+			List<Callable<Object>> fontSizeTasks = new ArrayList<Callable<Object>>();
+			for (final List<RowOfShapes> column : columns) {
+				fontSizeTasks.add(new Callable<Object>() {
+					@Override
+					public Object call() {
+						splitRowsByFontSize(column);
+						return null;
+					}
+				});
+			}
+			this.calculatePageStatistics(sourceImage);
+			this.invokeAll(executor, fontSizeTasks);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Calculate the lazy page-level statistics on the calling thread, before
+	 * they get read concurrently. Needs to be called before each concurrent
+	 * stage, since they are reset whenever the source image is recalculated.
+	 */
+	private void calculatePageStatistics(SourceImage sourceImage) {
+		sourceImage.getAverageShapeHeight();
+		sourceImage.getMeanHorizontalSlope();
+	}
+
+	/**
+	 * Partition the image's rows by the column area they fall in, keeping the
+	 * image's row order within each column. Rows crossing a column separator
+	 * are placed in a partition of their own, so that they never get combined
+	 * with rows inside a column.
+	 */
+	List<List<RowOfShapes>> getRowsByColumn(SourceImage sourceImage, List<Rectangle> columnSeparators) {
+		List<Rectangle> separators = new ArrayList<Rectangle>(columnSeparators);
+		Collections.sort(separators, new RectangleLeftToRightComparator());
+
+		List<List<RowOfShapes>> columns = new ArrayList<List<RowOfShapes>>(separators.size() + 2);
+		for (int i = 0; i <= separators.size() + 1; i++)
+			columns.add(new ArrayList<RowOfShapes>());
+
+		List<RowOfShapes> spanningRows = columns.get(separators.size() + 1);
+		for (RowOfShapes row : sourceImage.getRows()) {
+			double midY = (row.getTop() + row.getBottom()) / 2.0;
+			int column = 0;
+			boolean spanning = false;
+			for (Rectangle separator : separators) {
+				if (separator.getBottom() < row.getTop() || separator.getTop() > row.getBottom())
+					continue;
+				double separatorX = (separator.getLeft() + separator.getRight()) / 2.0 + sourceImage.getXAdjustment(midY);
+				if (row.getRight() < separatorX) {
+					break;
+				} else if (row.getLeft() > separatorX) {
+					column++;
+				} else {
+					spanning = true;
+					break;
+				}
+			}
+			if (spanning)
+				spanningRows.add(row);
+			else
+				columns.get(column).add(row);
+		}
+
+		List<List<RowOfShapes>> nonEmptyColumns = new ArrayList<List<RowOfShapes>>(columns.size());
+		for (List<RowOfShapes> column : columns) {
+			if (column.size() > 0)
+				nonEmptyColumns.add(column);
+		}
+		return nonEmptyColumns;
+	}
+
+	private <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) {
+		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+		for (Callable<T> task : tasks)
+			futures.add(executor.submit(task));
+
+		List<T> results = new ArrayList<T>(futures.size());
+		try {
+			for (Future<T> future : futures)
+				results.add(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JochreException(e);
+		} catch (ExecutionException e) {
+			throw new JochreException("Failed to segment column", e.getCause());
+		}
+		return results;
+	}
+
 	/**
 	 * Split rows if they're particularly high, and contain considerable white
 	 * space in the middle. Shapes causing the join will be removed if too high,
@@ -220,7 +440,18 @@ public class Segmenter implements Monitorable {
 	 */
 	void splitRows(SourceImage sourceImage) {
 		LOG.debug("########## splitRows #########");
+		Map<RowOfShapes, List<RowOfShapes>> splitRows = this.getRowSplits(sourceImage, sourceImage.getRows());
+		for (RowOfShapes row : splitRows.keySet()) {
+			List<RowOfShapes> newRows = splitRows.get(row);
+			sourceImage.replaceRow(row, newRows);
+		}
+	}
 
+	/**
+	 * For each of the rows provided which should be split, the rows which
+	 * should replace it.
+	 */
+	Map<RowOfShapes, List<RowOfShapes>> getRowSplits(SourceImage sourceImage, List<RowOfShapes> rows) {
 		// Calculate the min row height to be considered for splitting
 		double minHeightForSplit = sourceImage.getAverageShapeHeight();
 		LOG.debug("minHeightForSplit: " + minHeightForSplit);
@@ -228,7 +459,7 @@ public class Segmenter implements Monitorable {
 		double slopeMean = sourceImage.getMeanHorizontalSlope();
 
 		List<RowOfShapes> candidateRows = new ArrayList<RowOfShapes>();
-		for (RowOfShapes row : sourceImage.getRows()) {
+		for (RowOfShapes row : rows) {
 			if (row.getRight() == row.getLeft())
 				continue;
 			int height = row.getBottom() - row.getTop();
@@ -394,10 +625,7 @@ public class Segmenter implements Monitorable {
 			} // do we have more than one row?
 		} // next row
 
-		for (RowOfShapes row : splitRows.keySet()) {
-			List<RowOfShapes> newRows = splitRows.get(row);
-			sourceImage.replaceRow(row, newRows);
-		}
+		return splitRows;
 	}
 
 	void removeOversizedShapes(Set<Shape> shapes) {
@@ -1086,7 +1314,7 @@ public class Segmenter implements Monitorable {
 		// Note that a cluster could be a valid diacritic that's split into a
 		// few specks
 		// or just a bunch of specks off on their own
-		DBSCANClusterer<Shape> clusterer = new DBSCANClusterer<Shape>(specks, speckCoordinates);
+		DBSCANClusterer<Shape> clusterer = new KDTreeDBSCANClusterer<Shape>(specks, speckCoordinates);
 		Set<Set<Shape>> speckClusters = clusterer.cluster(speckXDistanceThresholdFloor, 2, true);
 		for (Set<Shape> speckCluster : speckClusters) {
 			// safeguard to remove huge clusters of specks
@@ -1427,8 +1655,12 @@ public class Segmenter implements Monitorable {
 	 * can join them vertically
 	 */
 	void joinShapesVertically(SourceImage sourceImage) {
+		this.joinShapesVertically(sourceImage.getRows());
+	}
+
+	void joinShapesVertically(List<RowOfShapes> rows) {
 		LOG.debug("########## joinShapesVertically #########");
-		for (RowOfShapes row : sourceImage.getRows()) {
+		for (RowOfShapes row : rows) {
 			this.joinShapesVertically(row);
 		} // next row
 	}
@@ -1514,8 +1746,12 @@ public class Segmenter implements Monitorable {
 	 * SimpleRegression representing the centerline for each of the rows.
 	 */
 	void findGuideLines(SourceImage sourceImage) {
+		this.findGuideLines(sourceImage.getRows());
+	}
+
+	void findGuideLines(List<RowOfShapes> rows) {
 		LOG.debug("########## findGuideLines #########");
-		for (RowOfShapes row : sourceImage.getRows()) {
+		for (RowOfShapes row : rows) {
 			row.assignGuideLines();
 		}
 	}
@@ -1526,8 +1762,12 @@ public class Segmenter implements Monitorable {
 	 * guidelines for each.
 	 */
 	void splitRowsByFontSize(SourceImage sourceImage) {
+		this.splitRowsByFontSize(sourceImage.getRows());
+	}
+
+	void splitRowsByFontSize(List<RowOfShapes> rows) {
 		LOG.debug("########## splitRowsByFontSize #########");
-		for (RowOfShapes row : sourceImage.getRows()) {
+		for (RowOfShapes row : rows) {
 			row.splitByFontSize();
 		}
 	}
@@ -1538,6 +1778,17 @@ public class Segmenter implements Monitorable {
 	 */
 	void combineRowsVertically(SourceImage sourceImage) {
 		LOG.debug("########## combineRows #########");
+		int maxRowHeight = this.getMaxRowHeight(sourceImage.getRows());
+		List<RowOfShapes> rowsToDelete = this.combineRowsVertically(sourceImage, sourceImage.getRows(), maxRowHeight);
+
+		// actually delete the rows
+		for (RowOfShapes rowToDelete : rowsToDelete) {
+			sourceImage.getRows().remove(rowToDelete);
+		}
+		LOG.debug("########## end combineRows #########");
+	}
+
+	private int getMaxRowHeight(List<RowOfShapes> rows) {
 		// We thought of using row height, but mean row height is not a good
 		// enough
 		// indicator when there are title rows with very big characters.
@@ -1547,15 +1798,22 @@ public class Segmenter implements Monitorable {
 		// of nearby shapes.
 
 		int maxRowHeight = 0;
-		for (RowOfShapes row : sourceImage.getRows()) {
+		for (RowOfShapes row : rows) {
 			int rowHeight = row.getXHeightMax();
 			if (rowHeight > maxRowHeight)
 				maxRowHeight = rowHeight;
 		}
 		LOG.debug("maxRowHeight: " + maxRowHeight);
+		return maxRowHeight;
+	}
 
+	/**
+	 * Combine the rows provided vertically, and return the rows which were
+	 * combined into another row and should be deleted.
+	 */
+	List<RowOfShapes> combineRowsVertically(SourceImage sourceImage, List<RowOfShapes> rowsToCombine, int maxRowHeight) {
 		TreeSet<RowOfShapes> rowSet = new TreeSet<RowOfShapes>(new RowOfShapesVerticalLocationComparator());
-		rowSet.addAll(sourceImage.getRows());
+		rowSet.addAll(rowsToCombine);
 		List<RowOfShapes> rows = new ArrayList<RowOfShapes>(rowSet);
 
 		List<RowOfShapes> rowsToDelete = new ArrayList<RowOfShapes>();
@@ -1658,11 +1916,7 @@ public class Segmenter implements Monitorable {
 
 		}
 
-		// actually delete the rows
-		for (RowOfShapes rowToDelete : rowsToDelete) {
-			sourceImage.getRows().remove(rowToDelete);
-		}
-		LOG.debug("########## end combineRows #########");
+		return rowsToDelete;
 	}
 
 	/**
@@ -1782,7 +2036,7 @@ public class Segmenter implements Monitorable {
 			}
 		}
 
-		DBSCANClusterer<RowOfShapes> rightMarginClusterer = new DBSCANClusterer<RowOfShapes>(rightHandRows, rightCoordinates);
+		DBSCANClusterer<RowOfShapes> rightMarginClusterer = new KDTreeDBSCANClusterer<RowOfShapes>(rightHandRows, rightCoordinates);
 		Set<Set<RowOfShapes>> rowClusters = rightMarginClusterer.cluster(averageShapeWidth, minCardinalityForMargin, true);
 
 		TreeSet<Set<RowOfShapes>> orderedRowClusters = new TreeSet<Set<RowOfShapes>>(new CardinalityComparator<RowOfShapes>());
@@ -1886,7 +2140,7 @@ public class Segmenter implements Monitorable {
 			}
 		}
 
-		DBSCANClusterer<RowOfShapes> leftMarginClusterer = new DBSCANClusterer<RowOfShapes>(leftHandRows, leftCoordinates);
+		DBSCANClusterer<RowOfShapes> leftMarginClusterer = new KDTreeDBSCANClusterer<RowOfShapes>(leftHandRows, leftCoordinates);
 		Set<Set<RowOfShapes>> rowClustersLeft = leftMarginClusterer.cluster(averageShapeWidth, minCardinalityForMargin, true);
 
 		TreeSet<Set<RowOfShapes>> orderedRowClustersLeft = new TreeSet<Set<RowOfShapes>>(new CardinalityComparator<RowOfShapes>());
@@ -2418,7 +2672,7 @@ public class Segmenter implements Monitorable {
 			}
 
 			int minCardinalityForRightMargin = 5;
-			DBSCANClusterer<RowOfShapes> rightMarginClusterer = new DBSCANClusterer<RowOfShapes>(rightHandRows, rightCoordinates);
+			DBSCANClusterer<RowOfShapes> rightMarginClusterer = new KDTreeDBSCANClusterer<RowOfShapes>(rightHandRows, rightCoordinates);
 			Set<Set<RowOfShapes>> rowClusters = rightMarginClusterer.cluster(epsilon, minCardinalityForRightMargin, true);
 
 			TreeSet<Set<RowOfShapes>> orderedRowClusters = new TreeSet<Set<RowOfShapes>>(new CardinalityComparator<RowOfShapes>());
@@ -2505,7 +2759,7 @@ public class Segmenter implements Monitorable {
 			}
 
 			int minCardinalityForLeftMargin = 5;
-			DBSCANClusterer<RowOfShapes> leftMarginClusterer = new DBSCANClusterer<RowOfShapes>(leftHandRows, leftCoordinates);
+			DBSCANClusterer<RowOfShapes> leftMarginClusterer = new KDTreeDBSCANClusterer<RowOfShapes>(leftHandRows, leftCoordinates);
 			Set<Set<RowOfShapes>> leftRowClusters = leftMarginClusterer.cluster(epsilon, minCardinalityForLeftMargin, true);
 
 			TreeSet<Set<RowOfShapes>> orderedLeftRowClusters = new TreeSet<Set<RowOfShapes>>(new CardinalityComparator<RowOfShapes>());
@@ -3191,6 +3445,7 @@ public class Segmenter implements Monitorable {
 
 				Mean meanPixelCount = new Mean();
 				Vectorizer vectorizer = new Vectorizer();
+				vectorizer.setFastMode(fastVectorizer);
 				List<Integer> thicknesses = new ArrayList<Integer>();
 				for (Shape shape : sample) {
 					BitSet bitset = shape.getBlackAndWhiteBitSet(sourceImage.getSeparationThreshold(), 0);
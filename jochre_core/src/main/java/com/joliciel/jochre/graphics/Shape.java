@@ -23,10 +23,8 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
-import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -112,20 +110,11 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	private String letter = "";
 	private String originalGuess = "";
 
-	private Map<String, Map<SectionBrightnessMeasurementMethod, double[][]>> brightnessBySectorMap = new HashMap<String, Map<SectionBrightnessMeasurementMethod, double[][]>>();
-	private Map<String, Map<SectionBrightnessMeasurementMethod, Double>> brightnessMeanBySectorMap = new HashMap<String, Map<SectionBrightnessMeasurementMethod, Double>>();
-
-	private Map<String, FeatureResult<?>> featureResults = new HashMap<String, FeatureResult<?>>();
-
-	private Dictionary<String, BitSet> bitsets = new Hashtable<String, BitSet>();
-	private Dictionary<Integer, BitSet> outlines = new Hashtable<Integer, BitSet>();
+	private ShapeAnalysisCache ownAnalysisCache = null;
 
 	private int[] brightnessCounts;
 	private boolean blackAndWhite = false;
 
-	private int[] verticalCounts = null;
-	private int[][] verticalContour = null;
-
 	private BufferedImage image;
 	private ImagePixelGrabber pixelGrabber;
 
@@ -486,7 +475,7 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 			SectionBrightnessMeasurementMethod measurementMethod) {
 		String key = verticalSectionCount + "|" + horizontalSectionCount + "|" + topBottomMarginWidth + "|" + horizontalMarginWidth;
 
-		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessBySector = this.brightnessBySectorMap.get(key);
+		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessBySector = this.getCachedBrightnessBySector(key);
 		if (brightnessBySector == null) {
 			int xSectorCount = verticalSectionCount;
 			int ySectorCount = horizontalSectionCount;
@@ -532,7 +521,7 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	public double[][] getBrightnessBySector(int verticalSectionCount, int horizontalSectionCount, int marginSectionCount, boolean includeHorizontalMargin,
 			SectionBrightnessMeasurementMethod measurementMethod) {
 		String key = verticalSectionCount + "|" + horizontalSectionCount + "|" + marginSectionCount + "|" + includeHorizontalMargin;
-		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessBySector = this.brightnessBySectorMap.get(key);
+		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessBySector = this.getCachedBrightnessBySector(key);
 		if (brightnessBySector == null) {
 			int xSectorCount = verticalSectionCount;
 			if (includeHorizontalMargin)
@@ -646,7 +635,7 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	 */
 	public double[][] getBrightnessBySection(int verticalSectionCount, int horizontalSectionCount, SectionBrightnessMeasurementMethod measurementMethod) {
 		String key = verticalSectionCount + "|" + horizontalSectionCount;
-		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessBySector = this.brightnessBySectorMap.get(key);
+		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessBySector = this.getCachedBrightnessBySector(key);
 		if (brightnessBySector == null) {
 			int xSectorCount = verticalSectionCount;
 			int ySectorCount = horizontalSectionCount;
@@ -688,7 +677,7 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	}
 
 	Map<SectionBrightnessMeasurementMethod, double[][]> getBrightnessBySector(String key, double[] verticalBreaks, double[] horizontalBreaks) {
-		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessByMethod = this.brightnessBySectorMap.get(key);
+		Map<SectionBrightnessMeasurementMethod, double[][]> brightnessByMethod = this.getCachedBrightnessBySector(key);
 		if (brightnessByMethod == null) {
 			int xSectorCount = verticalBreaks.length - 1;
 			int ySectorCount = horizontalBreaks.length - 1;
@@ -832,12 +821,18 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 			brightnessByMethod.put(SectionBrightnessMeasurementMethod.RELATIVE_TO_MAX_SECTION, relativeToMax);
 			brightnessByMethod.put(SectionBrightnessMeasurementMethod.PORTION_OF_TOTAL_BRIGHTNESS, relativeToTotal);
 
-			this.brightnessBySectorMap.put(key, brightnessByMethod);
+			long bytes = 4L * (8L * xSectorCount * ySectorCount + 16L * xSectorCount);
+			this.getAnalysisCache().put(this, "sectors|" + key, brightnessByMethod, bytes);
 		}
 
 		return brightnessByMethod;
 	}
 
+	@SuppressWarnings("unchecked")
+	private Map<SectionBrightnessMeasurementMethod, double[][]> getCachedBrightnessBySector(String key) {
+		return (Map<SectionBrightnessMeasurementMethod, double[][]>) this.getAnalysisCache().get(this, "sectors|" + key);
+	}
+
 	/**
 	 * Mean brightness for the sections defined above.
 	 */
@@ -852,7 +847,9 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	public double getBrightnessMeanBySection(int verticalSectionCount, int horizontalSectionCount, int marginSectionCount, boolean includeHorizontalMargin,
 			SectionBrightnessMeasurementMethod measurementMethod) {
 		String key = verticalSectionCount + "|" + horizontalSectionCount + "|" + marginSectionCount + "|" + includeHorizontalMargin;
-		return this.getBrightnessMeanBySector(key, measurementMethod);
+		double[][] brightnessGrid = this.getBrightnessBySector(verticalSectionCount, horizontalSectionCount, marginSectionCount, includeHorizontalMargin,
+				measurementMethod);
+		return this.getBrightnessMeanBySector(key, brightnessGrid, measurementMethod);
 	}
 
 	/**
@@ -860,7 +857,8 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	 */
 	public double getBrightnessMeanBySection(int verticalSectionCount, int horizontalSectionCount, SectionBrightnessMeasurementMethod measurementMethod) {
 		String key = verticalSectionCount + "|" + horizontalSectionCount;
-		return this.getBrightnessMeanBySector(key, measurementMethod);
+		double[][] brightnessGrid = this.getBrightnessBySection(verticalSectionCount, horizontalSectionCount, measurementMethod);
+		return this.getBrightnessMeanBySector(key, brightnessGrid, measurementMethod);
 	}
 
 	/**
@@ -869,25 +867,21 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	public double getBrightnessMeanBySection(int verticalSectionCount, int horizontalSectionCount, double topBottomMarginWidth, double horizontalMarginWidth,
 			SectionBrightnessMeasurementMethod measurementMethod) {
 		String key = verticalSectionCount + "|" + horizontalSectionCount + "|" + topBottomMarginWidth + "|" + horizontalMarginWidth;
-		return this.getBrightnessMeanBySector(key, measurementMethod);
+		double[][] brightnessGrid = this.getBrightnessBySection(verticalSectionCount, horizontalSectionCount, topBottomMarginWidth, horizontalMarginWidth,
+				measurementMethod);
+		return this.getBrightnessMeanBySector(key, brightnessGrid, measurementMethod);
 	}
 
-	double getBrightnessMeanBySector(String key, SectionBrightnessMeasurementMethod measurementMethod) {
-		Map<SectionBrightnessMeasurementMethod, Double> methodToMeanMap = this.brightnessMeanBySectorMap.get(key);
-		if (methodToMeanMap == null) {
-			methodToMeanMap = new HashMap<Shape.SectionBrightnessMeasurementMethod, Double>();
-			this.brightnessMeanBySectorMap.put(key, methodToMeanMap);
-		}
-		Double brightnessMeanBySectorObj = methodToMeanMap.get(measurementMethod);
+	double getBrightnessMeanBySector(String key, double[][] brightnessGrid, SectionBrightnessMeasurementMethod measurementMethod) {
+		String meanKey = "mean|" + key + "|" + measurementMethod.name();
+		Double brightnessMeanBySectorObj = (Double) this.getAnalysisCache().get(this, meanKey);
 		double brightnessMeanBySector = 0.0;
 		if (brightnessMeanBySectorObj == null) {
 			Mean mean = new Mean();
-			Map<SectionBrightnessMeasurementMethod, double[][]> brightnessByMethod = this.brightnessBySectorMap.get(key);
-			double[][] brightnessGrid = brightnessByMethod.get(measurementMethod);
 			for (int i = 0; i < brightnessGrid.length; i++)
 				mean.incrementAll(brightnessGrid[i]);
 			brightnessMeanBySector = mean.getResult();
-			methodToMeanMap.put(measurementMethod, brightnessMeanBySector);
+			this.getAnalysisCache().put(this, meanKey, brightnessMeanBySector, 16);
 		} else {
 			brightnessMeanBySector = brightnessMeanBySectorObj.doubleValue();
 		}
@@ -932,8 +926,8 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	 * bottom-right, travelling horizontally first.
 	 */
 	public BitSet getBlackAndWhiteBitSet(int threshold) {
-		String key = "" + threshold;
-		BitSet bitset = this.bitsets.get(key);
+		String key = "bitset|" + threshold;
+		BitSet bitset = (BitSet) this.getAnalysisCache().get(this, key);
 		if (bitset == null) {
 			bitset = new BitSet(this.getWidth() * this.getHeight());
 			int counter = 0;
@@ -942,7 +936,7 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 					int pixel = this.getPixel(i, j);
 					bitset.set(counter++, pixel <= threshold);
 				}
-			this.bitsets.put(key, bitset);
+			this.getAnalysisCache().put(this, key, bitset, getBitSetBytes(bitset));
 		}
 		return bitset;
 	}
@@ -955,8 +949,8 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	 * bottom-right, travelling horizontally first.
 	 */
 	public BitSet getBlackAndWhiteBitSet(int threshold, int whiteGapFillFactor) {
-		String key = threshold + "|" + whiteGapFillFactor;
-		BitSet bitset = this.bitsets.get(key);
+		String key = "bitset|" + threshold + "|" + whiteGapFillFactor;
+		BitSet bitset = (BitSet) this.getAnalysisCache().get(this, key);
 		if (bitset == null) {
 			bitset = this.getBlackAndWhiteBitSet(threshold);
 			// if the image is black-and-white, fill in any bits
@@ -968,7 +962,8 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 			} else {
 				bitset = this.getBlackAndWhiteBitSet(threshold);
 			}
-			this.bitsets.put(key, bitset);
+			// if no gaps were filled, the bitset is shared with the one above
+			this.getAnalysisCache().put(this, key, bitset, whiteGapFillFactor > 0 ? getBitSetBytes(bitset) : 0);
 		}
 		return bitset;
 	}
@@ -977,7 +972,8 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	 * Find outline of the shape as a BitSet.
 	 */
 	public BitSet getOutline(int threshold) {
-		BitSet outline = this.outlines.get(threshold);
+		String key = "outline|" + threshold;
+		BitSet outline = (BitSet) this.getAnalysisCache().get(this, key);
 		if (outline == null) {
 			outline = new BitSet(this.getHeight() * this.getWidth());
 			int counter = 0;
@@ -993,11 +989,15 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 					} // is it black?
 				} // next x
 			} // next y
-			this.outlines.put(threshold, outline);
+			this.getAnalysisCache().put(this, key, outline, getBitSetBytes(outline));
 		}
 		return outline;
 	}
 
+	private static long getBitSetBytes(BitSet bitset) {
+		return bitset.size() / 8;
+	}
+
 	/**
 	 * The image containing this shape.
 	 */
@@ -1039,18 +1039,20 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	 * @return an array of int with size {@link #getWidth()}.
 	 */
 	public int[] getVerticalCounts() {
-		if (this.verticalCounts == null) {
-			this.verticalCounts = new int[this.getWidth()];
+		int[] verticalCounts = (int[]) this.getAnalysisCache().get(this, "verticalCounts");
+		if (verticalCounts == null) {
+			verticalCounts = new int[this.getWidth()];
 			for (int x = 0; x < this.getWidth(); x++) {
 				for (int y = 0; y < this.getHeight(); y++) {
 					int brightness = this.getPixel(x, y);
 					if (brightness < 0)
 						brightness = 256 + brightness;
-					this.verticalCounts[x] += 255 - brightness;
+					verticalCounts[x] += 255 - brightness;
 				}
 			}
+			this.getAnalysisCache().put(this, "verticalCounts", verticalCounts, 4L * verticalCounts.length);
 		}
-		return this.verticalCounts;
+		return verticalCounts;
 	}
 
 	/**
@@ -1061,16 +1063,9 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 		image = null;
 		pixelGrabber = null;
 
-		brightnessBySectorMap = new HashMap<String, Map<SectionBrightnessMeasurementMethod, double[][]>>();
-		brightnessMeanBySectorMap = new HashMap<String, Map<SectionBrightnessMeasurementMethod, Double>>();
-
-		bitsets = new Hashtable<String, BitSet>();
-		outlines = new Hashtable<Integer, BitSet>();
+		this.getAnalysisCache().remove(this);
 
 		brightnessCounts = null;
-
-		verticalCounts = null;
-		verticalContour = null;
 		totalBrightness = 0;
 	}
 
@@ -1969,6 +1964,7 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	 *         (0) and bottom (1).
 	 */
 	public int[][] getVerticalContour() {
+		int[][] verticalContour = (int[][]) this.getAnalysisCache().get(this, "verticalContour");
 		if (verticalContour == null) {
 			verticalContour = new int[this.getWidth()][2];
 			for (int x = 0; x < this.getWidth(); x++) {
@@ -1985,6 +1981,7 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 					}
 				}
 			}
+			this.getAnalysisCache().put(this, "verticalContour", verticalContour, 24L * verticalContour.length);
 		}
 		return verticalContour;
 	}
@@ -2054,19 +2051,45 @@ public class Shape implements ImageGrid, Entity, Rectangle, ShapeWrapper, HasFea
 	@SuppressWarnings("unchecked")
 
 	public <T, Y> FeatureResult<Y> getResultFromCache(Feature<T, Y> feature, RuntimeEnvironment env) {
-		FeatureResult<Y> result = null;
-
-		String key = feature.getName() + env.getKey();
-		if (this.featureResults.containsKey(key)) {
-			result = (FeatureResult<Y>) this.featureResults.get(key);
-		}
-		return result;
+		String key = "feature|" + feature.getName() + env.getKey();
+		return (FeatureResult<Y>) this.getAnalysisCache().get(this, key);
 	}
 
 	@Override
 	public <T, Y> void putResultInCache(Feature<T, Y> feature, FeatureResult<Y> featureResult, RuntimeEnvironment env) {
-		String key = feature.getName() + env.getKey();
-		this.featureResults.put(key, featureResult);
+		String key = "feature|" + feature.getName() + env.getKey();
+		this.getAnalysisCache().put(this, key, featureResult, BoundedShapeAnalysisCache.FEATURE_RESULT_BYTES);
+	}
+
+	/**
+	 * The result cached for a feature in a given feature slot, where each
+	 * feature is assigned a distinct slot.
+	 */
+	@SuppressWarnings("unchecked")
+	public <Y> FeatureResult<Y> getResultFromCache(int slot) {
+		return (FeatureResult<Y>) this.getAnalysisCache().getFeatureResult(this, slot);
+	}
+
+	/**
+	 * Cache a result for a feature in a given feature slot.
+	 */
+	public <Y> void putResultInCache(int slot, FeatureResult<Y> featureResult) {
+		this.getAnalysisCache().putFeatureResult(this, slot, featureResult);
+	}
+
+	/**
+	 * Where the analysis of this shape is cached: the containing image's cache
+	 * if there is one.
+	 */
+	ShapeAnalysisCache getAnalysisCache() {
+		JochreImage image = this.jochreImage;
+		if (image == null && this.group != null)
+			image = this.getJochreImage();
+		if (image != null)
+			return image.getShapeAnalysisCache();
+		if (ownAnalysisCache == null)
+			ownAnalysisCache = new BoundedShapeAnalysisCache(Long.MAX_VALUE);
+		return ownAnalysisCache;
 	}
 
 	@Override
@@ -0,0 +1,72 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+
+/**
+ * Stores the intermediate results of analysing the shapes in a single image,
+ * such as feature results, bitsets and brightness grids, so that they can be
+ * re-used until the cache decides to discard them.<br/>
+ * Anything stored can be discarded at any time, so callers must be able to
+ * recalculate it. Implementations must be thread-safe.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public interface ShapeAnalysisCache {
+	/**
+	 * The feature result stored for a given shape in a given feature slot, or
+	 * null if none is stored.
+	 */
+	public FeatureResult<?> getFeatureResult(Shape shape, int slot);
+
+	/**
+	 * Store a feature result for a given shape in a given feature slot.
+	 */
+	public void putFeatureResult(Shape shape, int slot, FeatureResult<?> featureResult);
+
+	/**
+	 * Any other analysis stored for a given shape, or null if none is stored.
+	 */
+	public Object get(Shape shape, String key);
+
+	/**
+	 * Store some other analysis for a given shape.
+	 *
+	 * @param bytes
+	 *            the approximate memory taken by the analysis
+	 */
+	public void put(Shape shape, String key, Object value, long bytes);
+
+	/**
+	 * Discard everything stored for a given shape.
+	 */
+	public void remove(Shape shape);
+
+	/**
+	 * The approximate memory currently taken by the cache.
+	 */
+	public long getBytes();
+
+	/**
+	 * Discard everything stored.
+	 */
+	public void clear();
+}
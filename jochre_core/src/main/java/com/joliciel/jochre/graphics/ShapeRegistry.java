@@ -0,0 +1,195 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.jochre.JochreSession;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+/**
+ * The shapes created on the fly within a single image by coordinates, e.g.
+ * when testing split or merge candidates, so that requesting the same
+ * coordinates twice returns the same shape.<br/>
+ * Shapes are only referenced weakly, so that a shape which nobody else refers
+ * to can be garbage collected, together with any analysis cached on it. To
+ * avoid re-analysing shapes which are requested several times in quick
+ * succession, the most recently created shapes are also retained, up to an
+ * approximate memory budget, given by jochre.image.shape-cache-max-bytes.<br/>
+ * Not thread-safe: calls are synchronized by the containing image.
+ *
+ * @author Assaf Urieli
+ *
+ */
+final class ShapeRegistry {
+	private static final Logger LOG = LoggerFactory.getLogger(ShapeRegistry.class);
+
+	/**
+	 * The approximate fixed cost of a shape, its fields and empty caches.
+	 */
+	static final int SHAPE_OVERHEAD_BYTES = 1024;
+
+	private static final int MAX_COORDINATE = 0xFFFF;
+
+	private final JochreImage jochreImage;
+	private final JochreSession jochreSession;
+	private final long maxRetainedBytes;
+
+	private final TLongObjectMap<ShapeReference> shapes = new TLongObjectHashMap<ShapeReference>();
+	private final ReferenceQueue<Shape> referenceQueue = new ReferenceQueue<Shape>();
+	private final Deque<Shape> retainedShapes = new ArrayDeque<Shape>();
+	private long retainedBytes = 0;
+
+	private int createdCount = 0;
+	private int reusedCount = 0;
+
+	private static final class ShapeReference extends WeakReference<Shape> {
+		private final long key;
+
+		public ShapeReference(Shape shape, long key, ReferenceQueue<Shape> referenceQueue) {
+			super(shape, referenceQueue);
+			this.key = key;
+		}
+	}
+
+	public ShapeRegistry(JochreImage jochreImage, JochreSession jochreSession) {
+		this.jochreImage = jochreImage;
+		this.jochreSession = jochreSession;
+		this.maxRetainedBytes = jochreSession.getConfig().getBytes("jochre.image.shape-cache-max-bytes");
+	}
+
+	/**
+	 * Returns the shape with the coordinates provided, creating it if it
+	 * doesn't exist yet.
+	 */
+	public Shape getShape(int left, int top, int right, int bottom) {
+		this.purge();
+
+		if (!canPack(left, top, right, bottom)) {
+			// too large to be registered
+			createdCount++;
+			return this.newShape(left, top, right, bottom);
+		}
+
+		long key = getKey(left, top, right, bottom);
+		ShapeReference reference = shapes.get(key);
+		Shape shape = reference == null ? null : reference.get();
+		if (shape != null) {
+			reusedCount++;
+			return shape;
+		}
+
+		shape = this.newShape(left, top, right, bottom);
+		shapes.put(key, new ShapeReference(shape, key, referenceQueue));
+		createdCount++;
+
+		retainedShapes.addLast(shape);
+		retainedBytes += estimateBytes(shape);
+		while (retainedBytes > maxRetainedBytes && retainedShapes.size() > 1) {
+			Shape oldest = retainedShapes.removeFirst();
+			retainedBytes -= estimateBytes(oldest);
+		}
+		return shape;
+	}
+
+	private Shape newShape(int left, int top, int right, int bottom) {
+		Shape shape = new Shape(jochreImage, jochreSession);
+		shape.setLeft(left);
+		shape.setTop(top);
+		shape.setRight(right);
+		shape.setBottom(bottom);
+		return shape;
+	}
+
+	/**
+	 * Remove entries for shapes which have been garbage collected.
+	 */
+	private void purge() {
+		Reference<? extends Shape> reference;
+		while ((reference = referenceQueue.poll()) != null) {
+			ShapeReference shapeReference = (ShapeReference) reference;
+			// only remove the entry if it hasn't since been replaced
+			if (shapes.get(shapeReference.key) == shapeReference)
+				shapes.remove(shapeReference.key);
+		}
+	}
+
+	/**
+	 * Do all of the coordinates fit in 16 bits?
+	 */
+	static boolean canPack(int left, int top, int right, int bottom) {
+		return left >= 0 && top >= 0 && right >= 0 && bottom >= 0 && left <= MAX_COORDINATE && top <= MAX_COORDINATE && right <= MAX_COORDINATE
+				&& bottom <= MAX_COORDINATE;
+	}
+
+	/**
+	 * Packs the coordinates into a single key, with 16 bits for each.
+	 */
+	static long getKey(int left, int top, int right, int bottom) {
+		return ((long) left << 48) | ((long) top << 32) | ((long) right << 16) | bottom;
+	}
+
+	/**
+	 * An approximation of the memory taken by a shape once analysed, with
+	 * roughly a byte per pixel for its cropped image, bitsets and brightness
+	 * grids.
+	 */
+	static long estimateBytes(Shape shape) {
+		long area = (long) (shape.getRight() - shape.getLeft() + 1) * (long) (shape.getBottom() - shape.getTop() + 1);
+		return SHAPE_OVERHEAD_BYTES + area;
+	}
+
+	/**
+	 * The number of shapes currently registered, including those which have
+	 * been garbage collected but not yet purged.
+	 */
+	public int size() {
+		return shapes.size();
+	}
+
+	/**
+	 * The approximate number of bytes taken by the shapes retained
+	 * regardless of whether anybody else refers to them.
+	 */
+	public long getRetainedBytes() {
+		return retainedBytes;
+	}
+
+	public int getRetainedCount() {
+		return retainedShapes.size();
+	}
+
+	public void clear() {
+		LOG.debug("Image " + jochreImage.getId() + ": created " + createdCount + " shapes, re-used " + reusedCount + ", retained bytes: " + retainedBytes);
+		shapes.clear();
+		retainedShapes.clear();
+		retainedBytes = 0;
+		while (referenceQueue.poll() != null)
+			;
+	}
+}
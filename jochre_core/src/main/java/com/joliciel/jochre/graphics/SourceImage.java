@@ -28,6 +28,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
 import org.apache.commons.math.stat.descriptive.moment.Mean;
@@ -47,7 +54,9 @@ import org.slf4j.LoggerFactory;
 
 import com.joliciel.jochre.JochreSession;
 import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.graphics.util.ImagePixelGrabber;
 import com.joliciel.jochre.stats.DBSCANClusterer;
+import com.joliciel.jochre.stats.KDTreeDBSCANClusterer;
 import com.joliciel.jochre.utils.JochreException;
 import com.typesafe.config.Config;
 
@@ -88,12 +97,22 @@ public class SourceImage extends JochreImage implements ImageGrid {
 	private boolean drawPixelSpread = false;
 	private final double blackThresholdPercentile;
 	private final double separationThresholdPercentile;
+	private final int layoutScale;
+	private final int thresholdThreads;
+
+	/**
+	 * The minimum number of rows read by each thread when calculating the pixel
+	 * spread.
+	 */
+	private static final int MIN_STRIPE_HEIGHT = 64;
 
 	SourceImage(JochreSession jochreSession) {
 		super(jochreSession);
 		Config segmenterConfig = jochreSession.getConfig().getConfig("jochre.segmenter");
 		blackThresholdPercentile = segmenterConfig.getDouble("black-threshold-percentile");
 		separationThresholdPercentile = segmenterConfig.getDouble("separation-threshold-percentile");
+		layoutScale = segmenterConfig.getInt("layout-scale");
+		thresholdThreads = segmenterConfig.getInt("threshold-threads");
 		this.imageBackup = null;
 	}
 
@@ -107,6 +126,8 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		Config segmenterConfig = jochreSession.getConfig().getConfig("jochre.segmenter");
 		blackThresholdPercentile = segmenterConfig.getDouble("black-threshold-percentile");
 		separationThresholdPercentile = segmenterConfig.getDouble("separation-threshold-percentile");
+		layoutScale = segmenterConfig.getInt("layout-scale");
+		thresholdThreads = segmenterConfig.getInt("threshold-threads");
 
 		this.name = name;
 
@@ -131,6 +152,35 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		this.calculateThresholds(drawPixelSpread);
 	}
 
+	/**
+	 * Constructor for an image whose segmentation is restored rather than
+	 * calculated, e.g. by a {@link SegmentationCache}. The image is used as is,
+	 * with the thresholds provided.
+	 */
+	SourceImage(JochrePage page, String name, BufferedImage image, int blackLimit, int whiteLimit, int blackThreshold, int separationThreshold,
+			JochreSession jochreSession) {
+		super(image, jochreSession);
+		Config segmenterConfig = jochreSession.getConfig().getConfig("jochre.segmenter");
+		blackThresholdPercentile = segmenterConfig.getDouble("black-threshold-percentile");
+		separationThresholdPercentile = segmenterConfig.getDouble("separation-threshold-percentile");
+		layoutScale = segmenterConfig.getInt("layout-scale");
+		thresholdThreads = segmenterConfig.getInt("threshold-threads");
+
+		this.page = page;
+		this.name = name;
+		imageBackup = image;
+		this.setOriginalImage(image);
+
+		this.setWidth(this.getPixelGrabber().getWidth());
+		this.setHeight(this.getPixelGrabber().getHeight());
+
+		this.setBlackLimit(blackLimit);
+		this.setWhiteLimit(whiteLimit);
+		this.greyscaleMultiplier = (255.0 / (whiteLimit - blackLimit));
+		this.setBlackThreshold(blackThreshold);
+		this.setSeparationThreshold(separationThreshold);
+	}
+
 	private void calculateThresholds(boolean drawPixelSpread) {
 		// if black-and-white image, this is simple
 		ColorModel srcCM = this.getOriginalImage().getColorModel();
@@ -149,15 +199,7 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		// we want to leave out anomalies (ink blots!)
 		// also, we leave x% at each margin, in case there's black areas
 		// surrounding the image
-		int[] pixelSpread = new int[256];
-
-		int verticalMarginPixels = (int) Math.floor(this.getHeight() * 0.10);
-		int horizontalMarginPixels = (int) Math.floor(this.getWidth() * 0.10);
-		for (int y = verticalMarginPixels; y < this.getHeight() - verticalMarginPixels; y++)
-			for (int x = horizontalMarginPixels; x < this.getWidth() - horizontalMarginPixels; x++) {
-				int pixel = this.getPixelGrabber().getPixelBrightness(x, y);
-				pixelSpread[pixel]++;
-			}
+		int[] pixelSpread = this.getPixelSpread();
 
 		if (LOG.isTraceEnabled()) {
 			for (int i = 0; i < 256; i++)
@@ -184,12 +226,12 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		LOG.debug("End white: " + endWhite);
 
 		DescriptiveStatistics blackCountStats = new DescriptiveStatistics();
-		DescriptiveStatistics blackSpread = new DescriptiveStatistics();
+		// the spread of black pixel brightness is the pixel spread up to
+		// endWhite
+		int[] blackSpread = new int[256];
 		for (int i = 0; i <= endWhite; i++) {
 			blackCountStats.addValue(pixelSpread[i]);
-			for (int j = 0; j < pixelSpread[i]; j++) {
-				blackSpread.addValue(i);
-			}
+			blackSpread[i] = pixelSpread[i];
 		}
 
 		LOG.debug("mean counts: " + countStats.getMean());
@@ -212,31 +254,146 @@ public class SourceImage extends JochreImage implements ImageGrid {
 
 		// the higher the black threshold, the more pixels will be considered
 		// "black" in each letter
-		int blackThresholdValue = (int) Math.round(blackSpread.getPercentile(blackThresholdPercentile));
+		int blackThresholdValue = (int) Math.round(getPercentile(blackSpread, blackThresholdPercentile));
 		LOG.debug("Black threshold value: " + blackThresholdValue);
-		LOG.debug("Black spread 25 percentile: " + (int) Math.round(blackSpread.getPercentile(25.0)));
-		LOG.debug("Black spread 50 percentile: " + (int) Math.round(blackSpread.getPercentile(50.0)));
-		LOG.debug("Black spread 75 percentile: " + (int) Math.round(blackSpread.getPercentile(75.0)));
+		LOG.debug("Black spread 25 percentile: " + (int) Math.round(getPercentile(blackSpread, 25.0)));
+		LOG.debug("Black spread 50 percentile: " + (int) Math.round(getPercentile(blackSpread, 50.0)));
+		LOG.debug("Black spread 75 percentile: " + (int) Math.round(getPercentile(blackSpread, 75.0)));
 
 		blackThreshold = (int) Math.round((blackThresholdValue - blackLimit) * greyscaleMultiplier);
 		LOG.debug("Black threshold: " + blackThreshold);
 
 		// the lower the threshold, the more separate letters will be
-		int separationThresholdValue = (int) Math.round(blackSpread.getPercentile(separationThresholdPercentile));
+		int separationThresholdValue = (int) Math.round(getPercentile(blackSpread, separationThresholdPercentile));
 		LOG.debug("Separation threshold value: " + separationThresholdValue);
-		LOG.debug("Black spread 25 percentile: " + (int) Math.round(blackSpread.getPercentile(25.0)));
-		LOG.debug("Black spread 50 percentile: " + (int) Math.round(blackSpread.getPercentile(50.0)));
-		LOG.debug("Black spread 75 percentile: " + (int) Math.round(blackSpread.getPercentile(75.0)));
+		LOG.debug("Black spread 25 percentile: " + (int) Math.round(getPercentile(blackSpread, 25.0)));
+		LOG.debug("Black spread 50 percentile: " + (int) Math.round(getPercentile(blackSpread, 50.0)));
+		LOG.debug("Black spread 75 percentile: " + (int) Math.round(getPercentile(blackSpread, 75.0)));
 
 		separationThreshold = (int) Math.round((separationThresholdValue - blackLimit) * greyscaleMultiplier);
 		LOG.debug("Separation threshold: " + separationThreshold);
 		if (drawPixelSpread)
-			this.drawChart(pixelSpread, countStats, blackCountStats, blackSpread, startWhite, endWhite, startBlack, blackThresholdValue);
+			this.drawChart(pixelSpread, countStats, blackCountStats, startWhite, endWhite, startBlack, blackThresholdValue);
 
 	}
 
-	private void drawChart(int[] pixelSpread, DescriptiveStatistics countStats, DescriptiveStatistics blackCountStats, DescriptiveStatistics blackSpread,
-			int startWhite, int endWhite, int startBlack, int blackThresholdValue) {
+	/**
+	 * The number of pixels at each brightness in the image, leaving out 10% at
+	 * each margin. The image is read in horizontal stripes, concurrently if
+	 * jochre.segmenter.threshold-threads allows it.
+	 */
+	private int[] getPixelSpread() {
+		final int verticalMarginPixels = (int) Math.floor(this.getHeight() * 0.10);
+		final int horizontalMarginPixels = (int) Math.floor(this.getWidth() * 0.10);
+		final int top = verticalMarginPixels;
+		final int bottom = this.getHeight() - verticalMarginPixels;
+		final int left = horizontalMarginPixels;
+		final int right = this.getWidth() - horizontalMarginPixels;
+
+		int threads = thresholdThreads > 0 ? thresholdThreads : Runtime.getRuntime().availableProcessors();
+		threads = Math.min(threads, (bottom - top) / MIN_STRIPE_HEIGHT);
+		if (threads <= 1)
+			return this.getPixelSpread(top, bottom, left, right);
+
+		final ImagePixelGrabber pixelGrabber = this.getPixelGrabber();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "pixel-spread-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<int[]>> futures = new ArrayList<Future<int[]>>(threads);
+			int stripeHeight = (bottom - top + threads - 1) / threads;
+			for (int stripeTop = top; stripeTop < bottom; stripeTop += stripeHeight) {
+				final int stripeStart = stripeTop;
+				final int stripeEnd = Math.min(bottom, stripeTop + stripeHeight);
+				futures.add(executor.submit(new Callable<int[]>() {
+					@Override
+					public int[] call() {
+						return getPixelSpread(pixelGrabber, stripeStart, stripeEnd, left, right);
+					}
+				}));
+			}
+			int[] pixelSpread = new int[256];
+			for (Future<int[]> future : futures) {
+				int[] stripeSpread = future.get();
+				for (int i = 0; i < 256; i++)
+					pixelSpread[i] += stripeSpread[i];
+			}
+			return pixelSpread;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JochreException(e);
+		} catch (ExecutionException e) {
+			throw new JochreException("Failed to calculate pixel spread", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private int[] getPixelSpread(int top, int bottom, int left, int right) {
+		return getPixelSpread(this.getPixelGrabber(), top, bottom, left, right);
+	}
+
+	private static int[] getPixelSpread(ImagePixelGrabber pixelGrabber, int top, int bottom, int left, int right) {
+		int[] pixelSpread = new int[256];
+		for (int y = top; y < bottom; y++)
+			for (int x = left; x < right; x++) {
+				int pixel = pixelGrabber.getPixelBrightness(x, y);
+				pixelSpread[pixel]++;
+			}
+		return pixelSpread;
+	}
+
+	/**
+	 * The percentile of a set of brightness values, given the number of values
+	 * at each brightness, as it would be estimated by
+	 * {@link DescriptiveStatistics#getPercentile(double)} on the values
+	 * themselves.
+	 */
+	static double getPercentile(int[] counts, double percentile) {
+		long total = 0;
+		for (int count : counts)
+			total += count;
+		if (total == 0)
+			return Double.NaN;
+		if (total == 1)
+			return getValueAt(counts, 0);
+
+		double n = total;
+		double pos = percentile * (n + 1) / 100;
+		double fpos = Math.floor(pos);
+		long intPos = (long) fpos;
+		double dif = pos - fpos;
+		if (pos < 1)
+			return getValueAt(counts, 0);
+		if (pos >= n)
+			return getValueAt(counts, total - 1);
+		double lower = getValueAt(counts, intPos - 1);
+		double upper = getValueAt(counts, intPos);
+		return lower + dif * (upper - lower);
+	}
+
+	/**
+	 * The value at a given position if the values were sorted.
+	 */
+	private static int getValueAt(int[] counts, long position) {
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i];
+			if (position < cumulative)
+				return i;
+		}
+		return counts.length - 1;
+	}
+
+	private void drawChart(int[] pixelSpread, DescriptiveStatistics countStats, DescriptiveStatistics blackCountStats, int startWhite, int endWhite,
+			int startBlack, int blackThresholdValue) {
 		XYSeries xySeries = new XYSeries("Brightness data");
 		double maxSpread = 0;
 		for (int i = 0; i < 256; i++) {
@@ -343,7 +500,7 @@ public class SourceImage extends JochreImage implements ImageGrid {
 
 			double stdDevHeight = heightStdDev.getResult();
 			List<RowOfShapes> rows = new ArrayList<RowOfShapes>(this.getRows());
-			DBSCANClusterer<RowOfShapes> clusterer = new DBSCANClusterer<RowOfShapes>(rows, rowHeights);
+			DBSCANClusterer<RowOfShapes> clusterer = new KDTreeDBSCANClusterer<RowOfShapes>(rows, rowHeights);
 			rowClusters = clusterer.cluster(stdDevHeight, 2, true);
 			LOG.debug("Found " + rowClusters.size() + " row clusters.");
 		}
@@ -424,7 +581,8 @@ public class SourceImage extends JochreImage implements ImageGrid {
 	/**
 	 * Returns the slope of the current image's horizontal inclination. Assumes
 	 * an initial stab has already been made at group shapes into rows, and that
-	 * rows are grouped from top to bottom.
+	 * rows are grouped from top to bottom. If the layout scale is above 1, only
+	 * one pixel in every layout scale is regressed in each direction.
 	 */
 	public double getInclination() {
 		LOG.debug("#### getInclination ####");
@@ -461,8 +619,8 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		SimpleRegression regression = new SimpleRegression();
 		for (Shape shape : theRow.getShapes()) {
 			if (shape.getHeight() >= minHeight && shape.getHeight() <= maxHeight) {
-				for (int x = 0; x < shape.getWidth(); x++) {
-					for (int y = 0; y < shape.getHeight(); y++) {
+				for (int x = 0; x < shape.getWidth(); x += layoutScale) {
+					for (int y = 0; y < shape.getHeight(); y += layoutScale) {
 						if (shape.isPixelBlack(x, y, this.getBlackThreshold())) {
 							regression.addData(shape.getLeft() + x, shape.getTop() + y);
 						}
@@ -477,7 +635,11 @@ public class SourceImage extends JochreImage implements ImageGrid {
 	/**
 	 * Get white areas which delimit rows (to break columns up into separate
 	 * rows). Assumes specks have already been removed (to avoid reducing white
-	 * areas artificially).
+	 * areas artificially).<br/>
+	 * If the layout scale is above 1, the white areas are searched for on a
+	 * plane downsampled by the layout scale, on which a pixel is black if any
+	 * of the pixels it covers is inside a shape, and are then mapped back to
+	 * full resolution.
 	 * 
 	 * @param shapes
 	 *            the shapes to be considered when looking for white space.
@@ -525,7 +687,7 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		List<Rectangle> blackAreas = new ArrayList<Rectangle>();
 		blackAreas.addAll(shapes);
 
-		List<Rectangle> horizontalWhiteAreas = whiteAreaFinder.getWhiteAreas(blackAreas, left, top, right, bottom, minHorizontalWhiteAreaWidth,
+		List<Rectangle> horizontalWhiteAreas = this.findWhiteAreas(whiteAreaFinder, blackAreas, left, top, right, bottom, minHorizontalWhiteAreaWidth,
 				minHorizontalWhiteAreaHeight);
 		// we add the horizontal white areas to the "black areas", since we
 		// don't want vertical
@@ -539,7 +701,7 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		LOG.debug("minVerticalWhiteAreaWidth: " + minVerticalWhiteAreaWidth);
 		LOG.debug("minVerticalWhiteAreaHeight: " + minVerticalWhiteAreaHeight);
 
-		List<Rectangle> verticalWhiteAreas = whiteAreaFinder.getWhiteAreas(blackAreas, left, top, right, bottom, minVerticalWhiteAreaWidth,
+		List<Rectangle> verticalWhiteAreas = this.findWhiteAreas(whiteAreaFinder, blackAreas, left, top, right, bottom, minVerticalWhiteAreaWidth,
 				minVerticalWhiteAreaHeight);
 		whiteAreas.addAll(verticalWhiteAreas);
 
@@ -549,7 +711,7 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		LOG.debug("minSquareWhiteAreaWidth: " + minSquareWhiteAreaWidth);
 		LOG.debug("minSquareWhiteAreaHeight: " + minSquareWhiteAreaHeight);
 
-		List<Rectangle> squareWhiteAreas = whiteAreaFinder.getWhiteAreas(blackAreas, left, top, right, bottom, minSquareWhiteAreaWidth,
+		List<Rectangle> squareWhiteAreas = this.findWhiteAreas(whiteAreaFinder, blackAreas, left, top, right, bottom, minSquareWhiteAreaWidth,
 				minSquareWhiteAreaHeight);
 		whiteAreas.addAll(squareWhiteAreas);
 		blackAreas.addAll(squareWhiteAreas);
@@ -561,13 +723,42 @@ public class SourceImage extends JochreImage implements ImageGrid {
 		LOG.debug("minVerticalWhiteAreaWidth: " + minVerticalWhiteAreaWidth);
 		LOG.debug("minVerticalWhiteAreaHeight: " + minVerticalWhiteAreaHeight);
 
-		List<Rectangle> verticalWhiteAreas2 = whiteAreaFinder.getWhiteAreas(blackAreas, left, top, right, bottom, minVerticalWhiteAreaWidth,
+		List<Rectangle> verticalWhiteAreas2 = this.findWhiteAreas(whiteAreaFinder, blackAreas, left, top, right, bottom, minVerticalWhiteAreaWidth,
 				minVerticalWhiteAreaHeight);
 		whiteAreas.addAll(verticalWhiteAreas2);
 
 		return whiteAreas;
 	}
 
+	private List<Rectangle> findWhiteAreas(WhiteAreaFinder whiteAreaFinder, List<Rectangle> blackAreas, int left, int top, int right, int bottom,
+			double minWhiteAreaWidth, double minWhiteAreaHeight) {
+		if (layoutScale <= 1)
+			return whiteAreaFinder.getWhiteAreas(blackAreas, left, top, right, bottom, minWhiteAreaWidth, minWhiteAreaHeight);
+
+		List<Rectangle> coarseBlackAreas = new ArrayList<Rectangle>(blackAreas.size());
+		for (Rectangle blackArea : blackAreas) {
+			if (blackArea.getRight() < blackArea.getLeft() || blackArea.getBottom() < blackArea.getTop())
+				continue;
+			coarseBlackAreas.add(new RectangleImpl(Math.floorDiv(blackArea.getLeft(), layoutScale), Math.floorDiv(blackArea.getTop(), layoutScale),
+					Math.floorDiv(blackArea.getRight(), layoutScale), Math.floorDiv(blackArea.getBottom(), layoutScale)));
+		}
+
+		List<Rectangle> coarseWhiteAreas = whiteAreaFinder.getWhiteAreas(coarseBlackAreas, left / layoutScale, top / layoutScale, right / layoutScale,
+				bottom / layoutScale, minWhiteAreaWidth / layoutScale, minWhiteAreaHeight / layoutScale);
+
+		// a coarse white pixel only covers white pixels, so the white areas can
+		// be extended to the full width of the coarse pixels they cover
+		List<Rectangle> whiteAreas = new ArrayList<Rectangle>(coarseWhiteAreas.size());
+		for (Rectangle coarseWhiteArea : coarseWhiteAreas) {
+			int whiteAreaLeft = Math.max(left, coarseWhiteArea.getLeft() * layoutScale);
+			int whiteAreaTop = Math.max(top, coarseWhiteArea.getTop() * layoutScale);
+			int whiteAreaRight = Math.min(right, coarseWhiteArea.getRight() * layoutScale + layoutScale - 1);
+			int whiteAreaBottom = Math.min(bottom, coarseWhiteArea.getBottom() * layoutScale + layoutScale - 1);
+			whiteAreas.add(new RectangleImpl(whiteAreaLeft, whiteAreaTop, whiteAreaRight, whiteAreaBottom));
+		}
+		return whiteAreas;
+	}
+
 	/**
 	 * Calculate the mean horizontal slope of rows on this image.
 	 */
@@ -24,6 +24,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.TreeSet;
@@ -31,9 +32,17 @@ import java.util.TreeSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+
 /**
  * Convert a bitmap shape into a List of line segments representing the major
- * line strokes forming this shape.
+ * line strokes forming this shape.<br/>
+ * In fast mode, the line definitions are followed using step tables shared by
+ * all vectorizers, directly against the shape's black-and-white bitset, and
+ * only the longest lines found so far are retained. Unlike the default mode,
+ * fast mode always skips a line already found in the opposite direction, so
+ * the lines retained may differ slightly.
  * 
  * @author Assaf Urieli
  *
@@ -53,6 +62,47 @@ public class Vectorizer {
 	public static final int WHITE_GAP_FILL_FACTOR = 0;
 
 	private int whiteGapFillFactor = WHITE_GAP_FILL_FACTOR;
+	private boolean fastMode = false;
+
+	private static final int MAX_COORDINATE = 0xFFFF;
+
+	private static final LineTables LINE_TABLES = new LineTables();
+
+	/**
+	 * The line definitions as primitive arrays, indexed in the same order as
+	 * {@link #getLineDefinitions()}.
+	 */
+	private static final class LineTables {
+		private final int[] deltaX;
+		private final int[] deltaY;
+		private final int[] xIncrement;
+		private final int[] yIncrement;
+		private final int[][] steps;
+
+		public LineTables() {
+			List<List<Integer>> stepList = getStepList();
+			int count = 4 * stepList.size();
+			deltaX = new int[count];
+			deltaY = new int[count];
+			xIncrement = new int[count];
+			yIncrement = new int[count];
+			steps = new int[count][];
+			int index = 0;
+			for (int sector = 0; sector < 4; sector++) {
+				LineDefinition lineDef = new LineDefinition(sector, 0);
+				for (List<Integer> stepsForLine : stepList) {
+					deltaX[index] = lineDef.getDeltaX();
+					deltaY[index] = lineDef.getDeltaY();
+					xIncrement[index] = lineDef.getXIncrement();
+					yIncrement[index] = lineDef.getYIncrement();
+					steps[index] = new int[stepsForLine.size()];
+					for (int i = 0; i < stepsForLine.size(); i++)
+						steps[index][i] = stepsForLine.get(i);
+					index++;
+				}
+			}
+		}
+	}
 
 	public BufferedImage drawArrayLists(JochreImage jochreImage) {
 		long startTime = (new Date()).getTime();
@@ -91,7 +141,11 @@ public class Vectorizer {
 
 		// find n longest lines within shape which connect two points in the outline
 		int maxLines = 200;
-		List<LineSegment> lineSegments = this.getLongestLines(shape, outline, maxLines, threshold);
+		List<LineSegment> lineSegments = null;
+		if (fastMode)
+			lineSegments = this.getLongestLinesFast(shape, outline, maxLines, threshold);
+		else
+			lineSegments = this.getLongestLines(shape, outline, maxLines, threshold);
 
 		// combine/eliminate similar lines
 		lineSegments = this.combineSegments(shape, lineSegments);
@@ -145,6 +199,224 @@ public class Vectorizer {
 		return lineSegments;
 	}
 
+	/**
+	 * Like {@link #getLongestLines(Shape, BitSet, int, int)}, but follows the
+	 * line definitions using the shared step tables, directly against the
+	 * shape's black-and-white bitset, keeping the longest lines in a bounded
+	 * heap.<br/>
+	 * The default mode's TreeSet only sometimes drops a line already found in
+	 * the opposite direction, since {@link LineSegment#compareTo(LineSegment)}
+	 * is not transitive for reversed lines. Fast mode always skips such lines,
+	 * so its result is the default mode's ordering of all lines found, without
+	 * any reversed duplicates.
+	 */
+	List<LineSegment> getLongestLinesFast(Shape shape, BitSet outline, int maxLines, int threshold) {
+		List<LineSegment> lineSegments = new ArrayList<LineSegment>();
+		if (maxLines <= 0)
+			return lineSegments;
+
+		int width = shape.getWidth();
+		int height = shape.getHeight();
+		if (width > MAX_COORDINATE || height > MAX_COORDINATE)
+			return this.getLongestLines(shape, outline, maxLines, threshold);
+
+		int pixelCount = width * height;
+		BitSet blackPixels = shape.getBlackAndWhiteBitSet(threshold, this.whiteGapFillFactor);
+
+		int outlineCardinality = outline.cardinality();
+		int samplingInterval = outlineCardinality / 100;
+		if (samplingInterval == 0)
+			samplingInterval = 1;
+
+		LineTables tables = LINE_TABLES;
+		int lineDefCount = tables.steps.length;
+		SegmentHeap heap = new SegmentHeap(maxLines);
+		// end points and lengths of the lines found from the current origin
+		int[] originLines = new int[lineDefCount * 3];
+		// all lines found so far, since a line found in one direction hides the
+		// same line found later in the opposite direction, even if the first one
+		// is no longer in the heap
+		TLongSet linesFound = new TLongHashSet();
+
+		int samplingIndex = 0;
+		for (int pixel = outline.nextSetBit(0); pixel >= 0 && pixel < pixelCount; pixel = outline.nextSetBit(pixel + 1)) {
+			if (samplingIndex == 0) {
+				int xOrigin = pixel % width;
+				int yOrigin = pixel / width;
+				int originLineCount = 0;
+				for (int lineDef = 0; lineDef < lineDefCount; lineDef++) {
+					int[] steps = tables.steps[lineDef];
+					int deltaX = tables.deltaX[lineDef];
+					int deltaY = tables.deltaY[lineDef];
+					int x = xOrigin;
+					int y = yOrigin;
+					int lastX = x;
+					int lastY = y;
+					int currentSegment = steps[0];
+					int stepIndex = 0;
+					int posOnSegment = 0;
+					int length;
+					for (length = 0;; length++) {
+						lastX = x;
+						lastY = y;
+						x += deltaX;
+						y += deltaY;
+						posOnSegment++;
+						if (posOnSegment == currentSegment) {
+							x += tables.xIncrement[lineDef];
+							y += tables.yIncrement[lineDef];
+							posOnSegment = 0;
+							stepIndex++;
+							if (stepIndex >= steps.length)
+								stepIndex = 0;
+							currentSegment = steps[stepIndex];
+						}
+						if (x < 0 || y < 0 || x >= width || y >= height || !blackPixels.get(y * width + x))
+							break;
+					}
+
+					if (length != 0) {
+						boolean found = false;
+						for (int i = 0; i < originLineCount; i++) {
+							if (originLines[i * 3] == lastX && originLines[i * 3 + 1] == lastY && originLines[i * 3 + 2] == length) {
+								found = true;
+								break;
+							}
+						}
+						if (!found) {
+							originLines[originLineCount * 3] = lastX;
+							originLines[originLineCount * 3 + 1] = lastY;
+							originLines[originLineCount * 3 + 2] = length;
+							originLineCount++;
+							if (!linesFound.contains(getLineKey(lastX, lastY, xOrigin, yOrigin))) {
+								linesFound.add(getLineKey(xOrigin, yOrigin, lastX, lastY));
+								heap.offer(xOrigin, yOrigin, lastX, lastY, length, lineDef);
+							}
+						}
+					}
+				} // next line definition
+			}
+			samplingIndex++;
+			if (samplingIndex == samplingInterval)
+				samplingIndex = 0;
+		}
+
+		List<LineDefinition> lineDefinitions = this.getLineDefinitions();
+		for (int i = 0; i < heap.size; i++) {
+			LineSegment lineSegment = new LineSegment(shape, lineDefinitions.get(heap.lineDef[i]), heap.startX[i], heap.startY[i], heap.endX[i], heap.endY[i]);
+			lineSegment.setLength(heap.length[i]);
+			lineSegments.add(lineSegment);
+		}
+		Collections.sort(lineSegments);
+		return lineSegments;
+	}
+
+	/**
+	 * Packs a line's end points into a single key, with 16 bits for each
+	 * coordinate. A line's length is given by its end points.
+	 */
+	private static long getLineKey(int startX, int startY, int endX, int endY) {
+		return ((long) startX << 48) | ((long) startY << 32) | ((long) endX << 16) | endY;
+	}
+
+	/**
+	 * A heap of at most n line segments, with the segment that would come last
+	 * in {@link LineSegment#compareTo(LineSegment)} order at its root.
+	 */
+	private static final class SegmentHeap {
+		private final int capacity;
+		private final int[] startX;
+		private final int[] startY;
+		private final int[] endX;
+		private final int[] endY;
+		private final int[] length;
+		private final int[] lineDef;
+		private int size = 0;
+
+		public SegmentHeap(int capacity) {
+			this.capacity = capacity;
+			startX = new int[capacity];
+			startY = new int[capacity];
+			endX = new int[capacity];
+			endY = new int[capacity];
+			length = new int[capacity];
+			lineDef = new int[capacity];
+		}
+
+		public void offer(int newStartX, int newStartY, int newEndX, int newEndY, int newLength, int newLineDef) {
+			int position;
+			if (size < capacity) {
+				position = size++;
+				this.set(position, newStartX, newStartY, newEndX, newEndY, newLength, newLineDef);
+				// sift up
+				while (position > 0) {
+					int parent = (position - 1) / 2;
+					if (this.compare(position, parent) <= 0)
+						break;
+					this.swap(position, parent);
+					position = parent;
+				}
+			} else {
+				// only replace the root if the new segment comes before it
+				int result = newLength != length[0] ? length[0] - newLength : 0;
+				if (result == 0)
+					result = compare(newStartY, newStartX, newEndY, newEndX, startY[0], startX[0], endY[0], endX[0]);
+				if (result >= 0)
+					return;
+				this.set(0, newStartX, newStartY, newEndX, newEndY, newLength, newLineDef);
+				// sift down
+				position = 0;
+				while (true) {
+					int child = position * 2 + 1;
+					if (child >= size)
+						break;
+					if (child + 1 < size && this.compare(child + 1, child) > 0)
+						child++;
+					if (this.compare(child, position) <= 0)
+						break;
+					this.swap(position, child);
+					position = child;
+				}
+			}
+		}
+
+		private int compare(int i, int j) {
+			if (length[i] != length[j])
+				return length[j] - length[i];
+			return compare(startY[i], startX[i], endY[i], endX[i], startY[j], startX[j], endY[j], endX[j]);
+		}
+
+		private static int compare(int startY1, int startX1, int endY1, int endX1, int startY2, int startX2, int endY2, int endX2) {
+			if (startY1 != startY2)
+				return startY1 - startY2;
+			if (startX1 != startX2)
+				return startX1 - startX2;
+			if (endY1 != endY2)
+				return endY1 - endY2;
+			return endX1 - endX2;
+		}
+
+		private void set(int i, int newStartX, int newStartY, int newEndX, int newEndY, int newLength, int newLineDef) {
+			startX[i] = newStartX;
+			startY[i] = newStartY;
+			endX[i] = newEndX;
+			endY[i] = newEndY;
+			length[i] = newLength;
+			lineDef[i] = newLineDef;
+		}
+
+		private void swap(int i, int j) {
+			int newStartX = startX[i];
+			int newStartY = startY[i];
+			int newEndX = endX[i];
+			int newEndY = endY[i];
+			int newLength = length[i];
+			int newLineDef = lineDef[i];
+			this.set(i, startX[j], startY[j], endX[j], endY[j], length[j], lineDef[j]);
+			this.set(j, newStartX, newStartY, newEndX, newEndY, newLength, newLineDef);
+		}
+	}
+
 	/**
 	 * Get the line segments going from a particular point in the outline to an
 	 * opposite edge.
@@ -201,33 +473,7 @@ public class Vectorizer {
 	List<LineDefinition> getLineDefinitions() {
 		if (this.lineDefinitions == null) {
 			lineDefinitions = new ArrayList<LineDefinition>();
-			List<List<Integer>> stepList = new ArrayList<List<Integer>>();
-			for (int i = 0; i < 64; i += 64 / LINE_DEFS_PER_SECTOR) {
-				List<Integer> line = new ArrayList<Integer>();
-
-				if (i == 0) {
-					line.add(0);
-				} else {
-					double slope = 64.0 / i;
-					double currentSpot = slope;
-					int currentPixelCount = 0;
-					while (currentSpot <= 64) {
-						int newPixelCount = (int) Math.floor(currentSpot);
-						int diff = newPixelCount - currentPixelCount;
-						line.add(diff);
-						currentPixelCount = newPixelCount;
-						currentSpot += slope;
-					}
-				}
-				if (LOG.isDebugEnabled()) {
-					String lineDefText = "{";
-					for (int j = 0; j < line.size(); j++)
-						lineDefText += line.get(j);
-					lineDefText += "}";
-					LOG.debug("Line " + i + ": " + lineDefText);
-				}
-				stepList.add(line);
-			}
+			List<List<Integer>> stepList = getStepList();
 
 			int index = 0;
 			for (int sector = 0; sector < 4; sector++) {
@@ -242,6 +488,40 @@ public class Vectorizer {
 		return this.lineDefinitions;
 	}
 
+	/**
+	 * The steps for each line definition within a single sector.
+	 */
+	private static List<List<Integer>> getStepList() {
+		List<List<Integer>> stepList = new ArrayList<List<Integer>>();
+		for (int i = 0; i < 64; i += 64 / LINE_DEFS_PER_SECTOR) {
+			List<Integer> line = new ArrayList<Integer>();
+
+			if (i == 0) {
+				line.add(0);
+			} else {
+				double slope = 64.0 / i;
+				double currentSpot = slope;
+				int currentPixelCount = 0;
+				while (currentSpot <= 64) {
+					int newPixelCount = (int) Math.floor(currentSpot);
+					int diff = newPixelCount - currentPixelCount;
+					line.add(diff);
+					currentPixelCount = newPixelCount;
+					currentSpot += slope;
+				}
+			}
+			if (LOG.isDebugEnabled()) {
+				String lineDefText = "{";
+				for (int j = 0; j < line.size(); j++)
+					lineDefText += line.get(j);
+				lineDefText += "}";
+				LOG.debug("Line " + i + ": " + lineDefText);
+			}
+			stepList.add(line);
+		}
+		return stepList;
+	}
+
 	private List<LineSegment> combineSegments(Shape shape, List<LineSegment> lineSegments) {
 		// get rid of overlapping segments
 		List<LineSegment> lineSegmentsToDelete = new ArrayList<LineSegment>();
@@ -316,4 +596,15 @@ public class Vectorizer {
 		this.whiteGapFillFactor = whiteGapFillFactor;
 	}
 
+	/**
+	 * Whether to use the fast mode, giving identical results. Default is false.
+	 */
+	public boolean isFastMode() {
+		return fastMode;
+	}
+
+	public void setFastMode(boolean fastMode) {
+		this.fastMode = fastMode;
+	}
+
 }
@@ -30,17 +30,33 @@ import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
  *
  */
 abstract class AbstractShapeFeature<Y> extends AbstractCachableFeature<ShapeWrapper,Y> implements ShapeFeature<Y> {
+	private volatile int cacheSlot = -1;
 
 	@Override
 	protected FeatureResult<Y> checkInCache(ShapeWrapper shapeWrapper, RuntimeEnvironment env) {
 		Shape shape = shapeWrapper.getShape();
+		if (env.getKey().length() == 0)
+			return shape.getResultFromCache(this.getCacheSlot());
 		return shape.getResultFromCache(this, env);
 	}
 
 	@Override
 	protected void putInCache(ShapeWrapper shapeWrapper, FeatureResult<Y> featureResult, RuntimeEnvironment env) {
 		Shape shape = shapeWrapper.getShape();
-		shape.putResultInCache(this, featureResult, env);
+		if (env.getKey().length() == 0)
+			shape.putResultInCache(this.getCacheSlot(), featureResult);
+		else
+			shape.putResultInCache(this, featureResult, env);
+	}
+
+	/**
+	 * The slot in which this feature's results are cached, assigned the first
+	 * time it is needed, once the feature's name is final.
+	 */
+	int getCacheSlot() {
+		if (cacheSlot < 0)
+			cacheSlot = ShapeFeatureSlots.getSlot(this.getName());
+		return cacheSlot;
 	}
 	
 }
@@ -0,0 +1,47 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics.features;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Assigns each distinct shape feature name a small integer slot, under which
+ * its results are cached for each shape. Features with the same name share
+ * the same slot, just as they shared the same cached result when results were
+ * keyed by name.
+ *
+ * @author Assaf Urieli
+ *
+ */
+final class ShapeFeatureSlots {
+	private static final TObjectIntMap<String> slots = new TObjectIntHashMap<String>(64, 0.5f, -1);
+
+	private ShapeFeatureSlots() {
+	}
+
+	public static synchronized int getSlot(String featureName) {
+		int slot = slots.get(featureName);
+		if (slot < 0) {
+			slot = slots.size();
+			slots.put(featureName, slot);
+		}
+		return slot;
+	}
+}
@@ -36,6 +36,7 @@ import com.joliciel.jochre.graphics.GroupOfShapes;
 import com.joliciel.jochre.graphics.JochreCorpusGroupReader;
 import com.joliciel.jochre.graphics.Shape;
 import com.joliciel.jochre.letterGuesser.features.LetterFeature;
+import com.joliciel.jochre.training.ClassificationEventCache;
 import com.joliciel.talismane.machineLearning.ClassificationEvent;
 import com.joliciel.talismane.machineLearning.ClassificationEventStream;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
@@ -54,6 +55,7 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 	private LetterSequence history = null;
 
 	private JochreCorpusGroupReader groupReader;
+	private boolean initialised = false;
 	private ShapeSequence shapeSequence = null;
 	private final LetterValidator letterValidator;
 
@@ -62,6 +64,10 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 	private final CorpusSelectionCriteria criteria;
 	private final JochreSession jochreSession;
 
+	private ClassificationEventCache featureCache = null;
+	private ClassificationEventStream cacheReader = null;
+	private ClassificationEventCache.CacheWriter cacheWriter = null;
+
 	/**
 	 * Constructor.
 	 * 
@@ -81,8 +87,22 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 		this.criteria = criteria;
 	}
 
+	/**
+	 * Constructor for reading events from an existing group reader, whose
+	 * selection criteria are used to describe this stream.
+	 */
+	public JochreLetterEventStream(Set<LetterFeature<?>> features, BoundaryDetector boundaryDetector, LetterValidator letterValidator,
+			JochreCorpusGroupReader groupReader, JochreSession jochreSession) {
+		this(features, boundaryDetector, letterValidator, groupReader.getSelectionCriteria(), jochreSession);
+		this.groupReader = groupReader;
+	}
+
 	@Override
 	public ClassificationEvent next() {
+		this.initialiseStream();
+		if (cacheReader != null)
+			return cacheReader.next();
+
 		ClassificationEvent event = null;
 		if (this.hasNext()) {
 			Shape shape = shapeInSequence.getShape();
@@ -105,6 +125,8 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 			String outcome = shape.getLetter();
 
 			event = new ClassificationEvent(featureResults, outcome);
+			if (cacheWriter != null)
+				cacheWriter.write(event);
 
 			history.getLetters().add(outcome);
 			// set shape to null so that hasNext can retrieve the next one.
@@ -116,6 +138,8 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 	@Override
 	public boolean hasNext() {
 		this.initialiseStream();
+		if (cacheReader != null)
+			return cacheReader.hasNext();
 
 		while (shapeInSequence == null && shapeSequence != null) {
 			while (shapeInSequence == null && shapeIndex < shapeSequence.size()) {
@@ -144,6 +168,8 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 
 		if (shapeInSequence == null) {
 			LOG.debug("invalidLetterCount: " + invalidLetterCount);
+			if (cacheWriter != null)
+				cacheWriter.commit();
 		}
 		return shapeInSequence != null;
 	}
@@ -171,9 +197,21 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 	}
 
 	void initialiseStream() {
-		if (groupReader == null) {
-			groupReader = new JochreCorpusGroupReader(jochreSession);
-			groupReader.setSelectionCriteria(criteria);
+		if (featureCache != null && cacheReader == null && cacheWriter == null) {
+			if (featureCache.exists()) {
+				cacheReader = featureCache.getReader(this.getAttributes());
+				return;
+			}
+			cacheWriter = featureCache.getWriter();
+		}
+		if (cacheReader != null)
+			return;
+		if (!initialised) {
+			if (groupReader == null) {
+				groupReader = new JochreCorpusGroupReader(jochreSession);
+				groupReader.setSelectionCriteria(criteria);
+			}
+			initialised = true;
 			this.getNextGroup();
 		}
 	}
@@ -191,4 +229,18 @@ public class JochreLetterEventStream implements ClassificationEventStream {
 		return criteria;
 	}
 
+	/**
+	 * An on-disk cache of this stream's events. If the cache already exists,
+	 * events are replayed from it without reading the corpus or calculating
+	 * features. Otherwise, events are written to the cache as they are
+	 * generated, and the cache is completed when the stream is exhausted.
+	 */
+	public ClassificationEventCache getFeatureCache() {
+		return featureCache;
+	}
+
+	public void setFeatureCache(ClassificationEventCache featureCache) {
+		this.featureCache = featureCache;
+	}
+
 }
@@ -25,9 +25,13 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.joliciel.jochre.JochreSession;
 import com.joliciel.jochre.boundaries.ShapeInSequence;
 import com.joliciel.jochre.graphics.Shape;
 import com.joliciel.jochre.letterGuesser.features.LetterFeature;
+import com.joliciel.jochre.machineLearning.CompiledClassificationModel;
+import com.joliciel.jochre.machineLearning.CompiledModelScorer;
+import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
@@ -45,13 +49,39 @@ public class LetterGuesser {
 	private static final double MIN_PROB_TO_STORE = 0.001;
 
 	private final DecisionMaker decisionMaker;
+	private final CompiledClassificationModel compiledModel;
+	private final ThreadLocal<CompiledModelScorer> scorers;
 	private final Set<LetterFeature<?>> features;
 
 	public LetterGuesser(Set<LetterFeature<?>> features, DecisionMaker decisionMaker) {
 		this.decisionMaker = decisionMaker;
+		this.compiledModel = null;
+		this.scorers = null;
 		this.features = features;
 	}
 
+	/**
+	 * Guess letters using the letter model provided, compiled for dense
+	 * scoring if the session requests it, and using the model's decision
+	 * maker otherwise.
+	 */
+	public LetterGuesser(Set<LetterFeature<?>> features, ClassificationModel letterModel, JochreSession jochreSession) {
+		this.features = features;
+		this.compiledModel = jochreSession.getCompiledModel(letterModel);
+		if (compiledModel == null) {
+			this.decisionMaker = letterModel.getDecisionMaker();
+			this.scorers = null;
+		} else {
+			this.decisionMaker = null;
+			this.scorers = new ThreadLocal<CompiledModelScorer>() {
+				@Override
+				protected CompiledModelScorer initialValue() {
+					return compiledModel.getScorer();
+				}
+			};
+		}
+	}
+
 	public String guessLetter(ShapeInSequence shapeInSequence) {
 		return this.guessLetter(shapeInSequence, null);
 	}
@@ -83,15 +113,23 @@ public class LetterGuesser {
 			}
 		}
 
-		List<Decision> letterGuesses = decisionMaker.decide(featureResults);
-
 		// store outcomes
 		String bestOutcome = null;
 		shape.getLetterGuesses().clear();
 
-		for (Decision letterGuess : letterGuesses) {
-			if (letterGuess.getProbability() >= MIN_PROB_TO_STORE) {
-				shape.getLetterGuesses().add(letterGuess);
+		if (compiledModel != null) {
+			CompiledModelScorer scorer = scorers.get();
+			int guessCount = scorer.score(featureResults, compiledModel.getOutcomeCount(), MIN_PROB_TO_STORE);
+			for (int i = 0; i < guessCount; i++) {
+				shape.getLetterGuesses().add(new Decision(scorer.getOutcome(i), scorer.getProbability(i)));
+			}
+		} else {
+			List<Decision> letterGuesses = decisionMaker.decide(featureResults);
+
+			for (Decision letterGuess : letterGuesses) {
+				if (letterGuess.getProbability() >= MIN_PROB_TO_STORE) {
+					shape.getLetterGuesses().add(letterGuess);
+				}
 			}
 		}
 
@@ -0,0 +1,428 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.machineLearning;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.joliciel.jochre.utils.JochreException;
+import com.joliciel.talismane.machineLearning.ClassificationModel;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.linearsvm.LinearSVMModel;
+import com.joliciel.talismane.machineLearning.linearsvm.LinearSVMOneVsRestModel;
+import com.joliciel.talismane.machineLearning.maxent.MaximumEntropyModel;
+import com.joliciel.talismane.utils.WeightedOutcome;
+
+import de.bwaldvogel.liblinear.Model;
+import gnu.trove.map.TObjectIntMap;
+import opennlp.model.Context;
+import opennlp.model.IndexHashTable;
+import opennlp.maxent.GISModel;
+
+/**
+ * A classification model compiled into a dense weight matrix, with one row
+ * per feature and one column per score, and integer feature indexes assigned
+ * when the model is compiled.<br/>
+ * Scoring gives the same probabilities as the model's own
+ * {@link com.joliciel.talismane.machineLearning.DecisionMaker}, except that
+ * weights are stored as floats, so that probabilities can differ in the 7th
+ * significant digit.<br/>
+ * Maximum entropy (GIS) and linear SVM models (including one-vs-rest) are
+ * supported. Perceptron models keep their parameters hidden from outside
+ * code, and cannot be compiled.<br/>
+ * A compiled model is immutable and can be shared between threads: all
+ * scoring buffers are held by the {@link CompiledModelScorer}.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public final class CompiledClassificationModel {
+	/**
+	 * How raw scores are transformed into probabilities.
+	 */
+	public enum ModelType {
+		/**
+		 * Exponentiate each score, and divide by the total.
+		 */
+		MAXENT,
+		/**
+		 * Logistic function on each score, normalised across outcomes if there
+		 * are more than two.
+		 */
+		LINEAR_SVM,
+		/**
+		 * Logistic function on each score, with no normalisation across
+		 * outcomes.
+		 */
+		LINEAR_SVM_ONE_VS_REST
+	}
+
+	private final ModelType modelType;
+	private final List<String> featureDescriptors;
+	private final String[] outcomes;
+	private final int[] outcomeOrder;
+	private final Map<String, Integer> featureIndexes;
+	private final int columnCount;
+	private final float[] weights;
+	private final float[] offsets;
+	private final double uniformProbability;
+
+	private CompiledClassificationModel(ModelType modelType, List<String> featureDescriptors, String[] outcomes, Map<String, Integer> featureIndexes,
+			int columnCount, float[] weights, float[] offsets, double uniformProbability) {
+		this.modelType = modelType;
+		this.featureDescriptors = featureDescriptors;
+		this.outcomes = outcomes;
+		this.featureIndexes = featureIndexes;
+		this.columnCount = columnCount;
+		this.weights = weights;
+		this.offsets = offsets;
+		this.uniformProbability = uniformProbability;
+
+		// the rank of each outcome in alphabetical order, used to break ties
+		// in the same way as Decision.compareTo
+		Integer[] sorted = new Integer[outcomes.length];
+		for (int i = 0; i < outcomes.length; i++)
+			sorted[i] = i;
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return CompiledClassificationModel.this.outcomes[o1].compareTo(CompiledClassificationModel.this.outcomes[o2]);
+			}
+		});
+		this.outcomeOrder = new int[outcomes.length];
+		for (int i = 0; i < sorted.length; i++)
+			outcomeOrder[sorted[i]] = i;
+	}
+
+	/**
+	 * Can the model provided be compiled?
+	 */
+	public static boolean isSupported(ClassificationModel model) {
+		if (model instanceof MaximumEntropyModel)
+			return ((MaximumEntropyModel) model).getModel() instanceof GISModel;
+		return model instanceof LinearSVMModel || model instanceof LinearSVMOneVsRestModel;
+	}
+
+	/**
+	 * Compile the model provided.
+	 *
+	 * @throws JochreException
+	 *             if this type of model cannot be compiled
+	 */
+	public static CompiledClassificationModel compile(ClassificationModel model) {
+		if (model instanceof MaximumEntropyModel)
+			return compileMaxent((MaximumEntropyModel) model);
+		if (model instanceof LinearSVMModel)
+			return compileLinearSVM((LinearSVMModel) model);
+		if (model instanceof LinearSVMOneVsRestModel)
+			return compileLinearSVMOneVsRest((LinearSVMOneVsRestModel) model);
+		throw new JochreException("Cannot compile classification model of type " + model.getClass().getSimpleName());
+	}
+
+	private static CompiledClassificationModel compileMaxent(MaximumEntropyModel model) {
+		if (!(model.getModel() instanceof GISModel))
+			throw new JochreException("Cannot compile maxent model of type " + model.getModel().getClass().getSimpleName());
+		GISModel gisModel = (GISModel) model.getModel();
+		Object[] dataStructures = gisModel.getDataStructures();
+		Context[] params = (Context[]) dataStructures[0];
+		@SuppressWarnings("unchecked")
+		IndexHashTable<String> pmap = (IndexHashTable<String>) dataStructures[1];
+		String[] outcomeNames = (String[]) dataStructures[2];
+		double correctionConstant = ((Integer) dataStructures[3]).doubleValue();
+		double correctionParam = ((Double) dataStructures[4]).doubleValue();
+		double constantInverse = 1.0 / correctionConstant;
+
+		int columnCount = outcomeNames.length;
+		String[] predicates = pmap.toArray(new String[pmap.size()]);
+		Map<String, Integer> featureIndexes = new HashMap<String, Integer>(predicates.length * 2);
+		float[] weights = new float[predicates.length * columnCount];
+
+		// GIS adds a correction of (1 - featureCount / correctionConstant) *
+		// correctionParam for each outcome, where featureCount is the number of
+		// features with a parameter for the outcome. The constant part cancels
+		// out on normalisation, leaving an offset for each parameter.
+		float[] offsets = null;
+		if (correctionParam != 0)
+			offsets = new float[predicates.length * columnCount];
+
+		for (String predicate : predicates) {
+			int row = pmap.get(predicate);
+			featureIndexes.put(predicate, row);
+			Context context = params[row];
+			int[] activeOutcomes = context.getOutcomes();
+			double[] parameters = context.getParameters();
+			for (int i = 0; i < activeOutcomes.length; i++) {
+				weights[row * columnCount + activeOutcomes[i]] = (float) (parameters[i] * constantInverse);
+				if (offsets != null)
+					offsets[row * columnCount + activeOutcomes[i]] = (float) (-correctionParam / correctionConstant);
+			}
+		}
+
+		return new CompiledClassificationModel(ModelType.MAXENT, model.getFeatureDescriptors(), outcomeNames, featureIndexes, columnCount, weights, offsets,
+				0.0);
+	}
+
+	private static CompiledClassificationModel compileLinearSVM(LinearSVMModel model) {
+		// the liblinear model itself is not exposed, so we read it back from
+		// the model's serialised form
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		model.writeModelToStream(bos);
+		Model liblinearModel;
+		try (Reader reader = new InputStreamReader(new ByteArrayInputStream(bos.toByteArray()), StandardCharsets.UTF_8)) {
+			liblinearModel = Model.load(reader);
+		} catch (IOException e) {
+			throw new JochreException(e);
+		}
+
+		List<String> outcomeList = model.getOutcomes();
+		int[] labels = liblinearModel.getLabels();
+		String[] outcomes = new String[labels.length];
+		for (int i = 0; i < labels.length; i++)
+			outcomes[i] = outcomeList.get(i);
+
+		double[] w = liblinearModel.getFeatureWeights();
+		int rowCount = getRowCount(liblinearModel);
+		int columnCount = w.length / rowCount;
+
+		Map<String, Integer> featureIndexes = getFeatureIndexes(model.getFeatureIndexMap(), rowCount);
+		float[] weights = new float[w.length];
+		for (int i = 0; i < w.length; i++)
+			weights[i] = (float) w[i];
+
+		return new CompiledClassificationModel(ModelType.LINEAR_SVM, model.getFeatureDescriptors(), outcomes, featureIndexes, columnCount, weights, null,
+				getUniformProbability(outcomeList));
+	}
+
+	private static CompiledClassificationModel compileLinearSVMOneVsRest(LinearSVMOneVsRestModel model) {
+		List<Model> models = model.getModels();
+		int rowCount = 0;
+		for (Model liblinearModel : models) {
+			if (liblinearModel.getNrClass() != 2 || liblinearModel.getFeatureWeights().length != getRowCount(liblinearModel))
+				throw new JochreException("Cannot compile one-vs-rest model containing a model which is not binary");
+			rowCount = Math.max(rowCount, getRowCount(liblinearModel));
+		}
+
+		List<String> outcomeList = model.getOutcomes();
+		String[] outcomes = new String[models.size()];
+		int columnCount = models.size();
+		float[] weights = new float[rowCount * columnCount];
+		for (int column = 0; column < columnCount; column++) {
+			outcomes[column] = outcomeList.get(column);
+			Model liblinearModel = models.get(column);
+			// the logistic function on the raw score gives the probability of
+			// the first label: we want the probability of label 1
+			int[] labels = liblinearModel.getLabels();
+			float sign = labels[0] == 1 || labels[1] != 1 ? 1 : -1;
+			double[] w = liblinearModel.getFeatureWeights();
+			for (int row = 0; row < w.length; row++)
+				weights[row * columnCount + column] = (float) (sign * w[row]);
+		}
+
+		Map<String, Integer> featureIndexes = getFeatureIndexes(model.getFeatureIndexMap(), rowCount);
+
+		return new CompiledClassificationModel(ModelType.LINEAR_SVM_ONE_VS_REST, model.getFeatureDescriptors(), outcomes, featureIndexes, columnCount,
+				weights, null, getUniformProbability(outcomeList));
+	}
+
+	/**
+	 * The number of weight rows in a liblinear model, including the bias row
+	 * if any.
+	 */
+	private static int getRowCount(Model liblinearModel) {
+		return liblinearModel.getBias() >= 0 ? liblinearModel.getNrFeature() + 1 : liblinearModel.getNrFeature();
+	}
+
+	private static Map<String, Integer> getFeatureIndexes(TObjectIntMap<String> featureIndexMap, int rowCount) {
+		Map<String, Integer> featureIndexes = new HashMap<String, Integer>(featureIndexMap.size() * 2);
+		for (String featureName : featureIndexMap.keySet()) {
+			// liblinear indexes start at 1, and are ignored beyond the model's
+			// weights
+			int index = featureIndexMap.get(featureName);
+			if (index >= 1 && index <= rowCount)
+				featureIndexes.put(featureName, index - 1);
+		}
+		return featureIndexes;
+	}
+
+	private static double getUniformProbability(List<String> outcomes) {
+		// as in the linear SVM decision makers, which use integer division
+		return 1 / outcomes.size();
+	}
+
+	public ModelType getModelType() {
+		return modelType;
+	}
+
+	/**
+	 * The feature descriptors of the original model.
+	 */
+	public List<String> getFeatureDescriptors() {
+		return featureDescriptors;
+	}
+
+	/**
+	 * The number of outcomes which get a probability when scoring.
+	 */
+	public int getOutcomeCount() {
+		return outcomes.length;
+	}
+
+	public String getOutcome(int outcomeIndex) {
+		return outcomes[outcomeIndex];
+	}
+
+	/**
+	 * The rank of this outcome in alphabetical order, used to order outcomes
+	 * with equal probabilities.
+	 */
+	int getOutcomeOrder(int outcomeIndex) {
+		return outcomeOrder[outcomeIndex];
+	}
+
+	/**
+	 * All outcomes in index order.
+	 */
+	public List<String> getOutcomes() {
+		return Collections.unmodifiableList(Arrays.asList(outcomes));
+	}
+
+	/**
+	 * The index of the feature with the training name provided, or -1 if the
+	 * model doesn't know this feature.
+	 */
+	public int getFeatureIndex(String trainingName) {
+		Integer index = featureIndexes.get(trainingName);
+		if (index == null)
+			return -1;
+		return index;
+	}
+
+	/**
+	 * Fill the vector with the feature results provided, following the same
+	 * naming conventions as were used for training.
+	 */
+	public void vectorize(List<FeatureResult<?>> featureResults, FeatureVector vector) {
+		vector.clear();
+		for (FeatureResult<?> featureResult : featureResults) {
+			Object outcome = featureResult.getOutcome();
+			if (outcome instanceof List) {
+				@SuppressWarnings("unchecked")
+				List<WeightedOutcome<String>> weightedOutcomes = (List<WeightedOutcome<String>>) outcome;
+				for (WeightedOutcome<String> weightedOutcome : weightedOutcomes) {
+					String name = featureResult.getTrainingName() + "|" + featureResult.getTrainingOutcome(weightedOutcome.getOutcome());
+					this.addValue(vector, this.getFeatureIndex(name), weightedOutcome.getWeight());
+				}
+			} else if (outcome instanceof Double) {
+				this.addValue(vector, this.getFeatureIndex(featureResult.getTrainingName()), (Double) outcome);
+			} else {
+				this.addValue(vector, this.getFeatureIndex(featureResult.getTrainingName()), 1.0);
+			}
+		}
+	}
+
+	private void addValue(FeatureVector vector, int index, double value) {
+		// maxent models are evaluated with float values
+		if (modelType == ModelType.MAXENT)
+			vector.add(index, (float) value);
+		else
+			vector.add(index, value);
+	}
+
+	/**
+	 * Write the probability of each outcome to the array provided, which must
+	 * have at least {@link #getOutcomeCount()} elements.
+	 */
+	public void score(FeatureVector vector, double[] probabilities) {
+		int outcomeCount = outcomes.length;
+		if (modelType != ModelType.MAXENT && vector.size() == 0) {
+			Arrays.fill(probabilities, 0, outcomeCount, uniformProbability);
+			return;
+		}
+
+		Arrays.fill(probabilities, 0, columnCount, 0.0);
+		for (int i = 0; i < vector.size(); i++) {
+			int base = vector.getIndex(i) * columnCount;
+			double value = vector.getValue(i);
+			for (int j = 0; j < columnCount; j++)
+				probabilities[j] += weights[base + j] * value;
+			if (offsets != null) {
+				for (int j = 0; j < columnCount; j++)
+					probabilities[j] += offsets[base + j];
+			}
+		}
+
+		switch (modelType) {
+		case MAXENT: {
+			double max = Double.NEGATIVE_INFINITY;
+			for (int j = 0; j < outcomeCount; j++)
+				max = Math.max(max, probabilities[j]);
+			double total = 0.0;
+			for (int j = 0; j < outcomeCount; j++) {
+				probabilities[j] = Math.exp(probabilities[j] - max);
+				total += probabilities[j];
+			}
+			for (int j = 0; j < outcomeCount; j++)
+				probabilities[j] /= total;
+			break;
+		}
+		case LINEAR_SVM: {
+			if (columnCount == 1 && outcomeCount == 2) {
+				probabilities[0] = logistic(probabilities[0]);
+				probabilities[1] = 1.0 - probabilities[0];
+			} else {
+				double total = 0.0;
+				for (int j = 0; j < outcomeCount; j++) {
+					probabilities[j] = logistic(probabilities[j]);
+					total += probabilities[j];
+				}
+				for (int j = 0; j < outcomeCount; j++)
+					probabilities[j] /= total;
+			}
+			break;
+		}
+		case LINEAR_SVM_ONE_VS_REST: {
+			for (int j = 0; j < outcomeCount; j++)
+				probabilities[j] = logistic(probabilities[j]);
+			break;
+		}
+		}
+	}
+
+	private static double logistic(double score) {
+		return 1.0 / (1.0 + Math.exp(-score));
+	}
+
+	/**
+	 * A new scorer for this model, which should be used by a single thread at
+	 * a time.
+	 */
+	public CompiledModelScorer getScorer() {
+		return new CompiledModelScorer(this);
+	}
+}
@@ -0,0 +1,130 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.machineLearning;
+
+import java.util.List;
+
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+
+/**
+ * Scores feature vectors against a {@link CompiledClassificationModel},
+ * re-using the same buffers for each call.<br/>
+ * After scoring, the top outcomes are available by rank, from the most
+ * probable downwards, in the same order as the decisions returned by the
+ * model's decision maker.<br/>
+ * A scorer is not thread-safe: each thread needs its own.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public final class CompiledModelScorer {
+	private final CompiledClassificationModel model;
+	private final FeatureVector vector = new FeatureVector();
+	private final double[] probabilities;
+	private final int[] ranking;
+	private int rankedCount = 0;
+
+	CompiledModelScorer(CompiledClassificationModel model) {
+		this.model = model;
+		this.probabilities = new double[model.getOutcomeCount()];
+		this.ranking = new int[model.getOutcomeCount()];
+	}
+
+	/**
+	 * Score the feature results provided.
+	 *
+	 * @see #score(FeatureVector, int, double)
+	 */
+	public int score(List<FeatureResult<?>> featureResults, int maxOutcomes, double minProbability) {
+		model.vectorize(featureResults, vector);
+		return this.score(vector, maxOutcomes, minProbability);
+	}
+
+	/**
+	 * Score the feature vector provided, and rank the top outcomes.
+	 *
+	 * @param maxOutcomes
+	 *            the maximum number of outcomes to rank
+	 * @param minProbability
+	 *            outcomes below this probability are not ranked
+	 * @return the number of outcomes ranked
+	 */
+	public int score(FeatureVector vector, int maxOutcomes, double minProbability) {
+		model.score(vector, probabilities);
+
+		int limit = Math.min(maxOutcomes, ranking.length);
+		rankedCount = 0;
+		for (int i = 0; i < probabilities.length; i++) {
+			if (probabilities[i] < minProbability)
+				continue;
+			// insertion into the ranking, if it beats the last ranked outcome
+			int position = rankedCount;
+			while (position > 0 && this.isBefore(i, ranking[position - 1]))
+				position--;
+			if (position >= limit)
+				continue;
+			int last = rankedCount < limit ? rankedCount : limit - 1;
+			for (int j = last; j > position; j--)
+				ranking[j] = ranking[j - 1];
+			ranking[position] = i;
+			if (rankedCount < limit)
+				rankedCount++;
+		}
+		return rankedCount;
+	}
+
+	private boolean isBefore(int outcome, int otherOutcome) {
+		if (probabilities[outcome] != probabilities[otherOutcome])
+			return probabilities[outcome] > probabilities[otherOutcome];
+		return model.getOutcomeOrder(outcome) < model.getOutcomeOrder(otherOutcome);
+	}
+
+	/**
+	 * The number of outcomes ranked by the last call to score.
+	 */
+	public int getRankedCount() {
+		return rankedCount;
+	}
+
+	/**
+	 * The outcome at a given rank, where 0 is the most probable.
+	 */
+	public String getOutcome(int rank) {
+		return model.getOutcome(ranking[rank]);
+	}
+
+	/**
+	 * The probability of the outcome at a given rank.
+	 */
+	public double getProbability(int rank) {
+		return probabilities[ranking[rank]];
+	}
+
+	/**
+	 * The probability of a given outcome index, for all outcomes, including
+	 * those which weren't ranked.
+	 */
+	public double getOutcomeProbability(int outcomeIndex) {
+		return probabilities[outcomeIndex];
+	}
+
+	public CompiledClassificationModel getModel() {
+		return model;
+	}
+}
@@ -0,0 +1,82 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.machineLearning;
+
+import java.util.Arrays;
+
+/**
+ * A sparse vector of feature values, where each feature is identified by the
+ * integer index assigned to it by a {@link CompiledClassificationModel}.<br/>
+ * The vector is meant to be cleared and re-used for each classification, and
+ * only grows its buffers when it receives more features than ever before.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public final class FeatureVector {
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] indexes;
+	private double[] values;
+	private int size = 0;
+
+	public FeatureVector() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public FeatureVector(int capacity) {
+		this.indexes = new int[capacity];
+		this.values = new double[capacity];
+	}
+
+	/**
+	 * Add a feature value. Features with a negative index (unknown to the
+	 * model) are ignored.
+	 */
+	public void add(int index, double value) {
+		if (index < 0)
+			return;
+		if (size == indexes.length) {
+			indexes = Arrays.copyOf(indexes, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		indexes[size] = index;
+		values[size] = value;
+		size++;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * The number of features currently in the vector.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getIndex(int i) {
+		return indexes[i];
+	}
+
+	public double getValue(int i) {
+		return values[i];
+	}
+}
@@ -1,134 +1,173 @@
 package com.joliciel.jochre.output;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.Writer;
-import java.util.HashMap;
-import java.util.Map;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import javax.xml.stream.XMLStreamException;
 
 import com.joliciel.jochre.doc.DocumentObserver;
 import com.joliciel.jochre.doc.JochreDocument;
 import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.graphics.GroupOfShapes;
 import com.joliciel.jochre.graphics.JochreImage;
-
-import freemarker.cache.NullCacheStorage;
-import freemarker.template.Configuration;
-import freemarker.template.DefaultObjectWrapperBuilder;
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.Version;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.Shape;
 
 /**
  * Outputs to the XML spec indicated by http://finereader.abbyy.com/
  **/
-public class AbbyyFineReader8Exporter extends AbstractExporter implements DocumentObserver {
-	private static final Logger LOG = LoggerFactory.getLogger(AbbyyFineReader8Exporter.class);
-	private Template template;
+public class AbbyyFineReader8Exporter extends AbstractXMLExporter implements DocumentObserver {
+	private static final String ABBYY_NAMESPACE = "http://www.abbyy.com/FineReader_xml/FineReader6-schema-v1.xml";
+	private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
 	private boolean firstPage = true;
 
-	JochreImage jochreImage = null;
-
 	public AbbyyFineReader8Exporter(File outDir) {
 		super(outDir, "_abbyy8.xml");
-		this.initialize();
 	}
 
 	public AbbyyFineReader8Exporter(Writer writer) {
 		super(writer);
-		this.initialize();
-	}
-
-	private void initialize() {
-		try {
-			Configuration cfg = new Configuration(new Version(2, 3, 23));
-			cfg.setCacheStorage(new NullCacheStorage());
-			cfg.setObjectWrapper(new DefaultObjectWrapperBuilder(new Version(2, 3, 23)).build());
-
-			Reader templateReader = new BufferedReader(new InputStreamReader(AltoXMLExporter.class.getResourceAsStream("abbyy_8.ftl")));
-			this.template = new Template("freemarkerTemplate", templateReader, cfg);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
 	}
 
 	@Override
-	public void onImageStart(JochreImage jochreImage) {
-		this.jochreImage = jochreImage;
-	}
-
-	void process(Map<String, Object> model) {
-		try {
-			template.process(model, writer);
-			writer.flush();
-		} catch (TemplateException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
+	protected void writeDocumentStart(JochreDocument jochreDocument) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.setDefaultNamespace(ABBYY_NAMESPACE);
+		xmlWriter.writeStartElement(ABBYY_NAMESPACE, "document");
+		xmlWriter.writeDefaultNamespace(ABBYY_NAMESPACE);
+		xmlWriter.writeNamespace("xsi", XSI_NAMESPACE);
+		xmlWriter.writeAttribute("version", "1.0");
+		xmlWriter.writeAttribute("producer", "Jochre XML Exporter for ABBYY FineReader");
+		writeAttribute(xmlWriter, "pagesCount", jochreDocument.getTotalPageCount());
+		xmlWriter.writeAttribute("xsi", XSI_NAMESPACE, "schemaLocation", ABBYY_NAMESPACE + " " + ABBYY_NAMESPACE);
 	}
 
 	@Override
-	public void onDocumentStartInternal(JochreDocument jochreDocument) {
-		try {
-			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-			writer.write("<document version=\"1.0\" producer=\"Jochre XML Exporter for ABBYY FineReader\"" + " pagesCount=\""
-					+ jochreDocument.getTotalPageCount() + "\"" + " xmlns=\"http://www.abbyy.com/FineReader_xml/FineReader6-schema-v1.xml\""
-					+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
-					+ " xsi:schemaLocation=\"http://www.abbyy.com/FineReader_xml/FineReader6-schema-v1.xml http://www.abbyy.com/FineReader_xml/FineReader6-schema-v1.xml\">\n");
-			writer.flush();
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
+	protected void writePageStart(JochrePage jochrePage) throws XMLStreamException {
+		if (firstPage) {
+			for (int i = 1; i < jochrePage.getIndex(); i++) {
+				newLine(xmlWriter, 0);
+				xmlWriter.writeEmptyElement(ABBYY_NAMESPACE, "page");
+			}
+			firstPage = false;
 		}
-
 	}
 
 	@Override
-	public void onPageStart(JochrePage jochrePage) {
-		try {
-			if (firstPage) {
-				if (jochrePage.getIndex() > 1) {
-					for (int i = 1; i < jochrePage.getIndex(); i++) {
-						writer.write("<page/>\n");
+	protected void writeImage(JochreImage image) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.writeStartElement(ABBYY_NAMESPACE, "page");
+		writeAttribute(xmlWriter, "width", image.getWidth());
+		writeAttribute(xmlWriter, "height", image.getHeight());
+		xmlWriter.writeAttribute("resolution", "600");
+		xmlWriter.writeAttribute("originalCoords", "true");
+
+		// as in the original template, the space preceding each group is
+		// calculated from the previous group on the image, even across rows
+		GroupOfShapes lastGroup = null;
+		for (Paragraph paragraph : image.getParagraphs()) {
+			if (paragraph.isJunk())
+				continue;
+			newLine(xmlWriter, 0);
+			xmlWriter.writeStartElement(ABBYY_NAMESPACE, "block");
+			xmlWriter.writeAttribute("blockType", "Text");
+			writeAttribute(xmlWriter, "l", paragraph.getLeft());
+			writeAttribute(xmlWriter, "t", paragraph.getTop());
+			writeAttribute(xmlWriter, "r", paragraph.getRight());
+			writeAttribute(xmlWriter, "b", paragraph.getBottom());
+			newLine(xmlWriter, 1);
+			xmlWriter.writeStartElement(ABBYY_NAMESPACE, "text");
+			newLine(xmlWriter, 1);
+			xmlWriter.writeStartElement(ABBYY_NAMESPACE, "par");
+			xmlWriter.writeAttribute("lineSpacing", "-1");
+
+			for (RowOfShapes row : paragraph.getRows()) {
+				newLine(xmlWriter, 2);
+				xmlWriter.writeStartElement(ABBYY_NAMESPACE, "line");
+				writeAttribute(xmlWriter, "baseline", row.getBottom());
+				writeAttribute(xmlWriter, "l", row.getLeft());
+				writeAttribute(xmlWriter, "t", row.getTop());
+				writeAttribute(xmlWriter, "r", row.getRight());
+				writeAttribute(xmlWriter, "b", row.getBottom());
+				newLine(xmlWriter, 2);
+				xmlWriter.writeStartElement(ABBYY_NAMESPACE, "formatting");
+				xmlWriter.writeAttribute("lang", "Yiddish");
+				xmlWriter.writeAttribute("ff", "Times New Roman");
+				xmlWriter.writeAttribute("fs", "12.");
+				xmlWriter.writeAttribute("bold", "false");
+				xmlWriter.writeAttribute("spacing", "-1");
+
+				for (GroupOfShapes group : row.getGroups()) {
+					boolean firstShape = true;
+					String fromDictionary = group.getFrequency() > 0 ? "true" : "false";
+					for (Shape shape : group.getCorrectedShapes()) {
+						newLine(xmlWriter, 5);
+						xmlWriter.writeStartElement(ABBYY_NAMESPACE, "charParams");
+						writeAttribute(xmlWriter, "l", shape.getLeft());
+						writeAttribute(xmlWriter, "t", shape.getTop());
+						writeAttribute(xmlWriter, "r", shape.getRight());
+						writeAttribute(xmlWriter, "b", shape.getBottom());
+						xmlWriter.writeAttribute("wordStart", firstShape ? "true" : "false");
+						xmlWriter.writeAttribute("wordFromDictionary", fromDictionary);
+						xmlWriter.writeAttribute("wordNormal", "true");
+						xmlWriter.writeAttribute("wordNumeric", "false");
+						xmlWriter.writeAttribute("wordIdentifier", "false");
+						xmlWriter.writeAttribute("charConfidence", Long.toString(Math.round(shape.getConfidence() * 100.0)));
+						xmlWriter.writeAttribute("serifProbability", "100");
+						xmlWriter.writeAttribute("wordPenalty", "0");
+						writeAttribute(xmlWriter, "meanStrokeWidth", shape.getWidth());
+						xmlWriter.writeCharacters(shape.getLetter());
+						xmlWriter.writeEndElement(); // charParams
+						firstShape = false;
+					}
+
+					if (lastGroup != null) {
+						int spaceLeft = lastGroup.getRight();
+						int spaceRight = group.getLeft();
+						if (lastGroup.getLeft() > group.getLeft()) {
+							spaceLeft = group.getRight();
+							spaceRight = lastGroup.getLeft();
+						}
+						newLine(xmlWriter, 5);
+						xmlWriter.writeStartElement(ABBYY_NAMESPACE, "charParams");
+						writeAttribute(xmlWriter, "l", spaceLeft);
+						writeAttribute(xmlWriter, "t", group.getTop());
+						writeAttribute(xmlWriter, "r", spaceRight);
+						writeAttribute(xmlWriter, "b", group.getBottom());
+						xmlWriter.writeAttribute("wordStart", "false");
+						xmlWriter.writeAttribute("wordFromDictionary", "false");
+						xmlWriter.writeAttribute("wordNormal", "false");
+						xmlWriter.writeAttribute("wordNumeric", "false");
+						xmlWriter.writeAttribute("wordIdentifier", "false");
+						xmlWriter.writeAttribute("charConfidence", "255");
+						xmlWriter.writeAttribute("serifProbability", "255");
+						xmlWriter.writeAttribute("wordPenalty", "0");
+						xmlWriter.writeAttribute("meanStrokeWidth", "0");
+						xmlWriter.writeCharacters(" ");
+						xmlWriter.writeEndElement(); // charParams
 					}
+					lastGroup = group;
 				}
-				firstPage = false;
+				newLine(xmlWriter, 2);
+				xmlWriter.writeEndElement(); // formatting
+				newLine(xmlWriter, 2);
+				xmlWriter.writeEndElement(); // line
 			}
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
+			newLine(xmlWriter, 1);
+			xmlWriter.writeEndElement(); // par
+			newLine(xmlWriter, 1);
+			xmlWriter.writeEndElement(); // text
+			newLine(xmlWriter, 0);
+			xmlWriter.writeEndElement(); // block
 		}
+		newLine(xmlWriter, 0);
+		xmlWriter.writeEndElement(); // page
 	}
 
 	@Override
-	public void onImageComplete(JochreImage jochreImage) {
-		Map<String, Object> model = new HashMap<String, Object>();
-		model.put("image", jochreImage);
-		this.process(model);
-	}
-
-	@Override
-	public void onPageComplete(JochrePage jochrePage) {
-	}
-
-	@Override
-	public void onDocumentCompleteInternal(JochreDocument jochreDocument) {
-		try {
-			writer.write("</document>\n");
-			writer.flush();
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
+	protected void writeDocumentEnd(JochreDocument jochreDocument) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.writeEndElement(); // document
 	}
-	
 }
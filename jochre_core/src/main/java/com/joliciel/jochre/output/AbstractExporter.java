@@ -4,10 +4,12 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -26,6 +28,8 @@ public abstract class AbstractExporter implements DocumentObserver {
 	private final String dateString = format.format(new Date());
 	private boolean includeDate = false;
 	private String baseName = null;
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	private int zipThreads = 1;
 
 	public AbstractExporter(File outputDir, String suffix) {
 		this.outputDir = outputDir;
@@ -51,9 +55,19 @@ public abstract class AbstractExporter implements DocumentObserver {
 				File file = new File(outputDir, fileName);
 				
 				if (suffix.endsWith(".zip")) {
-					ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file, false));
 					ZipEntry zipEntry = new ZipEntry("contents.txt");
-					zos.putNextEntry(zipEntry);
+					OutputStream zos = null;
+					if (zipThreads > 1) {
+						ParallelZipOutputStream parallelZipOutputStream = new ParallelZipOutputStream(new FileOutputStream(file, false), compressionLevel,
+								zipThreads);
+						parallelZipOutputStream.putNextEntry(zipEntry);
+						zos = parallelZipOutputStream;
+					} else {
+						ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file, false));
+						zipOutputStream.setLevel(compressionLevel);
+						zipOutputStream.putNextEntry(zipEntry);
+						zos = zipOutputStream;
+					}
 					this.writer = new BufferedWriter(new OutputStreamWriter(zos, "UTF-8"));
 				} else {
 					this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF8"));
@@ -102,4 +116,29 @@ public abstract class AbstractExporter implements DocumentObserver {
 		this.baseName = baseName;
 	}
 
+	/**
+	 * The deflate compression level for zipped output, from 0 to 9, or -1 for
+	 * the default level.
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * The number of threads used to compress zipped output. If greater than 1,
+	 * output is compressed in independent blocks via a
+	 * {@link ParallelZipOutputStream}.
+	 */
+	public int getZipThreads() {
+		return zipThreads;
+	}
+
+	public void setZipThreads(int zipThreads) {
+		this.zipThreads = zipThreads;
+	}
+
 }
@@ -0,0 +1,196 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.output;
+
+import java.io.File;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.jochre.doc.DocumentObserver;
+import com.joliciel.jochre.doc.JochreDocument;
+import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.utils.JochreException;
+
+/**
+ * An exporter which streams XML directly from the Jochre object model to an
+ * {@link XMLStreamWriter}, one image at a time.<br/>
+ * Output is indented with tabs, one element per line, and only flushed at the
+ * end of the document.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public abstract class AbstractXMLExporter extends AbstractExporter implements DocumentObserver {
+	private static final Logger LOG = LoggerFactory.getLogger(AbstractXMLExporter.class);
+	private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+	private static final String[] INDENTS = new String[16];
+
+	static {
+		String indent = "\n";
+		for (int i = 0; i < INDENTS.length; i++) {
+			INDENTS[i] = indent;
+			indent += "\t";
+		}
+	}
+
+	private final DecimalFormat confidenceFormat = new DecimalFormat("0.0000", DecimalFormatSymbols.getInstance(Locale.US));
+	protected XMLStreamWriter xmlWriter;
+
+	public AbstractXMLExporter(File outputDir, String suffix) {
+		super(outputDir, suffix);
+	}
+
+	public AbstractXMLExporter(Writer writer) {
+		super(writer);
+	}
+
+	@Override
+	protected final void onDocumentStartInternal(JochreDocument jochreDocument) {
+		try {
+			xmlWriter = createXMLStreamWriter(writer);
+			xmlWriter.writeStartDocument("UTF-8", "1.0");
+			this.writeDocumentStart(jochreDocument);
+		} catch (XMLStreamException e) {
+			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
+			throw new JochreException(e);
+		}
+	}
+
+	@Override
+	public void onPageStart(JochrePage jochrePage) {
+		try {
+			this.writePageStart(jochrePage);
+		} catch (XMLStreamException e) {
+			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
+			throw new JochreException(e);
+		}
+	}
+
+	@Override
+	public void onImageStart(JochreImage jochreImage) {
+	}
+
+	@Override
+	public void onImageComplete(JochreImage jochreImage) {
+		try {
+			this.writeImage(jochreImage);
+		} catch (XMLStreamException e) {
+			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
+			throw new JochreException(e);
+		}
+	}
+
+	@Override
+	public void onPageComplete(JochrePage jochrePage) {
+		try {
+			this.writePageEnd(jochrePage);
+		} catch (XMLStreamException e) {
+			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
+			throw new JochreException(e);
+		}
+	}
+
+	@Override
+	protected final void onDocumentCompleteInternal(JochreDocument jochreDocument) {
+		try {
+			this.writeDocumentEnd(jochreDocument);
+			xmlWriter.writeCharacters("\n");
+			xmlWriter.writeEndDocument();
+			xmlWriter.flush();
+			// closing the XML writer does not close the underlying writer
+			xmlWriter.close();
+			xmlWriter = null;
+		} catch (XMLStreamException e) {
+			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
+			throw new JochreException(e);
+		}
+	}
+
+	/**
+	 * Write the root element and any document-level information.
+	 */
+	protected abstract void writeDocumentStart(JochreDocument jochreDocument) throws XMLStreamException;
+
+	protected void writePageStart(JochrePage jochrePage) throws XMLStreamException {
+	}
+
+	protected abstract void writeImage(JochreImage jochreImage) throws XMLStreamException;
+
+	protected void writePageEnd(JochrePage jochrePage) throws XMLStreamException {
+	}
+
+	/**
+	 * Close any elements opened in
+	 * {@link #writeDocumentStart(JochreDocument)}.
+	 */
+	protected abstract void writeDocumentEnd(JochreDocument jochreDocument) throws XMLStreamException;
+
+	/**
+	 * Format a confidence in a scale from 0 to 1 with four decimals,
+	 * independently of the default locale.
+	 */
+	protected String formatConfidence(double confidence) {
+		return confidenceFormat.format(confidence);
+	}
+
+	static XMLStreamWriter createXMLStreamWriter(Writer writer) throws XMLStreamException {
+		return XML_OUTPUT_FACTORY.createXMLStreamWriter(writer);
+	}
+
+	/**
+	 * Start a new line at a given depth, before writing an element.
+	 */
+	static void newLine(XMLStreamWriter xmlWriter, int depth) throws XMLStreamException {
+		if (depth < INDENTS.length) {
+			xmlWriter.writeCharacters(INDENTS[depth]);
+		} else {
+			xmlWriter.writeCharacters(INDENTS[INDENTS.length - 1]);
+			for (int i = INDENTS.length - 1; i < depth; i++)
+				xmlWriter.writeCharacters("\t");
+		}
+	}
+
+	static void writeAttribute(XMLStreamWriter xmlWriter, String name, int value) throws XMLStreamException {
+		xmlWriter.writeAttribute(name, Integer.toString(value));
+	}
+
+	/**
+	 * Left-pad a non-negative integer with zeros to a given number of digits.
+	 */
+	static String zeroPad(int value, int digits) {
+		String string = Integer.toString(value);
+		if (string.length() >= digits)
+			return string;
+		StringBuilder sb = new StringBuilder(digits);
+		for (int i = string.length(); i < digits; i++)
+			sb.append('0');
+		sb.append(string);
+		return sb.toString();
+	}
+}
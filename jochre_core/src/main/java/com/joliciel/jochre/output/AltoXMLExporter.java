@@ -1,132 +1,201 @@
 package com.joliciel.jochre.output;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.HashMap;
-import java.util.Map;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import javax.xml.stream.XMLStreamException;
 
 import com.joliciel.jochre.doc.DocumentObserver;
 import com.joliciel.jochre.doc.JochreDocument;
-import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.graphics.GroupOfShapes;
 import com.joliciel.jochre.graphics.JochreImage;
-
-import freemarker.cache.NullCacheStorage;
-import freemarker.template.Configuration;
-import freemarker.template.DefaultObjectWrapperBuilder;
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.Version;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.Rectangle;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.letterGuesser.LetterSequence;
+import com.joliciel.talismane.utils.CountedOutcome;
 
 /**
  * Outputs to Alto 3.0 XML format, see http://www.loc.gov/standards/alto/
  **/
-public class AltoXMLExporter extends AbstractExporter implements DocumentObserver {
-	private static final Logger LOG = LoggerFactory.getLogger(AltoXMLExporter.class);
-	private Template template;
+public class AltoXMLExporter extends AbstractXMLExporter implements DocumentObserver {
+	private static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+	private static final String XLINK_NAMESPACE = "http://www.w3.org/1999/xlink";
 
 	public AltoXMLExporter(File outDir, boolean zipped) {
 		super(outDir, zipped ? "_alto3.zip" : "_alto3.xml");
-		this.initialize();
-	}
-
-	private void initialize() {
-		try {
-			Configuration cfg = new Configuration(new Version(2, 3, 23));
-			cfg.setCacheStorage(new NullCacheStorage());
-			cfg.setObjectWrapper(new DefaultObjectWrapperBuilder(new Version(2, 3, 23)).build());
-
-			Reader templateReader = new BufferedReader(new InputStreamReader(AltoXMLExporter.class.getResourceAsStream("alto_body_3_0.ftl")));
-			this.template = new Template("alto_body", templateReader, cfg);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
 	}
 
 	@Override
-	public void onImageStart(JochreImage jochreImage) {
+	protected void writeDocumentStart(JochreDocument jochreDocument) throws XMLStreamException {
+		String version = this.getClass().getPackage().getImplementationVersion();
+		if (version == null)
+			version = "unknown";
+
+		newLine(xmlWriter, 0);
+		xmlWriter.writeStartElement("alto");
+		xmlWriter.writeNamespace("xsi", XSI_NAMESPACE);
+		xmlWriter.writeAttribute("SCHEMAVERSION", "alto_v3_0");
+		xmlWriter.writeAttribute("xsi", XSI_NAMESPACE, "schemaLocation", "http://www.loc.gov/alto/v3/alto.xsd");
+
+		newLine(xmlWriter, 1);
+		xmlWriter.writeStartElement("Description");
+		this.writeTextElement(2, "MeasurementUnit", "pixel");
+		newLine(xmlWriter, 2);
+		xmlWriter.writeStartElement("sourceImageInformation");
+		this.writeTextElement(3, "fileName", jochreDocument.getFileName());
+		newLine(xmlWriter, 2);
+		xmlWriter.writeEndElement(); // sourceImageInformation
+
+		newLine(xmlWriter, 2);
+		xmlWriter.writeStartElement("OCRProcessing");
+		xmlWriter.writeAttribute("ID", "OCR_1");
+		newLine(xmlWriter, 3);
+		xmlWriter.writeStartElement("ocrProcessingStep");
+		this.writeTextElement(4, "processingDateTime", new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()));
+		newLine(xmlWriter, 4);
+		xmlWriter.writeStartElement("processingSoftware");
+		this.writeTextElement(5, "softwareCreator", "Joliciel");
+		this.writeTextElement(5, "softwareName", "Jochre");
+		this.writeTextElement(5, "softwareVersion", version);
+		this.writeTextElement(5, "applicationDescription", "Java Optical CHaracter REcognition: https://github.com/urieli/jochre");
+		newLine(xmlWriter, 4);
+		xmlWriter.writeEndElement(); // processingSoftware
+		newLine(xmlWriter, 3);
+		xmlWriter.writeEndElement(); // ocrProcessingStep
+		newLine(xmlWriter, 2);
+		xmlWriter.writeEndElement(); // OCRProcessing
+		newLine(xmlWriter, 1);
+		xmlWriter.writeEndElement(); // Description
+
+		newLine(xmlWriter, 1);
+		xmlWriter.writeStartElement("Layout");
 	}
 
 	@Override
-	public void onDocumentStartInternal(JochreDocument jochreDocument) {
-		try {
-			Configuration cfg = new Configuration(new Version(2, 3, 23));
-			cfg.setCacheStorage(new NullCacheStorage());
-			cfg.setObjectWrapper(new DefaultObjectWrapperBuilder(new Version(2, 3, 23)).build());
-
-			Reader templateReader = new BufferedReader(new InputStreamReader(AltoXMLExporter.class.getResourceAsStream("alto_header_3_0.ftl")));
-			Map<String, Object> model = new HashMap<String, Object>();
-			model.put("document", jochreDocument);
-
-			String version = this.getClass().getPackage().getImplementationVersion();
-			if (version == null)
-				version = "unknown";
-
-			model.put("version", version);
-
-			Template template = new Template("alto_header", templateReader, cfg);
-			template.process(model, writer);
-			writer.flush();
-		} catch (TemplateException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
+	protected void writeImage(JochreImage image) throws XMLStreamException {
+		String pageId = zeroPad(image.getPage().getIndex(), 5) + "_" + image.getIndex();
+		newLine(xmlWriter, 2);
+		xmlWriter.writeStartElement("Page");
+		xmlWriter.writeAttribute("ID", "PAGE" + pageId);
+		writeAttribute(xmlWriter, "HEIGHT", image.getHeight());
+		writeAttribute(xmlWriter, "WIDTH", image.getWidth());
+		writeAttribute(xmlWriter, "PHYSICAL_IMG_NR", image.getPage().getIndex());
+
+		Rectangle printSpace = image.getPrintSpace();
+		newLine(xmlWriter, 3);
+		xmlWriter.writeStartElement("PrintSpace");
+		writeAttribute(xmlWriter, "HEIGHT", printSpace.getHeight());
+		writeAttribute(xmlWriter, "WIDTH", printSpace.getWidth());
+		writeAttribute(xmlWriter, "HPOS", printSpace.getLeft());
+		writeAttribute(xmlWriter, "VPOS", printSpace.getTop());
+		xmlWriter.writeAttribute("PC", this.formatConfidence(image.getConfidence()));
+
+		String language = image.getPage().getDocument().getLocale().getLanguage();
+		for (Paragraph paragraph : image.getParagraphs()) {
+			if (paragraph.isJunk())
+				continue;
+			boolean hyphenated = false;
+			newLine(xmlWriter, 4);
+			xmlWriter.writeStartElement("TextBlock");
+			xmlWriter.writeNamespace("ns1", XLINK_NAMESPACE);
+			xmlWriter.writeAttribute("ID", "PAR" + pageId + "_" + zeroPad(paragraph.getIndex(), 3));
+			writeAttribute(xmlWriter, "HEIGHT", paragraph.getHeight());
+			writeAttribute(xmlWriter, "WIDTH", paragraph.getWidth());
+			writeAttribute(xmlWriter, "HPOS", paragraph.getLeft());
+			writeAttribute(xmlWriter, "VPOS", paragraph.getTop());
+			xmlWriter.writeAttribute("ns1", XLINK_NAMESPACE, "type", "simple");
+			xmlWriter.writeAttribute("language", language);
+
+			for (RowOfShapes row : paragraph.getRows()) {
+				newLine(xmlWriter, 5);
+				xmlWriter.writeStartElement("TextLine");
+				writeAttribute(xmlWriter, "HEIGHT", row.getHeight());
+				writeAttribute(xmlWriter, "WIDTH", row.getWidth());
+				writeAttribute(xmlWriter, "HPOS", row.getLeft());
+				writeAttribute(xmlWriter, "VPOS", row.getTop());
+
+				for (GroupOfShapes group : row.getGroups()) {
+					if (group.getIndex() > 0) {
+						Rectangle space = group.getPrecedingSpace();
+						newLine(xmlWriter, 6);
+						xmlWriter.writeEmptyElement("SP");
+						writeAttribute(xmlWriter, "WIDTH", space.getWidth());
+						writeAttribute(xmlWriter, "HPOS", space.getLeft());
+						writeAttribute(xmlWriter, "VPOS", space.getTop());
+					}
+
+					for (LetterSequence subsequence : group.getSubsequences()) {
+						Rectangle rect = subsequence.getRectangleInGroup(group);
+						if (rect == null)
+							continue;
+						String word = subsequence.getGuessedWord();
+						newLine(xmlWriter, 6);
+						if (word.equals("-")) {
+							xmlWriter.writeEmptyElement("HYP");
+							this.writeRectangle(rect);
+							xmlWriter.writeAttribute("CONTENT", "-");
+							continue;
+						}
+
+						xmlWriter.writeStartElement("String");
+						this.writeRectangle(rect);
+						xmlWriter.writeAttribute("CONTENT", word);
+						if (subsequence.getHyphenSubsequence() != null) {
+							hyphenated = true;
+							xmlWriter.writeAttribute("SUBS_TYPE", "HypPart1");
+							xmlWriter.writeAttribute("SUBS_CONTENT", subsequence.getHyphenatedString());
+						} else if (hyphenated) {
+							hyphenated = false;
+							xmlWriter.writeAttribute("SUBS_TYPE", "HypPart2");
+							xmlWriter.writeAttribute("SUBS_CONTENT", subsequence.getHyphenatedString());
+						}
+						xmlWriter.writeAttribute("WC", this.formatConfidence(group.getConfidence()));
+
+						List<CountedOutcome<String>> wordFrequencies = subsequence.getWordFrequencies();
+						if (wordFrequencies != null && wordFrequencies.size() > 0) {
+							String otherWord = wordFrequencies.get(0).getOutcome();
+							if (!otherWord.equals(word))
+								this.writeTextElement(7, "ALTERNATIVE", otherWord);
+						}
+						newLine(xmlWriter, 6);
+						xmlWriter.writeEndElement(); // String
+					}
+				}
+				newLine(xmlWriter, 5);
+				xmlWriter.writeEndElement(); // TextLine
+			}
+			newLine(xmlWriter, 4);
+			xmlWriter.writeEndElement(); // TextBlock
 		}
-
-	}
-
-	@Override
-	public void onPageStart(JochrePage jochrePage) {
+		newLine(xmlWriter, 3);
+		xmlWriter.writeEndElement(); // PrintSpace
+		newLine(xmlWriter, 2);
+		xmlWriter.writeEndElement(); // Page
 	}
 
 	@Override
-	public void onImageComplete(JochreImage jochreImage) {
-		try {
-			Map<String, Object> model = new HashMap<String, Object>();
-			model.put("image", jochreImage);
-			template.process(model, writer);
-			writer.flush();
-		} catch (TemplateException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
+	protected void writeDocumentEnd(JochreDocument jochreDocument) throws XMLStreamException {
+		newLine(xmlWriter, 1);
+		xmlWriter.writeEndElement(); // Layout
+		newLine(xmlWriter, 0);
+		xmlWriter.writeEndElement(); // alto
 	}
 
-	@Override
-	public void onPageComplete(JochrePage jochrePage) {
+	private void writeRectangle(Rectangle rect) throws XMLStreamException {
+		writeAttribute(xmlWriter, "HEIGHT", rect.getHeight());
+		writeAttribute(xmlWriter, "WIDTH", rect.getWidth());
+		writeAttribute(xmlWriter, "HPOS", rect.getLeft());
+		writeAttribute(xmlWriter, "VPOS", rect.getTop());
 	}
 
-	@Override
-	public void onDocumentCompleteInternal(JochreDocument jochreDocument) {
-		try {
-			Configuration cfg = new Configuration(new Version(2, 3, 23));
-			cfg.setCacheStorage(new NullCacheStorage());
-			cfg.setObjectWrapper(new DefaultObjectWrapperBuilder(new Version(2, 3, 23)).build());
-
-			Reader templateReader = new BufferedReader(new InputStreamReader(AltoXMLExporter.class.getResourceAsStream("alto_footer_3_0.ftl")));
-			Map<String, Object> model = new HashMap<String, Object>();
-			model.put("document", jochreDocument);
-
-			Template template = new Template("alto_footer", templateReader, cfg);
-			template.process(model, writer);
-			writer.flush();
-		} catch (TemplateException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
+	private void writeTextElement(int depth, String name, String text) throws XMLStreamException {
+		newLine(xmlWriter, depth);
+		xmlWriter.writeStartElement(name);
+		if (text != null)
+			xmlWriter.writeCharacters(text);
+		xmlWriter.writeEndElement();
 	}
 }
@@ -1,19 +1,19 @@
 package com.joliciel.jochre.output;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.Reader;
 import java.io.Writer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,13 +21,7 @@ import com.joliciel.jochre.doc.DocumentObserver;
 import com.joliciel.jochre.doc.JochreDocument;
 import com.joliciel.jochre.doc.JochrePage;
 import com.joliciel.jochre.graphics.JochreImage;
-
-import freemarker.cache.NullCacheStorage;
-import freemarker.template.Configuration;
-import freemarker.template.DefaultObjectWrapperBuilder;
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.Version;
+import com.joliciel.jochre.utils.JochreException;
 
 /**
  * Outputs to Jochre's lossless XML format on a page-by-page basis, along with
@@ -35,26 +29,37 @@ import freemarker.template.Version;
  **/
 public class JochrePageByPageExporter implements DocumentObserver {
 	private static final Logger LOG = LoggerFactory.getLogger(JochrePageByPageExporter.class);
-	private Template template;
 	private String baseName;
-	private ZipOutputStream zos;
+	private OutputStream zos;
 	private Writer zipWriter;
 
 	JochreImage jochreImage = null;
 
 	public JochrePageByPageExporter(File zipFile, String baseName) {
+		this(zipFile, baseName, Deflater.DEFAULT_COMPRESSION, 1);
+	}
+
+	/**
+	 * @param compressionLevel
+	 *            the deflate compression level, from 0 to 9, or -1 for the
+	 *            default level
+	 * @param zipThreads
+	 *            if greater than 1, each page is compressed in independent
+	 *            blocks on this many threads
+	 */
+	public JochrePageByPageExporter(File zipFile, String baseName, int compressionLevel, int zipThreads) {
 		super();
 		try {
-			zos = new ZipOutputStream(new FileOutputStream(zipFile, false));
+			if (zipThreads > 1) {
+				zos = new ParallelZipOutputStream(new FileOutputStream(zipFile, false), compressionLevel, zipThreads);
+			} else {
+				ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zipFile, false));
+				zipOutputStream.setLevel(compressionLevel);
+				zos = zipOutputStream;
+			}
 			zipWriter = new BufferedWriter(new OutputStreamWriter(zos, "UTF-8"));
 
 			this.baseName = baseName;
-			Configuration cfg = new Configuration(new Version(2, 3, 23));
-			cfg.setCacheStorage(new NullCacheStorage());
-			cfg.setObjectWrapper(new DefaultObjectWrapperBuilder(new Version(2, 3, 23)).build());
-
-			Reader templateReader = new BufferedReader(new InputStreamReader(JochrePageByPageExporter.class.getResourceAsStream("jochre.ftl")));
-			this.template = new Template("freemarkerTemplate", templateReader, cfg);
 		} catch (IOException e) {
 			LOG.error("Failed writing to JochrePageByPageExporter", e);
 			throw new RuntimeException(e);
@@ -77,14 +82,19 @@ public class JochrePageByPageExporter implements DocumentObserver {
 	@Override
 	public void onImageComplete(JochreImage jochreImage) {
 		try {
-			zos.putNextEntry(new ZipEntry(this.getImageBaseName(jochreImage) + ".xml"));
-			Map<String, Object> model = new HashMap<String, Object>();
-			model.put("image", jochreImage);
-			template.process(model, zipWriter);
+			ZipEntry zipEntry = new ZipEntry(this.getImageBaseName(jochreImage) + ".xml");
+			if (zos instanceof ParallelZipOutputStream)
+				((ParallelZipOutputStream) zos).putNextEntry(zipEntry);
+			else
+				((ZipOutputStream) zos).putNextEntry(zipEntry);
+			XMLStreamWriter xmlWriter = AbstractXMLExporter.createXMLStreamWriter(zipWriter);
+			JochreXMLExporter.writeImage(xmlWriter, jochreImage);
+			xmlWriter.writeCharacters("\n");
+			xmlWriter.flush();
 			zipWriter.flush();
-		} catch (TemplateException e) {
+		} catch (XMLStreamException e) {
 			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
+			throw new JochreException(e);
 		} catch (IOException e) {
 			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
 			throw new RuntimeException(e);
@@ -1,129 +1,142 @@
 package com.joliciel.jochre.output;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.Writer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import com.joliciel.jochre.doc.DocumentObserver;
 import com.joliciel.jochre.doc.JochreDocument;
 import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.graphics.GroupOfShapes;
 import com.joliciel.jochre.graphics.JochreImage;
-
-import freemarker.cache.NullCacheStorage;
-import freemarker.template.Configuration;
-import freemarker.template.DefaultObjectWrapperBuilder;
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.Version;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.Shape;
+import com.joliciel.talismane.utils.CountedOutcome;
 
 /**
  * Outputs to Jochre's lossless XML format.
  **/
-public class JochreXMLExporter extends AbstractExporter implements DocumentObserver {
-	private static final Logger LOG = LoggerFactory.getLogger(JochreXMLExporter.class);
-	private Writer writer;
-	private Template template;
-
-	JochreImage jochreImage = null;
+public class JochreXMLExporter extends AbstractXMLExporter implements DocumentObserver {
 
 	public JochreXMLExporter(File outDir) {
 		super(outDir, "_jochre.xml");
-		this.initialize();
 	}
 
 	public JochreXMLExporter(Writer writer) {
 		super(writer);
-		this.initialize();
-	}
-
-	private void initialize() {
-		try {
-			Configuration cfg = new Configuration(new Version(2, 3, 23));
-			cfg.setCacheStorage(new NullCacheStorage());
-			cfg.setObjectWrapper(new DefaultObjectWrapperBuilder(new Version(2, 3, 23)).build());
-
-			Reader templateReader = new BufferedReader(new InputStreamReader(AltoXMLExporter.class.getResourceAsStream("jochre.ftl")));
-			this.template = new Template("freemarkerTemplate", templateReader, cfg);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
 	}
 
 	@Override
-	public void onImageStart(JochreImage jochreImage) {
-		this.jochreImage = jochreImage;
-	}
-
-	void process(Map<String, Object> model) {
-		try {
-			template.process(model, writer);
-			writer.flush();
-		} catch (TemplateException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
+	protected void writeDocumentStart(JochreDocument jochreDocument) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.writeStartElement("document");
+		xmlWriter.writeAttribute("version", "1.0");
+		xmlWriter.writeAttribute("producer", "Jochre XML Exporter");
+		writeAttribute(xmlWriter, "pageCount", jochreDocument.getTotalPageCount());
 	}
 
 	@Override
-	public void onDocumentStartInternal(JochreDocument jochreDocument) {
-		try {
-			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-			writer.write("<document version=\"1.0\" producer=\"Jochre XML Exporter\"" + " pageCount=\"" + jochreDocument.getTotalPageCount() + "\">\n");
-			writer.flush();
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
-
+	protected void writePageStart(JochrePage jochrePage) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.writeStartElement("page");
+		writeAttribute(xmlWriter, "index", jochrePage.getIndex());
 	}
 
 	@Override
-	public void onPageStart(JochrePage jochrePage) {
-		try {
-			writer.write("<page index=\"" + jochrePage.getIndex() + "\">\n");
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
+	protected void writeImage(JochreImage jochreImage) throws XMLStreamException {
+		writeImage(xmlWriter, jochreImage);
 	}
 
 	@Override
-	public void onImageComplete(JochreImage jochreImage) {
-		Map<String, Object> model = new HashMap<String, Object>();
-		model.put("image", jochreImage);
-		this.process(model);
+	protected void writePageEnd(JochrePage jochrePage) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.writeEndElement(); // page
 	}
 
 	@Override
-	public void onPageComplete(JochrePage jochrePage) {
-		try {
-			writer.write("</page>\n");
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
-		}
+	protected void writeDocumentEnd(JochreDocument jochreDocument) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.writeEndElement(); // document
 	}
 
-	@Override
-	public void onDocumentCompleteInternal(JochreDocument jochreDocument) {
-		try {
-			writer.write("</document>\n");
-			writer.flush();
-		} catch (IOException e) {
-			LOG.error("Failed writing to " + this.getClass().getSimpleName(), e);
-			throw new RuntimeException(e);
+	/**
+	 * Write a single image element in Jochre's XML format, as also used for
+	 * each entry by {@link JochrePageByPageExporter}.
+	 */
+	static void writeImage(XMLStreamWriter xmlWriter, JochreImage image) throws XMLStreamException {
+		newLine(xmlWriter, 0);
+		xmlWriter.writeStartElement("image");
+		writeAttribute(xmlWriter, "pageIndex", image.getPage().getIndex());
+		writeAttribute(xmlWriter, "imageIndex", image.getIndex());
+		writeAttribute(xmlWriter, "width", image.getWidth());
+		writeAttribute(xmlWriter, "height", image.getHeight());
+		xmlWriter.writeAttribute("lang", image.getPage().getDocument().getLocale().getLanguage());
+
+		for (Paragraph paragraph : image.getParagraphs()) {
+			if (paragraph.isJunk())
+				continue;
+			newLine(xmlWriter, 0);
+			xmlWriter.writeStartElement("paragraph");
+			writeAttribute(xmlWriter, "l", paragraph.getLeft());
+			writeAttribute(xmlWriter, "t", paragraph.getTop());
+			writeAttribute(xmlWriter, "r", paragraph.getRight());
+			writeAttribute(xmlWriter, "b", paragraph.getBottom());
+
+			for (RowOfShapes row : paragraph.getRows()) {
+				newLine(xmlWriter, 2);
+				xmlWriter.writeStartElement("row");
+				writeAttribute(xmlWriter, "l", row.getLeft());
+				writeAttribute(xmlWriter, "t", row.getTop());
+				writeAttribute(xmlWriter, "r", row.getRight());
+				writeAttribute(xmlWriter, "b", row.getBottom());
+
+				for (GroupOfShapes group : row.getGroups()) {
+					newLine(xmlWriter, 3);
+					xmlWriter.writeStartElement("word");
+					writeAttribute(xmlWriter, "l", group.getLeft());
+					writeAttribute(xmlWriter, "t", group.getTop());
+					writeAttribute(xmlWriter, "r", group.getRight());
+					writeAttribute(xmlWriter, "b", group.getBottom());
+					xmlWriter.writeAttribute("text", group.getWord());
+					String known = "false";
+					if (group.getFrequency() > 0)
+						known = group.isSplit() ? "split" : "true";
+					xmlWriter.writeAttribute("known", known);
+
+					List<CountedOutcome<String>> wordFrequencies = group.getWordFrequencies();
+					if (wordFrequencies != null) {
+						for (CountedOutcome<String> wordFrequency : wordFrequencies) {
+							newLine(xmlWriter, 4);
+							xmlWriter.writeEmptyElement("freq");
+							xmlWriter.writeAttribute("text", wordFrequency.getOutcome());
+							writeAttribute(xmlWriter, "weight", wordFrequency.getCount());
+						}
+					}
+
+					for (Shape shape : group.getCorrectedShapes()) {
+						newLine(xmlWriter, 4);
+						xmlWriter.writeEmptyElement("char");
+						writeAttribute(xmlWriter, "l", shape.getLeft());
+						writeAttribute(xmlWriter, "t", shape.getTop());
+						writeAttribute(xmlWriter, "r", shape.getRight());
+						writeAttribute(xmlWriter, "b", shape.getBottom());
+						xmlWriter.writeAttribute("confidence", Long.toString(Math.round(shape.getConfidence() * 100.0)));
+						xmlWriter.writeAttribute("letter", shape.getLetter());
+					}
+					newLine(xmlWriter, 3);
+					xmlWriter.writeEndElement(); // word
+				}
+				newLine(xmlWriter, 2);
+				xmlWriter.writeEndElement(); // row
+			}
+			newLine(xmlWriter, 0);
+			xmlWriter.writeEndElement(); // paragraph
 		}
+		newLine(xmlWriter, 0);
+		xmlWriter.writeEndElement(); // image
 	}
 }
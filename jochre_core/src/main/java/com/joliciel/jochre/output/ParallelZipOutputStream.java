@@ -0,0 +1,370 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * A zip output stream which compresses each entry in independent blocks on
+ * several threads, in the manner of pigz.<br/>
+ * Each block is deflated separately, using the end of the previous block as
+ * a preset dictionary so that compression is almost as good as for a single
+ * stream, and flushed to a byte boundary. The compressed blocks are then
+ * concatenated in order into a single deflate stream, so that the resulting
+ * zip file can be read by any standard zip reader.<br/>
+ * Only a subset of the {@link java.util.zip.ZipOutputStream} API is supported:
+ * entries are always deflated, and zip64 extensions are not written, so each
+ * entry, and the file as a whole, must remain under 4 Gb.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class ParallelZipOutputStream extends OutputStream {
+	static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+	private static final long MAX_SIZE = 0xFFFFFFFFL;
+	private static final int MAX_ENTRIES = 0xFFFF;
+	private static final int FLAGS = 0x0808; // data descriptor, UTF-8 names
+	private static final AtomicInteger threadIndex = new AtomicInteger();
+
+	private final OutputStream out;
+	private final int level;
+	private final int blockSize;
+	private final int maxPendingBlocks;
+	private final ExecutorService executor;
+
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private final Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<Future<byte[]>>();
+	private final CRC32 crc = new CRC32();
+	private final byte[] singleByte = new byte[1];
+	private byte[] buffer;
+	private int bufferPos = 0;
+	private byte[] dictionary = null;
+	private Entry currentEntry = null;
+	private long written = 0;
+	private boolean finished = false;
+
+	private static final class Entry {
+		private final byte[] name;
+		private final int dosTime;
+		private final long offset;
+		private long crc;
+		private long compressedSize;
+		private long size;
+
+		private Entry(byte[] name, int dosTime, long offset) {
+			this.name = name;
+			this.dosTime = dosTime;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * @param out
+	 *            the stream to which the zip file is written
+	 * @param level
+	 *            the compression level, from 0 to 9, or -1 for the default
+	 *            level
+	 * @param threads
+	 *            the number of threads compressing blocks concurrently
+	 */
+	public ParallelZipOutputStream(OutputStream out, int level, int threads) {
+		this(out, level, threads, DEFAULT_BLOCK_SIZE);
+	}
+
+	ParallelZipOutputStream(OutputStream out, int level, int threads, int blockSize) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		this.out = out;
+		this.level = level;
+		this.blockSize = blockSize;
+		this.buffer = new byte[blockSize];
+		// enough blocks to keep all threads busy while the oldest one is
+		// written, without buffering the whole entry
+		this.maxPendingBlocks = threads * 2;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "zip-deflate-" + threadIndex.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Start writing a new entry, closing the current one if any. Only the
+	 * entry's name and time are used.
+	 */
+	public void putNextEntry(ZipEntry zipEntry) throws IOException {
+		if (finished)
+			throw new IOException("Zip stream already finished");
+		if (currentEntry != null)
+			this.closeEntry();
+		if (entries.size() == MAX_ENTRIES)
+			throw new IOException("Too many zip entries");
+
+		long time = zipEntry.getTime();
+		if (time == -1)
+			time = System.currentTimeMillis();
+		currentEntry = new Entry(zipEntry.getName().getBytes(StandardCharsets.UTF_8), toDosTime(time), written);
+		crc.reset();
+		dictionary = null;
+		bufferPos = 0;
+
+		this.writeInt(0x04034b50);
+		this.writeShort(20); // version needed to extract
+		this.writeShort(FLAGS);
+		this.writeShort(ZipEntry.DEFLATED);
+		this.writeInt(currentEntry.dosTime);
+		// crc and sizes are written in the data descriptor
+		this.writeInt(0);
+		this.writeInt(0);
+		this.writeInt(0);
+		this.writeShort(currentEntry.name.length);
+		this.writeShort(0); // extra field length
+		this.writeBytes(currentEntry.name, 0, currentEntry.name.length);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		singleByte[0] = (byte) b;
+		this.write(singleByte, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (currentEntry == null)
+			throw new IOException("No current zip entry");
+		crc.update(b, off, len);
+		currentEntry.size += len;
+		while (len > 0) {
+			int count = Math.min(len, blockSize - bufferPos);
+			System.arraycopy(b, off, buffer, bufferPos, count);
+			bufferPos += count;
+			off += count;
+			len -= count;
+			if (bufferPos == blockSize)
+				this.submitBlock(false);
+		}
+	}
+
+	/**
+	 * Compress any data still buffered, and write the current entry's data
+	 * descriptor.
+	 */
+	public void closeEntry() throws IOException {
+		if (currentEntry == null)
+			return;
+		this.submitBlock(true);
+		while (!pendingBlocks.isEmpty())
+			this.writeBlock(pendingBlocks.poll());
+
+		currentEntry.crc = crc.getValue();
+		if (currentEntry.size > MAX_SIZE || currentEntry.compressedSize > MAX_SIZE)
+			throw new IOException("Zip entry too large: " + new String(currentEntry.name, StandardCharsets.UTF_8));
+		this.writeInt(0x08074b50);
+		this.writeInt(currentEntry.crc);
+		this.writeInt(currentEntry.compressedSize);
+		this.writeInt(currentEntry.size);
+		entries.add(currentEntry);
+		currentEntry = null;
+	}
+
+	/**
+	 * Close the current entry and write the central directory, without
+	 * closing the underlying stream.
+	 */
+	public void finish() throws IOException {
+		if (finished)
+			return;
+		try {
+			this.closeEntry();
+			long centralDirectoryOffset = written;
+			for (Entry entry : entries) {
+				this.writeInt(0x02014b50);
+				this.writeShort(20); // version made by
+				this.writeShort(20); // version needed to extract
+				this.writeShort(FLAGS);
+				this.writeShort(ZipEntry.DEFLATED);
+				this.writeInt(entry.dosTime);
+				this.writeInt(entry.crc);
+				this.writeInt(entry.compressedSize);
+				this.writeInt(entry.size);
+				this.writeShort(entry.name.length);
+				this.writeShort(0); // extra field length
+				this.writeShort(0); // comment length
+				this.writeShort(0); // disk number
+				this.writeShort(0); // internal attributes
+				this.writeInt(0); // external attributes
+				this.writeInt(entry.offset);
+				this.writeBytes(entry.name, 0, entry.name.length);
+			}
+			long centralDirectorySize = written - centralDirectoryOffset;
+			if (written > MAX_SIZE)
+				throw new IOException("Zip file too large");
+			this.writeInt(0x06054b50);
+			this.writeShort(0); // disk number
+			this.writeShort(0); // disk with central directory
+			this.writeShort(entries.size());
+			this.writeShort(entries.size());
+			this.writeInt(centralDirectorySize);
+			this.writeInt(centralDirectoryOffset);
+			this.writeShort(0); // comment length
+			out.flush();
+		} finally {
+			finished = true;
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			this.finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	private void submitBlock(boolean last) throws IOException {
+		final byte[] block = buffer;
+		final int length = bufferPos;
+		final byte[] blockDictionary = dictionary;
+		final boolean finish = last;
+		pendingBlocks.add(executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				return deflate(block, length, blockDictionary, finish, level);
+			}
+		}));
+
+		if (!last) {
+			dictionary = new byte[Math.min(DICTIONARY_SIZE, length)];
+			System.arraycopy(block, length - dictionary.length, dictionary, 0, dictionary.length);
+			// the old buffer now belongs to the compression task
+			buffer = new byte[blockSize];
+		}
+		bufferPos = 0;
+
+		while (pendingBlocks.size() > maxPendingBlocks)
+			this.writeBlock(pendingBlocks.poll());
+	}
+
+	private void writeBlock(Future<byte[]> future) throws IOException {
+		byte[] compressed;
+		try {
+			compressed = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to compress block", e.getCause());
+		}
+		currentEntry.compressedSize += compressed.length;
+		this.writeBytes(compressed, 0, compressed.length);
+	}
+
+	/**
+	 * Deflate a single block as raw deflate data. All blocks but the last are
+	 * flushed to a byte boundary without being marked as final, so that the
+	 * blocks can be concatenated.
+	 */
+	static byte[] deflate(byte[] block, int length, byte[] dictionary, boolean last, int level) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			if (dictionary != null)
+				deflater.setDictionary(dictionary);
+			deflater.setInput(block, 0, length);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(length / 2 + 64);
+			byte[] output = new byte[8192];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int count = deflater.deflate(output);
+					baos.write(output, 0, count);
+				}
+			} else {
+				int count;
+				do {
+					count = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+					baos.write(output, 0, count);
+				} while (count == output.length);
+			}
+			return baos.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static int toDosTime(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		int year = calendar.get(Calendar.YEAR);
+		if (year < 1980)
+			return (1 << 21) | (1 << 16);
+		return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+				| calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	private void writeShort(int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >>> 8) & 0xff);
+		written += 2;
+	}
+
+	private void writeInt(long value) throws IOException {
+		out.write((int) (value & 0xff));
+		out.write((int) ((value >>> 8) & 0xff));
+		out.write((int) ((value >>> 16) & 0xff));
+		out.write((int) ((value >>> 24) & 0xff));
+		written += 4;
+	}
+
+	private void writeBytes(byte[] bytes, int off, int len) throws IOException {
+		out.write(bytes, off, len);
+		written += len;
+	}
+}
@@ -25,7 +25,11 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
@@ -46,12 +50,17 @@ import com.joliciel.talismane.utils.CSVFormatter;
 public class FScoreCalculator<E> {
 	private static final Logger LOG = LoggerFactory.getLogger(FScoreCalculator.class);
 	private static final CSVFormatter CSV = new CSVFormatter();
-	Map<E,Map<E,Integer>> falsePositives = new TreeMap<E,Map<E,Integer>>();
-	Map<E,Map<E,Integer>> falseNegatives = new TreeMap<E,Map<E,Integer>>();
-	Map<E,Integer> truePositiveCounts = new TreeMap<E, Integer>();
-	Map<E,Integer> falsePositiveCounts = new TreeMap<E, Integer>();
-	Map<E,Integer> falseNegativeCounts = new TreeMap<E, Integer>();
-	
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Map<E, Integer> outcomeIndexes = new HashMap<E, Integer>();
+	private final List<E> outcomes = new ArrayList<E>();
+
+	// counts for each pair of outcomes, indexed by [expected][guessed]
+	private int[][] pairCounts = new int[INITIAL_CAPACITY][INITIAL_CAPACITY];
+	private int[] truePositiveCounts = new int[INITIAL_CAPACITY];
+	private int[] falsePositiveCounts = new int[INITIAL_CAPACITY];
+	private int[] falseNegativeCounts = new int[INITIAL_CAPACITY];
+
 	Set<E> outcomeSet = new HashSet<E>();
 	
 	Map<E,Double> precisions = new TreeMap<E, Double>();
@@ -77,74 +86,119 @@ public class FScoreCalculator<E> {
 	 * Increment this f-score by a given expected value and guessed value.
 	 */
 	public void increment(E expected, E guessed) {
-		int pairCount = 1;
-		Map<E,Integer> falsePositivesForGuessed = falsePositives.get(guessed);
-		if (falsePositivesForGuessed==null) {
-			falsePositivesForGuessed = new TreeMap<E, Integer>();
-			falsePositives.put(guessed, falsePositivesForGuessed);
-		}
-		Integer pairCountObj = falsePositivesForGuessed.get(expected);
-		if (pairCountObj!=null)
-			pairCount = pairCountObj.intValue() + 1;
-		falsePositivesForGuessed.put(expected, pairCount);
-		
-		pairCount = 1;
-		Map<E,Integer> falseNegativesForExpected = falseNegatives.get(expected);
-		if (falseNegativesForExpected==null) {
-			falseNegativesForExpected = new TreeMap<E, Integer>();
-			falseNegatives.put(expected, falseNegativesForExpected);
-		}
-		pairCountObj = falseNegativesForExpected.get(guessed);
-		if (pairCountObj!=null)
-			pairCount = pairCountObj.intValue() + 1;
-		falseNegativesForExpected.put(guessed, pairCount);
+		int expectedIndex = this.getIndex(expected);
+		int guessedIndex = this.getIndex(guessed);
+		pairCounts[expectedIndex][guessedIndex]++;
 		
-		if (expected.equals(guessed)) {
-			int truePositiveCount = 1;
-			Integer truePositiveCountObj = truePositiveCounts.get(expected);
-			if (truePositiveCountObj!=null)
-				truePositiveCount = truePositiveCountObj.intValue() + 1;
-			truePositiveCounts.put(expected, truePositiveCount);
+		if (expectedIndex == guessedIndex) {
+			truePositiveCounts[expectedIndex]++;
 		} else {
 			// we didn't guess correctly that this was an X
-			int falseNegativeCount = 1;
-			Integer falseNegativeCountObj = falseNegativeCounts.get(expected);
-			if (falseNegativeCountObj!=null)
-				falseNegativeCount = falseNegativeCountObj.intValue() + 1;
-			falseNegativeCounts.put(expected, falseNegativeCount);
-
+			falseNegativeCounts[expectedIndex]++;
 			// we guessed that this was a Y, when it wasn't
-			int falsePositiveCount = 1;
-			Integer falsePositiveCountObj = falsePositiveCounts.get(guessed);
-			if (falsePositiveCountObj!=null)
-				falsePositiveCount = falsePositiveCountObj.intValue() + 1;
-			falsePositiveCounts.put(guessed, falsePositiveCount);
+			falsePositiveCounts[guessedIndex]++;
 		}
-		outcomeSet.add(guessed);
-		outcomeSet.add(expected);
 		testCount++;
 		updatedSinceLastEval = true;
 	}
 	
+	/**
+	 * Add all of the counts from another f-score calculator to this one, as if
+	 * this calculator had been incremented with the other calculator's
+	 * expected and guessed values. Used to combine results calculated
+	 * separately, e.g. by several threads or on several folds.
+	 */
+	public void merge(FScoreCalculator<E> other) {
+		int[] indexes = new int[other.outcomes.size()];
+		for (int i = 0; i < indexes.length; i++)
+			indexes[i] = this.getIndex(other.outcomes.get(i));
+
+		for (int i = 0; i < indexes.length; i++) {
+			int[] otherRow = other.pairCounts[i];
+			int[] row = pairCounts[indexes[i]];
+			for (int j = 0; j < indexes.length; j++)
+				row[indexes[j]] += otherRow[j];
+			truePositiveCounts[indexes[i]] += other.truePositiveCounts[i];
+			falsePositiveCounts[indexes[i]] += other.falsePositiveCounts[i];
+			falseNegativeCounts[indexes[i]] += other.falseNegativeCounts[i];
+		}
+		testCount += other.testCount;
+		updatedSinceLastEval = true;
+	}
+
+	private int getIndex(E outcome) {
+		Integer indexObj = outcomeIndexes.get(outcome);
+		if (indexObj != null)
+			return indexObj.intValue();
+
+		int index = outcomes.size();
+		if (index == truePositiveCounts.length) {
+			int capacity = index * 2;
+			int[][] newPairCounts = new int[capacity][];
+			for (int i = 0; i < capacity; i++)
+				newPairCounts[i] = i < index ? Arrays.copyOf(pairCounts[i], capacity) : new int[capacity];
+			pairCounts = newPairCounts;
+			truePositiveCounts = Arrays.copyOf(truePositiveCounts, capacity);
+			falsePositiveCounts = Arrays.copyOf(falsePositiveCounts, capacity);
+			falseNegativeCounts = Arrays.copyOf(falseNegativeCounts, capacity);
+		}
+		outcomeIndexes.put(outcome, index);
+		outcomes.add(outcome);
+		outcomeSet.add(outcome);
+		return index;
+	}
+
+	private int getCount(int[] counts, E outcome) {
+		Integer index = outcomeIndexes.get(outcome);
+		return index == null ? 0 : counts[index];
+	}
+
+	private Map<E, Integer> getCounts(int[] counts) {
+		Map<E, Integer> countMap = new TreeMap<E, Integer>();
+		for (int i = 0; i < outcomes.size(); i++) {
+			if (counts[i] > 0)
+				countMap.put(outcomes.get(i), counts[i]);
+		}
+		return countMap;
+	}
+
+	/**
+	 * The counts for each outcome paired with a given outcome, either as the
+	 * expected outcome (row) or as the guessed outcome (column), or null if
+	 * the outcome never appeared in this position.
+	 */
+	private Map<E, Integer> getPairCounts(E outcome, boolean expected) {
+		Integer index = outcomeIndexes.get(outcome);
+		if (index == null)
+			return null;
+		Map<E, Integer> countMap = new TreeMap<E, Integer>();
+		for (int i = 0; i < outcomes.size(); i++) {
+			int count = expected ? pairCounts[index][i] : pairCounts[i][index];
+			if (count > 0)
+				countMap.put(outcomes.get(i), count);
+		}
+		return countMap.size() == 0 ? null : countMap;
+	}
+
 	void evaluate() {
 		if (updatedSinceLastEval) {
 			precisions = new TreeMap<E, Double>();
 			recalls = new TreeMap<E, Double>();
 			fScores = new TreeMap<E, Double>();
+			totalTruePositiveCount = 0;
+			totalFalsePositiveCount = 0;
+			totalFalseNegativeCount = 0;
 
 			for (E outcome : outcomeSet) {
 				LOG.debug("Outcome: " + outcome);
-				Integer truePositiveCountObj = truePositiveCounts.get(outcome);
-				Integer falsePositiveCountObj = falsePositiveCounts.get(outcome);
-				Integer falseNegativeCountObj = falseNegativeCounts.get(outcome);
-				double truePositiveCount = truePositiveCountObj!=null ? truePositiveCountObj.doubleValue() : 0.0;
-				double falsePositiveCount = falsePositiveCountObj!=null ? falsePositiveCountObj.doubleValue() : 0.0;
-				double falseNegativeCount = falseNegativeCountObj!=null ? falseNegativeCountObj.doubleValue() : 0.0;
+				double truePositiveCount = this.getTruePositiveCount(outcome);
+				double falsePositiveCount = this.getFalsePositiveCount(outcome);
+				double falseNegativeCount = this.getFalseNegativeCount(outcome);
 				LOG.debug("truePositiveCount: " + truePositiveCount);
 				LOG.debug("falsePositiveCount: " + falsePositiveCount);
 				if (LOG.isTraceEnabled()) {
 					LOG.debug("False positives: ");
-					Map<E,Integer> pairCounts = falsePositives.get(outcome);
+					Map<E,Integer> pairCounts = this.getFalsePositives(outcome);
 					if (pairCounts != null) {
 						for (E guessed : pairCounts.keySet()) {
 							int pairCount = pairCounts.get(guessed);
@@ -156,7 +210,7 @@ public class FScoreCalculator<E> {
 				LOG.debug("falseNegativeCount " + falseNegativeCount);
 				if (LOG.isTraceEnabled()) {
 					LOG.debug("False negatives: ");
-					Map<E,Integer> pairCounts = falseNegatives.get(outcome);
+					Map<E,Integer> pairCounts = this.getFalseNegatives(outcome);
 					if (pairCounts != null) {
 						for (E expected : pairCounts.keySet()) {
 							int pairCount = pairCounts.get(expected);
@@ -205,61 +259,53 @@ public class FScoreCalculator<E> {
 	 * Get the count of false positives for a given outcome.
 	 */
 	public int getFalsePositiveCount(E outcome) {
-		int falsePositiveCount = 0;
-		Integer falsePositiveCountObj = falsePositiveCounts.get(outcome);
-		if (falsePositiveCountObj!=null)
-			falsePositiveCount = falsePositiveCountObj.intValue();
-		return falsePositiveCount;
+		return this.getCount(falsePositiveCounts, outcome);
 	}
 	
 	/**
-	 * Get the false positives for a given outcome.
+	 * Get the false positives for a given outcome, as a map from the
+	 * expected outcome to the number of times it was guessed as this outcome
+	 * (including correct guesses). Null if this outcome was never guessed.
 	 */
 	public Map<E,Integer> getFalsePositives(E outcome) {
-		return falsePositives.get(outcome);
+		return this.getPairCounts(outcome, false);
 	}
 	
 	/**
 	 * False positives for all outcomes.
 	 */
 	public Map<E, Integer> getFalsePositiveCounts() {
-		return falsePositiveCounts;
+		return this.getCounts(falsePositiveCounts);
 	}
 
 	/**
 	 * Get the count of false negatives for a given outcome.
 	 */
 	public int getFalseNegativeCount(E outcome) {
-		int falseNegativeCount = 0;
-		Integer falseNegativeCountObj = falseNegativeCounts.get(outcome);
-		if (falseNegativeCountObj!=null)
-			falseNegativeCount = falseNegativeCountObj.intValue();
-		return falseNegativeCount;
+		return this.getCount(falseNegativeCounts, outcome);
 	}
 	
 	/**
-	 * Get the false negatives for a given outcome.
+	 * Get the false negatives for a given outcome, as a map from the guessed
+	 * outcome to the number of times this outcome was guessed as it
+	 * (including correct guesses). Null if this outcome was never expected.
 	 */
 	public Map<E,Integer> getFalseNegatives(E outcome) {
-		return falseNegatives.get(outcome);
+		return this.getPairCounts(outcome, true);
 	}
 
 	/**
 	 * False negatives for all outcomes.
 	 */
 	public Map<E, Integer> getFalseNegativeCounts() {
-		return falseNegativeCounts;
+		return this.getCounts(falseNegativeCounts);
 	}
 
 	/**
 	 * Get the count of true positives for a given outcome.
 	 */
 	public int getTruePositiveCount(E outcome) {
-		int truePositiveCount = 0;
-		Integer truePositiveCountObj = truePositiveCounts.get(outcome);
-		if (truePositiveCountObj!=null)
-			truePositiveCount = truePositiveCountObj.intValue();
-		return truePositiveCount;
+		return this.getCount(truePositiveCounts, outcome);
 	}
 
 	
@@ -267,7 +313,7 @@ public class FScoreCalculator<E> {
 	 * True positive counts for all outcomes.
 	 */
 	public Map<E, Integer> getTruePositiveCounts() {
-		return truePositiveCounts;
+		return this.getCounts(truePositiveCounts);
 	}
 	
 	/**
@@ -410,11 +456,7 @@ public class FScoreCalculator<E> {
 			for (E outcome : outcomeSet) {
 				fscoreFileWriter.write(CSV.format(outcome.toString()));
 				for (E outcome2 : outcomeSet) {
-					int falseNegativeCount = 0;
-					Map<E,Integer> falseNegatives = this.getFalseNegatives(outcome);
-					if (falseNegatives!=null&&falseNegatives.containsKey(outcome2)) {
-						falseNegativeCount = this.getFalseNegatives(outcome).get(outcome2);
-					}
+					int falseNegativeCount = pairCounts[outcomeIndexes.get(outcome)][outcomeIndexes.get(outcome2)];
 					fscoreFileWriter.write(CSV.format(falseNegativeCount));
 				}
 				fscoreFileWriter.write(CSV.format(this.getTruePositiveCount(outcome)));
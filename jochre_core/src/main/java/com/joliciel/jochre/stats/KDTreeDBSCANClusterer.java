@@ -0,0 +1,138 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.stats;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A DBSCAN clusterer which finds each point's neighbours using a KD-tree
+ * rather than by comparing it to every other point, giving roughly O(n log n)
+ * rather than O(n<sup>2</sup>) clustering for low-dimensional data.<br/>
+ * Neighbours are selected using exactly the same distance calculation as
+ * {@link DBSCANClusterer}, so that the clusters found are identical.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class KDTreeDBSCANClusterer<T> extends DBSCANClusterer<T> {
+	private final int dimensions;
+
+	/**
+	 * The point indexes, ordered so that each range [start, end) is a subtree
+	 * whose root is in the middle, splitting the points by the coordinate
+	 * corresponding to the subtree's depth.
+	 */
+	private final int[] tree;
+
+	public KDTreeDBSCANClusterer(List<T> objectSet, List<double[]> dataSet) {
+		super(objectSet, dataSet);
+		this.dimensions = dataSet.size() == 0 ? 0 : dataSet.get(0).length;
+		this.tree = new int[dataSet.size()];
+		for (int i = 0; i < tree.length; i++)
+			tree[i] = i;
+		this.build(0, tree.length, 0);
+	}
+
+	private void build(int start, int end, int depth) {
+		if (end - start <= 1 || dimensions == 0)
+			return;
+		int axis = depth % dimensions;
+		int middle = (start + end) >>> 1;
+		this.select(start, end - 1, middle, axis);
+		this.build(start, middle, depth + 1);
+		this.build(middle + 1, end, depth + 1);
+	}
+
+	/**
+	 * Partially order tree[left..right] along an axis, so that tree[k] holds
+	 * the point which would be there if the range were sorted, with smaller or
+	 * equal coordinates before it and greater or equal ones after it.
+	 */
+	private void select(int left, int right, int k, int axis) {
+		while (right > left) {
+			double pivot = dataSet.get(tree[(left + right) >>> 1])[axis];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (dataSet.get(tree[i])[axis] < pivot)
+					i++;
+				while (dataSet.get(tree[j])[axis] > pivot)
+					j--;
+				if (i <= j) {
+					int temp = tree[i];
+					tree[i] = tree[j];
+					tree[j] = temp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	@Override
+	Set<Integer> getNeighbours(int i, double epsilon) {
+		if (dimensions == 0)
+			return super.getNeighbours(i, epsilon);
+		Set<Integer> neighbours = new HashSet<Integer>();
+		this.findNeighbours(i, dataSet.get(i), epsilon, 0, tree.length, 0, neighbours);
+		return neighbours;
+	}
+
+	private void findNeighbours(int i, double[] point, double epsilon, int start, int end, int depth, Set<Integer> neighbours) {
+		while (end > start) {
+			int middle = (start + end) >>> 1;
+			int j = tree[middle];
+			double[] otherPoint = dataSet.get(j);
+			if (i != j) {
+				double sum = 0.0;
+				for (int n = 0; n < dimensions; n++) {
+					double diff = point[n] - otherPoint[n];
+					sum += (diff * diff);
+				}
+				double distance = Math.sqrt(sum);
+				if (distance <= epsilon)
+					neighbours.add(j);
+			}
+
+			int axis = depth % dimensions;
+			double diff = point[axis] - otherPoint[axis];
+			// the distance to any point on the far side of the split is at least
+			// the distance along this axis, calculated the same way
+			boolean searchFarSide = Math.sqrt(diff * diff) <= epsilon;
+			if (diff <= 0) {
+				if (searchFarSide)
+					this.findNeighbours(i, point, epsilon, middle + 1, end, depth + 1, neighbours);
+				end = middle;
+			} else {
+				if (searchFarSide)
+					this.findNeighbours(i, point, epsilon, start, middle, depth + 1, neighbours);
+				start = middle + 1;
+			}
+			depth++;
+		}
+	}
+}
@@ -0,0 +1,434 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.training;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.graphics.CorpusSelectionCriteria;
+import com.joliciel.jochre.graphics.GraphicsDao;
+import com.joliciel.jochre.utils.JochreException;
+import com.joliciel.talismane.machineLearning.ClassificationEvent;
+import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.features.AbstractFeature;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
+import com.joliciel.talismane.utils.WeightedOutcome;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigRenderOptions;
+
+/**
+ * An on-disk cache of the classification events generated for a given set of
+ * feature descriptors, corpus selection criteria and corpus version, so that
+ * repeated training runs only need to calculate features once.<br/>
+ * The cache is a record-oriented binary file, read and written sequentially.
+ * Feature names are written once, the first time they are encountered, and
+ * then referred to by index. A cache file is only made visible once all of its
+ * events have been written, so that an interrupted run never leaves a partial
+ * cache behind.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class ClassificationEventCache {
+	private static final Logger LOG = LoggerFactory.getLogger(ClassificationEventCache.class);
+	private static final int MAGIC = 0x4A464331; // JFC1
+	private static final int FORMAT_VERSION = 1;
+
+	private static final byte TYPE_BOOLEAN = 1;
+	private static final byte TYPE_DOUBLE = 2;
+	private static final byte TYPE_INTEGER = 3;
+	private static final byte TYPE_STRING = 4;
+	private static final byte TYPE_WEIGHTED_LIST = 5;
+
+	private final File file;
+	private final String key;
+
+	/**
+	 * @param cacheDir
+	 *            the directory in which cache files are stored
+	 * @param key
+	 *            the key identifying this cache, typically constructed using
+	 *            {@link #getKey(String, List, CorpusSelectionCriteria, String)}
+	 */
+	public ClassificationEventCache(File cacheDir, String key) {
+		this.key = key;
+		this.file = new File(cacheDir, key + ".events");
+	}
+
+	/**
+	 * Construct a cache key as a hash of everything which can change the events
+	 * generated.
+	 *
+	 * @param streamName
+	 *            the type of event stream being cached
+	 * @param featureDescriptors
+	 *            the feature descriptors used to generate the events
+	 * @param criteria
+	 *            the criteria used to select the corpus
+	 * @param corpusVersion
+	 *            a string which changes whenever the corpus content changes
+	 */
+	public static String getKey(String streamName, List<String> featureDescriptors, CorpusSelectionCriteria criteria, String corpusVersion) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			digest.update(streamName.getBytes(StandardCharsets.UTF_8));
+			for (String featureDescriptor : featureDescriptors) {
+				digest.update((byte) '\n');
+				digest.update(featureDescriptor.getBytes(StandardCharsets.UTF_8));
+			}
+			for (Entry<String, String> attribute : criteria.getAttributes().entrySet()) {
+				digest.update((byte) '\n');
+				digest.update((attribute.getKey() + "=" + attribute.getValue()).getBytes(StandardCharsets.UTF_8));
+			}
+			digest.update((byte) '\n');
+			digest.update(corpusVersion.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest()) {
+				sb.append(String.format("%02x", b));
+			}
+			return streamName + "_" + sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new JochreException(e);
+		}
+	}
+
+	/**
+	 * Get the feature cache configured for a given event stream in
+	 * jochre.training.feature-cache-dir, or null if no cache directory is
+	 * configured.
+	 *
+	 * @param corpusVersion
+	 *            the corpus version, as returned by
+	 *            {@link #getCorpusVersion(JochreSession)}
+	 */
+	public static ClassificationEventCache getConfiguredCache(String streamName, List<String> featureDescriptors, CorpusSelectionCriteria criteria,
+			String corpusVersion, JochreSession jochreSession) {
+		Config trainingConfig = jochreSession.getConfig().getConfig("jochre.training");
+		if (!trainingConfig.hasPath("feature-cache-dir"))
+			return null;
+		File featureCacheDir = new File(trainingConfig.getString("feature-cache-dir"));
+		String key = getKey(streamName, featureDescriptors, criteria, corpusVersion);
+		return new ClassificationEventCache(featureCacheDir, key);
+	}
+
+	/**
+	 * The version of the corpus to use in cache keys: either
+	 * jochre.training.corpus-version if configured, or a fingerprint read from
+	 * the database. Since event validity also depends on the linguistics
+	 * configuration, this is included as well.
+	 */
+	public static String getCorpusVersion(JochreSession jochreSession) {
+		Config trainingConfig = jochreSession.getConfig().getConfig("jochre.training");
+		String corpusVersion = null;
+		if (trainingConfig.hasPath("corpus-version"))
+			corpusVersion = trainingConfig.getString("corpus-version");
+		else
+			corpusVersion = GraphicsDao.getInstance(jochreSession).getCorpusVersion();
+		corpusVersion += "|" + jochreSession.getConfig().getConfig("jochre.linguistics").root().render(ConfigRenderOptions.concise());
+		return corpusVersion;
+	}
+
+	/**
+	 * Does a complete cache file already exist for this key?
+	 */
+	public boolean exists() {
+		return file.exists();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Open a stream replaying the events stored in this cache.
+	 */
+	public ClassificationEventStream getReader(Map<String, String> attributes) {
+		return new CacheReader(attributes);
+	}
+
+	/**
+	 * Open a writer for this cache. The cache only becomes visible once
+	 * {@link CacheWriter#commit()} is called.
+	 */
+	public CacheWriter getWriter() {
+		return new CacheWriter();
+	}
+
+	/**
+	 * Writes events to a temporary file, which replaces the cache file on
+	 * commit.
+	 */
+	public final class CacheWriter {
+		private final File tempFile;
+		private final DataOutputStream out;
+		private final Map<String, Integer> featureIndexes = new HashMap<>();
+		private int eventCount = 0;
+		private boolean closed = false;
+
+		private CacheWriter() {
+			try {
+				file.getParentFile().mkdirs();
+				tempFile = File.createTempFile(key, ".tmp", file.getParentFile());
+				tempFile.deleteOnExit();
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(key);
+			} catch (IOException e) {
+				throw new JochreException(e);
+			}
+		}
+
+		/**
+		 * Append an event to the cache.
+		 */
+		public void write(ClassificationEvent event) {
+			try {
+				out.writeBoolean(true);
+				out.writeUTF(event.getClassification());
+				List<FeatureResult<?>> featureResults = event.getFeatureResults();
+				out.writeInt(featureResults.size());
+				for (FeatureResult<?> featureResult : featureResults) {
+					String name = featureResult.getFeature().getName();
+					Integer index = featureIndexes.get(name);
+					if (index == null) {
+						index = featureIndexes.size();
+						featureIndexes.put(name, index);
+						out.writeInt(index);
+						out.writeUTF(name);
+					} else {
+						out.writeInt(index);
+					}
+					this.writeOutcome(name, featureResult.getOutcome());
+				}
+				eventCount++;
+			} catch (IOException e) {
+				throw new JochreException(e);
+			}
+		}
+
+		private void writeOutcome(String name, Object outcome) throws IOException {
+			if (outcome instanceof Boolean) {
+				out.writeByte(TYPE_BOOLEAN);
+				out.writeBoolean((Boolean) outcome);
+			} else if (outcome instanceof Double) {
+				out.writeByte(TYPE_DOUBLE);
+				out.writeDouble((Double) outcome);
+			} else if (outcome instanceof Integer) {
+				out.writeByte(TYPE_INTEGER);
+				out.writeInt((Integer) outcome);
+			} else if (outcome instanceof String) {
+				out.writeByte(TYPE_STRING);
+				out.writeUTF((String) outcome);
+			} else if (outcome instanceof List) {
+				List<?> list = (List<?>) outcome;
+				out.writeByte(TYPE_WEIGHTED_LIST);
+				out.writeInt(list.size());
+				for (Object item : list) {
+					WeightedOutcome<?> weightedOutcome = (WeightedOutcome<?>) item;
+					out.writeUTF(weightedOutcome.getOutcome().toString());
+					out.writeDouble(weightedOutcome.getWeight());
+				}
+			} else {
+				throw new JochreException("Cannot cache outcome for feature " + name + " of type " + outcome.getClass().getName());
+			}
+		}
+
+		/**
+		 * Mark the cache as complete, making it available for later runs.
+		 */
+		public void commit() {
+			if (closed)
+				return;
+			try {
+				out.writeBoolean(false);
+				out.close();
+				closed = true;
+				Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				LOG.info("Wrote " + eventCount + " events to feature cache " + file.getPath());
+			} catch (IOException e) {
+				throw new JochreException(e);
+			}
+		}
+
+		/**
+		 * Abandon the cache, removing the temporary file.
+		 */
+		public void abort() {
+			if (closed)
+				return;
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOG.error("Failed to close feature cache", e);
+			}
+			closed = true;
+			tempFile.delete();
+		}
+	}
+
+	private final class CacheReader implements ClassificationEventStream {
+		private final DataInputStream in;
+		private final Map<String, String> attributes;
+		private final List<CachedFeature> features = new ArrayList<>();
+		private ClassificationEvent nextEvent = null;
+		private boolean finished = false;
+		private int eventCount = 0;
+
+		private CacheReader(Map<String, String> attributes) {
+			this.attributes = attributes;
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+				int magic = in.readInt();
+				int version = in.readInt();
+				String fileKey = in.readUTF();
+				if (magic != MAGIC || version != FORMAT_VERSION || !fileKey.equals(key)) {
+					in.close();
+					throw new JochreException("Feature cache " + file.getPath() + " is corrupt or from an incompatible version");
+				}
+				LOG.info("Replaying events from feature cache " + file.getPath());
+			} catch (IOException e) {
+				throw new JochreException(e);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (nextEvent == null && !finished) {
+				try {
+					if (in.readBoolean()) {
+						nextEvent = this.readEvent();
+						eventCount++;
+					} else {
+						finished = true;
+						in.close();
+						LOG.debug("Replayed " + eventCount + " events");
+					}
+				} catch (IOException e) {
+					throw new JochreException(e);
+				}
+			}
+			return nextEvent != null;
+		}
+
+		@Override
+		public ClassificationEvent next() {
+			ClassificationEvent event = null;
+			if (this.hasNext()) {
+				event = nextEvent;
+				nextEvent = null;
+			}
+			return event;
+		}
+
+		private ClassificationEvent readEvent() throws IOException {
+			String classification = in.readUTF();
+			int featureCount = in.readInt();
+			List<FeatureResult<?>> featureResults = new ArrayList<>(featureCount);
+			for (int i = 0; i < featureCount; i++) {
+				int index = in.readInt();
+				if (index == features.size()) {
+					features.add(new CachedFeature(in.readUTF()));
+				}
+				CachedFeature feature = features.get(index);
+				featureResults.add(feature.getResult(this.readOutcome()));
+			}
+			return new ClassificationEvent(featureResults, classification);
+		}
+
+		private Object readOutcome() throws IOException {
+			byte type = in.readByte();
+			switch (type) {
+			case TYPE_BOOLEAN:
+				return in.readBoolean();
+			case TYPE_DOUBLE:
+				return in.readDouble();
+			case TYPE_INTEGER:
+				return in.readInt();
+			case TYPE_STRING:
+				return in.readUTF();
+			case TYPE_WEIGHTED_LIST: {
+				int size = in.readInt();
+				List<WeightedOutcome<String>> list = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					String outcome = in.readUTF();
+					double weight = in.readDouble();
+					list.add(new WeightedOutcome<String>(outcome, weight));
+				}
+				return list;
+			}
+			default:
+				throw new JochreException("Unknown outcome type in feature cache: " + type);
+			}
+		}
+
+		@Override
+		public Map<String, String> getAttributes() {
+			Map<String, String> attributes = new LinkedHashMap<>(this.attributes);
+			attributes.put("featureCache", file.getName());
+			return attributes;
+		}
+	}
+
+	/**
+	 * A stand-in for a feature whose results were read from the cache, so that
+	 * the results produced are identical to those of the original feature.
+	 */
+	private static final class CachedFeature extends AbstractFeature<Object, Object> {
+		public CachedFeature(String name) {
+			this.setName(name);
+		}
+
+		public FeatureResult<Object> getResult(Object outcome) {
+			return this.generateResult(outcome);
+		}
+
+		@Override
+		public FeatureResult<Object> check(Object context, RuntimeEnvironment env) {
+			throw new UnsupportedOperationException("Cached features cannot be checked");
+		}
+	}
+}
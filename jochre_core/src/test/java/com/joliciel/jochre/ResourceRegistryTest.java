@@ -0,0 +1,116 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResourceRegistryTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testLoadOnceAndShare() throws Exception {
+		final File file = tempFolder.newFile("model.zip");
+		final String key = "test:" + file.getAbsolutePath();
+		final CountingLoader loader = new CountingLoader();
+		final ResourceRegistry registry = ResourceRegistry.getInstance();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Object>> futures = new ArrayList<Future<Object>>();
+		for (int i = 0; i < 8; i++) {
+			futures.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					return registry.acquire(key, file, loader);
+				}
+			}));
+		}
+		Object first = futures.get(0).get();
+		for (Future<Object> future : futures)
+			assertSame(first, future.get());
+		executor.shutdown();
+
+		assertEquals(1, loader.loadCount.get());
+		assertEquals(8, registry.getReferenceCount(first));
+
+		for (int i = 0; i < 8; i++)
+			registry.release(first);
+		assertEquals(0, registry.getReferenceCount(first));
+
+		// still cached after release
+		assertSame(first, registry.acquire(key, file, loader));
+		assertEquals(1, loader.loadCount.get());
+		registry.release(first);
+
+		registry.evictUnused();
+		assertNotSame(first, registry.acquire(key, file, loader));
+		assertEquals(2, loader.loadCount.get());
+	}
+
+	@Test
+	public void testReloadOnChange() throws Exception {
+		File file = tempFolder.newFile("lexicon.txt");
+		String key = "test:" + file.getAbsolutePath();
+		CountingLoader loader = new CountingLoader();
+		ResourceRegistry registry = ResourceRegistry.getInstance();
+
+		Object first = registry.acquire(key, file, loader);
+		file.setLastModified(file.lastModified() - 10000);
+		Object second = registry.acquire(key, file, loader);
+		assertNotSame(first, second);
+		assertEquals(2, loader.loadCount.get());
+
+		// the previous version is still held until released
+		assertEquals(1, registry.getReferenceCount(first));
+		registry.release(first);
+		assertEquals(0, registry.getReferenceCount(first));
+		assertEquals(1, registry.getReferenceCount(second));
+	}
+
+	private static final class CountingLoader implements ResourceRegistry.ResourceLoader<Object> {
+		private final AtomicInteger loadCount = new AtomicInteger();
+
+		@Override
+		public Object load(File file) throws IOException {
+			loadCount.incrementAndGet();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			return new Object();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.boundaries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.boundaries.features.MergeFeature;
+import com.joliciel.jochre.graphics.GroupOfShapes;
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.Shape;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class DeterministicBoundaryDetectorTest {
+
+	@Test
+	public void testParallelMatchesSerial() throws Exception {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+
+		List<String> serialResults = this.findBoundaries(1);
+		List<String> parallelResults = this.findBoundaries(4);
+
+		assertEquals(serialResults, parallelResults);
+
+		// make sure the test data actually contains splits and merges
+		String allResults = serialResults.toString();
+		assertTrue(allResults.contains(SplitOutcome.DO_SPLIT.name()));
+		assertTrue(allResults.contains(MergeOutcome.DO_MERGE.name()));
+		assertTrue(allResults.contains(MergeOutcome.DO_NOT_MERGE.name()));
+	}
+
+	/**
+	 * Find the boundaries for each group in a freshly built image, and describe
+	 * the resulting sequences.
+	 */
+	private List<String> findBoundaries(int threadCount) throws ReflectiveOperationException {
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("jochre.boundaries.threads", threadCount);
+		Config config = ConfigFactory.parseMap(values).withFallback(ConfigFactory.load());
+		JochreSession jochreSession = new JochreSession(config);
+
+		final JochreImage jochreImage = new JochreImage(new BufferedImage(400, 100, BufferedImage.TYPE_BYTE_GRAY), jochreSession);
+		Paragraph paragraph = jochreImage.newParagraph();
+		int[] widths = new int[] { 4, 4, 20, 4, 4, 4, 20, 20, 4 };
+		for (int i = 0; i < 3; i++) {
+			RowOfShapes row = paragraph.newRow();
+			int top = i * 20;
+			for (int j = 0; j < 4; j++) {
+				GroupOfShapes group = row.newGroup();
+				int left = j * 100;
+				for (int k = 0; k < widths.length; k++) {
+					int width = widths[(i + j + k) % widths.length];
+					Shape shape = jochreImage.getShape(left, top, left + width - 1, top + 11);
+					shape.setMeanLine(2);
+					shape.setBaseLine(10);
+					group.addShape(shape);
+					left += width + 1;
+				}
+			}
+		}
+
+		ShapeSplitter shapeSplitter = new ShapeSplitter() {
+			@Override
+			public List<ShapeSequence> split(Shape shape) {
+				int middle = (shape.getLeft() + shape.getRight()) / 2;
+				ShapeSequence splitSequence = new ShapeSequence();
+				splitSequence.addShape(jochreImage.getShape(shape.getLeft(), shape.getTop(), middle, shape.getBottom()), shape);
+				splitSequence.addShape(jochreImage.getShape(middle + 1, shape.getTop(), shape.getRight(), shape.getBottom()), shape);
+				splitSequence.addDecision(new Decision(SplitOutcome.DO_SPLIT.name(), shape.getLeft() % 3 == 0 ? 0.3 : 0.7));
+				List<ShapeSequence> splitSequences = new ArrayList<ShapeSequence>();
+				splitSequences.add(splitSequence);
+				return splitSequences;
+			}
+		};
+
+		ShapeMerger shapeMerger = new ShapeMerger(new HashSet<MergeFeature<?>>(), null) {
+			@Override
+			public double checkMerge(Shape shape1, Shape shape2) {
+				return ((shape1.getLeft() + shape2.getTop()) % 10) / 10.0;
+			}
+		};
+
+		DeterministicBoundaryDetector detector = new DeterministicBoundaryDetector(shapeSplitter, shapeMerger, jochreSession);
+
+		List<String> results = new ArrayList<String>();
+		for (Paragraph oneParagraph : jochreImage.getParagraphs()) {
+			for (RowOfShapes row : oneParagraph.getRows()) {
+				for (GroupOfShapes group : row.getGroups()) {
+					for (ShapeSequence sequence : detector.findBoundaries(group)) {
+						StringBuilder sb = new StringBuilder();
+						for (ShapeInSequence shapeInSequence : sequence) {
+							Shape shape = shapeInSequence.getShape();
+							sb.append("[" + shape.getLeft() + "," + shape.getTop() + "," + shape.getRight() + "," + shape.getBottom() + "]");
+						}
+						for (Decision decision : sequence.getDecisions())
+							sb.append(" " + decision.getOutcome() + ":" + decision.getProbability());
+						results.add(sb.toString());
+					}
+				}
+			}
+		}
+		return results;
+	}
+}
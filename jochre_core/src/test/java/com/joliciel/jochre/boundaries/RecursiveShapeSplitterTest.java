@@ -1,9 +1,11 @@
 package com.joliciel.jochre.boundaries;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
@@ -16,8 +18,10 @@ import com.joliciel.jochre.JochreSession;
 import com.joliciel.jochre.boundaries.features.SplitFeature;
 import com.joliciel.jochre.graphics.JochreImage;
 import com.joliciel.jochre.graphics.Shape;
+import com.joliciel.talismane.machineLearning.ClassificationSolution;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.ScoringStrategy;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
@@ -319,4 +323,84 @@ public class RecursiveShapeSplitterTest {
 			i++;
 		}
 	}
+
+	/**
+	 * Make sure that sub-shapes reached through different split orders are
+	 * only analysed once.
+	 */
+	@Test
+	public void testSubShapesAnalysedOnce() throws Exception {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		Config config = ConfigFactory.load();
+		final JochreSession jochreSession = new JochreSession(config);
+
+		BufferedImage originalImage = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+		final JochreImage jochreImage = new JochreImage(originalImage, jochreSession);
+
+		final Shape shape = new Shape(jochreImage, 0, 0, 63, 15, jochreSession);
+		shape.setBaseLine(12);
+		shape.setMeanLine(4);
+
+		final Set<String> intervals = new HashSet<String>();
+		final int[] candidateCount = new int[1];
+		SplitCandidateFinder splitCandidateFinder = new SplitCandidateFinder(jochreSession) {
+			@Override
+			public List<Split> findSplitCandidates(Shape subShape) {
+				String interval = subShape.getLeft() + "-" + subShape.getRight();
+				assertTrue("Interval analysed twice: " + interval, intervals.add(interval));
+				// a candidate at every 16 pixels of the original shape
+				List<Split> splits = new ArrayList<Split>();
+				for (int x = subShape.getLeft() + 1; x < subShape.getRight(); x++) {
+					if (x % 16 == 15) {
+						Split split = new Split(subShape, jochreSession);
+						split.setPosition(x - subShape.getLeft());
+						splits.add(split);
+					}
+				}
+				candidateCount[0] += splits.size();
+				return splits;
+			}
+		};
+
+		final int[] decisionCount = new int[1];
+		DecisionMaker decisionMaker = new DecisionMaker() {
+			@Override
+			public List<Decision> decide(List<FeatureResult<?>> featureVector) {
+				decisionCount[0]++;
+				List<Decision> decisions = new ArrayList<Decision>();
+				decisions.add(new Decision(SplitOutcome.DO_SPLIT.name(), 0.5));
+				decisions.add(new Decision(SplitOutcome.DO_NOT_SPLIT.name(), 0.5));
+				return decisions;
+			}
+
+			@Override
+			public ScoringStrategy<ClassificationSolution> getDefaultScoringStrategy() {
+				return null;
+			}
+		};
+
+		Set<SplitFeature<?>> splitFeatures = new TreeSet<SplitFeature<?>>();
+
+		RecursiveShapeSplitter splitter = new RecursiveShapeSplitter(splitCandidateFinder, splitFeatures, decisionMaker, jochreSession);
+		splitter.setBeamWidth(10);
+		splitter.setMaxDepth(3);
+		splitter.setMinWidthRatio(1.0);
+
+		List<ShapeSequence> shapeSequences = splitter.split(shape);
+
+		// every contiguous run of the four 16-pixel blocks is analysed, except
+		// the single blocks at the maximum depth
+		assertEquals(10, intervals.size());
+		assertEquals(candidateCount[0], decisionCount[0]);
+
+		boolean foundNoSplit = false;
+		for (ShapeSequence shapeSequence : shapeSequences) {
+			if (shapeSequence.size() == 1)
+				foundNoSplit = true;
+			assertEquals(1.0, shapeSequence.getScore(), 0.0001);
+		}
+		assertTrue(foundNoSplit);
+		assertEquals(10, shapeSequences.size());
+	}
 }
@@ -0,0 +1,215 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.doc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.utils.JochreException;
+
+public class AsyncDocumentObserverTest {
+
+	@Test
+	public void testEventOrder() {
+		RecordingObserver fastObserver = new RecordingObserver(0);
+		RecordingObserver slowObserver = new RecordingObserver(2);
+		List<DocumentObserver> observers = new ArrayList<DocumentObserver>();
+		observers.add(fastObserver);
+		observers.add(slowObserver);
+		AsyncDocumentObserver asyncObserver = new AsyncDocumentObserver(observers, 2);
+
+		List<String> expected = new ArrayList<String>();
+		asyncObserver.onDocumentStart(null);
+		expected.add("documentStart");
+		for (int i = 0; i < 20; i++) {
+			asyncObserver.onPageStart(null);
+			asyncObserver.onImageStart(null);
+			asyncObserver.onImageComplete(null);
+			asyncObserver.onPageComplete(null);
+			expected.add("pageStart");
+			expected.add("imageStart");
+			expected.add("imageComplete");
+			expected.add("pageComplete");
+		}
+		asyncObserver.onDocumentComplete(null);
+		asyncObserver.onAnalysisComplete();
+		expected.add("documentComplete");
+		expected.add("analysisComplete");
+
+		assertEquals(expected, fastObserver.events);
+		assertEquals(expected, slowObserver.events);
+		assertNotSame(Thread.currentThread(), fastObserver.thread);
+		assertNotSame(Thread.currentThread(), slowObserver.thread);
+		assertNotSame(fastObserver.thread, slowObserver.thread);
+	}
+
+	@Test
+	public void testFailure() {
+		RecordingObserver observer = new RecordingObserver(0) {
+			@Override
+			public void onImageComplete(JochreImage jochreImage) {
+				throw new IllegalStateException("Export failed");
+			}
+		};
+		RecordingObserver otherObserver = new RecordingObserver(0);
+		List<DocumentObserver> observers = new ArrayList<DocumentObserver>();
+		observers.add(observer);
+		observers.add(otherObserver);
+		AsyncDocumentObserver asyncObserver = new AsyncDocumentObserver(observers, 1);
+		asyncObserver.onDocumentStart(null);
+		asyncObserver.onImageComplete(null);
+		try {
+			asyncObserver.onAnalysisComplete();
+			fail("Expected failure");
+		} catch (JochreException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		// other observers are unaffected, and the failed observer gets no more
+		// events
+		assertEquals(3, otherObserver.events.size());
+		assertEquals(1, observer.events.size());
+
+		try {
+			asyncObserver.onDocumentComplete(null);
+			fail("Expected failure");
+		} catch (JochreException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testAfterPendingEvents() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		RecordingObserver blockedObserver = new RecordingObserver(0) {
+			@Override
+			public void onPageComplete(JochrePage jochrePage) {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					throw new JochreException(e);
+				}
+				super.onPageComplete(jochrePage);
+			}
+		};
+		List<DocumentObserver> observers = new ArrayList<DocumentObserver>();
+		observers.add(new RecordingObserver(0));
+		observers.add(blockedObserver);
+		AsyncDocumentObserver asyncObserver = new AsyncDocumentObserver(observers, 4);
+		List<DocumentObserver> allObservers = new ArrayList<DocumentObserver>();
+		allObservers.add(new RecordingObserver(0));
+		allObservers.add(asyncObserver);
+
+		final CountDownLatch released = new CountDownLatch(1);
+		final AtomicBoolean pageCompleted = new AtomicBoolean(false);
+		asyncObserver.onPageComplete(null);
+		AsyncDocumentObserver.afterPendingEvents(allObservers, new Runnable() {
+			@Override
+			public void run() {
+				pageCompleted.set(blockedObserver.events.contains("pageComplete"));
+				released.countDown();
+			}
+		});
+
+		assertFalse(released.await(100, TimeUnit.MILLISECONDS));
+		latch.countDown();
+		assertTrue(released.await(10, TimeUnit.SECONDS));
+		assertTrue(pageCompleted.get());
+		asyncObserver.onAnalysisComplete();
+
+		// without asynchronous observers, the action is run immediately
+		final AtomicBoolean run = new AtomicBoolean(false);
+		AsyncDocumentObserver.afterPendingEvents(Collections.<DocumentObserver> singletonList(new RecordingObserver(0)), new Runnable() {
+			@Override
+			public void run() {
+				run.set(true);
+			}
+		});
+		assertTrue(run.get());
+	}
+
+	private static class RecordingObserver implements DocumentObserver {
+		private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		private final long delay;
+		private volatile Thread thread;
+
+		public RecordingObserver(long delay) {
+			this.delay = delay;
+		}
+
+		private void record(String event) {
+			thread = Thread.currentThread();
+			if (delay > 0) {
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					throw new JochreException(e);
+				}
+			}
+			events.add(event);
+		}
+
+		@Override
+		public void onDocumentStart(JochreDocument jochreDocument) {
+			this.record("documentStart");
+		}
+
+		@Override
+		public void onPageStart(JochrePage jochrePage) {
+			this.record("pageStart");
+		}
+
+		@Override
+		public void onImageStart(JochreImage jochreImage) {
+			this.record("imageStart");
+		}
+
+		@Override
+		public void onImageComplete(JochreImage jochreImage) {
+			this.record("imageComplete");
+		}
+
+		@Override
+		public void onPageComplete(JochrePage jochrePage) {
+			this.record("pageComplete");
+		}
+
+		@Override
+		public void onDocumentComplete(JochreDocument jochreDocument) {
+			this.record("documentComplete");
+		}
+
+		@Override
+		public void onAnalysisComplete() {
+			this.record("analysisComplete");
+		}
+	}
+}
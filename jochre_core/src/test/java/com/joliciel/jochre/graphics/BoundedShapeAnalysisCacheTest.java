@@ -0,0 +1,129 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.graphics.Shape.SectionBrightnessMeasurementMethod;
+import com.typesafe.config.ConfigFactory;
+
+public class BoundedShapeAnalysisCacheTest {
+
+	@Test
+	public void testEvictLeastRecentlyUsed() throws Exception {
+		JochreImage jochreImage = this.getImage();
+		Shape shape1 = jochreImage.getShape(0, 0, 9, 9);
+		Shape shape2 = jochreImage.getShape(10, 0, 19, 9);
+		Shape shape3 = jochreImage.getShape(20, 0, 29, 9);
+
+		long valueBytes = 1000;
+		BoundedShapeAnalysisCache cache = new BoundedShapeAnalysisCache(3 * valueBytes);
+		Object value1 = new Object();
+		Object value2 = new Object();
+		Object value3 = new Object();
+		cache.put(shape1, "a", value1, valueBytes);
+		cache.put(shape2, "a", value2, valueBytes);
+		assertEquals(2, cache.size());
+
+		// shape1 is now more recently used than shape2
+		assertSame(value1, cache.get(shape1, "a"));
+		cache.put(shape3, "a", value3, valueBytes);
+
+		assertEquals(2, cache.size());
+		assertSame(value1, cache.get(shape1, "a"));
+		assertNull(cache.get(shape2, "a"));
+		assertSame(value3, cache.get(shape3, "a"));
+		assertTrue(cache.getBytes() <= 3 * valueBytes);
+
+		cache.remove(shape1);
+		assertNull(cache.get(shape1, "a"));
+		assertEquals(1, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+	}
+
+	@Test
+	public void testFeatureSlots() throws Exception {
+		JochreImage jochreImage = this.getImage();
+		Shape shape = jochreImage.getShape(0, 0, 9, 9);
+		BoundedShapeAnalysisCache cache = new BoundedShapeAnalysisCache(Long.MAX_VALUE);
+		assertNull(cache.getFeatureResult(shape, 3));
+		assertNull(cache.getFeatureResult(shape, 100));
+		long bytes = cache.getBytes();
+		cache.putFeatureResult(shape, 100, null);
+		assertNull(cache.getFeatureResult(shape, 100));
+		assertTrue(cache.getBytes() > bytes);
+	}
+
+	@Test
+	public void testShapeAnalysisReleased() throws Exception {
+		JochreImage jochreImage = this.getImage();
+		Shape shape = jochreImage.getShape(0, 0, 9, 9);
+		shape.setMeanLine(2);
+		shape.setBaseLine(8);
+
+		BitSet bitset = shape.getBlackAndWhiteBitSet(100);
+		int[] verticalCounts = shape.getVerticalCounts();
+		shape.getBrightnessBySection(2, 2, SectionBrightnessMeasurementMethod.RAW);
+		double mean = shape.getBrightnessMeanBySection(2, 2, SectionBrightnessMeasurementMethod.RAW);
+		assertTrue(jochreImage.getShapeAnalysisCache().getBytes() > 0);
+		assertSame(bitset, shape.getBlackAndWhiteBitSet(100));
+
+		// once discarded, the analysis is recalculated identically
+		jochreImage.getShapeAnalysisCache().remove(shape);
+		assertEquals(0, jochreImage.getShapeAnalysisCache().getBytes());
+		assertEquals(bitset, shape.getBlackAndWhiteBitSet(100));
+		assertArrayEquals(verticalCounts, shape.getVerticalCounts());
+		assertEquals(mean, shape.getBrightnessMeanBySection(2, 2, SectionBrightnessMeasurementMethod.RAW), 0.0001);
+
+		ShapeAnalysisCache cache = jochreImage.getShapeAnalysisCache();
+		jochreImage.clearMemory();
+		assertEquals(0, cache.getBytes());
+		assertNotNull(jochreImage.getShapeAnalysisCache());
+	}
+
+	private JochreImage getImage() throws ReflectiveOperationException {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		JochreSession jochreSession = new JochreSession(ConfigFactory.load());
+		BufferedImage image = new BufferedImage(40, 10, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, 40, 10);
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(2, 2, 5, 6);
+		graphics.dispose();
+		return new JochreImage(image, jochreSession);
+	}
+}
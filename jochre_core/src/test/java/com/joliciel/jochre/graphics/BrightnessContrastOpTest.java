@@ -0,0 +1,64 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BrightnessContrastOpTest {
+
+	@Test
+	public void testLookupTable() {
+		float contrastFactor = 1.4f;
+		float brightnessFactor = 30f;
+		BrightnessContrastOp op = new BrightnessContrastOp(contrastFactor, brightnessFactor, null);
+		Random random = new Random(1);
+		for (int type : new int[] { BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR }) {
+			BufferedImage image = new BufferedImage(37, 23, type);
+			for (int y = 0; y < image.getHeight(); y++)
+				for (int x = 0; x < image.getWidth(); x++)
+					image.setRGB(x, y, random.nextInt(0x1000000));
+
+			BufferedImage result = op.filter(image, null);
+			assertEquals(type, result.getType());
+			Raster raster = image.getRaster();
+			Raster resultRaster = result.getRaster();
+			int[] pixel = null;
+			int[] resultPixel = null;
+			for (int y = 0; y < image.getHeight(); y++) {
+				for (int x = 0; x < image.getWidth(); x++) {
+					pixel = raster.getPixel(x, y, pixel);
+					resultPixel = resultRaster.getPixel(x, y, resultPixel);
+					int[] expected = new int[pixel.length];
+					for (int band = 0; band < pixel.length; band++) {
+						int val = (int) ((pixel[band] + brightnessFactor - 128) * contrastFactor) + 128;
+						expected[band] = Math.max(0, Math.min(255, val));
+					}
+					assertArrayEquals("type " + type + " at " + x + "," + y, expected, resultPixel);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,115 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.doc.JochreDocument;
+import com.joliciel.jochre.doc.JochrePage;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class JochreCorpusReaderTest {
+	private JochreSession jochreSession;
+	private final Map<String, JochreDocument> documents = new HashMap<>();
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		Config config = ConfigFactory.load();
+		jochreSession = new JochreSession(config);
+
+		// three documents of three pages, with one image per page, whose id is
+		// the document number followed by the page index
+		int docId = 1;
+		for (String docName : new String[] { "doc1", "doc2", "doc3" }) {
+			JochreDocument doc = new JochreDocument(jochreSession);
+			doc.setName(docName);
+			for (int i = 0; i < 3; i++) {
+				JochrePage page = doc.newPage();
+				JochreImage image = page.newJochreImage(new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY), docName + "_" + page.getIndex());
+				image.setId(docId * 10 + page.getIndex());
+				image.setImageStatus(ImageStatus.TRAINING_VALIDATED);
+			}
+			doc.setId(docId++);
+			documents.put(docName, doc);
+		}
+	}
+
+	@Test
+	public void testDocumentSelectionFolds() throws Exception {
+		Map<String, Set<Integer>> documentSelections = new LinkedHashMap<>();
+		documentSelections.put("doc1", new TreeSet<Integer>());
+		documentSelections.put("doc3", new TreeSet<Integer>(Arrays.asList(1, 3)));
+
+		JochreCorpusImageReader allReader = this.getReader(documentSelections, -1);
+		assertEquals(new HashSet<Integer>(Arrays.asList(11, 12, 13, 31, 33)), this.getImageIds(allReader));
+
+		Set<Integer> foldImageIds = new HashSet<>();
+		for (int foldIndex = 0; foldIndex < 2; foldIndex++) {
+			JochreCorpusImageReader foldReader = this.getReader(documentSelections, foldIndex);
+			// each fold only returns selected images, with the same fold index as
+			// when reading all folds
+			for (JochreImage image : foldReader.getImages()) {
+				assertEquals(foldIndex, allReader.getCrossValidationIndex(image));
+				foldImageIds.add(image.getId());
+			}
+		}
+		assertEquals(this.getImageIds(allReader), foldImageIds);
+	}
+
+	private JochreCorpusImageReader getReader(Map<String, Set<Integer>> documentSelections, int includeIndex) {
+		CorpusSelectionCriteria criteria = new CorpusSelectionCriteria();
+		criteria.setDocumentSelections(documentSelections);
+		criteria.setCrossValidationSize(2);
+		criteria.setIncludeIndex(includeIndex);
+
+		JochreCorpusImageReader reader = new JochreCorpusImageReader(jochreSession) {
+			@Override
+			protected JochreDocument loadDocument(String docName) {
+				return documents.get(docName);
+			}
+		};
+		reader.setSelectionCriteria(criteria);
+		// initialises the image list
+		reader.hasNext();
+		return reader;
+	}
+
+	private Set<Integer> getImageIds(JochreCorpusReader reader) {
+		Set<Integer> imageIds = new HashSet<>();
+		for (JochreImage image : reader.getImages())
+			imageIds.add(image.getId());
+		return imageIds;
+	}
+}
@@ -0,0 +1,145 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.doc.JochreDocument;
+import com.joliciel.jochre.doc.JochrePage;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class SegmentationCacheTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		File cacheDir = tempFolder.newFolder();
+		JochreSession jochreSession = this.getSession(1);
+		BufferedImage image = this.getImage();
+		String fileHash = "abc";
+
+		JochrePage page = new JochreDocument(jochreSession).newPage();
+		SourceImage sourceImage = page.newJochreImage(image, "page.png");
+		new Segmenter(sourceImage, jochreSession).segment();
+		assertTrue(sourceImage.getParagraphs().size() > 0);
+
+		SegmentationCache cache = new SegmentationCache(cacheDir, jochreSession);
+		JochrePage cachedPage = new JochreDocument(jochreSession).newPage();
+		assertNull(cache.load(cachedPage, image, "page.png", fileHash));
+		cache.save(sourceImage, fileHash);
+
+		SourceImage cachedImage = cache.load(cachedPage, image, "page.png", fileHash);
+		assertNotNull(cachedImage);
+		assertSame(cachedImage, cachedPage.getImages().get(0));
+		assertEquals(sourceImage.getIndex(), cachedImage.getIndex());
+		assertEquals(sourceImage.getBlackThreshold(), cachedImage.getBlackThreshold());
+		assertEquals(sourceImage.getSeparationThreshold(), cachedImage.getSeparationThreshold());
+		assertEquals(sourceImage.getShapeCount(), cachedImage.getShapeCount());
+		assertEquals(sourceImage.getRows().size(), cachedImage.getRows().size());
+		assertEquals(this.getSegmentation(sourceImage), this.getSegmentation(cachedImage));
+
+		// a different segmentation configuration or file is never restored
+		SegmentationCache otherCache = new SegmentationCache(cacheDir, this.getSession(2));
+		assertNull(otherCache.load(new JochreDocument(jochreSession).newPage(), image, "page.png", fileHash));
+		assertNull(cache.load(new JochreDocument(jochreSession).newPage(), image, "page.png", "def"));
+	}
+
+	@Test
+	public void testFileHash() throws Exception {
+		File file1 = tempFolder.newFile();
+		File file2 = tempFolder.newFile();
+		Files.write(file1.toPath(), "one".getBytes(StandardCharsets.UTF_8));
+		Files.write(file2.toPath(), "two".getBytes(StandardCharsets.UTF_8));
+		assertEquals(SegmentationCache.getFileHash(file1), SegmentationCache.getFileHash(file1));
+		assertNotEquals(SegmentationCache.getFileHash(file1), SegmentationCache.getFileHash(file2));
+	}
+
+	private List<String> getSegmentation(JochreImage jochreImage) {
+		List<String> segmentation = new ArrayList<String>();
+		for (Paragraph paragraph : jochreImage.getParagraphs()) {
+			segmentation.add("Paragraph " + paragraph.getIndex());
+			for (RowOfShapes row : paragraph.getRows()) {
+				segmentation.add("Row " + row.getIndex() + ": " + row.getXHeight() + ", " + row.getXHeightMax());
+				for (GroupOfShapes group : row.getGroups()) {
+					segmentation.add("Group " + group.getIndex());
+					for (Shape shape : group.getShapes()) {
+						segmentation.add("Shape " + shape.getIndex() + ": " + shape.getLeft() + "," + shape.getTop() + "," + shape.getRight() + ","
+								+ shape.getBottom() + " " + shape.getCapLine() + "," + shape.getMeanLine() + "," + shape.getBaseLine());
+					}
+				}
+			}
+		}
+		return segmentation;
+	}
+
+	private JochreSession getSession(int layoutScale) throws ReflectiveOperationException {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("jochre.segmenter.layout-scale", layoutScale);
+		Config config = ConfigFactory.parseMap(values).withFallback(ConfigFactory.load());
+		return new JochreSession(config);
+	}
+
+	/**
+	 * A few rows of rectangular "letters".
+	 */
+	private BufferedImage getImage() {
+		BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, 400, 200);
+		graphics.setColor(Color.BLACK);
+		for (int row = 0; row < 5; row++) {
+			int x = 40;
+			for (int word = 0; word < 6; word++) {
+				for (int letter = 0; letter < 2 + (word + row) % 4; letter++) {
+					graphics.fillRect(x, 40 + row * 28, 8, 14);
+					x += 12;
+				}
+				x += 10;
+			}
+		}
+		graphics.dispose();
+		return image;
+	}
+}
@@ -0,0 +1,89 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.joliciel.jochre.JochreSession;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class ShapeRegistryTest {
+
+	@Test
+	public void testSameShapeForSameCoordinates() throws Exception {
+		JochreImage jochreImage = this.getImage(16 * 1024);
+		Shape shape = jochreImage.getShape(10, 20, 30, 40);
+		assertSame(shape, jochreImage.getShape(10, 20, 30, 40));
+		assertNotSame(shape, jochreImage.getShape(10, 20, 30, 41));
+		assertEquals(10, shape.getLeft());
+		assertEquals(20, shape.getTop());
+		assertEquals(30, shape.getRight());
+		assertEquals(40, shape.getBottom());
+		assertEquals(2, jochreImage.getRegisteredShapeCount());
+
+		jochreImage.clearMemory();
+		assertEquals(0, jochreImage.getRegisteredShapeCount());
+		assertEquals(0, jochreImage.getRetainedShapeBytes());
+	}
+
+	@Test
+	public void testRetainedBytesBounded() throws Exception {
+		long maxBytes = 16 * 1024;
+		JochreImage jochreImage = this.getImage(maxBytes);
+		Shape heldShape = jochreImage.getShape(0, 0, 9, 9);
+		for (int i = 1; i < 1000; i++) {
+			jochreImage.getShape(i, 0, i + 9, 9);
+			assertTrue(jochreImage.getRetainedShapeBytes() <= maxBytes);
+		}
+
+		// shapes which are still referenced elsewhere keep their identity
+		System.gc();
+		assertSame(heldShape, jochreImage.getShape(0, 0, 9, 9));
+	}
+
+	@Test
+	public void testKeyPacking() {
+		assertFalse(ShapeRegistry.canPack(0x10000, 0, 1, 1));
+		assertFalse(ShapeRegistry.canPack(-1, 0, 1, 1));
+		assertTrue(ShapeRegistry.canPack(0xFFFF, 0xFFFF, 0xFFFF, 0xFFFF));
+		assertTrue(ShapeRegistry.getKey(1, 2, 3, 4) != ShapeRegistry.getKey(2, 1, 3, 4));
+		assertTrue(ShapeRegistry.getKey(0xFFFF, 0, 0, 0) != ShapeRegistry.getKey(0x7FFF, 0, 0, 0));
+	}
+
+	private JochreImage getImage(long maxBytes) throws ReflectiveOperationException {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("jochre.image.shape-cache-max-bytes", maxBytes);
+		Config config = ConfigFactory.parseMap(values).withFallback(ConfigFactory.load());
+		JochreSession jochreSession = new JochreSession(config);
+		return new JochreImage(new BufferedImage(100, 100, BufferedImage.TYPE_BYTE_GRAY), jochreSession);
+	}
+}
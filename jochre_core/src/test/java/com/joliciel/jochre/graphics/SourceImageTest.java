@@ -0,0 +1,85 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+import com.joliciel.jochre.JochreSession;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class SourceImageTest {
+
+	@Test
+	public void testPercentile() {
+		Random random = new Random(1);
+		for (int iteration = 0; iteration < 200; iteration++) {
+			int[] counts = new int[256];
+			DescriptiveStatistics stats = new DescriptiveStatistics();
+			// a few sparse distributions, including empty and single values
+			int values = iteration < 3 ? iteration : random.nextInt(iteration * 10);
+			for (int i = 0; i < values; i++) {
+				int value = random.nextInt(1 + random.nextInt(256));
+				counts[value]++;
+				stats.addValue(value);
+			}
+			for (double percentile : new double[] { 0.1, 1, 25, 50, 60, 75, 99.9, 100 }) {
+				assertEquals("values " + values + ", percentile " + percentile, stats.getPercentile(percentile), SourceImage.getPercentile(counts, percentile),
+						0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testThresholdsIndependentOfThreads() throws Exception {
+		Random random = new Random(2);
+		BufferedImage image = new BufferedImage(300, 700, BufferedImage.TYPE_BYTE_GRAY);
+		for (int y = 0; y < image.getHeight(); y++)
+			for (int x = 0; x < image.getWidth(); x++) {
+				int brightness = random.nextInt(10) == 0 ? random.nextInt(100) : 180 + random.nextInt(76);
+				image.getRaster().setSample(x, y, 0, brightness);
+			}
+
+		SourceImage serialImage = new SourceImage("image", image, this.getSession(1));
+		SourceImage parallelImage = new SourceImage("image", image, this.getSession(4));
+		assertTrue(serialImage.getBlackThreshold() > 0);
+		assertEquals(serialImage.getBlackLimit(), parallelImage.getBlackLimit());
+		assertEquals(serialImage.getWhiteLimit(), parallelImage.getWhiteLimit());
+		assertEquals(serialImage.getBlackThreshold(), parallelImage.getBlackThreshold());
+		assertEquals(serialImage.getSeparationThreshold(), parallelImage.getSeparationThreshold());
+	}
+
+	private JochreSession getSession(int thresholdThreads) throws ReflectiveOperationException {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("jochre.segmenter.threshold-threads", thresholdThreads);
+		Config config = ConfigFactory.parseMap(values).withFallback(ConfigFactory.load());
+		return new JochreSession(config);
+	}
+}
@@ -0,0 +1,177 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.graphics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.joliciel.jochre.JochreSession;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class VectorizerFastModeTest {
+	private static final int THRESHOLD = 100;
+
+	private JochreSession jochreSession;
+	private Vectorizer vectorizer;
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		Config config = ConfigFactory.load();
+		jochreSession = new JochreSession(config);
+		vectorizer = new Vectorizer();
+		vectorizer.setWhiteGapFillFactor(5);
+	}
+
+	@Test
+	public void testFixtureShape() throws Exception {
+		int[] pixels = { 0, 1, 1, 0, 0, 1, 1, 1, // row
+				0, 1, 1, 1, 0, 1, 1, 1, // row
+				0, 0, 1, 1, 0, 0, 1, 1, // row
+				0, 0, 1, 1, 0, 1, 1, 0, // row
+				0, 0, 0, 1, 1, 1, 1, 0, // row
+				0, 0, 0, 1, 1, 1, 0, 0, // row
+				0, 0, 1, 1, 1, 0, 0, 0, // row
+				1, 1, 1, 1, 1, 0, 0, 0 // row
+		};
+
+		int[] outlinePixels = { 0, 1, 1, 0, 0, 1, 1, 1, // row
+				0, 1, 0, 1, 0, 1, 0, 1, // row
+				0, 0, 1, 1, 0, 0, 1, 1, // row
+				0, 0, 1, 1, 0, 1, 1, 0, // row
+				0, 0, 0, 1, 1, 0, 1, 0, // row
+				0, 0, 0, 1, 0, 1, 0, 0, // row
+				0, 0, 1, 0, 1, 0, 0, 0, // row
+				1, 1, 1, 1, 1, 0, 0, 0 // row
+		};
+
+		Shape shape = new ShapeMock(pixels, 8, 8, jochreSession);
+		BitSet outline = new BitSet(64);
+		for (int i = 0; i < 8 * 8; i++)
+			outline.set(i, outlinePixels[i] == 1);
+
+		this.assertFastMode(shape, outline, 1, 60, 1000);
+	}
+
+	@Test
+	public void testRandomShapes() throws Exception {
+		// larger shapes, so that the outline gets sampled
+		Random random = new Random(1);
+		for (int n = 0; n < 5; n++) {
+			int width = 30 + random.nextInt(20);
+			int height = 20 + random.nextInt(20);
+			int[] pixels = new int[width * height];
+			BitSet outline = new BitSet(width * height);
+			for (int i = 0; i < width * height; i++) {
+				pixels[i] = random.nextInt(4) == 0 ? 0 : 1;
+				outline.set(i, pixels[i] == 1 && random.nextBoolean());
+			}
+			Shape shape = new ShapeMock(pixels, width, height, jochreSession);
+			this.assertFastMode(shape, outline, 60, 200, 100000);
+		}
+	}
+
+	/**
+	 * Fast mode should return the default mode's ordering of all lines found,
+	 * without any lines already found in the opposite direction. When all lines
+	 * are retained, both modes should return the same lines, up to direction.
+	 */
+	private void assertFastMode(Shape shape, BitSet outline, int... maxLinesList) {
+		List<LineSegment> allLines = this.getAllLines(shape, outline);
+		for (int maxLines : maxLinesList) {
+			List<LineSegment> fastLines = vectorizer.getLongestLinesFast(shape, outline, maxLines, THRESHOLD);
+			List<LineSegment> expected = allLines.subList(0, Math.min(maxLines, allLines.size()));
+			assertEquals(expected.size(), fastLines.size());
+			for (int i = 0; i < expected.size(); i++) {
+				LineSegment expectedLine = expected.get(i);
+				LineSegment actualLine = fastLines.get(i);
+				assertEquals(this.getKey(expectedLine, false), this.getKey(actualLine, false));
+				assertEquals(expectedLine.getLength(), actualLine.getLength());
+				assertEquals(expectedLine.getLineDefinition().getIndex(), actualLine.getLineDefinition().getIndex());
+			}
+
+			if (maxLines >= allLines.size()) {
+				List<LineSegment> defaultLines = vectorizer.getLongestLines(shape, outline, maxLines, THRESHOLD);
+				assertEquals(this.getKeysUpToDirection(defaultLines), this.getKeysUpToDirection(fastLines));
+			}
+		}
+	}
+
+	/**
+	 * All lines found from the sampled outline pixels, exactly as in the
+	 * default mode, skipping those already found in either direction, and
+	 * sorted in their natural order.
+	 */
+	private List<LineSegment> getAllLines(Shape shape, BitSet outline) {
+		int samplingInterval = outline.cardinality() / 100;
+		if (samplingInterval == 0)
+			samplingInterval = 1;
+
+		Set<String> keysFound = new HashSet<String>();
+		List<LineSegment> allLines = new ArrayList<LineSegment>();
+		int samplingIndex = 0;
+		for (int y = 0; y < shape.getHeight(); y++) {
+			for (int x = 0; x < shape.getWidth(); x++) {
+				if (outline.get(y * shape.getWidth() + x)) {
+					if (samplingIndex == 0) {
+						for (LineSegment lineSegment : vectorizer.getLinesToEdge(shape, x, y, THRESHOLD)) {
+							if (keysFound.contains(this.getKey(lineSegment, true)) || keysFound.contains(this.getKey(lineSegment, false)))
+								continue;
+							keysFound.add(this.getKey(lineSegment, false));
+							allLines.add(lineSegment);
+						}
+					}
+					samplingIndex++;
+					if (samplingIndex == samplingInterval)
+						samplingIndex = 0;
+				}
+			}
+		}
+		Collections.sort(allLines);
+		return allLines;
+	}
+
+	private Set<String> getKeysUpToDirection(List<LineSegment> lineSegments) {
+		Set<String> keys = new HashSet<String>();
+		for (LineSegment lineSegment : lineSegments) {
+			String key = this.getKey(lineSegment, false);
+			String reversedKey = this.getKey(lineSegment, true);
+			keys.add(key.compareTo(reversedKey) < 0 ? key : reversedKey);
+		}
+		return keys;
+	}
+
+	private String getKey(LineSegment lineSegment, boolean reversed) {
+		if (reversed)
+			return lineSegment.getEndX() + "," + lineSegment.getEndY() + "-" + lineSegment.getStartX() + "," + lineSegment.getStartY();
+		return lineSegment.getStartX() + "," + lineSegment.getStartY() + "-" + lineSegment.getEndX() + "," + lineSegment.getEndY();
+	}
+}
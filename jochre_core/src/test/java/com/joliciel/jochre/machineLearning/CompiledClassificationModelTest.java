@@ -0,0 +1,163 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.machineLearning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.machineLearning.ClassificationEvent;
+import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ClassificationModel;
+import com.joliciel.talismane.machineLearning.ClassificationModelTrainer;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.machineLearning.ModelTrainerFactory;
+import com.joliciel.talismane.machineLearning.features.AbstractFeature;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class CompiledClassificationModelTest {
+	private static final double TOLERANCE = 1e-5;
+
+	@Test
+	public void testLinearSVM() {
+		this.compareWithDecisionMaker("LinearSVM", false, Arrays.asList("a", "b", "c", "d"));
+	}
+
+	@Test
+	public void testLinearSVMBinary() {
+		this.compareWithDecisionMaker("LinearSVM", false, Arrays.asList("a", "b"));
+	}
+
+	@Test
+	public void testLinearSVMOneVsRest() {
+		this.compareWithDecisionMaker("LinearSVM", true, Arrays.asList("a", "b", "c", "d"));
+	}
+
+	@Test
+	public void testMaxent() {
+		this.compareWithDecisionMaker("MaxEnt", false, Arrays.asList("a", "b", "c", "d"));
+	}
+
+	@Test
+	public void testTopOutcomes() {
+		ClassificationModel model = this.train("MaxEnt", false, Arrays.asList("a", "b", "c", "d"));
+		CompiledModelScorer scorer = CompiledClassificationModel.compile(model).getScorer();
+		List<FeatureResult<?>> featureResults = this.getEvents(Arrays.asList("a", "b", "c", "d"), 1, 99).get(0).getFeatureResults();
+
+		int count = scorer.score(featureResults, 2, 0.0);
+		assertEquals(2, count);
+		List<Decision> decisions = model.getDecisionMaker().decide(featureResults);
+		for (int i = 0; i < count; i++)
+			assertEquals(decisions.get(i).getOutcome(), scorer.getOutcome(i));
+		assertTrue(scorer.getProbability(0) >= scorer.getProbability(1));
+
+		count = scorer.score(featureResults, 4, 1.1);
+		assertEquals(0, count);
+	}
+
+	private void compareWithDecisionMaker(String algorithm, boolean oneVsRest, List<String> outcomes) {
+		ClassificationModel model = this.train(algorithm, oneVsRest, outcomes);
+		assertTrue(CompiledClassificationModel.isSupported(model));
+		CompiledClassificationModel compiledModel = CompiledClassificationModel.compile(model);
+		CompiledModelScorer scorer = compiledModel.getScorer();
+
+		for (ClassificationEvent event : this.getEvents(outcomes, 50, 42)) {
+			List<Decision> decisions = model.getDecisionMaker().decide(event.getFeatureResults());
+			int count = scorer.score(event.getFeatureResults(), compiledModel.getOutcomeCount(), 0.0);
+			assertEquals(decisions.size(), count);
+			Map<String, Double> probabilities = new HashMap<String, Double>();
+			for (int i = 0; i < count; i++)
+				probabilities.put(scorer.getOutcome(i), scorer.getProbability(i));
+			for (Decision decision : decisions)
+				assertEquals(decision.getOutcome(), decision.getProbability(), probabilities.get(decision.getOutcome()), TOLERANCE);
+		}
+	}
+
+	private ClassificationModel train(String algorithm, boolean oneVsRest, List<String> outcomes) {
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("talismane.machineLearning.algorithm", algorithm);
+		values.put("talismane.machineLearning.linearSVM.oneVsRest", oneVsRest);
+		Config config = ConfigFactory.parseMap(values).withFallback(ConfigFactory.load());
+
+		ModelTrainerFactory modelTrainerFactory = new ModelTrainerFactory();
+		ClassificationModelTrainer trainer = modelTrainerFactory.constructTrainer(config);
+		final Iterator<ClassificationEvent> events = this.getEvents(outcomes, 300, 1).iterator();
+		ClassificationEventStream eventStream = new ClassificationEventStream() {
+			@Override
+			public boolean hasNext() {
+				return events.hasNext();
+			}
+
+			@Override
+			public ClassificationEvent next() {
+				return events.next();
+			}
+
+			@Override
+			public Map<String, String> getAttributes() {
+				return new HashMap<String, String>();
+			}
+		};
+		return trainer.trainModel(eventStream, Arrays.asList("IsEven()", "Size()", "Kind()"));
+	}
+
+	/**
+	 * Events whose features are loosely correlated with the outcome.
+	 */
+	private List<ClassificationEvent> getEvents(List<String> outcomes, int count, long seed) {
+		Random random = new Random(seed);
+		List<ClassificationEvent> events = new ArrayList<ClassificationEvent>();
+		for (int i = 0; i < count; i++) {
+			int outcomeIndex = random.nextInt(outcomes.size());
+			List<FeatureResult<?>> featureResults = new ArrayList<FeatureResult<?>>();
+			featureResults.add(new TestFeature("IsEven()").result(outcomeIndex % 2 == 0 ? random.nextInt(4) > 0 : random.nextInt(4) == 0));
+			featureResults.add(new TestFeature("Size()").result(outcomeIndex + random.nextGaussian()));
+			featureResults.add(new TestFeature("Kind()").result("k" + (random.nextBoolean() ? outcomeIndex : random.nextInt(outcomes.size()))));
+			events.add(new ClassificationEvent(featureResults, outcomes.get(outcomeIndex)));
+		}
+		return events;
+	}
+
+	private static class TestFeature extends AbstractFeature<Object, Object> {
+		public TestFeature(String name) {
+			this.setName(name);
+		}
+
+		public FeatureResult<?> result(Object outcome) {
+			return this.generateResult(outcome);
+		}
+
+		@Override
+		public FeatureResult<Object> check(Object context, RuntimeEnvironment env) {
+			return null;
+		}
+	}
+}
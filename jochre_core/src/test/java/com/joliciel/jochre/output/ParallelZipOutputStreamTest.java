@@ -0,0 +1,152 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+public class ParallelZipOutputStreamTest {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<byte[]> contents = new ArrayList<byte[]>();
+		Random random = new Random(42);
+		// random data spanning several blocks
+		byte[] randomBytes = new byte[10000];
+		random.nextBytes(randomBytes);
+		contents.add(randomBytes);
+		// repetitive text, which relies on the previous block's dictionary
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 2000; i++)
+			sb.append("<String CONTENT=\"word").append(i % 37).append("\" WC=\"0.9000\"/>\n");
+		contents.add(sb.toString().getBytes(StandardCharsets.UTF_8));
+		// an empty entry
+		contents.add(new byte[0]);
+		// exactly one block
+		byte[] oneBlock = new byte[1024];
+		random.nextBytes(oneBlock);
+		contents.add(oneBlock);
+
+		for (int threads : new int[] { 1, 4 }) {
+			for (int level : new int[] { Deflater.DEFAULT_COMPRESSION, 0, 9 }) {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				ParallelZipOutputStream zos = new ParallelZipOutputStream(baos, level, threads, 1024);
+				for (int i = 0; i < contents.size(); i++) {
+					zos.putNextEntry(new ZipEntry("entry" + i + ".xml"));
+					// write in uneven chunks, and byte by byte
+					byte[] bytes = contents.get(i);
+					int pos = 0;
+					int chunk = 1;
+					while (pos < bytes.length) {
+						int len = Math.min(chunk, bytes.length - pos);
+						if (len == 1)
+							zos.write(bytes[pos]);
+						else
+							zos.write(bytes, pos, len);
+						pos += len;
+						chunk = (chunk * 7) % 3001 + 1;
+					}
+				}
+				zos.close();
+
+				ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(baos.toByteArray()));
+				for (int i = 0; i < contents.size(); i++) {
+					ZipEntry zipEntry = zis.getNextEntry();
+					assertEquals("entry" + i + ".xml", zipEntry.getName());
+					assertArrayEquals("threads " + threads + ", level " + level + ", entry " + i, contents.get(i), readAll(zis));
+				}
+				assertNull(zis.getNextEntry());
+				zis.close();
+			}
+		}
+	}
+
+	@Test
+	public void testZipFile() throws Exception {
+		File file = File.createTempFile("parallelZip", ".zip");
+		file.deleteOnExit();
+		byte[] contents = new byte[50000];
+		for (int i = 0; i < contents.length; i++)
+			contents[i] = (byte) ('a' + (i * 31 % 26));
+
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(new FileOutputStream(file), Deflater.DEFAULT_COMPRESSION, 3, 4096);
+		zos.putNextEntry(new ZipEntry("first.txt"));
+		zos.write(contents);
+		zos.putNextEntry(new ZipEntry("second.txt"));
+		zos.write(contents, 0, 100);
+		zos.close();
+
+		// the central directory is read, rather than the local headers
+		ZipFile zipFile = new ZipFile(file);
+		try {
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			ZipEntry first = entries.nextElement();
+			assertEquals("first.txt", first.getName());
+			assertEquals(contents.length, first.getSize());
+			assertTrue(first.getCompressedSize() < contents.length / 10);
+			assertArrayEquals(contents, readAll(zipFile.getInputStream(first)));
+			ZipEntry second = entries.nextElement();
+			assertEquals("second.txt", second.getName());
+			assertEquals(100, second.getSize());
+			assertEquals(new String(contents, 0, 100, StandardCharsets.US_ASCII),
+					new String(readAll(zipFile.getInputStream(second)), StandardCharsets.US_ASCII));
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testWriteWithoutEntry() throws Exception {
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(new ByteArrayOutputStream(), Deflater.DEFAULT_COMPRESSION, 2);
+		try {
+			zos.write(1);
+		} finally {
+			zos.close();
+		}
+	}
+
+	private static byte[] readAll(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+		while ((count = inputStream.read(buffer)) >= 0)
+			baos.write(buffer, 0, count);
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,341 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.boundaries.ShapeSequence;
+import com.joliciel.jochre.doc.JochreDocument;
+import com.joliciel.jochre.doc.JochrePage;
+import com.joliciel.jochre.graphics.GroupOfShapes;
+import com.joliciel.jochre.graphics.JochreImage;
+import com.joliciel.jochre.graphics.Paragraph;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.Segmenter;
+import com.joliciel.jochre.graphics.Shape;
+import com.joliciel.jochre.graphics.SourceImage;
+import com.joliciel.jochre.letterGuesser.LetterSequence;
+import com.joliciel.talismane.utils.CountedOutcome;
+import com.typesafe.config.ConfigFactory;
+
+import freemarker.cache.NullCacheStorage;
+import freemarker.template.Configuration;
+import freemarker.template.DefaultObjectWrapperBuilder;
+import freemarker.template.Template;
+import freemarker.template.Version;
+
+/**
+ * Checks that the streaming XML exporters give the same XML as the
+ * Freemarker templates they replaced, which are kept in the test resources.
+ */
+public class XMLExporterTest {
+	private static final String[] LETTERS = { "a", "ב", "\"", "c", "-", "ד", ",", "e", "'" };
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testAlto() throws Exception {
+		JochreDocument doc = this.getDocument();
+		File outDir = tempFolder.newFolder();
+		AltoXMLExporter exporter = new AltoXMLExporter(outDir, false);
+		exporter.setBaseName("test");
+		this.export(exporter, doc);
+		String xml = new String(Files.readAllBytes(new File(outDir, "test_alto3.xml").toPath()), StandardCharsets.UTF_8);
+
+		StringWriter writer = new StringWriter();
+		Map<String, Object> model = new HashMap<String, Object>();
+		model.put("document", doc);
+		model.put("version", "unknown");
+		this.getTemplate("alto_header_3_0.ftl").process(model, writer);
+		for (JochreImage image : doc.getImages()) {
+			model = new HashMap<String, Object>();
+			model.put("image", image);
+			this.getTemplate("alto_body_3_0.ftl").process(model, writer);
+		}
+		model = new HashMap<String, Object>();
+		model.put("document", doc);
+		this.getTemplate("alto_footer_3_0.ftl").process(model, writer);
+
+		assertTrue(xml.contains("<String "));
+		assertTrue(xml.contains("<HYP "));
+		assertTrue(xml.contains("<ALTERNATIVE>"));
+		assertTrue(xml.contains("HypPart2"));
+		this.assertSameXml(writer.toString(), xml);
+	}
+
+	@Test
+	public void testAltoZipped() throws Exception {
+		JochreDocument doc = this.getDocument();
+		File outDir = tempFolder.newFolder();
+		AltoXMLExporter exporter = new AltoXMLExporter(outDir, false);
+		exporter.setBaseName("test");
+		this.export(exporter, doc);
+		String xml = this.withoutDateTime(new String(Files.readAllBytes(new File(outDir, "test_alto3.xml").toPath()), StandardCharsets.UTF_8));
+
+		for (int zipThreads : new int[] { 1, 4 }) {
+			File zipDir = tempFolder.newFolder();
+			exporter = new AltoXMLExporter(zipDir, true);
+			exporter.setBaseName("test");
+			exporter.setCompressionLevel(9);
+			exporter.setZipThreads(zipThreads);
+			this.export(exporter, doc);
+			try (ZipFile zipFile = new ZipFile(new File(zipDir, "test_alto3.zip"))) {
+				ZipEntry zipEntry = zipFile.getEntry("contents.txt");
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+					byte[] buffer = new byte[1024];
+					int len;
+					while ((len = inputStream.read(buffer)) >= 0)
+						baos.write(buffer, 0, len);
+				}
+				assertEquals(xml, this.withoutDateTime(new String(baos.toByteArray(), StandardCharsets.UTF_8)));
+			}
+		}
+	}
+
+	private String withoutDateTime(String xml) {
+		return xml.replaceAll("<processingDateTime>[^<]*</processingDateTime>", "");
+	}
+
+	@Test
+	public void testJochre() throws Exception {
+		JochreDocument doc = this.getDocument();
+		StringWriter xml = new StringWriter();
+		this.export(new JochreXMLExporter(xml), doc);
+
+		StringWriter writer = new StringWriter();
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		writer.write("<document version=\"1.0\" producer=\"Jochre XML Exporter\"" + " pageCount=\"" + doc.getTotalPageCount() + "\">\n");
+		for (JochrePage page : doc.getPages()) {
+			writer.write("<page index=\"" + page.getIndex() + "\">\n");
+			for (JochreImage image : page.getImages()) {
+				Map<String, Object> model = new HashMap<String, Object>();
+				model.put("image", image);
+				this.getTemplate("jochre.ftl").process(model, writer);
+			}
+			writer.write("</page>\n");
+		}
+		writer.write("</document>\n");
+
+		assertTrue(xml.toString().contains("<freq "));
+		this.assertSameXml(writer.toString(), xml.toString());
+	}
+
+	@Test
+	public void testAbbyy() throws Exception {
+		JochreDocument doc = this.getDocument();
+		StringWriter xml = new StringWriter();
+		this.export(new AbbyyFineReader8Exporter(xml), doc);
+
+		StringWriter writer = new StringWriter();
+		writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		writer.write("<document version=\"1.0\" producer=\"Jochre XML Exporter for ABBYY FineReader\"" + " pagesCount=\"" + doc.getTotalPageCount() + "\""
+				+ " xmlns=\"http://www.abbyy.com/FineReader_xml/FineReader6-schema-v1.xml\"" + " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+				+ " xsi:schemaLocation=\"http://www.abbyy.com/FineReader_xml/FineReader6-schema-v1.xml http://www.abbyy.com/FineReader_xml/FineReader6-schema-v1.xml\">\n");
+		for (int i = 1; i < doc.getPages().get(0).getIndex(); i++)
+			writer.write("<page/>\n");
+		for (JochreImage image : doc.getImages()) {
+			Map<String, Object> model = new HashMap<String, Object>();
+			model.put("image", image);
+			this.getTemplate("abbyy_8.ftl").process(model, writer);
+		}
+		writer.write("</document>\n");
+
+		this.assertSameXml(writer.toString(), xml.toString());
+	}
+
+	private void export(AbstractExporter exporter, JochreDocument doc) {
+		exporter.onDocumentStart(doc);
+		for (JochrePage page : doc.getPages()) {
+			exporter.onPageStart(page);
+			for (JochreImage image : page.getImages()) {
+				exporter.onImageStart(image);
+				exporter.onImageComplete(image);
+			}
+			exporter.onPageComplete(page);
+		}
+		exporter.onDocumentComplete(doc);
+	}
+
+	private Template getTemplate(String name) throws Exception {
+		Configuration cfg = new Configuration(new Version(2, 3, 23));
+		cfg.setCacheStorage(new NullCacheStorage());
+		cfg.setObjectWrapper(new DefaultObjectWrapperBuilder(new Version(2, 3, 23)).build());
+		cfg.setLocale(Locale.US);
+		Reader templateReader = new InputStreamReader(XMLExporterTest.class.getResourceAsStream(name), StandardCharsets.UTF_8);
+		return new Template(name, templateReader, cfg);
+	}
+
+	/**
+	 * Compare two XML strings element by element, ignoring namespace
+	 * declarations, indentation, and the processing date.
+	 */
+	private void assertSameXml(String expectedXml, String xml) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		Element expected = factory.newDocumentBuilder().parse(new InputSource(new StringReader(expectedXml))).getDocumentElement();
+		Element actual = factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml))).getDocumentElement();
+		List<String> expectedLines = new ArrayList<String>();
+		this.describe(expected, expectedLines);
+		List<String> actualLines = new ArrayList<String>();
+		this.describe(actual, actualLines);
+		assertEquals(String.join("\n", expectedLines), String.join("\n", actualLines));
+	}
+
+	private void describe(Element element, List<String> lines) {
+		Map<String, String> attributes = new TreeMap<String, String>();
+		NamedNodeMap attributeMap = element.getAttributes();
+		for (int i = 0; i < attributeMap.getLength(); i++) {
+			Node attribute = attributeMap.item(i);
+			if (!attribute.getNodeName().startsWith("xmlns"))
+				attributes.put(attribute.getNodeName(), attribute.getNodeValue());
+		}
+		lines.add("<" + element.getTagName() + " " + attributes + ">");
+
+		List<Element> children = new ArrayList<Element>();
+		StringBuilder text = new StringBuilder();
+		NodeList nodes = element.getChildNodes();
+		for (int i = 0; i < nodes.getLength(); i++) {
+			Node node = nodes.item(i);
+			if (node instanceof Element)
+				children.add((Element) node);
+			else if (node.getNodeType() == Node.TEXT_NODE)
+				text.append(node.getNodeValue());
+		}
+		if (children.size() == 0) {
+			if (!element.getTagName().equals("processingDateTime"))
+				lines.add("[" + text + "]");
+		} else {
+			for (Element child : children)
+				this.describe(child, lines);
+		}
+		lines.add("</" + element.getTagName() + ">");
+	}
+
+	/**
+	 * A segmented page with letters, word guesses and alternatives, including
+	 * punctuation, hyphens and quotes.
+	 */
+	private JochreDocument getDocument() throws Exception {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		JochreSession jochreSession = new JochreSession(ConfigFactory.load());
+
+		JochreDocument doc = new JochreDocument(jochreSession);
+		doc.setFileName("test.png");
+		doc.setLocale(jochreSession.getLocale());
+		doc.setTotalPageCount(3);
+		// pages before the first one are output as empty pages by Abbyy
+		doc.newPage();
+		JochrePage page = doc.newPage();
+		doc.getPages().remove(0);
+		SourceImage sourceImage = page.newJochreImage(this.getImage(), "page.png");
+		new Segmenter(sourceImage, jochreSession).segment();
+
+		int i = 0;
+		int groupCount = 0;
+		for (Paragraph paragraph : sourceImage.getParagraphs()) {
+			for (RowOfShapes row : paragraph.getRows()) {
+				for (GroupOfShapes group : row.getGroups()) {
+					ShapeSequence shapeSequence = new ShapeSequence();
+					List<String> letters = new ArrayList<String>();
+					for (Shape shape : group.getShapes()) {
+						String letter = LETTERS[i % LETTERS.length];
+						shape.setLetter(letter);
+						shape.setConfidence(0.8 + (i % 5) / 25.0);
+						shapeSequence.addShape(shape);
+						letters.add(letter);
+						i++;
+					}
+					LetterSequence letterSequence = new LetterSequence(shapeSequence, letters, jochreSession);
+					letterSequence.setAdjustedScore(0.25 + (i % 7) / 10.0);
+					letterSequence.setFrequency(i % 3);
+					List<CountedOutcome<String>> wordFrequencies = new ArrayList<CountedOutcome<String>>();
+					wordFrequencies.add(new CountedOutcome<String>("x\"y", i % 5));
+					letterSequence.setWordFrequencies(wordFrequencies);
+					for (LetterSequence subsequence : letterSequence.getSubsequences()) {
+						subsequence.setHyphenatedString("hyphen" + i);
+						subsequence.setWordFrequencies(wordFrequencies);
+					}
+					if (groupCount++ % 3 == 0)
+						letterSequence.getSubsequences().get(0).setHyphenSubsequence(letterSequence.getSubsequences().get(0));
+					group.setBestLetterSequence(letterSequence);
+				}
+			}
+		}
+		return doc;
+	}
+
+	/**
+	 * A few rows of rectangular "letters".
+	 */
+	private BufferedImage getImage() {
+		BufferedImage image = new BufferedImage(400, 200, BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, 400, 200);
+		graphics.setColor(Color.BLACK);
+		for (int row = 0; row < 5; row++) {
+			int x = 40;
+			for (int word = 0; word < 6; word++) {
+				for (int letter = 0; letter < 2 + (word + row) % 4; letter++) {
+					graphics.fillRect(x, 40 + row * 28, 8, 14);
+					x += 12;
+				}
+				x += 10;
+			}
+		}
+		graphics.dispose();
+		return image;
+	}
+}
@@ -0,0 +1,87 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class FScoreCalculatorTest {
+
+	@Test
+	public void testMerge() {
+		String[][] pairs = new String[][] { { "a", "a" }, { "a", "b" }, { "b", "b" }, { "c", "a" }, { "b", "b" }, { "c", "c" }, { "a", "c" } };
+
+		FScoreCalculator<String> serial = new FScoreCalculator<String>();
+		for (String[] pair : pairs)
+			serial.increment(pair[0], pair[1]);
+
+		FScoreCalculator<String> first = new FScoreCalculator<String>();
+		FScoreCalculator<String> second = new FScoreCalculator<String>();
+		for (int i = 0; i < pairs.length; i++) {
+			if (i < 3)
+				first.increment(pairs[i][0], pairs[i][1]);
+			else
+				second.increment(pairs[i][0], pairs[i][1]);
+		}
+		// evaluate before merging, to ensure totals aren't counted twice
+		first.getTotalFScore();
+
+		FScoreCalculator<String> merged = new FScoreCalculator<String>();
+		merged.merge(first);
+		merged.merge(second);
+
+		assertEquals(serial.getTestCount(), merged.getTestCount());
+		assertEquals(serial.getTotalFScore(), merged.getTotalFScore(), 0.0001);
+		assertEquals(serial.getTotalTruePositiveCount(), merged.getTotalTruePositiveCount(), 0.0001);
+		assertEquals(serial.getFalsePositives("a"), merged.getFalsePositives("a"));
+		assertEquals(serial.getFalseNegatives("c"), merged.getFalseNegatives("c"));
+		// evaluating twice gives the same result
+		assertEquals(serial.getTotalFScore(), merged.getTotalFScore(), 0.0001);
+
+		StringWriter serialCsv = new StringWriter();
+		serial.writeScoresToCSV(serialCsv);
+		StringWriter mergedCsv = new StringWriter();
+		merged.writeScoresToCSV(mergedCsv);
+		assertEquals(serialCsv.toString(), mergedCsv.toString());
+	}
+
+	@Test
+	public void testManyOutcomes() {
+		FScoreCalculator<String> fScoreCalculator = new FScoreCalculator<String>();
+		for (int i = 0; i < 40; i++) {
+			fScoreCalculator.increment("e" + i, "e" + i);
+			fScoreCalculator.increment("e" + i, "g" + (i % 3));
+		}
+		assertEquals(80, fScoreCalculator.getTestCount());
+		assertEquals(1, fScoreCalculator.getTruePositiveCount("e39"));
+		assertEquals(1, fScoreCalculator.getFalseNegativeCount("e39"));
+		assertEquals(14, fScoreCalculator.getFalsePositiveCount("g0"));
+		assertEquals(14, fScoreCalculator.getFalsePositives("g0").size());
+		assertEquals(Integer.valueOf(1), fScoreCalculator.getFalsePositives("g0").get("e39"));
+		// g0 was never expected
+		assertNull(fScoreCalculator.getFalseNegatives("g0"));
+		assertNull(fScoreCalculator.getFalsePositives("unknown"));
+		assertEquals(40, fScoreCalculator.getTruePositiveCounts().size());
+		assertEquals(0.5, fScoreCalculator.getTotalPrecision(), 0.0001);
+	}
+}
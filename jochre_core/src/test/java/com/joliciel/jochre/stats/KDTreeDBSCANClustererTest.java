@@ -0,0 +1,127 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks that the KD-tree clusterer finds the same clusters as the original
+ * one.<br/>
+ * The benchmark is only run if the system property jochre.benchmark is set to
+ * true, e.g. with -Djochre.benchmark=true.
+ */
+public class KDTreeDBSCANClustererTest {
+	private static final Logger LOG = LoggerFactory.getLogger(KDTreeDBSCANClustererTest.class);
+
+	@Test
+	public void testSameClusters() {
+		Random random = new Random(1);
+		for (int dimensions = 1; dimensions <= 3; dimensions++) {
+			for (int n : new int[] { 0, 1, 2, 50, 500 }) {
+				List<Integer> objects = this.getObjects(n);
+				// integer coordinates, to get plenty of duplicates and points
+				// exactly epsilon apart
+				List<double[]> points = new ArrayList<double[]>(n);
+				for (int i = 0; i < n; i++) {
+					double[] point = new double[dimensions];
+					for (int d = 0; d < dimensions; d++)
+						point[d] = random.nextInt(40);
+					points.add(point);
+				}
+				for (double epsilon : new double[] { 0, 1, 1.5, 3, 10 }) {
+					for (int minPoints : new int[] { 1, 2, 4 }) {
+						for (boolean includeNoise : new boolean[] { true, false }) {
+							Set<Set<Integer>> expected = new DBSCANClusterer<Integer>(objects, points).cluster(epsilon, minPoints, includeNoise);
+							Set<Set<Integer>> clusters = new KDTreeDBSCANClusterer<Integer>(objects, points).cluster(epsilon, minPoints, includeNoise);
+							assertEquals("dimensions " + dimensions + ", n " + n + ", epsilon " + epsilon + ", minPoints " + minPoints, expected, clusters);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRealCoordinates() {
+		Random random = new Random(2);
+		List<Integer> objects = this.getObjects(1000);
+		List<double[]> points = this.getPoints(random, 1000, 2, 100.0);
+		for (double epsilon : new double[] { 0.5, 2, 5 }) {
+			Set<Set<Integer>> expected = new DBSCANClusterer<Integer>(objects, points).cluster(epsilon, 3, true);
+			Set<Set<Integer>> clusters = new KDTreeDBSCANClusterer<Integer>(objects, points).cluster(epsilon, 3, true);
+			assertEquals(expected, clusters);
+		}
+	}
+
+	@Test
+	public void benchmarkClustering() {
+		assumeTrue(Boolean.getBoolean("jochre.benchmark"));
+		Random random = new Random(3);
+		for (int n : new int[] { 1000, 10000, 100000 }) {
+			List<Integer> objects = this.getObjects(n);
+			// roughly 10 neighbours per point on average
+			double size = Math.sqrt(n);
+			List<double[]> points = this.getPoints(random, n, 2, size);
+			double epsilon = Math.sqrt(10.0 / Math.PI);
+
+			long startTime = System.currentTimeMillis();
+			Set<Set<Integer>> clusters = new KDTreeDBSCANClusterer<Integer>(objects, points).cluster(epsilon, 4, true);
+			long kdTreeTime = System.currentTimeMillis() - startTime;
+			String result = n + " points: KD-tree " + kdTreeTime + " ms, " + clusters.size() + " clusters";
+
+			// the brute force version takes minutes at 100k points
+			if (n <= 10000) {
+				startTime = System.currentTimeMillis();
+				Set<Set<Integer>> expected = new DBSCANClusterer<Integer>(objects, points).cluster(epsilon, 4, true);
+				long bruteForceTime = System.currentTimeMillis() - startTime;
+				assertEquals(expected, clusters);
+				result += ", brute force " + bruteForceTime + " ms";
+			}
+			LOG.info(result);
+		}
+	}
+
+	private List<Integer> getObjects(int n) {
+		List<Integer> objects = new ArrayList<Integer>(n);
+		for (int i = 0; i < n; i++)
+			objects.add(i);
+		return objects;
+	}
+
+	private List<double[]> getPoints(Random random, int n, int dimensions, double size) {
+		List<double[]> points = new ArrayList<double[]>(n);
+		for (int i = 0; i < n; i++) {
+			double[] point = new double[dimensions];
+			for (int d = 0; d < dimensions; d++)
+				point[d] = random.nextDouble() * size;
+			points.add(point);
+		}
+		return points;
+	}
+}
@@ -0,0 +1,55 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.test.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.SourceImage;
+
+/**
+ * Compares segmentation of a whole page in a single thread with segmentation
+ * of its columns in concurrent threads, on a synthetic two-column page.
+ */
+public class ColumnParallelSegmentationTest {
+
+	@Test
+	public void testSameLayout() throws Exception {
+		BufferedImage image = SyntheticPages.getPage(2, 12);
+		SourceImage serialImage = SyntheticPages.segment(image, "column-threads", 1);
+		SourceImage parallelImage = SyntheticPages.segment(image, "column-threads", 4);
+		List<String> layout = SyntheticPages.getLayout(serialImage);
+		assertTrue(layout.size() > 0);
+		assertEquals(layout, SyntheticPages.getLayout(parallelImage));
+		assertEquals(serialImage.getParagraphs().size(), parallelImage.getParagraphs().size());
+		for (int i = 0; i < serialImage.getRows().size(); i++) {
+			RowOfShapes serialRow = serialImage.getRows().get(i);
+			RowOfShapes parallelRow = parallelImage.getRows().get(i);
+			assertEquals(serialRow.getIndex(), parallelRow.getIndex());
+			assertEquals(serialRow.getTop(), parallelRow.getTop());
+			assertEquals(serialRow.getLeft(), parallelRow.getLeft());
+		}
+	}
+}
@@ -0,0 +1,71 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.test.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares segmentation with page layout analysed at full resolution and on a
+ * downsampled image, on synthetic two-column pages.<br/>
+ * The benchmark is only run if the system property jochre.benchmark is set to
+ * true, e.g. with -Djochre.benchmark=true.
+ */
+public class LayoutScaleSegmentationTest {
+	private static final Logger LOG = LoggerFactory.getLogger(LayoutScaleSegmentationTest.class);
+
+	@Test
+	public void testSameLayout() throws Exception {
+		BufferedImage image = SyntheticPages.getPage(2, 12);
+		List<String> expected = SyntheticPages.getLayout(SyntheticPages.segment(image, "layout-scale", 1));
+		assertEquals(expected, SyntheticPages.getLayout(SyntheticPages.segment(image, "layout-scale", 2)));
+		assertEquals(expected, SyntheticPages.getLayout(SyntheticPages.segment(image, "layout-scale", 4)));
+	}
+
+	@Test
+	public void benchmarkLayoutScale() throws Exception {
+		assumeTrue(Boolean.getBoolean("jochre.benchmark"));
+		int iterations = Integer.getInteger("jochre.benchmark.iterations", 3);
+
+		// roughly a 600 dpi page, followed by a 1200 dpi page
+		for (int dpiFactor : new int[] { 4, 8 }) {
+			BufferedImage image = SyntheticPages.getPage(dpiFactor, 40);
+			for (int layoutScale : new int[] { 1, 2, 4 }) {
+				// warm up
+				SyntheticPages.segment(image, "layout-scale", layoutScale);
+				long totalTime = 0;
+				for (int i = 0; i < iterations; i++) {
+					long startTime = System.currentTimeMillis();
+					SyntheticPages.segment(image, "layout-scale", layoutScale);
+					totalTime += System.currentTimeMillis() - startTime;
+				}
+				String result = "Page " + image.getWidth() + "x" + image.getHeight() + ", layout scale " + layoutScale + ": " + (totalTime / iterations)
+						+ " ms per page";
+				LOG.info(result);
+			}
+		}
+	}
+}
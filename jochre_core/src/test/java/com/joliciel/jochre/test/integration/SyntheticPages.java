@@ -0,0 +1,126 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.test.integration;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.joliciel.jochre.JochreSession;
+import com.joliciel.jochre.graphics.GroupOfShapes;
+import com.joliciel.jochre.graphics.RowOfShapes;
+import com.joliciel.jochre.graphics.Segmenter;
+import com.joliciel.jochre.graphics.SourceImage;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Synthetic two-column pages for segmentation tests, and a way of comparing
+ * their segmented layouts.
+ */
+final class SyntheticPages {
+	private SyntheticPages() {
+	}
+
+	/**
+	 * A two column page of rectangular "letters", with dimensions proportional
+	 * to the dpi factor provided.
+	 */
+	static BufferedImage getPage(int dpiFactor, int rowsPerColumn) {
+		int letterWidth = 6 * dpiFactor;
+		int letterHeight = 9 * dpiFactor;
+		int letterGap = 2 * dpiFactor;
+		int wordGap = 7 * dpiFactor;
+		int rowGap = 9 * dpiFactor;
+		int margin = 40 * dpiFactor;
+		int columnGap = 30 * dpiFactor;
+		int wordsPerRow = 8;
+		int[] wordLengths = { 3, 5, 2, 6, 4, 1, 7, 4, 3 };
+
+		int rowWidth = 0;
+		for (int i = 0; i < wordsPerRow; i++)
+			rowWidth += wordLengths[i] * (letterWidth + letterGap) - letterGap + wordGap;
+		rowWidth -= wordGap;
+
+		int width = margin * 2 + rowWidth * 2 + columnGap;
+		int height = margin * 2 + rowsPerColumn * (letterHeight + rowGap) - rowGap;
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(0, 0, width, height);
+		graphics.setColor(Color.BLACK);
+		for (int column = 0; column < 2; column++) {
+			for (int row = 0; row < rowsPerColumn; row++) {
+				int x = margin + column * (rowWidth + columnGap);
+				int y = margin + row * (letterHeight + rowGap);
+				for (int word = 0; word < wordsPerRow; word++) {
+					int wordLength = wordLengths[(word + row) % wordLengths.length];
+					for (int letter = 0; letter < wordLength; letter++) {
+						if (x + letterWidth > margin + column * (rowWidth + columnGap) + rowWidth)
+							break;
+						graphics.fillRect(x, y, letterWidth, letterHeight);
+						x += letterWidth + letterGap;
+					}
+					x += wordGap - letterGap;
+				}
+			}
+		}
+		graphics.dispose();
+		return image;
+	}
+
+	/**
+	 * Segment a page using the test configuration, with a single segmenter
+	 * setting overridden.
+	 */
+	static SourceImage segment(BufferedImage image, String segmenterSetting, Object value) throws ReflectiveOperationException {
+		System.setProperty("config.file", "src/test/resources/test.conf");
+		ConfigFactory.invalidateCaches();
+		Map<String, Object> values = new HashMap<String, Object>();
+		values.put("jochre.segmenter." + segmenterSetting, value);
+		Config config = ConfigFactory.parseMap(values).withFallback(ConfigFactory.load());
+		JochreSession jochreSession = new JochreSession(config);
+		SourceImage sourceImage = new SourceImage("page", image, jochreSession);
+		Segmenter segmenter = new Segmenter(sourceImage, jochreSession);
+		segmenter.segment();
+		return sourceImage;
+	}
+
+	/**
+	 * The position of each row in a segmented page, followed by the number of
+	 * shapes in each of its groups, sorted by position.
+	 */
+	static List<String> getLayout(SourceImage sourceImage) {
+		List<String> layout = new ArrayList<String>();
+		for (RowOfShapes row : sourceImage.getRows()) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%06d,%06d:", row.getTop(), row.getLeft()));
+			for (GroupOfShapes group : row.getGroups())
+				sb.append(" " + group.getShapes().size());
+			layout.add(sb.toString());
+		}
+		Collections.sort(layout);
+		return layout;
+	}
+}
@@ -0,0 +1,114 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.training;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.joliciel.jochre.graphics.CorpusSelectionCriteria;
+import com.joliciel.talismane.machineLearning.ClassificationEvent;
+import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.features.AbstractFeature;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
+
+public class ClassificationEventCacheTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	@Test
+	public void testWriteAndReplay() throws Exception {
+		File cacheDir = tempFolder.newFolder();
+		List<String> descriptors = Arrays.asList("Height()", "Width()");
+		CorpusSelectionCriteria criteria = new CorpusSelectionCriteria();
+		String key = ClassificationEventCache.getKey("letters", descriptors, criteria, "1");
+
+		ClassificationEventCache cache = new ClassificationEventCache(cacheDir, key);
+		assertFalse(cache.exists());
+
+		List<ClassificationEvent> events = new ArrayList<>();
+		events.add(new ClassificationEvent(Arrays.asList(new TestFeature("bool").result(true), new TestFeature("dbl").result(0.25)), "א"));
+		events.add(new ClassificationEvent(Arrays.asList(new TestFeature("str").result("abc"), new TestFeature("int").result(7),
+				new TestFeature("bool").result(false)), "ב"));
+
+		ClassificationEventCache.CacheWriter writer = cache.getWriter();
+		for (ClassificationEvent event : events)
+			writer.write(event);
+		assertFalse(cache.exists());
+		writer.commit();
+		assertTrue(cache.exists());
+
+		ClassificationEventStream reader = new ClassificationEventCache(cacheDir, key).getReader(new HashMap<String, String>());
+		int i = 0;
+		while (reader.hasNext()) {
+			ClassificationEvent expected = events.get(i++);
+			ClassificationEvent actual = reader.next();
+			assertEquals(expected.getClassification(), actual.getClassification());
+			assertEquals(expected.getFeatureResults().size(), actual.getFeatureResults().size());
+			for (int j = 0; j < expected.getFeatureResults().size(); j++) {
+				FeatureResult<?> expectedResult = expected.getFeatureResults().get(j);
+				FeatureResult<?> actualResult = actual.getFeatureResults().get(j);
+				assertEquals(expectedResult.getTrainingName(), actualResult.getTrainingName());
+				assertEquals(expectedResult.getOutcome(), actualResult.getOutcome());
+			}
+		}
+		assertEquals(events.size(), i);
+	}
+
+	@Test
+	public void testKeyChangesWithInputs() {
+		List<String> descriptors = Arrays.asList("Height()");
+		CorpusSelectionCriteria criteria = new CorpusSelectionCriteria();
+		String key = ClassificationEventCache.getKey("letters", descriptors, criteria, "1");
+		assertEquals(key, ClassificationEventCache.getKey("letters", descriptors, criteria, "1"));
+		assertNotEquals(key, ClassificationEventCache.getKey("letters", descriptors, criteria, "2"));
+		assertNotEquals(key, ClassificationEventCache.getKey("letters", Arrays.asList("Width()"), criteria, "1"));
+
+		CorpusSelectionCriteria otherCriteria = new CorpusSelectionCriteria();
+		otherCriteria.setExcludeIndex(2);
+		assertNotEquals(key, ClassificationEventCache.getKey("letters", descriptors, otherCriteria, "1"));
+	}
+
+	private static class TestFeature extends AbstractFeature<Object, Object> {
+		public TestFeature(String name) {
+			this.setName(name);
+		}
+
+		public FeatureResult<?> result(Object outcome) {
+			return this.generateResult(outcome);
+		}
+
+		@Override
+		public FeatureResult<Object> check(Object context, RuntimeEnvironment env) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.search;
+
+import java.io.File;
+
+/**
+ * The layout of a sharded index: a sharded index directory contains one
+ * sub-directory per shard, named shard0, shard1, etc., each of which is a
+ * separate Lucene index. Each work is assigned to a shard by the hash of its
+ * name.
+ *
+ * @author Assaf Urieli
+ *
+ */
+final class IndexShards {
+	private static final String SHARD_PREFIX = "shard";
+
+	private IndexShards() {
+	}
+
+	/**
+	 * The number of shards in an existing index directory, or 0 if the index
+	 * isn't sharded.
+	 */
+	public static int getShardCount(File indexDir) {
+		int shardCount = 0;
+		while (getShardDir(indexDir, shardCount).isDirectory())
+			shardCount++;
+		return shardCount;
+	}
+
+	/**
+	 * The directory for a given shard.
+	 */
+	public static File getShardDir(File indexDir, int shard) {
+		return new File(indexDir, SHARD_PREFIX + shard);
+	}
+
+	/**
+	 * The directories containing the Lucene indexes within an index
+	 * directory: either its shard directories, or the directory itself if it
+	 * isn't sharded.
+	 */
+	public static File[] getIndexDirs(File indexDir) {
+		int shardCount = getShardCount(indexDir);
+		if (shardCount == 0)
+			return new File[] { indexDir };
+		File[] indexDirs = new File[shardCount];
+		for (int i = 0; i < shardCount; i++)
+			indexDirs[i] = getShardDir(indexDir, i);
+		return indexDirs;
+	}
+
+	/**
+	 * The shard to which a work with a given name is assigned.
+	 */
+	public static int getShard(String name, int shardCount) {
+		return Math.floorMod(name.hashCode(), shardCount);
+	}
+}
@@ -69,6 +69,31 @@ public interface JochreIndexBuilder extends Runnable {
 
 	public void setWordsPerDoc(int pagesPerDoc);
 
+	/**
+	 * The number of threads used to parse the Alto pages of each work. If
+	 * greater than 1, pages are parsed concurrently, and indexed in page
+	 * order. If 0, uses all available processors. Default is 1, in which case
+	 * pages are parsed sequentially. Either way, each page is read into new
+	 * objects, since pages are retained until enough words have been read for
+	 * an index document.
+	 */
+	public int getAltoThreads();
+
+	public void setAltoThreads(int altoThreads);
+
+	/**
+	 * The number of shards across which to split the index, each shard being
+	 * a separate Lucene index in its own sub-directory of the index
+	 * directory, built in its own thread. Works are assigned to shards by the
+	 * hash of their name. If &lt;= 1, the number of shards already in the
+	 * index directory is used, or a single unsharded index if there are none.
+	 * The number of shards of an existing index cannot be changed without
+	 * rebuilding it from an empty index directory. Default is 1.
+	 */
+	public int getShards();
+
+	public void setShards(int shards);
+
 	/**
 	 * By default should all documents in the index be updated, or only those
 	 * with changes more recent than the update date.
@@ -29,6 +29,14 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
@@ -39,13 +47,19 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,11 +83,15 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 	private boolean forceUpdate = false;
 
 	private int wordsPerDoc = 3000;
+	private int altoThreads = 1;
+	private int shards = 1;
 	private IndexWriter indexWriter;
 	private IndexReader indexReader;
 	private IndexSearcher indexSearcher;
 
 	private List<JochreToken> currentStrings = null;
+	private Map<String, Long> indexTimes = null;
+	private boolean indexTimesComplete = false;
 
 	private SearchServiceInternal searchService;
 	private AltoService altoService;
@@ -131,7 +149,7 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 		try {
 			searchStatusHolder.setStatus(SearchStatus.PREPARING);
 
-			this.initialise();
+			int shardCount = this.getShardCount();
 			File[] subdirs = contentDir.listFiles(new FileFilter() {
 
 				@Override
@@ -163,20 +181,26 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 				pageSuggestions.add(suggestion);
 			}
 
-			for (File subdir : subdirs) {
-				try {
-					searchStatusHolder.setAction("Indexing " + subdir.getName());
-					this.processDocument(subdir, forceUpdate, unappliedSuggestions);
-					searchStatusHolder.incrementSuccessCount(1);
-				} catch (Exception e) {
-					LOG.error("Failed to index " + subdir.getName(), e);
-					searchStatusHolder.incrementFailureCount(1);
+			List<JochreIndexBuilderImpl> builders = new ArrayList<>();
+			if (shardCount == 1) {
+				builders.add(this);
+				this.processDocuments(Arrays.asList(subdirs), forceUpdate, unappliedSuggestions);
+			} else {
+				List<List<File>> shardSubdirs = new ArrayList<>();
+				for (int i = 0; i < shardCount; i++) {
+					builders.add(this.getShardBuilder(i));
+					shardSubdirs.add(new ArrayList<File>());
 				}
+				for (File subdir : subdirs)
+					shardSubdirs.get(IndexShards.getShard(subdir.getName(), shardCount)).add(subdir);
+				this.processShards(builders, shardSubdirs, forceUpdate, unappliedSuggestions);
 			}
 
 			searchStatusHolder.setStatus(SearchStatus.COMMITING);
-			indexWriter.commit();
-			indexWriter.close();
+			for (JochreIndexBuilderImpl builder : builders) {
+				builder.indexWriter.commit();
+				builder.indexWriter.close();
+			}
 			searchService.purgeSearcher();
 
 		} catch (IOException e) {
@@ -190,8 +214,75 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 		}
 	}
 
+	/**
+	 * Index each shard's works in a separate thread.
+	 */
+	private void processShards(final List<JochreIndexBuilderImpl> builders, final List<List<File>> shardSubdirs, final boolean forceUpdate,
+			final Map<String, Map<Integer, List<FeedbackSuggestion>>> unappliedSuggestions) {
+		final AtomicInteger threadIndex = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(builders.size(), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "IndexShard-" + threadIndex.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < builders.size(); i++) {
+				final JochreIndexBuilderImpl builder = builders.get(i);
+				final List<File> subdirs = shardSubdirs.get(i);
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						builder.processDocuments(subdirs, forceUpdate, unappliedSuggestions);
+					}
+				}));
+			}
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			LOG.error("Failed to index shard", e.getCause());
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	void processDocuments(List<File> subdirs, boolean forceUpdate, Map<String, Map<Integer, List<FeedbackSuggestion>>> unappliedSuggestions) {
+		try {
+			this.initialise();
+			this.readIndexTimes();
+		} catch (IOException e) {
+			LOG.error("Failed to read index times from " + indexDir.getAbsolutePath(), e);
+			throw new RuntimeException(e);
+		}
+
+		SearchStatusHolder searchStatusHolder = searchService.getSearchStatusHolder();
+		for (File subdir : subdirs) {
+			try {
+				searchStatusHolder.setAction("Indexing " + subdir.getName());
+				this.processDocument(subdir, forceUpdate, unappliedSuggestions);
+				searchStatusHolder.incrementSuccessCount(1);
+			} catch (Exception e) {
+				LOG.error("Failed to index " + subdir.getName(), e);
+				searchStatusHolder.incrementFailureCount(1);
+			}
+		}
+	}
+
 	@Override
 	public void updateDocument(File documentDir, int startPage, int endPage) {
+		int shardCount = this.getShardCount();
+		if (shardCount > 1) {
+			this.getShardBuilder(IndexShards.getShard(documentDir.getName(), shardCount)).updateDocument(documentDir, startPage, endPage);
+			return;
+		}
+
 		long startTime = System.currentTimeMillis();
 		try {
 			this.initialise();
@@ -212,6 +303,12 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 
 	@Override
 	public void deleteDocument(File documentDir) {
+		int shardCount = this.getShardCount();
+		if (shardCount > 1) {
+			this.getShardBuilder(IndexShards.getShard(documentDir.getName(), shardCount)).deleteDocument(documentDir);
+			return;
+		}
+
 		try {
 			this.initialise();
 			JochreIndexDirectory jochreIndexDirectory = this.searchService.getJochreIndexDirectory(documentDir);
@@ -226,6 +323,38 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 		}
 	}
 
+	/**
+	 * The number of shards to use: the number requested if greater than 1,
+	 * otherwise the number of shards already in the index directory, or 1 if
+	 * it isn't sharded.
+	 */
+	private int getShardCount() {
+		int existingShards = IndexShards.getShardCount(indexDir);
+		if (shards > 1) {
+			if (existingShards > 0 && existingShards != shards)
+				throw new JochreSearchException(
+						"Index at " + indexDir.getAbsolutePath() + " has " + existingShards + " shards, cannot change to " + shards + " without rebuilding it.");
+			for (int i = 0; i < shards; i++)
+				IndexShards.getShardDir(indexDir, i).mkdirs();
+			return shards;
+		}
+		return existingShards > 0 ? existingShards : 1;
+	}
+
+	/**
+	 * A builder for a single shard, sharing this builder's settings.
+	 */
+	private JochreIndexBuilderImpl getShardBuilder(int shard) {
+		JochreIndexBuilderImpl builder = new JochreIndexBuilderImpl(IndexShards.getShardDir(indexDir, shard), contentDir);
+		builder.setSearchService(searchService);
+		builder.setAltoService(altoService);
+		builder.setFeedbackService(feedbackService);
+		builder.setWordsPerDoc(wordsPerDoc);
+		builder.setAltoThreads(altoThreads);
+		builder.setForceUpdate(forceUpdate);
+		return builder;
+	}
+
 	private void processDocument(File documentDir, boolean forceUpdate, Map<String, Map<Integer, List<FeedbackSuggestion>>> unappliedSuggestions) {
 		try {
 			boolean updateIndex = false;
@@ -247,11 +376,6 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 			if (forceUpdate)
 				updateIndex = true;
 
-			if (!updateIndex) {
-				if (unappliedSuggestions.containsKey(jochreIndexDirectory.getPath()))
-					updateIndex = true;
-			}
-
 			if (!updateIndex) {
 				long ocrDate = jochreIndexDirectory.getAltoFile().lastModified();
 				if (jochreIndexDirectory.getMetaDataFile() != null) {
@@ -259,25 +383,20 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 					if (metaDate > ocrDate)
 						ocrDate = metaDate;
 				}
-				long lastIndexDate = Long.MIN_VALUE;
-
-				if (indexSearcher != null) {
-					Term term = new Term(JochreIndexField.name.name(), jochreIndexDirectory.getName());
-					Query termQuery = new TermQuery(term);
-					TopDocs topDocs = indexSearcher.search(termQuery, 1);
-					if (topDocs.scoreDocs.length > 0) {
-						Document doc = indexSearcher.doc(topDocs.scoreDocs[0].doc);
-						lastIndexDate = Long.parseLong(doc.get(JochreIndexField.indexTime.name()));
-					}
-				}
+				long lastIndexDate = this.getLastIndexDate(jochreIndexDirectory.getName());
 
 				LOG.debug("lastIndexDate: " + lastIndexDate + ", ocrDate: " + ocrDate);
 				if (ocrDate > lastIndexDate)
 					updateIndex = true;
 			}
 
+			Map<Integer, List<FeedbackSuggestion>> suggestions = unappliedSuggestions.get(jochreIndexDirectory.getPath());
 			if (updateIndex) {
 				this.updateDocumentInternal(jochreIndexDirectory, -1, -1);
+			} else if (suggestions != null) {
+				// only the sections containing suggestions need to be reindexed
+				if (!this.updateSectionsInternal(jochreIndexDirectory, suggestions.keySet()))
+					this.updateDocumentInternal(jochreIndexDirectory, -1, -1);
 			} else {
 				LOG.info("Index for " + documentDir.getName() + " already up-to-date.");
 			} // should update index?
@@ -288,6 +407,71 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 		}
 	}
 
+	/**
+	 * The time at which a work was last indexed, or Long.MIN_VALUE if it isn't
+	 * in the index.
+	 */
+	private long getLastIndexDate(String name) throws IOException {
+		if (indexTimes != null) {
+			Long indexTime = indexTimes.get(name);
+			if (indexTime != null)
+				return indexTime;
+			if (indexTimesComplete)
+				return Long.MIN_VALUE;
+		}
+
+		// the work may have been indexed before doc values were added
+		long lastIndexDate = Long.MIN_VALUE;
+		if (indexSearcher != null) {
+			Term term = new Term(JochreIndexField.name.name(), name);
+			Query termQuery = new TermQuery(term);
+			TopDocs topDocs = indexSearcher.search(termQuery, 1);
+			if (topDocs.scoreDocs.length > 0) {
+				Document doc = indexSearcher.doc(topDocs.scoreDocs[0].doc);
+				lastIndexDate = Long.parseLong(doc.get(JochreIndexField.indexTime.name()));
+			}
+		}
+		return lastIndexDate;
+	}
+
+	/**
+	 * Read the last index time of every work in a single pass over the name
+	 * and indexTime doc values, rather than searching for each work in turn.
+	 * Segments written without doc values are skipped, and the works they
+	 * contain are then looked up individually.
+	 */
+	private void readIndexTimes() throws IOException {
+		indexTimes = new HashMap<>();
+		indexTimesComplete = true;
+		if (indexReader == null)
+			return;
+		for (LeafReaderContext context : indexReader.leaves()) {
+			LeafReader leafReader = context.reader();
+			SortedDocValues names = leafReader.getSortedDocValues(JochreIndexField.name.name());
+			NumericDocValues indexTimeValues = leafReader.getNumericDocValues(JochreIndexField.indexTime.name());
+			if (names == null || indexTimeValues == null) {
+				if (leafReader.numDocs() > 0)
+					indexTimesComplete = false;
+				continue;
+			}
+			Bits liveDocs = leafReader.getLiveDocs();
+			for (int i = 0; i < leafReader.maxDoc(); i++) {
+				if (liveDocs != null && !liveDocs.get(i))
+					continue;
+				if (names.getOrd(i) < 0) {
+					indexTimesComplete = false;
+					continue;
+				}
+				String name = names.get(i).utf8ToString();
+				long indexTime = indexTimeValues.get(i);
+				Long previousTime = indexTimes.get(name);
+				if (previousTime == null || indexTime > previousTime)
+					indexTimes.put(name, indexTime);
+			}
+		}
+		LOG.debug("Read index times for " + indexTimes.size() + " works, complete: " + indexTimesComplete);
+	}
+
 	private void updateDocumentInternal(JochreIndexDirectory jochreIndexDirectory, int startPage, int endPage) {
 		try {
 			LOG.info("Updating index for " + jochreIndexDirectory.getName());
@@ -296,6 +480,8 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 
 			AltoDocument altoDoc = this.altoService.newDocument(jochreIndexDirectory.getName());
 			AltoReader reader = this.altoService.getAltoReader(altoDoc);
+			reader.setThreads(altoThreads > 0 ? altoThreads : Runtime.getRuntime().availableProcessors());
+			reader.setPageRange(startPage, endPage);
 			AltoPageIndexer altoPageIndexer = new AltoPageIndexer(this, jochreIndexDirectory, startPage, endPage);
 			reader.addConsumer(altoPageIndexer);
 
@@ -308,7 +494,7 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 		}
 	}
 
-	private static final class AltoPageIndexer implements AltoPageConsumer {
+	private static class AltoPageIndexer implements AltoPageConsumer {
 		private JochreIndexBuilderImpl parent;
 		private int docCount = 0;
 		private int cumulWordCount = 0;
@@ -342,6 +528,35 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 			LOG.debug("Processing page: " + page.getIndex());
 			currentPages.add(page);
 
+			this.prepareStrings(page, currentStrings);
+
+			int wordCount = page.wordCount();
+			cumulWordCount += wordCount;
+			LOG.debug("Word count: " + wordCount + ", cumul word count: " + cumulWordCount);
+			if (parent.getWordsPerDoc() > 0 && cumulWordCount >= parent.getWordsPerDoc()) {
+				if (previousPages.size() > 0) {
+					parent.setCurrentStrings(previousStrings);
+					LOG.debug("Creating new index doc: " + docCount);
+					JochreIndexDocument indexDoc = parent.getSearchService().newJochreIndexDocument(directory, docCount, previousPages);
+					indexDoc.save(parent.getIndexWriter());
+					docCount++;
+				}
+
+				previousPages = currentPages;
+				previousStrings = currentStrings;
+
+				cumulWordCount = 0;
+				parent.setCurrentStrings(new ArrayList<JochreToken>());
+				currentPages = new ArrayList<AltoPage>();
+				currentStrings = new ArrayList<JochreToken>();
+			}
+		}
+
+		/**
+		 * Join hyphenated words, fix strings and apply feedback suggestions on
+		 * a page, and add its words to a list of strings to index.
+		 */
+		protected void prepareStrings(AltoPage page, List<JochreToken> strings) {
 			List<FeedbackSuggestion> suggestions = pageSuggestionMap.get(page.getIndex());
 
 			Map<Rectangle, List<FeedbackSuggestion>> suggestionMap = new HashMap<>();
@@ -379,31 +594,17 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 								}
 							}
 						}
-						currentStrings.add(string);
+						strings.add(string);
 					}
 				}
 			}
+		}
 
-			int wordCount = page.wordCount();
-			cumulWordCount += wordCount;
-			LOG.debug("Word count: " + wordCount + ", cumul word count: " + cumulWordCount);
-			if (parent.getWordsPerDoc() > 0 && cumulWordCount >= parent.getWordsPerDoc()) {
-				if (previousPages.size() > 0) {
-					parent.setCurrentStrings(previousStrings);
-					LOG.debug("Creating new index doc: " + docCount);
-					JochreIndexDocument indexDoc = parent.getSearchService().newJochreIndexDocument(directory, docCount, previousPages);
-					indexDoc.save(parent.getIndexWriter());
-					docCount++;
-				}
-
-				previousPages = currentPages;
-				previousStrings = currentStrings;
-
-				cumulWordCount = 0;
-				parent.setCurrentStrings(new ArrayList<JochreToken>());
-				currentPages = new ArrayList<AltoPage>();
-				currentStrings = new ArrayList<JochreToken>();
-			}
+		@Override
+		public boolean isRetainingPages() {
+			// pages are held until enough words have been read for an index
+			// document
+			return true;
 		}
 
 		@Override
@@ -420,6 +621,136 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 		}
 	}
 
+	/**
+	 * Reindex only those sections of a work which contain the pages provided,
+	 * parsing the Alto for these sections alone, and replacing each section
+	 * in place.
+	 * 
+	 * @return false if the sections couldn't be identified, in which case the
+	 *         whole work needs to be reindexed.
+	 */
+	private boolean updateSectionsInternal(JochreIndexDirectory jochreIndexDirectory, Set<Integer> pageIndexes) throws IOException {
+		if (indexSearcher == null)
+			return false;
+
+		Term term = new Term(JochreIndexField.path.name(), jochreIndexDirectory.getPath());
+		TopDocs topDocs = indexSearcher.search(new TermQuery(term), Math.max(1, indexReader.maxDoc()));
+		List<Section> sections = new ArrayList<>();
+		for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+			Document doc = indexSearcher.doc(scoreDoc.doc);
+			// sections indexed before the section field was added can't be
+			// replaced individually
+			if (doc.get(JochreIndexField.section.name()) == null)
+				return false;
+			int index = Integer.parseInt(doc.get(JochreIndexField.index.name()));
+			int startPage = Integer.parseInt(doc.get(JochreIndexField.startPage.name()));
+			int endPage = Integer.parseInt(doc.get(JochreIndexField.endPage.name()));
+			sections.add(new Section(index, startPage, endPage));
+		}
+
+		TreeMap<Integer, Section> affectedSections = new TreeMap<>();
+		for (int pageIndex : pageIndexes) {
+			Section pageSection = null;
+			for (Section section : sections) {
+				if (section.startPage <= pageIndex && pageIndex <= section.endPage) {
+					pageSection = section;
+					break;
+				}
+			}
+			if (pageSection == null)
+				return false;
+			affectedSections.put(pageSection.startPage, pageSection);
+		}
+
+		LOG.info("Updating sections " + affectedSections.keySet() + " for " + jochreIndexDirectory.getName());
+		AltoDocument altoDoc = this.altoService.newDocument(jochreIndexDirectory.getName());
+		AltoReader reader = this.altoService.getAltoReader(altoDoc);
+		reader.setThreads(altoThreads > 0 ? altoThreads : Runtime.getRuntime().availableProcessors());
+		reader.setPageRange(affectedSections.firstEntry().getValue().startPage, affectedSections.lastEntry().getValue().endPage);
+		AltoSectionIndexer altoSectionIndexer = new AltoSectionIndexer(this, jochreIndexDirectory, new ArrayList<>(affectedSections.values()));
+		reader.addConsumer(altoSectionIndexer);
+
+		UnclosableInputStream uis = jochreIndexDirectory.getAltoInputStream();
+		reader.parseFile(uis, jochreIndexDirectory.getName());
+		uis.reallyClose();
+		return true;
+	}
+
+	private static final class Section {
+		private final int index;
+		private final int startPage;
+		private final int endPage;
+		private final List<AltoPage> pages = new ArrayList<>();
+		private final List<JochreToken> strings = new ArrayList<>();
+		private boolean saved = false;
+
+		public Section(int index, int startPage, int endPage) {
+			this.index = index;
+			this.startPage = startPage;
+			this.endPage = endPage;
+		}
+	}
+
+	/**
+	 * Reindexes a given set of existing sections, replacing each one in the
+	 * index by a document covering the same pages.
+	 */
+	private static final class AltoSectionIndexer extends AltoPageIndexer {
+		private final JochreIndexBuilderImpl parent;
+		private final JochreIndexDirectory directory;
+		private final List<Section> sections;
+
+		public AltoSectionIndexer(JochreIndexBuilderImpl parent, JochreIndexDirectory directory, List<Section> sections) {
+			super(parent, directory, -1, -1);
+			this.parent = parent;
+			this.directory = directory;
+			this.sections = sections;
+		}
+
+		@Override
+		public void onNextPage(AltoPage page) {
+			for (Section section : sections) {
+				if (section.startPage <= page.getIndex() && page.getIndex() <= section.endPage) {
+					LOG.debug("Processing page: " + page.getIndex() + " for section " + section.index);
+					section.pages.add(page);
+					this.prepareStrings(page, section.strings);
+					if (page.getIndex() == section.endPage)
+						this.save(section);
+					break;
+				}
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			for (Section section : sections) {
+				if (section.saved)
+					continue;
+				if (section.pages.size() > 0) {
+					this.save(section);
+				} else {
+					// the section's pages are no longer in the Alto file
+					LOG.debug("Deleting empty section " + section.index);
+					try {
+						Term term = new Term(JochreIndexField.section.name(), JochreIndexDocumentImpl.getSectionId(directory.getPath(), section.index));
+						parent.getIndexWriter().deleteDocuments(term);
+					} catch (IOException e) {
+						LOG.error("Failed to delete section " + section.index + " of " + directory.getName(), e);
+						throw new RuntimeException(e);
+					}
+				}
+			}
+		}
+
+		private void save(Section section) {
+			LOG.debug("Replacing index doc: " + section.index);
+			parent.setCurrentStrings(section.strings);
+			JochreIndexDocument indexDoc = parent.getSearchService().newJochreIndexDocument(directory, section.index, section.pages);
+			indexDoc.update(parent.getIndexWriter());
+			section.saved = true;
+		}
+	}
+
 	private void deleteDocumentInternal(JochreIndexDirectory jochreIndexDirectory) {
 		try {
 			Term term = new Term(JochreIndexField.path.name(), jochreIndexDirectory.getPath());
@@ -448,6 +779,26 @@ class JochreIndexBuilderImpl implements JochreIndexBuilder, TokenExtractor {
 		this.wordsPerDoc = wordsPerDoc;
 	}
 
+	@Override
+	public int getAltoThreads() {
+		return altoThreads;
+	}
+
+	@Override
+	public void setAltoThreads(int altoThreads) {
+		this.altoThreads = altoThreads;
+	}
+
+	@Override
+	public int getShards() {
+		return shards;
+	}
+
+	@Override
+	public void setShards(int shards) {
+		this.shards = shards;
+	}
+
 	public AltoService getAltoService() {
 		return altoService;
 	}
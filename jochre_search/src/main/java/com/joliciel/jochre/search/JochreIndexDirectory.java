@@ -34,6 +34,8 @@ import java.util.Map;
  * it is used, otherwise an XML file is used.</li>
  * <li>delete|delete.txt|skip|skip.txt|update|update.txt: if one of these files is present (processed in this order),
  * provides explicit instructions on what to do when indexing this directory. The file contents are ignored, and can be empty - only the filename is important.</li>
+ * <li>jochre_meta.properties: written by JochreSearch to cache the metadata read from the _meta.xml file or the PDF, and ignored
+ * as soon as either of these is more recent.</li>
  * </ul>
  * The PDF/ZIP/XML filename above is arbitrary: only the extension is required. However, the system will first look for a file
  * with the same name as the directory name, and only then look for any arbitrary file.<br/>
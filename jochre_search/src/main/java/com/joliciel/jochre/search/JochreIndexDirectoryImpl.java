@@ -21,11 +21,19 @@ package com.joliciel.jochre.search;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -47,6 +55,7 @@ import com.joliciel.jochre.utils.text.DiacriticRemover;
 
 class JochreIndexDirectoryImpl implements JochreIndexDirectory {
 	private static final Logger LOG = LoggerFactory.getLogger(JochreIndexDirectoryImpl.class);
+	static final String META_DATA_CACHE_FILE = "jochre_meta.properties";
 
 	private File directory;
 	private File pdfFile;
@@ -145,6 +154,10 @@ class JochreIndexDirectoryImpl implements JochreIndexDirectory {
 	@Override
 	public Map<String, String> getMetaData() {
 		if (this.metaData == null) {
+			this.metaData = this.readMetaDataCache();
+			if (this.metaData != null)
+				return this.metaData;
+
 			if (this.getMetaDataFile() == null) {
 				PdfMetadataReader pdfMetadataReader = new PdfMetadataReader(this.getPdfFile());
 				Map<String, String> pdfMetaData = pdfMetadataReader.getFields();
@@ -235,10 +248,56 @@ class JochreIndexDirectoryImpl implements JochreIndexDirectory {
 					throw new RuntimeException(e);
 				}
 			}
+			this.writeMetaDataCache();
+		}
+		return metaData;
+	}
+
+	/**
+	 * The sidecar file caching the metadata read from the metadata file or the
+	 * PDF, so that neither needs to be parsed again until it changes.
+	 */
+	File getMetaDataCacheFile() {
+		return new File(this.directory, META_DATA_CACHE_FILE);
+	}
+
+	private Map<String, String> readMetaDataCache() {
+		File cacheFile = this.getMetaDataCacheFile();
+		if (!cacheFile.exists())
+			return null;
+		File sourceFile = this.getMetaDataFile();
+		if (sourceFile == null)
+			sourceFile = this.getPdfFile();
+		if (cacheFile.lastModified() < sourceFile.lastModified())
+			return null;
+
+		Properties properties = new Properties();
+		try (Reader reader = new InputStreamReader(new FileInputStream(cacheFile), StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		} catch (IOException | IllegalArgumentException e) {
+			LOG.warn("Ignoring unreadable metadata cache " + cacheFile.getAbsolutePath(), e);
+			return null;
 		}
+		Map<String, String> metaData = new HashMap<String, String>();
+		for (String key : properties.stringPropertyNames())
+			metaData.put(key, properties.getProperty(key));
 		return metaData;
 	}
 
+	private void writeMetaDataCache() {
+		File cacheFile = this.getMetaDataCacheFile();
+		Properties properties = new Properties();
+		for (Entry<String, String> entry : this.metaData.entrySet())
+			properties.setProperty(entry.getKey(), entry.getValue());
+		// the cache is an optimisation only, so read-only content directories
+		// are not an error
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(cacheFile), StandardCharsets.UTF_8)) {
+			properties.store(writer, "Metadata for " + this.name);
+		} catch (IOException e) {
+			LOG.debug("Unable to write metadata cache " + cacheFile.getAbsolutePath(), e);
+		}
+	}
+
 	@Override
 	public String getName() {
 		return name;
@@ -39,6 +39,12 @@ public interface JochreIndexDocument {
 	 * Save the document to the Lucene index.
 	 */
 	public void save(IndexWriter indexWriter);
+
+	/**
+	 * Replace the document previously saved to the Lucene index for the same
+	 * section of the same work.
+	 */
+	public void update(IndexWriter indexWriter);
 	
 	/**
 	 * Get the rectangle enclosing a particular row.
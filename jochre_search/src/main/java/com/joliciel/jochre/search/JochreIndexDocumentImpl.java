@@ -11,10 +11,14 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.IntField;
 import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -59,6 +63,9 @@ class JochreIndexDocumentImpl implements JochreIndexDocument {
 	/* Not indexed, not tokenized, stored. */
 	public static final FieldType TYPE_NOT_INDEXED = new FieldType();
 
+	/* Value of the lemmaIndexed field, for documents whose lemmas were indexed. */
+	static final String LEMMA_INDEXED = "true";
+
 	static {
 		TYPE_NOT_STORED.setTokenized(true);
 		TYPE_NOT_STORED.setStoreTermVectors(true);
@@ -194,71 +201,104 @@ class JochreIndexDocumentImpl implements JochreIndexDocument {
 	@Override
 	public void save(IndexWriter indexWriter) {
 		try {
-			doc = new Document();
-			doc.add(new StringField(JochreIndexField.name.name(), directory.getName(), Field.Store.YES));
-			doc.add(new StringField(JochreIndexField.path.name(), this.path, Field.Store.YES));
-			doc.add(new Field(JochreIndexField.startPage.name(), "" + startPage, TYPE_NOT_INDEXED));
-			doc.add(new Field(JochreIndexField.endPage.name(), "" + endPage, TYPE_NOT_INDEXED));
-			doc.add(new IntField(JochreIndexField.index.name(), sectionNumber, Field.Store.YES));
-			doc.add(new Field(JochreIndexField.text.name(), contents, TYPE_STORED));
-			doc.add(new IntField(JochreIndexField.length.name(), length, Field.Store.YES));
-			doc.add(new LongField(JochreIndexField.indexTime.name(), System.currentTimeMillis(), Field.Store.YES));
-
-			if (this.directory.getMetaData().containsKey(JochreIndexField.id.name()))
-				doc.add(new StringField(JochreIndexField.id.name(), this.directory.getMetaData().get(JochreIndexField.id.name()), Field.Store.YES));
-			if (this.directory.getMetaData().containsKey(JochreIndexField.author.name()))
-				doc.add(new Field(JochreIndexField.author.name(), this.directory.getMetaData().get(JochreIndexField.author.name()), TYPE_STORED));
-			if (this.directory.getMetaData().containsKey(JochreIndexField.title.name()))
-				doc.add(new Field(JochreIndexField.title.name(), this.directory.getMetaData().get(JochreIndexField.title.name()), TYPE_STORED));
-			if (this.directory.getMetaData().containsKey(JochreIndexField.publisher.name()))
-				doc.add(new Field(JochreIndexField.publisher.name(), this.directory.getMetaData().get(JochreIndexField.publisher.name()), TYPE_STORED));
-			if (this.directory.getMetaData().containsKey(JochreIndexField.date.name()))
-				doc.add(new StringField(JochreIndexField.date.name(), this.directory.getMetaData().get(JochreIndexField.date.name()), Field.Store.YES));
-			if (this.directory.getMetaData().containsKey(JochreIndexField.authorLang.name()))
-				doc.add(new Field(JochreIndexField.authorLang.name(), this.directory.getMetaData().get(JochreIndexField.authorLang.name()), TYPE_STORED));
-			if (this.directory.getMetaData().containsKey(JochreIndexField.titleLang.name()))
-				doc.add(new Field(JochreIndexField.titleLang.name(), this.directory.getMetaData().get(JochreIndexField.titleLang.name()), TYPE_STORED));
-			if (this.directory.getMetaData().containsKey(JochreIndexField.volume.name()))
-				doc.add(new StringField(JochreIndexField.volume.name(), this.directory.getMetaData().get(JochreIndexField.volume.name()), Field.Store.YES));
-
-			if (this.directory.getMetaData().containsKey(JochreIndexField.url.name()))
-				doc.add(new StringField(JochreIndexField.url.name(), this.directory.getMetaData().get(JochreIndexField.url.name()), Field.Store.YES));
-
-			for (int pageIndex : rectangles.keys()) {
-				TIntObjectMap<Rectangle> rowRectangles = rectangles.get(pageIndex);
-				for (int rowIndex : rowRectangles.keys()) {
-					Rectangle rect = rowRectangles.get(rowIndex);
-					String fieldName = "rect" + pageIndex + "_" + rowIndex;
-					doc.add(new Field(fieldName, this.rectToString(rect), TYPE_NOT_INDEXED));
-				}
-			}
+			this.buildDocument();
+			indexWriter.addDocument(doc);
+			this.logDocument();
+		} catch (IOException e) {
+			LOG.error("Failed save JochreIndexDocument " + this.getName(), e);
+			throw new RuntimeException(e);
+		}
+	}
 
-			for (int pageIndex : startIndexes.keys()) {
-				TIntIntMap rowStartIndexes = startIndexes.get(pageIndex);
-				for (int rowIndex : rowStartIndexes.keys()) {
-					int startIndex = rowStartIndexes.get(rowIndex);
-					String fieldName = "start" + pageIndex + "_" + rowIndex;
-					doc.add(new IntField(fieldName, startIndex, Field.Store.YES));
-				}
+	@Override
+	public void update(IndexWriter indexWriter) {
+		try {
+			this.buildDocument();
+			indexWriter.updateDocument(new Term(JochreIndexField.section.name(), getSectionId(this.path, this.sectionNumber)), doc);
+			this.logDocument();
+		} catch (IOException e) {
+			LOG.error("Failed update JochreIndexDocument " + this.getName(), e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * The unique identifier of a given section of the work at a given path.
+	 */
+	static String getSectionId(String path, int sectionNumber) {
+		return path + "|" + sectionNumber;
+	}
+
+	private void buildDocument() {
+		doc = new Document();
+		doc.add(new StringField(JochreIndexField.name.name(), directory.getName(), Field.Store.YES));
+		// doc values allow index freshness to be checked without loading documents
+		doc.add(new SortedDocValuesField(JochreIndexField.name.name(), new BytesRef(directory.getName())));
+		doc.add(new StringField(JochreIndexField.path.name(), this.path, Field.Store.YES));
+		doc.add(new Field(JochreIndexField.startPage.name(), "" + startPage, TYPE_NOT_INDEXED));
+		doc.add(new Field(JochreIndexField.endPage.name(), "" + endPage, TYPE_NOT_INDEXED));
+		doc.add(new IntField(JochreIndexField.index.name(), sectionNumber, Field.Store.YES));
+		doc.add(new StringField(JochreIndexField.section.name(), getSectionId(this.path, sectionNumber), Field.Store.YES));
+		doc.add(new Field(JochreIndexField.text.name(), contents, TYPE_STORED));
+		// the text layer analyser adds lemmas whenever a lexicon is available
+		if (searchService.getLexicon() != null)
+			doc.add(new StringField(JochreIndexField.lemmaIndexed.name(), LEMMA_INDEXED, Field.Store.NO));
+		doc.add(new IntField(JochreIndexField.length.name(), length, Field.Store.YES));
+		long indexTime = System.currentTimeMillis();
+		doc.add(new LongField(JochreIndexField.indexTime.name(), indexTime, Field.Store.YES));
+		doc.add(new NumericDocValuesField(JochreIndexField.indexTime.name(), indexTime));
+
+		if (this.directory.getMetaData().containsKey(JochreIndexField.id.name()))
+			doc.add(new StringField(JochreIndexField.id.name(), this.directory.getMetaData().get(JochreIndexField.id.name()), Field.Store.YES));
+		if (this.directory.getMetaData().containsKey(JochreIndexField.author.name()))
+			doc.add(new Field(JochreIndexField.author.name(), this.directory.getMetaData().get(JochreIndexField.author.name()), TYPE_STORED));
+		if (this.directory.getMetaData().containsKey(JochreIndexField.title.name()))
+			doc.add(new Field(JochreIndexField.title.name(), this.directory.getMetaData().get(JochreIndexField.title.name()), TYPE_STORED));
+		if (this.directory.getMetaData().containsKey(JochreIndexField.publisher.name()))
+			doc.add(new Field(JochreIndexField.publisher.name(), this.directory.getMetaData().get(JochreIndexField.publisher.name()), TYPE_STORED));
+		if (this.directory.getMetaData().containsKey(JochreIndexField.date.name()))
+			doc.add(new StringField(JochreIndexField.date.name(), this.directory.getMetaData().get(JochreIndexField.date.name()), Field.Store.YES));
+		if (this.directory.getMetaData().containsKey(JochreIndexField.authorLang.name()))
+			doc.add(new Field(JochreIndexField.authorLang.name(), this.directory.getMetaData().get(JochreIndexField.authorLang.name()), TYPE_STORED));
+		if (this.directory.getMetaData().containsKey(JochreIndexField.titleLang.name()))
+			doc.add(new Field(JochreIndexField.titleLang.name(), this.directory.getMetaData().get(JochreIndexField.titleLang.name()), TYPE_STORED));
+		if (this.directory.getMetaData().containsKey(JochreIndexField.volume.name()))
+			doc.add(new StringField(JochreIndexField.volume.name(), this.directory.getMetaData().get(JochreIndexField.volume.name()), Field.Store.YES));
+
+		if (this.directory.getMetaData().containsKey(JochreIndexField.url.name()))
+			doc.add(new StringField(JochreIndexField.url.name(), this.directory.getMetaData().get(JochreIndexField.url.name()), Field.Store.YES));
+
+		for (int pageIndex : rectangles.keys()) {
+			TIntObjectMap<Rectangle> rowRectangles = rectangles.get(pageIndex);
+			for (int rowIndex : rowRectangles.keys()) {
+				Rectangle rect = rowRectangles.get(rowIndex);
+				String fieldName = "rect" + pageIndex + "_" + rowIndex;
+				doc.add(new Field(fieldName, this.rectToString(rect), TYPE_NOT_INDEXED));
 			}
+		}
 
-			for (int pageIndex : rowCounts.keys()) {
-				int rowCount = rowCounts.get(pageIndex);
-				String fieldName = "rowCount" + pageIndex;
-				doc.add(new IntField(fieldName, rowCount, Field.Store.YES));
+		for (int pageIndex : startIndexes.keys()) {
+			TIntIntMap rowStartIndexes = startIndexes.get(pageIndex);
+			for (int rowIndex : rowStartIndexes.keys()) {
+				int startIndex = rowStartIndexes.get(rowIndex);
+				String fieldName = "start" + pageIndex + "_" + rowIndex;
+				doc.add(new IntField(fieldName, startIndex, Field.Store.YES));
 			}
+		}
 
-			indexWriter.addDocument(doc);
+		for (int pageIndex : rowCounts.keys()) {
+			int rowCount = rowCounts.get(pageIndex);
+			String fieldName = "rowCount" + pageIndex;
+			doc.add(new IntField(fieldName, rowCount, Field.Store.YES));
+		}
+	}
 
-			if (LOG.isTraceEnabled()) {
-				for (IndexableField field : doc.getFields()) {
-					if (!field.name().equals(JochreIndexField.text.name()))
-						LOG.trace(field.toString());
-				}
+	private void logDocument() {
+		if (LOG.isTraceEnabled()) {
+			for (IndexableField field : doc.getFields()) {
+				if (!field.name().equals(JochreIndexField.text.name()))
+					LOG.trace(field.toString());
 			}
-		} catch (IOException e) {
-			LOG.error("Failed save JochreIndexDocument " + this.getName(), e);
-			throw new RuntimeException(e);
 		}
 	}
 
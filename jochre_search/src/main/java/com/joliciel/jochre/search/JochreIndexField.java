@@ -22,5 +22,9 @@ public enum JochreIndexField {
 	id,
 	url,
 	volume,
-	length;
+	length,
+	/** Uniquely identifies a section of a work, so that it can be replaced on its own. */
+	section,
+	/** Marks documents whose text field includes the lemma of each word. */
+	lemmaIndexed;
 }
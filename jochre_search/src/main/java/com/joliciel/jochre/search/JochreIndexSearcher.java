@@ -44,4 +44,11 @@ public interface JochreIndexSearcher {
 
 	public IndexSearcher getIndexSearcher();
 
+	/**
+	 * Whether the lemma of each word was added to the text field when
+	 * indexing every document in the index, in which case queries can search
+	 * for lemmas directly.
+	 */
+	public boolean isLemmaIndexed();
+
 }
\ No newline at end of file
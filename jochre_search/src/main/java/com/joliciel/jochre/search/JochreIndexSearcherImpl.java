@@ -7,15 +7,19 @@ import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexNotFoundException;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
@@ -35,7 +39,8 @@ import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
- * A reusable index searcher tied to a given index directory.
+ * A reusable index searcher tied to a given index directory. If the index is
+ * sharded, all shards are searched as a single index.
  * 
  * @author Assaf Urieli
  *
@@ -49,9 +54,22 @@ class JochreIndexSearcherImpl implements JochreIndexSearcher {
 	private DecimalFormatSymbols enSymbols = new DecimalFormatSymbols(Locale.US);
 	private Map<Integer, DecimalFormat> decimalFormats = new HashMap<Integer, DecimalFormat>();
 	private SearchService searchService;
+	private final ExecutorService executor;
+	private boolean lemmaIndexed = false;
 
 	public JochreIndexSearcherImpl(File indexDir, File contentDir) {
+		this(indexDir, contentDir, null);
+	}
+
+	/**
+	 * @param executor
+	 *            if not null, the index segments are searched concurrently
+	 *            using this executor, and the top results of each segment
+	 *            merged.
+	 */
+	public JochreIndexSearcherImpl(File indexDir, File contentDir, ExecutorService executor) {
 		super();
+		this.executor = executor;
 		this.setIndexDir(indexDir);
 		this.contentDir = contentDir;
 	}
@@ -62,15 +80,32 @@ class JochreIndexSearcherImpl implements JochreIndexSearcher {
 			if (!indexDir.exists()) {
 				throw new RuntimeException("Index directory does not exist: " + indexDir.getAbsolutePath());
 			}
-			Path path = this.indexDir.toPath();
-			Directory directory = FSDirectory.open(path);
 
-			try {
-				indexReader = DirectoryReader.open(directory);
+			// open each shard, and combine them into a single reader, so
+			// that document ids are global across shards
+			List<IndexReader> shardReaders = new ArrayList<IndexReader>();
+			for (File shardDir : IndexShards.getIndexDirs(indexDir)) {
+				Path path = shardDir.toPath();
+				Directory directory = FSDirectory.open(path);
+
+				try {
+					shardReaders.add(DirectoryReader.open(directory));
+				} catch (IndexNotFoundException e) {
+					LOG.info("No index at : " + shardDir.getAbsolutePath());
+				}
+			}
+
+			if (shardReaders.size() == 1)
+				indexReader = shardReaders.get(0);
+			else if (shardReaders.size() > 1)
+				indexReader = new MultiReader(shardReaders.toArray(new IndexReader[shardReaders.size()]));
 
-				indexSearcher = new IndexSearcher(indexReader);
-			} catch (IndexNotFoundException e) {
-				LOG.info("No index at : " + indexDir.getAbsolutePath());
+			if (indexReader != null) {
+				if (executor != null)
+					indexSearcher = new IndexSearcher(indexReader, executor);
+				else
+					indexSearcher = new IndexSearcher(indexReader);
+				lemmaIndexed = this.findLemmas();
 			}
 		} catch (IOException e) {
 			LOG.error("Failed set index dir to " + indexDir.getAbsolutePath(), e);
@@ -78,6 +113,25 @@ class JochreIndexSearcherImpl implements JochreIndexSearcher {
 		}
 	}
 
+	/**
+	 * Check whether every live document had lemmas added to its text field.
+	 * Documents which were indexed without a lexicon, and haven't been
+	 * reindexed since, can only be found by expanding a query to inflected
+	 * forms.
+	 */
+	private boolean findLemmas() throws IOException {
+		int numDocs = indexReader.numDocs();
+		if (numDocs == 0)
+			return false;
+		int lemmaDocs = indexSearcher.count(new TermQuery(new Term(JochreIndexField.lemmaIndexed.name(), JochreIndexDocumentImpl.LEMMA_INDEXED)));
+		return lemmaDocs == numDocs;
+	}
+
+	@Override
+	public boolean isLemmaIndexed() {
+		return lemmaIndexed;
+	}
+
 	@Override
 	public TopDocs search(JochreQuery jochreQuery) {
 		try {
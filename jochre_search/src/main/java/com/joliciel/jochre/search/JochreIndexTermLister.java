@@ -22,11 +22,13 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.joliciel.jochre.search.lexicon.LemmaFilter;
 
 public class JochreIndexTermLister {
 	private static final Logger LOG = LoggerFactory.getLogger(JochreIndexTermLister.class);
@@ -69,6 +71,7 @@ public class JochreIndexTermLister {
 			LeafReaderContext subContext = leaves.get(leaf);
 			LeafReader atomicReader = subContext.reader();
 
+			BytesRef lemmaPrefix = new BytesRef(LemmaFilter.LEMMA_PREFIX);
 			int fieldCounter = 0;
 			for (String field : fields) {
 				fieldCounter++;
@@ -83,9 +86,12 @@ public class JochreIndexTermLister {
 
 				TermsEnum termsEnum = atomicReaderTerms.iterator();
 
-				@SuppressWarnings("unused")
 				BytesRef bytesRef = null;
 				while ((bytesRef = termsEnum.next()) != null) {
+					// lemmas are indexed at the same offsets as their words,
+					// but aren't part of the text
+					if (StringHelper.startsWith(bytesRef, lemmaPrefix))
+						continue;
 					this.findTerms(fieldTermMap, field, termsEnum, subContext, docId);
 				} // next bytesRef
 			} // next field
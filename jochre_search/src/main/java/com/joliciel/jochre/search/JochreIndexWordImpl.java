@@ -107,7 +107,7 @@ class JochreIndexWordImpl implements JochreIndexWord {
 	@Override
 	public Rectangle getSecondRowRectangle() {
 		if (secondRowRectangle == null) {
-			if (jochreTerm.getPayload().getSecondaryRectangle() != null) {
+			if (jochreTerm.getPayload().hasSecondaryRectangle()) {
 				secondRowRectangle = doc.getRowRectangle(jochreTerm.getPayload().getPageIndex(), jochreTerm.getPayload().getRowIndex() + 1);
 			}
 		}
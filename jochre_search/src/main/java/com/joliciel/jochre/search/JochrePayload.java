@@ -5,105 +5,228 @@ import java.util.Arrays;
 
 import org.apache.lucene.util.BytesRef;
 
+/**
+ * The location of a token in the original image, stored as the token's
+ * payload in the index.<br/>
+ * Payloads are written in a compact variable-length format: a header byte,
+ * with the high bit set and a flag for the secondary rectangle, followed by
+ * the page, paragraph and row indexes, the rectangle's left, top, width and
+ * height, and for the secondary rectangle, its left and top as zig-zag
+ * encoded deltas from the main rectangle, followed by its width and height,
+ * all as variable-length ints.<br/>
+ * Payloads in the original fixed format, of 14 bytes (or 22 with a secondary
+ * rectangle) containing 2-byte big-endian fields, can still be read.
+ * <br/>
+ * All fields are decoded once on construction.
+ */
 public class JochrePayload {
-	private BytesRef bytesRef;
-	
+	private static final int HEADER = 0x80;
+	private static final int SECONDARY_FLAG = 0x01;
+
+	private int left;
+	private int top;
+	private int width;
+	private int height;
+	private boolean hasSecondaryRectangle;
+	private int secondaryLeft;
+	private int secondaryTop;
+	private int secondaryWidth;
+	private int secondaryHeight;
+	private int pageIndex;
+	private int paragraphIndex;
+	private int rowIndex;
+	private BytesRef bytesRef = null;
+
 	public JochrePayload(BytesRef bytesRef) {
-		this.bytesRef = BytesRef.deepCopyOf(bytesRef);
-		if (bytesRef.length!=14&&bytesRef.length!=22)
-			throw new RuntimeException("bytesRef wrong size, should be 14 or 22, was " + bytesRef.length + ": " + Arrays.toString(bytesRef.bytes));
+		byte[] bytes = bytesRef.bytes;
+		int i = bytesRef.offset;
+		if (bytesRef.length > 0 && (bytes[i] & HEADER) != 0) {
+			this.decode(bytes, i, bytesRef.offset + bytesRef.length);
+		} else if (bytesRef.length == 14 || bytesRef.length == 22) {
+			this.decodeFixed(bytes, i, bytesRef.length);
+		} else {
+			throw new RuntimeException("bytesRef wrong size, should be 14 or 22, was " + bytesRef.length + ": "
+					+ Arrays.toString(Arrays.copyOfRange(bytes, bytesRef.offset, bytesRef.offset + bytesRef.length)));
+		}
 	}
-	
+
 	public JochrePayload(JochreToken token) {
 		this(token.getRectangle(), token.getSecondaryRectangle(), token.getPageIndex(), token.getParagraphIndex(), token.getRowIndex());
 	}
-	
-	public JochrePayload(Rectangle rect, Rectangle secondaryRect,
-			int pageIndex, int paragraphIndex, int rowIndex) {
-		byte[] bytes;
-		if (secondaryRect==null)
-			bytes = new byte[14];
-		else
-			bytes = new byte[22];
-		bytes[0] = (byte) (rect.x / 256);
-		bytes[1] = (byte) (rect.x % 256);
-		bytes[2] = (byte) (rect.y / 256);
-		bytes[3] = (byte) (rect.y % 256);
-		bytes[4] = (byte) (rect.width / 256);
-		bytes[5] = (byte) (rect.width % 256);
-		bytes[6] = (byte) (rect.height / 256);
-		bytes[7] = (byte) (rect.height % 256);
-		bytes[8] = (byte) (pageIndex / 256);
-		bytes[9] = (byte) (pageIndex % 256);
-		bytes[10] = (byte) (paragraphIndex / 256);
-		bytes[11] = (byte) (paragraphIndex % 256);
-		bytes[12] = (byte) (rowIndex / 256);
-		bytes[13] = (byte) (rowIndex % 256);
-		if (secondaryRect!=null) {
-			bytes[14] = (byte) (secondaryRect.x / 256);
-			bytes[15] = (byte) (secondaryRect.x % 256);
-			bytes[16] = (byte) (secondaryRect.y / 256);
-			bytes[17] = (byte) (secondaryRect.y % 256);
-			bytes[18] = (byte) (secondaryRect.width / 256);
-			bytes[19] = (byte) (secondaryRect.width % 256);
-			bytes[20] = (byte) (secondaryRect.height / 256);
-			bytes[21] = (byte) (secondaryRect.height % 256);
+
+	public JochrePayload(Rectangle rect, Rectangle secondaryRect, int pageIndex, int paragraphIndex, int rowIndex) {
+		this.left = rect.x;
+		this.top = rect.y;
+		this.width = rect.width;
+		this.height = rect.height;
+		if (secondaryRect != null) {
+			this.hasSecondaryRectangle = true;
+			this.secondaryLeft = secondaryRect.x;
+			this.secondaryTop = secondaryRect.y;
+			this.secondaryWidth = secondaryRect.width;
+			this.secondaryHeight = secondaryRect.height;
+		}
+		this.pageIndex = pageIndex;
+		this.paragraphIndex = paragraphIndex;
+		this.rowIndex = rowIndex;
+	}
+
+	private void decode(byte[] bytes, int start, int end) {
+		int[] pos = new int[] { start + 1 };
+		this.hasSecondaryRectangle = (bytes[start] & SECONDARY_FLAG) != 0;
+		this.pageIndex = readVInt(bytes, pos, end);
+		this.paragraphIndex = readVInt(bytes, pos, end);
+		this.rowIndex = readVInt(bytes, pos, end);
+		this.left = readVInt(bytes, pos, end);
+		this.top = readVInt(bytes, pos, end);
+		this.width = readVInt(bytes, pos, end);
+		this.height = readVInt(bytes, pos, end);
+		if (hasSecondaryRectangle) {
+			this.secondaryLeft = left + zigZagDecode(readVInt(bytes, pos, end));
+			this.secondaryTop = top + zigZagDecode(readVInt(bytes, pos, end));
+			this.secondaryWidth = readVInt(bytes, pos, end);
+			this.secondaryHeight = readVInt(bytes, pos, end);
+		}
+	}
+
+	private void decodeFixed(byte[] bytes, int i, int length) {
+		this.left = readShort(bytes, i);
+		this.top = readShort(bytes, i + 2);
+		this.width = readShort(bytes, i + 4);
+		this.height = readShort(bytes, i + 6);
+		this.pageIndex = readShort(bytes, i + 8);
+		this.paragraphIndex = readShort(bytes, i + 10);
+		this.rowIndex = readShort(bytes, i + 12);
+		if (length == 22) {
+			this.hasSecondaryRectangle = true;
+			this.secondaryLeft = readShort(bytes, i + 14);
+			this.secondaryTop = readShort(bytes, i + 16);
+			this.secondaryWidth = readShort(bytes, i + 18);
+			this.secondaryHeight = readShort(bytes, i + 20);
+		}
+	}
+
+	private static int readShort(byte[] bytes, int i) {
+		return ((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF);
+	}
+
+	private static int readVInt(byte[] bytes, int[] pos, int end) {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			if (pos[0] >= end)
+				throw new RuntimeException("Payload truncated at byte " + pos[0]);
+			byte b = bytes[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+			shift += 7;
+		}
+	}
+
+	private static int writeVInt(byte[] bytes, int pos, int value) {
+		while ((value & ~0x7F) != 0) {
+			bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
 		}
-		bytesRef = new BytesRef(bytes);
+		bytes[pos++] = (byte) value;
+		return pos;
+	}
+
+	private static int zigZagEncode(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int zigZagDecode(int value) {
+		return (value >>> 1) ^ -(value & 1);
 	}
 
 	public BytesRef getBytesRef() {
+		if (bytesRef == null) {
+			// header + up to 11 ints of at most 5 bytes each
+			byte[] bytes = new byte[56];
+			bytes[0] = (byte) (HEADER | (hasSecondaryRectangle ? SECONDARY_FLAG : 0));
+			int pos = 1;
+			pos = writeVInt(bytes, pos, pageIndex);
+			pos = writeVInt(bytes, pos, paragraphIndex);
+			pos = writeVInt(bytes, pos, rowIndex);
+			pos = writeVInt(bytes, pos, left);
+			pos = writeVInt(bytes, pos, top);
+			pos = writeVInt(bytes, pos, width);
+			pos = writeVInt(bytes, pos, height);
+			if (hasSecondaryRectangle) {
+				pos = writeVInt(bytes, pos, zigZagEncode(secondaryLeft - left));
+				pos = writeVInt(bytes, pos, zigZagEncode(secondaryTop - top));
+				pos = writeVInt(bytes, pos, secondaryWidth);
+				pos = writeVInt(bytes, pos, secondaryHeight);
+			}
+			bytesRef = new BytesRef(Arrays.copyOf(bytes, pos));
+		}
 		return bytesRef;
 	}
 
 	public Rectangle getRectangle() {
-		byte[] bytes = bytesRef.bytes;
-		int i = bytesRef.offset;
-		int left = (bytes[i+0]<0 ? 256 + bytes[i+0] : bytes[i+0]) * 256 + (bytes[i+1]<0 ? 256 + bytes[i+1] : bytes[i+1]);
-		int top = (bytes[i+2]<0 ? 256 + bytes[i+2] : bytes[i+2]) * 256 + (bytes[i+3]<0 ? 256 + bytes[i+3] : bytes[i+3]);
-		int width = (bytes[i+4]<0 ? 256 + bytes[i+4] : bytes[i+4]) * 256 + (bytes[i+5]<0 ? 256 + bytes[i+5] : bytes[i+5]);
-		int height = (bytes[i+6]<0 ? 256 + bytes[i+6] : bytes[i+6]) * 256 + (bytes[i+7]<0 ? 256 + bytes[i+7] : bytes[i+7]);
-		Rectangle rect = new Rectangle(left, top, width, height);
-		return rect;
-	}
-	
+		return new Rectangle(left, top, width, height);
+	}
+
 	public Rectangle getSecondaryRectangle() {
-		if (bytesRef.length<20)
+		if (!hasSecondaryRectangle)
 			return null;
-		byte[] bytes = bytesRef.bytes;
-		int i = bytesRef.offset;
-		i+=14;
-		int left = (bytes[i+0]<0 ? 256 + bytes[i+0] : bytes[i+0]) * 256 + (bytes[i+1]<0 ? 256 + bytes[i+1] : bytes[i+1]);
-		int top = (bytes[i+2]<0 ? 256 + bytes[i+2] : bytes[i+2]) * 256 + (bytes[i+3]<0 ? 256 + bytes[i+3] : bytes[i+3]);
-		int width = (bytes[i+4]<0 ? 256 + bytes[i+4] : bytes[i+4]) * 256 + (bytes[i+5]<0 ? 256 + bytes[i+5] : bytes[i+5]);
-		int height = (bytes[i+6]<0 ? 256 + bytes[i+6] : bytes[i+6]) * 256 + (bytes[i+7]<0 ? 256 + bytes[i+7] : bytes[i+7]);
-		Rectangle rect = new Rectangle(left, top, width, height);
-		return rect;
-	}
-	
+		return new Rectangle(secondaryLeft, secondaryTop, secondaryWidth, secondaryHeight);
+	}
+
+	public int getLeft() {
+		return left;
+	}
+
+	public int getTop() {
+		return top;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public boolean hasSecondaryRectangle() {
+		return hasSecondaryRectangle;
+	}
+
+	public int getSecondaryLeft() {
+		return secondaryLeft;
+	}
+
+	public int getSecondaryTop() {
+		return secondaryTop;
+	}
+
+	public int getSecondaryWidth() {
+		return secondaryWidth;
+	}
+
+	public int getSecondaryHeight() {
+		return secondaryHeight;
+	}
+
 	public int getPageIndex() {
-		byte[] bytes = bytesRef.bytes;
-		int i = bytesRef.offset;
-		return (bytes[i+8]<0 ? 256 + bytes[i+8] : bytes[i+8]) * 256 + (bytes[i+9]<0 ? 256 + bytes[i+9] : bytes[i+9]);
+		return pageIndex;
 	}
 
 	public int getParagraphIndex() {
-		byte[] bytes = bytesRef.bytes;
-		int i = bytesRef.offset;
-		return (bytes[i+10]<0 ? 256 + bytes[i+10] : bytes[i+10]) * 256 + (bytes[i+11]<0 ? 256 + bytes[i+11] : bytes[i+11]);
+		return paragraphIndex;
 	}
 
 	public int getRowIndex() {
-		byte[] bytes = bytesRef.bytes;
-		int i = bytesRef.offset;
-		return (bytes[i+12]<0 ? 256 + bytes[i+12] : bytes[i+12]) * 256 + (bytes[i+13]<0 ? 256 + bytes[i+13] : bytes[i+13]);
+		return rowIndex;
 	}
-	
+
 	@Override
 	public String toString() {
-		return "JochrePayload [rect=" + this.getRectangle() + ", pageIndex=" + this.getPageIndex()
-				+ ", paragraphIndex=" + this.getParagraphIndex() + ", rowIndex="
-				+ this.getRowIndex() + ", secondaryRect=" + this.getSecondaryRectangle() + "]";
+		return "JochrePayload [rect=" + this.getRectangle() + ", pageIndex=" + this.getPageIndex() + ", paragraphIndex=" + this.getParagraphIndex()
+				+ ", rowIndex=" + this.getRowIndex() + ", secondaryRect=" + this.getSecondaryRectangle() + "]";
 	}
 
 }
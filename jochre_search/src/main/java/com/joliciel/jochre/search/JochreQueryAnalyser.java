@@ -9,6 +9,7 @@ import org.apache.lucene.analysis.core.WhitespaceTokenizer;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
 
 import com.joliciel.jochre.search.lexicon.InflectedFormFilter;
+import com.joliciel.jochre.search.lexicon.LemmaFilter;
 import com.joliciel.jochre.search.lexicon.Lexicon;
 import com.joliciel.jochre.search.lexicon.TextNormaliser;
 import com.joliciel.jochre.search.lexicon.TextNormalisingFilter;
@@ -22,6 +23,7 @@ class JochreQueryAnalyser extends Analyzer {
 	private Lexicon lexicon;
 	private SearchServiceInternal searchService;
 	private boolean expandInflections = true;
+	private boolean lemmaIndexed = false;
 	private TextNormaliser textNormaliser;
 	
 	public JochreQueryAnalyser() {
@@ -43,8 +45,12 @@ class JochreQueryAnalyser extends Analyzer {
 		if (queryTokenFilter!=null)
 			result = queryTokenFilter;
 		
-		if (lexicon!=null && expandInflections)
-			result = new InflectedFormFilter(result, lexicon);
+		if (lexicon!=null && expandInflections) {
+			if (lemmaIndexed)
+				result = new LemmaFilter(result, lexicon, null);
+			else
+				result = new InflectedFormFilter(result, lexicon);
+		}
 		result = new PunctuationFilter(result);
 		return new TokenStreamComponents(source, result);
 	}
@@ -73,6 +79,19 @@ class JochreQueryAnalyser extends Analyzer {
 		this.expandInflections = expandInflections;
 	}
 
+	/**
+	 * Whether the index contains the lemma of each word, in which case
+	 * inflections are expanded by searching for the lemmas of each query term,
+	 * rather than for all of the inflected forms of these lemmas.
+	 */
+	public boolean isLemmaIndexed() {
+		return lemmaIndexed;
+	}
+
+	public void setLemmaIndexed(boolean lemmaIndexed) {
+		this.lemmaIndexed = lemmaIndexed;
+	}
+
 	public TextNormaliser getTextNormaliser() {
 		return textNormaliser;
 	}
@@ -114,6 +114,9 @@ public class JochreSearch {
 			String indexDirPath = null;
 			String contentDirPath = null;
 			boolean forceUpdate = false;
+			int altoThreads = 1;
+			int shards = 1;
+			int searchThreads = 1;
 			String docName = null;
 			int docIndex = -1;
 			int docId = -1;
@@ -150,6 +153,12 @@ public class JochreSearch {
 					contentDirPath = argValue;
 				} else if (argName.equals("forceUpdate")) {
 					forceUpdate = argValue.equals("true");
+				} else if (argName.equals("altoThreads")) {
+					altoThreads = Integer.parseInt(argValue);
+				} else if (argName.equals("shards")) {
+					shards = Integer.parseInt(argValue);
+				} else if (argName.equals("searchThreads")) {
+					searchThreads = Integer.parseInt(argValue);
 				} else if (argName.equals("docName")) {
 					docName = argValue;
 				} else if (argName.equals("docIndex")) {
@@ -209,6 +218,7 @@ public class JochreSearch {
 
 			SearchServiceLocator locator = SearchServiceLocator.getInstance(Locale.forLanguageTag(language), indexDir, contentDir);
 			SearchService searchService = locator.getSearchService();
+			searchService.setSearchThreads(searchThreads);
 			LexiconServiceLocator lexiconServiceLocator = LexiconServiceLocator.getInstance(locator);
 			LexiconService lexiconService = lexiconServiceLocator.getLexiconService();
 
@@ -219,7 +229,15 @@ public class JochreSearch {
 
 			switch (command) {
 			case updateIndex: {
+				if (lexiconFilePath != null) {
+					// the lemmas of each word are indexed
+					File lexiconFile = new File(lexiconFilePath);
+					Lexicon lexicon = lexiconService.deserializeLexicon(lexiconFile);
+					searchService.setLexicon(lexicon);
+				}
 				JochreIndexBuilder builder = searchService.getJochreIndexBuilder();
+				builder.setAltoThreads(altoThreads);
+				builder.setShards(shards);
 				builder.updateIndex(forceUpdate);
 				break;
 			}
@@ -26,6 +26,8 @@ import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
 
+import com.joliciel.jochre.search.lexicon.LemmaFilter;
+import com.joliciel.jochre.search.lexicon.Lexicon;
 import com.joliciel.jochre.search.lexicon.TextNormaliser;
 import com.joliciel.jochre.search.lexicon.TextNormalisingFilter;
 
@@ -41,6 +43,7 @@ class JochreTextLayerAnalyser extends Analyzer {
 	private static final Logger LOG = LoggerFactory.getLogger(JochreTextLayerAnalyser.class);
 	private TokenExtractor tokenExtractor;
 	private TextNormaliser textNormaliser;
+	private Lexicon lexicon;
 
 	private SearchServiceInternal searchService;
 
@@ -62,6 +65,8 @@ class JochreTextLayerAnalyser extends Analyzer {
 			result = new ASCIIFoldingFilter(result);
 			result = new LowerCaseFilter(result);
 		}
+		if (lexicon != null)
+			result = new LemmaFilter(result, lexicon, JochreSearchConstants.INDEX_PUNCT_PREFIX);
 		return new TokenStreamComponents(source, result);
 	}
 
@@ -80,4 +85,15 @@ class JochreTextLayerAnalyser extends Analyzer {
 	public void setTextNormaliser(TextNormaliser textNormaliser) {
 		this.textNormaliser = textNormaliser;
 	}
+
+	/**
+	 * If provided, the lemmas of each word are indexed alongside it.
+	 */
+	public Lexicon getLexicon() {
+		return lexicon;
+	}
+
+	public void setLexicon(Lexicon lexicon) {
+		this.lexicon = lexicon;
+	}
 }
@@ -70,7 +70,7 @@ class JochreTokeniser extends Tokenizer {
 	}
 
 	@Override
-	public boolean incrementToken() throws IOException {
+	public final boolean incrementToken() throws IOException {
 		clearAttributes();
 		if (this.tokens == null) {
 			this.tokens = this.tokenExtractor.findTokens(fieldName, this.input);
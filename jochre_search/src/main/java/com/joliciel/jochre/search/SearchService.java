@@ -28,6 +28,14 @@ public interface SearchService {
 	public JochreIndexSearcher getJochreIndexSearcher();
 	public void purge();
 	public void purgeSearcher();
+
+	/**
+	 * The number of threads used to search the index segments concurrently
+	 * in each query. If &lt;= 1, segments are searched sequentially. Default
+	 * is 1.
+	 */
+	public int getSearchThreads();
+	public void setSearchThreads(int searchThreads);
 	
 	public JochreQuery getJochreQuery();
 	public JochreIndexBuilder getJochreIndexBuilder();
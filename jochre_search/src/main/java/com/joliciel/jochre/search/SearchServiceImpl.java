@@ -24,6 +24,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +55,8 @@ class SearchServiceImpl implements SearchServiceInternal {
 	private Lexicon lexicon;
 	private File indexDir;
 	private File contentDir;
+	private int searchThreads = 1;
+	private ExecutorService searchExecutor;
 
 	private static final Set<String> RTL = new HashSet<String>(Arrays.asList(new String[] { "ar", "dv", "fa", "ha", "he", "iw", "ji", "ps", "ur", "yi" }));
 
@@ -102,11 +108,51 @@ class SearchServiceImpl implements SearchServiceInternal {
 	}
 
 	private JochreIndexSearcher buildSearcher() {
-		JochreIndexSearcherImpl searcher = new JochreIndexSearcherImpl(indexDir, contentDir);
+		JochreIndexSearcherImpl searcher = new JochreIndexSearcherImpl(indexDir, contentDir, this.getSearchExecutor());
 		searcher.setSearchService(this);
 		return searcher;
 	}
 
+	/**
+	 * The executor shared by successive searchers, or null if searches are
+	 * single-threaded.
+	 */
+	private ExecutorService getSearchExecutor() {
+		if (searchThreads <= 1)
+			return null;
+		if (searchExecutor == null) {
+			final AtomicInteger threadIndex = new AtomicInteger();
+			searchExecutor = Executors.newFixedThreadPool(searchThreads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "JochreSearch-" + threadIndex.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return searchExecutor;
+	}
+
+	@Override
+	public int getSearchThreads() {
+		return searchThreads;
+	}
+
+	@Override
+	public synchronized void setSearchThreads(int searchThreads) {
+		if (searchThreads == this.searchThreads)
+			return;
+		this.searchThreads = searchThreads;
+		ExecutorService previousExecutor = searchExecutor;
+		searchExecutor = null;
+		if (this.searcher != null)
+			this.searcher = this.buildSearcher();
+		// let any searches underway complete
+		if (previousExecutor != null)
+			previousExecutor.shutdown();
+	}
+
 	@Override
 	public JochreIndexDocument getJochreIndexDocument(JochreIndexSearcher indexSearcher, int docId) {
 		JochreIndexDocumentImpl doc = new JochreIndexDocumentImpl(indexSearcher, docId);
@@ -139,6 +185,7 @@ class SearchServiceImpl implements SearchServiceInternal {
 		JochreTextLayerAnalyser analyser = new JochreTextLayerAnalyser(tokenExtractor);
 		analyser.setSearchService(this);
 		analyser.setTextNormaliser(this.lexiconService.getTextNormaliser(locale));
+		analyser.setLexicon(lexicon);
 		return analyser;
 	}
 
@@ -154,6 +201,8 @@ class SearchServiceImpl implements SearchServiceInternal {
 		JochreQueryAnalyser analyser = new JochreQueryAnalyser();
 		analyser.setSearchService(this);
 		analyser.setLexicon(lexicon);
+		if (lexicon != null)
+			analyser.setLemmaIndexed(this.getJochreIndexSearcher().isLemmaIndexed());
 		analyser.setTextNormaliser(this.lexiconService.getTextNormaliser(locale));
 		return analyser;
 	}
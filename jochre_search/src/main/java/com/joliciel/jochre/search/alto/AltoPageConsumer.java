@@ -8,4 +8,12 @@ package com.joliciel.jochre.search.alto;
 public interface AltoPageConsumer {
 	public void onNextPage(AltoPage altoPage);
 	public void onComplete();
+
+	/**
+	 * Does this consumer hold on to pages, or any of their blocks, lines or
+	 * strings, after {@link #onNextPage(AltoPage)} returns? If not, the
+	 * reader is free to reuse the same objects for the following page. If any
+	 * consumer retains pages, each page is read into new objects.
+	 */
+	public boolean isRetainingPages();
 }
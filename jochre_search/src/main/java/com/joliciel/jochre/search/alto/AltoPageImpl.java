@@ -33,10 +33,22 @@ public class AltoPageImpl implements AltoPage {
 	
 	public AltoPageImpl(AltoDocument doc, int pageIndex, int width, int height) {
 		super();
+		this.reset(doc, pageIndex, width, height);
+	}
+
+	/**
+	 * Clear this page so that it can be reused for another page, as if it had
+	 * just been constructed.
+	 */
+	void reset(AltoDocument doc, int pageIndex, int width, int height) {
 		this.document = doc;
 		this.pageIndex = pageIndex;
 		this.width = width;
 		this.height = height;
+		this.textBlocks.clear();
+		this.textLines.clear();
+		this.wordCount = -1;
+		this.confidence = 0;
 		this.document.getPages().add(this);
 	}
 
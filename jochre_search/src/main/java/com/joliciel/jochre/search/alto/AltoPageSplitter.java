@@ -0,0 +1,181 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.search.alto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits an Alto byte stream into the raw bytes of each &lt;Page&gt;
+ * element, via a simple byte scan rather than an XML parser, so that pages
+ * can then be parsed independently.<br/>
+ * Assumes an ASCII-compatible encoding such as UTF-8, no namespace prefix on
+ * the Page element, and no &lt;Page&gt; tags inside comments or CDATA
+ * sections, all of which hold for Alto files written by Jochre.
+ *
+ * @author Assaf Urieli
+ *
+ */
+class AltoPageSplitter {
+	private static final byte[] START_TAG = "<Page".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] END_TAG = "</Page>".getBytes(StandardCharsets.US_ASCII);
+	private static final Pattern ENCODING_PATTERN = Pattern.compile("encoding\\s*=\\s*[\"']([A-Za-z0-9._-]+)[\"']");
+
+	private enum State {
+		/** Looking for the next page start tag */
+		SEARCH,
+		/** Matched the start tag name, checking it isn't a longer name */
+		START_TAG_NAME,
+		/** Inside the start tag's attributes */
+		START_TAG,
+		/** Inside the page, looking for the end tag */
+		BODY
+	}
+
+	private final InputStream inputStream;
+	private final byte[] buffer = new byte[64 * 1024];
+	private int bufferPos = 0;
+	private int bufferLength = 0;
+	private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+	private String encoding = null;
+	private ByteArrayOutputStream page = new ByteArrayOutputStream(64 * 1024);
+
+	private State state = State.SEARCH;
+	private int matched = 0;
+	private byte quote = 0;
+	private byte previous = 0;
+
+	public AltoPageSplitter(InputStream inputStream) {
+		this.inputStream = inputStream;
+	}
+
+	/**
+	 * The bytes of the next page element, from its start tag to its end tag
+	 * inclusive, or null if there are no more pages.
+	 */
+	public byte[] nextPage() throws IOException {
+		while (true) {
+			if (bufferPos == bufferLength) {
+				bufferLength = inputStream.read(buffer);
+				bufferPos = 0;
+				if (bufferLength < 0) {
+					bufferLength = 0;
+					if (state != State.SEARCH)
+						throw new IOException("Unexpected end of Alto file inside page");
+					return null;
+				}
+			}
+
+			byte b = buffer[bufferPos++];
+			switch (state) {
+			case SEARCH:
+				if (encoding == null)
+					header.write(b);
+				if (b == START_TAG[matched]) {
+					matched++;
+					if (matched == START_TAG.length) {
+						page.write(START_TAG, 0, START_TAG.length);
+						state = State.START_TAG_NAME;
+						matched = 0;
+					}
+				} else {
+					matched = (b == START_TAG[0]) ? 1 : 0;
+				}
+				break;
+			case START_TAG_NAME:
+				if (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '>' || b == '/') {
+					if (encoding == null)
+						encoding = this.readEncoding();
+					state = State.START_TAG;
+					quote = 0;
+					previous = 0;
+					// read this byte again as part of the start tag, in case it
+					// closes it
+					bufferPos--;
+				} else {
+					// another element, such as PageSpace
+					page.reset();
+					state = State.SEARCH;
+					matched = (b == START_TAG[0]) ? 1 : 0;
+				}
+				break;
+			case START_TAG:
+				page.write(b);
+				if (quote != 0) {
+					if (b == quote)
+						quote = 0;
+				} else if (b == '"' || b == '\'') {
+					quote = b;
+				} else if (b == '>') {
+					// an empty page element is complete at once
+					if (previous == '/')
+						return this.completePage();
+					state = State.BODY;
+					matched = 0;
+				}
+				previous = b;
+				break;
+			case BODY:
+				page.write(b);
+				if (b == END_TAG[matched]) {
+					matched++;
+					if (matched == END_TAG.length)
+						return this.completePage();
+				} else {
+					matched = (b == END_TAG[0]) ? 1 : 0;
+				}
+				break;
+			}
+		}
+	}
+
+	/**
+	 * The encoding declared in the XML declaration, or UTF-8 if none.
+	 */
+	public String getEncoding() {
+		return encoding == null ? "UTF-8" : encoding;
+	}
+
+	private String readEncoding() throws IOException {
+		String prolog = new String(header.toByteArray(), StandardCharsets.ISO_8859_1);
+		String encoding = "UTF-8";
+		int declarationStart = prolog.indexOf("<?xml");
+		int declarationEnd = prolog.indexOf("?>");
+		if (declarationStart >= 0 && declarationStart <= 3 && declarationEnd > declarationStart) {
+			Matcher matcher = ENCODING_PATTERN.matcher(prolog.substring(declarationStart, declarationEnd));
+			if (matcher.find())
+				encoding = matcher.group(1);
+		}
+		if (encoding.toUpperCase().startsWith("UTF-16") || encoding.toUpperCase().startsWith("UTF-32"))
+			throw new IOException("Cannot split Alto file in encoding " + encoding);
+		return encoding;
+	}
+
+	private byte[] completePage() {
+		byte[] bytes = page.toByteArray();
+		page.reset();
+		state = State.SEARCH;
+		matched = 0;
+		return bytes;
+	}
+}
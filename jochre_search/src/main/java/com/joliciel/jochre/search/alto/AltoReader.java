@@ -26,6 +26,8 @@ import java.io.InputStream;
  * By default, the reader feeds pages read to consumers via {@link #addConsumer(AltoPageConsumer)}.
  * If the client wishes to parse an entire document into memory rather than using consumers,
  * it needs to use {@link #setBuildEntireDocument(boolean)}.
+ * Unless the entire document is built, or a consumer {@link AltoPageConsumer#isRetainingPages() retains pages},
+ * the page objects passed to consumers are reused for the following page.
  * @author Assaf Urieli
  *
  */
@@ -51,6 +53,23 @@ public interface AltoReader {
 	 */
 	public void setBuildEntireDocument(boolean buildEntireDocument);
 	public boolean isBuildEntireDocument();
+
+	/**
+	 * The number of threads used to parse pages. If greater than 1, and the
+	 * entire document isn't being built, pages are parsed concurrently, but
+	 * consumers are still notified of pages in order, on the calling thread.
+	 * Default is 1.
+	 */
+	public void setThreads(int threads);
+	public int getThreads();
+
+	/**
+	 * Only read pages whose index is in a given range, skipping over all
+	 * other pages, and stopping as soon as the last page has been read. When
+	 * pages are parsed concurrently, the pages already queued after the last
+	 * page are scanned, but not read. Use -1 for an open-ended range.
+	 */
+	public void setPageRange(int startPage, int endPage);
 	
 	/**
 	 * Get the document built.
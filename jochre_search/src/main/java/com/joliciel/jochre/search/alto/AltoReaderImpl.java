@@ -18,26 +18,60 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.jochre.search.alto;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
-class AltoReaderImpl extends DefaultHandler implements AltoReader {
+/**
+ * Reads Alto files with a StAX pull parser.<br/>
+ * Unless pages need to be retained, the page, block, line and string objects
+ * created for each page are recycled for the following page, so that reading
+ * a large document only allocates as many objects as its largest page.<br/>
+ * If several threads are requested, the file is split into pages by a byte
+ * scan, and the pages are parsed concurrently, but are still passed to
+ * consumers in document order, on the calling thread.
+ *
+ * @author Assaf Urieli
+ *
+ */
+class AltoReaderImpl implements AltoReader {
 	private static final Logger LOG = LoggerFactory.getLogger(AltoReaderImpl.class);
-	private String tempVal = null;
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+	// page fragments are read without namespace awareness, since they are
+	// cut off from their namespace declarations
+	private static final XMLInputFactory PAGE_INPUT_FACTORY = XMLInputFactory.newInstance();
+	private static final AtomicInteger threadIndex = new AtomicInteger();
+	private static final double[] POWERS_OF_TEN = new double[] { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15 };
+
+	static {
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		PAGE_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		PAGE_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		PAGE_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+	}
+
 	private AltoDocument doc = null;
 	private AltoServiceInternal altoService;
 	private AltoPage currentPage;
@@ -50,6 +84,35 @@ class AltoReaderImpl extends DefaultHandler implements AltoReader {
 	private List<AltoPageConsumer> consumers = new ArrayList<AltoPageConsumer>();
 	private boolean buildEntireDocument = false;
 	private String documentName;
+	private int threads = 1;
+	private int startPage = -1;
+	private int endPage = -1;
+	private boolean skippingPage = false;
+	private boolean pastEndPage = false;
+	private final StringBuilder alternative = new StringBuilder();
+	private boolean inAlternative = false;
+
+	// attributes of the current element
+	private int hpos;
+	private int vpos;
+	private int width;
+	private int height;
+	private int physicalImageNumber;
+	private String content;
+	private double confidence;
+	private boolean hasConfidence;
+	private String subsType;
+	private String subsContent;
+
+	// objects available for reuse on the current page
+	private boolean pooling = false;
+	private AltoPageImpl pooledPage = null;
+	private final List<AltoTextBlockImpl> pooledTextBlocks = new ArrayList<AltoTextBlockImpl>();
+	private final List<AltoTextLineImpl> pooledTextLines = new ArrayList<AltoTextLineImpl>();
+	private final List<AltoStringImpl> pooledStrings = new ArrayList<AltoStringImpl>();
+	private int textBlockCount;
+	private int textLineCount;
+	private int stringCount;
 
 	public AltoReaderImpl() {
 	}
@@ -71,18 +134,24 @@ class AltoReaderImpl extends DefaultHandler implements AltoReader {
 
 	@Override
 	public void parseFile(InputStream inputStream, String documentName) {
-		SAXParserFactory spf = SAXParserFactory.newInstance();
 		try {
 			this.documentName = documentName;
-			SAXParser sp = spf.newSAXParser();
-			sp.parse(inputStream, this);
+			this.skippingPage = false;
+			this.pastEndPage = false;
+			if (threads > 1 && !buildEntireDocument) {
+				this.parsePagesInParallel(inputStream);
+			} else {
+				this.pooling = !buildEntireDocument;
+				for (AltoPageConsumer consumer : consumers) {
+					if (consumer.isRetainingPages())
+						this.pooling = false;
+				}
+				this.parse(XML_INPUT_FACTORY.createXMLStreamReader(inputStream));
+			}
 
 			for (AltoPageConsumer consumer : consumers)
 				consumer.onComplete();
-		} catch (SAXException e) {
-			LOG.error("Failed to parse altoFile: " + documentName, e);
-			throw new RuntimeException(e);
-		} catch (ParserConfigurationException e) {
+		} catch (XMLStreamException e) {
 			LOG.error("Failed to parse altoFile: " + documentName, e);
 			throw new RuntimeException(e);
 		} catch (IOException e) {
@@ -91,87 +160,209 @@ class AltoReaderImpl extends DefaultHandler implements AltoReader {
 		}
 	}
 
-	@Override
-	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
-		// clear out tempVal whenever a new element is started
-		tempVal = "";
-		if (qName.equals("Page")) {
+	private void parse(XMLStreamReader xmlReader) throws XMLStreamException {
+		try {
+			while (xmlReader.hasNext() && !pastEndPage) {
+				int eventType = xmlReader.next();
+				if (skippingPage) {
+					if (eventType == XMLStreamConstants.END_ELEMENT && xmlReader.getLocalName().equals("Page"))
+						skippingPage = false;
+					continue;
+				}
+				switch (eventType) {
+				case XMLStreamConstants.START_ELEMENT:
+					this.startElement(xmlReader);
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+					if (inAlternative)
+						alternative.append(xmlReader.getTextCharacters(), xmlReader.getTextStart(), xmlReader.getTextLength());
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					this.endElement(xmlReader.getLocalName());
+					break;
+				default:
+					break;
+				}
+			}
+		} finally {
+			xmlReader.close();
+		}
+	}
+
+	private void parsePagesInParallel(InputStream inputStream) throws IOException {
+		AltoPageSplitter splitter = new AltoPageSplitter(inputStream);
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "AltoReader-" + threadIndex.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			// enough pages to keep all threads busy while the oldest one is
+			// sent to the consumers
+			int maxPendingPages = threads * 2;
+			Queue<Future<PageFragment>> pendingPages = new ArrayDeque<Future<PageFragment>>();
+			byte[] pageBytes;
+			// stop splitting once a page past the end of the page range has
+			// been parsed
+			while (!pastEndPage && (pageBytes = splitter.nextPage()) != null) {
+				final byte[] bytes = pageBytes;
+				final String encoding = splitter.getEncoding();
+				pendingPages.add(executor.submit(new Callable<PageFragment>() {
+					@Override
+					public PageFragment call() throws Exception {
+						return readPages(bytes, encoding);
+					}
+				}));
+				while (pendingPages.size() > maxPendingPages)
+					this.notifyConsumers(pendingPages.poll());
+			}
+			while (!pendingPages.isEmpty())
+				this.notifyConsumers(pendingPages.poll());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The pages read from a fragment of an Alto file.
+	 */
+	private static final class PageFragment {
+		private final List<AltoPage> pages;
+		private final boolean pastEndPage;
+
+		public PageFragment(List<AltoPage> pages, boolean pastEndPage) {
+			this.pages = pages;
+			this.pastEndPage = pastEndPage;
+		}
+	}
+
+	/**
+	 * Read the pages in a fragment of an Alto file, with a separate reader so
+	 * as not to share parsing state between threads.
+	 */
+	private PageFragment readPages(byte[] bytes, String encoding) throws XMLStreamException {
+		final List<AltoPage> pages = new ArrayList<AltoPage>(1);
+		AltoReaderImpl pageReader = new AltoReaderImpl();
+		pageReader.setAltoService(altoService);
+		pageReader.documentName = documentName;
+		pageReader.setPageRange(startPage, endPage);
+		pageReader.addConsumer(new AltoPageConsumer() {
+			@Override
+			public void onNextPage(AltoPage altoPage) {
+				pages.add(altoPage);
+			}
+
+			@Override
+			public void onComplete() {
+			}
+
+			@Override
+			public boolean isRetainingPages() {
+				return true;
+			}
+		});
+		pageReader.parse(PAGE_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(bytes), encoding));
+		return new PageFragment(pages, pageReader.pastEndPage);
+	}
+
+	private void notifyConsumers(Future<PageFragment> future) {
+		PageFragment fragment;
+		try {
+			fragment = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			LOG.error("Failed to parse page in altoFile: " + documentName, e.getCause());
+			throw new RuntimeException(e.getCause());
+		}
+		if (fragment.pastEndPage)
+			this.pastEndPage = true;
+		for (AltoPage page : fragment.pages) {
+			this.doc = page.getDocument();
+			for (AltoPageConsumer consumer : consumers)
+				consumer.onNextPage(page);
+		}
+	}
+
+	private void startElement(XMLStreamReader xmlReader) {
+		String name = xmlReader.getLocalName();
+		switch (name) {
+		case "Page": {
+			this.readAttributes(xmlReader);
+			if (startPage >= 0 && physicalImageNumber < startPage) {
+				skippingPage = true;
+				break;
+			}
+			if (endPage >= 0 && physicalImageNumber > endPage) {
+				pastEndPage = true;
+				break;
+			}
 			if (this.doc == null || !buildEntireDocument)
 				this.doc = this.altoService.newDocument(documentName);
-			int width = Integer.parseInt(attributes.getValue("WIDTH"));
-			int height = Integer.parseInt(attributes.getValue("HEIGHT"));
-			int pageIndex = Integer.parseInt(attributes.getValue("PHYSICAL_IMG_NR"));
-			currentPage = altoService.newPage(this.doc, pageIndex, width, height);
+			currentPage = this.newPage(this.doc, physicalImageNumber, width, height);
 			currentOffset = 0;
+			break;
 		}
-		if (qName.equals("PrintSpace")) {
-			if (attributes.getValue("PC") != null) {
-				double confidence = Double.parseDouble(attributes.getValue("PC"));
+		case "PrintSpace": {
+			this.readAttributes(xmlReader);
+			if (hasConfidence)
 				currentPage.setConfidence(confidence);
-			}
-		} else if (qName.equals("TextBlock")) {
-			int left = Integer.parseInt(attributes.getValue("HPOS"));
-			int top = Integer.parseInt(attributes.getValue("VPOS"));
-			int width = Integer.parseInt(attributes.getValue("WIDTH"));
-			int height = Integer.parseInt(attributes.getValue("HEIGHT"));
-			currentTextBlock = altoService.newTextBlock(currentPage, left, top, width, height);
+			break;
+		}
+		case "TextBlock": {
+			this.readAttributes(xmlReader);
+			currentTextBlock = this.newTextBlock(currentPage, hpos, vpos, width, height);
 			addedHyphen = false;
-		} else if (qName.equals("TextLine")) {
-			int left = Integer.parseInt(attributes.getValue("HPOS"));
-			int top = Integer.parseInt(attributes.getValue("VPOS"));
-			int width = Integer.parseInt(attributes.getValue("WIDTH"));
-			int height = Integer.parseInt(attributes.getValue("HEIGHT"));
-			currentTextLine = altoService.newTextLine(currentTextBlock, left, top, width, height);
-		} else if (qName.equals("SP")) {
+			break;
+		}
+		case "TextLine": {
+			this.readAttributes(xmlReader);
+			currentTextLine = this.newTextLine(currentTextBlock, hpos, vpos, width, height);
+			break;
+		}
+		case "SP": {
 			// a space
-			int left = Integer.parseInt(attributes.getValue("HPOS"));
-			int top = Integer.parseInt(attributes.getValue("VPOS"));
-			int width = Integer.parseInt(attributes.getValue("WIDTH"));
-			int height = 0;
+			this.readAttributes(xmlReader);
 			String content = " ";
-			currentString = altoService.newString(currentTextLine, content, left, top, width, height);
+			currentString = this.newString(currentTextLine, content, hpos, vpos, width, 0);
 
 			currentString.setSpanStart(currentOffset);
 			currentOffset += content.length();
 			currentString.setSpanEnd(currentOffset);
 			addedHyphen = false;
-		} else if (qName.equals("HYP")) {
+			break;
+		}
+		case "HYP": {
 			// a hyphen
-			int left = Integer.parseInt(attributes.getValue("HPOS"));
-			int top = Integer.parseInt(attributes.getValue("VPOS"));
-			int width = Integer.parseInt(attributes.getValue("WIDTH"));
-			int height = Integer.parseInt(attributes.getValue("HEIGHT"));
-			String content = attributes.getValue("CONTENT").replace("&quot;", "\"");
-			currentString = altoService.newString(currentTextLine, content, left, top, width, height);
+			this.readAttributes(xmlReader);
+			currentString = this.newString(currentTextLine, content, hpos, vpos, width, height);
 			currentString.setHyphen(true);
 
 			currentString.setSpanStart(currentOffset);
 			currentOffset += content.length();
 			currentString.setSpanEnd(currentOffset);
 
-			if (attributes.getValue("WC") != null) {
-				double confidence = Double.parseDouble(attributes.getValue("WC"));
+			if (hasConfidence)
 				currentString.setConfidence(confidence);
-			}
 			addedHyphen = true;
-		} else if (qName.equals("String")) {
-			int left = Integer.parseInt(attributes.getValue("HPOS"));
-			int top = Integer.parseInt(attributes.getValue("VPOS"));
-			int width = Integer.parseInt(attributes.getValue("WIDTH"));
-			int height = Integer.parseInt(attributes.getValue("HEIGHT"));
-			String content = attributes.getValue("CONTENT").replace("&quot;", "\"");
-			currentString = altoService.newString(currentTextLine, content, left, top, width, height);
+			break;
+		}
+		case "String": {
+			this.readAttributes(xmlReader);
+			currentString = this.newString(currentTextLine, content, hpos, vpos, width, height);
 
 			currentString.setSpanStart(currentOffset);
 			currentOffset += content.length();
 			currentString.setSpanEnd(currentOffset);
 
-			if (attributes.getValue("WC") != null) {
-				double confidence = Double.parseDouble(attributes.getValue("WC"));
+			if (hasConfidence)
 				currentString.setConfidence(confidence);
-			}
 
-			String subsType = attributes.getValue("SUBS_TYPE");
 			if (subsType != null) {
 				if (subsType.equals("HypPart1"))
 					currentString.setHyphenStart(true);
@@ -179,24 +370,29 @@ class AltoReaderImpl extends DefaultHandler implements AltoReader {
 					currentString.setHyphenEnd(true);
 			}
 
-			String hyphenatedContent = attributes.getValue("SUBS_CONTENT");
-			if (hyphenatedContent != null)
-				currentString.setHyphenatedContent(hyphenatedContent);
+			if (subsContent != null)
+				currentString.setHyphenatedContent(subsContent);
 			addedHyphen = false;
+			break;
+		}
+		case "ALTERNATIVE": {
+			alternative.setLength(0);
+			inAlternative = true;
+			break;
+		}
+		default:
+			break;
 		}
 	}
 
-	@Override
-	public void characters(char[] ch, int start, int length) throws SAXException {
-		// add the characters to tempVal
-		tempVal += new String(ch, start, length);
-	}
-
-	@Override
-	public void endElement(String uri, String localName, String qName) throws SAXException {
-		if (qName.equals("ALTERNATIVE")) {
-			currentString.getAlternatives().add(tempVal);
-		} else if (qName.equals("TextLine")) {
+	private void endElement(String name) {
+		switch (name) {
+		case "ALTERNATIVE": {
+			currentString.getAlternatives().add(alternative.toString());
+			inAlternative = false;
+			break;
+		}
+		case "TextLine": {
 			// an end of line is either a space or true end-of-line, add an
 			// offset unless there's a dash at the end of the previous line
 			if (addedHyphen) {
@@ -206,17 +402,182 @@ class AltoReaderImpl extends DefaultHandler implements AltoReader {
 				currentOffset += 1;
 			}
 			addedHyphen = false;
-		} else if (qName.equals("TextBlock")) {
+			break;
+		}
+		case "TextBlock": {
 			// if the text line for which we didn't add a space was at the end
 			// of a paragraph, we add the space anyway.
 			if (prevTextLineEndedWithHyphen) {
 				prevTextLineEndedWithHyphen = false;
 				currentOffset += 1;
 			}
-		} else if (qName.equals("Page")) {
+			break;
+		}
+		case "Page": {
 			for (AltoPageConsumer consumer : consumers)
 				consumer.onNextPage(currentPage);
+			break;
+		}
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Read the current element's attributes in a single pass into primitive
+	 * fields, rather than looking each one up by name.
+	 */
+	private void readAttributes(XMLStreamReader xmlReader) {
+		hpos = 0;
+		vpos = 0;
+		width = 0;
+		height = 0;
+		physicalImageNumber = 0;
+		content = null;
+		hasConfidence = false;
+		subsType = null;
+		subsContent = null;
+
+		int attributeCount = xmlReader.getAttributeCount();
+		for (int i = 0; i < attributeCount; i++) {
+			String name = xmlReader.getAttributeLocalName(i);
+			switch (name) {
+			case "HPOS":
+				hpos = Integer.parseInt(xmlReader.getAttributeValue(i));
+				break;
+			case "VPOS":
+				vpos = Integer.parseInt(xmlReader.getAttributeValue(i));
+				break;
+			case "WIDTH":
+				width = Integer.parseInt(xmlReader.getAttributeValue(i));
+				break;
+			case "HEIGHT":
+				height = Integer.parseInt(xmlReader.getAttributeValue(i));
+				break;
+			case "PHYSICAL_IMG_NR":
+				physicalImageNumber = Integer.parseInt(xmlReader.getAttributeValue(i));
+				break;
+			case "CONTENT": {
+				content = xmlReader.getAttributeValue(i);
+				// the parser has already decoded entities, but older files
+				// double-encoded quotes
+				if (content.indexOf('&') >= 0)
+					content = content.replace("&quot;", "\"");
+				break;
+			}
+			case "WC":
+			case "PC":
+				confidence = parseDecimal(xmlReader.getAttributeValue(i));
+				hasConfidence = true;
+				break;
+			case "SUBS_TYPE":
+				subsType = xmlReader.getAttributeValue(i);
+				break;
+			case "SUBS_CONTENT":
+				subsContent = xmlReader.getAttributeValue(i);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Parse a plain decimal number such as 0.9375 without going through
+	 * {@link Double#parseDouble(String)}, giving exactly the same result. Any
+	 * other format falls back on {@link Double#parseDouble(String)}.
+	 */
+	static double parseDecimal(String value) {
+		int length = value.length();
+		int start = 0;
+		boolean negative = false;
+		if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+			negative = value.charAt(0) == '-';
+			start = 1;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		for (int i = start; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (decimals >= 0)
+					decimals++;
+			} else if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else {
+				return Double.parseDouble(value);
+			}
+		}
+		// both the mantissa and the power of ten are exact doubles, so the
+		// division is correctly rounded
+		if (digits == 0 || digits > 15)
+			return Double.parseDouble(value);
+		double result = mantissa;
+		if (decimals > 0)
+			result /= POWERS_OF_TEN[decimals];
+		return negative ? -result : result;
+	}
+
+	private AltoPage newPage(AltoDocument doc, int pageIndex, int width, int height) {
+		if (!pooling)
+			return altoService.newPage(doc, pageIndex, width, height);
+		textBlockCount = 0;
+		textLineCount = 0;
+		stringCount = 0;
+		if (pooledPage == null) {
+			pooledPage = (AltoPageImpl) altoService.newPage(doc, pageIndex, width, height);
+		} else {
+			pooledPage.reset(doc, pageIndex, width, height);
+		}
+		return pooledPage;
+	}
+
+	private AltoTextBlock newTextBlock(AltoPage page, int left, int top, int width, int height) {
+		if (!pooling)
+			return altoService.newTextBlock(page, left, top, width, height);
+		AltoTextBlockImpl textBlock;
+		if (textBlockCount < pooledTextBlocks.size()) {
+			textBlock = pooledTextBlocks.get(textBlockCount);
+			textBlock.reset(page, left, top, width, height);
+		} else {
+			textBlock = (AltoTextBlockImpl) altoService.newTextBlock(page, left, top, width, height);
+			pooledTextBlocks.add(textBlock);
+		}
+		textBlockCount++;
+		return textBlock;
+	}
+
+	private AltoTextLine newTextLine(AltoTextBlock textBlock, int left, int top, int width, int height) {
+		if (!pooling)
+			return altoService.newTextLine(textBlock, left, top, width, height);
+		AltoTextLineImpl textLine;
+		if (textLineCount < pooledTextLines.size()) {
+			textLine = pooledTextLines.get(textLineCount);
+			textLine.reset(textBlock, left, top, width, height);
+		} else {
+			textLine = (AltoTextLineImpl) altoService.newTextLine(textBlock, left, top, width, height);
+			pooledTextLines.add(textLine);
 		}
+		textLineCount++;
+		return textLine;
+	}
+
+	private AltoString newString(AltoTextLine textLine, String content, int left, int top, int width, int height) {
+		if (!pooling)
+			return altoService.newString(textLine, content, left, top, width, height);
+		AltoStringImpl string;
+		if (stringCount < pooledStrings.size()) {
+			string = pooledStrings.get(stringCount);
+			string.reset(textLine, content, left, top, width, height);
+		} else {
+			string = (AltoStringImpl) altoService.newString(textLine, content, left, top, width, height);
+			pooledStrings.add(string);
+		}
+		stringCount++;
+		return string;
 	}
 
 	public AltoServiceInternal getAltoService() {
@@ -227,6 +588,22 @@ class AltoReaderImpl extends DefaultHandler implements AltoReader {
 		this.altoService = altoService;
 	}
 
+	@Override
+	public int getThreads() {
+		return threads;
+	}
+
+	@Override
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	@Override
+	public void setPageRange(int startPage, int endPage) {
+		this.startPage = startPage;
+		this.endPage = endPage;
+	}
+
 	@Override
 	public void addConsumer(AltoPageConsumer consumer) {
 		this.consumers.add(consumer);
@@ -53,15 +53,32 @@ class AltoStringImpl implements AltoString {
 
 	public AltoStringImpl(AltoTextLine textLine, String content, int left, int top, int width, int height) {
 		super();
+		this.reset(textLine, content, left, top, width, height);
+	}
+
+	/**
+	 * Clear this string so that it can be reused, as if it had just been
+	 * constructed.
+	 */
+	void reset(AltoTextLine textLine, String content, int left, int top, int width, int height) {
 		this.textLine = textLine;
 		this.content = content;
 		this.rectangle = new Rectangle(left, top, width, height);
+		this.secondaryRectangle = null;
+		this.alternatives.clear();
+		this.contentStrings = null;
+		this.confidence = 0;
+		this.hyphen = false;
+		this.hyphenStart = false;
+		this.hyphenEnd = false;
+		this.hyphenatedContent = null;
+		this.spanStart = -1;
+		this.spanEnd = -1;
+		this.style = null;
 		this.index = this.textLine.getStrings().size();
 		this.textLine.getStrings().add(this);
-		if (whiteSpacePattern.matcher(content).matches() || content.length() == 0 && width > 0)
-			this.whiteSpace = true;
-		if (punctuationPattern.matcher(content).matches())
-			this.punctuation = true;
+		this.whiteSpace = (content.length() == 0 && width > 0) || whiteSpacePattern.matcher(content).matches();
+		this.punctuation = content.length() > 0 && punctuationPattern.matcher(content).matches();
 	}
 
 	@Override
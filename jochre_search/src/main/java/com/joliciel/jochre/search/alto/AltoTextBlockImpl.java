@@ -31,8 +31,18 @@ class AltoTextBlockImpl implements AltoTextBlock {
 	
 	public AltoTextBlockImpl(AltoPage page, int left, int top, int width, int height) {
 		super();
+		this.reset(page, left, top, width, height);
+	}
+
+	/**
+	 * Clear this block so that it can be reused, as if it had just been
+	 * constructed.
+	 */
+	void reset(AltoPage page, int left, int top, int width, int height) {
 		this.page = page;
 		this.rectangle = new Rectangle(left, top, width, height);
+		this.rows.clear();
+		this.wordCount = -1;
 		this.index = this.page.getTextBlocks().size();
 		this.page.getTextBlocks().add(this);
 	}
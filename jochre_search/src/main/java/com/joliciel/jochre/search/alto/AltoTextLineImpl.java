@@ -31,8 +31,19 @@ class AltoTextLineImpl implements AltoTextLine {
 	
 	public AltoTextLineImpl(AltoTextBlock textBlock, int left, int top, int width, int height) {
 		super();
+		this.reset(textBlock, left, top, width, height);
+	}
+
+	/**
+	 * Clear this line so that it can be reused, as if it had just been
+	 * constructed.
+	 */
+	void reset(AltoTextBlock textBlock, int left, int top, int width, int height) {
 		this.textBlock = textBlock;
+		// rectangles are not reused, since they end up in index payloads
 		this.rectangle = new Rectangle(left, top, width, height);
+		this.strings.clear();
+		this.wordCount = -1;
 		this.index = this.textBlock.getPage().getTextLines().size();
 		this.textBlock.getTextLines().add(this);
 		this.textBlock.getPage().getTextLines().add(this);
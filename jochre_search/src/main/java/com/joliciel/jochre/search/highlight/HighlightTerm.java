@@ -18,7 +18,6 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.jochre.search.highlight;
 
-import java.awt.Rectangle;
 import java.io.IOException;
 import java.text.DecimalFormat;
 
@@ -125,17 +124,16 @@ public class HighlightTerm implements Comparable<HighlightTerm> {
 			jsonGen.writeStringField("field", this.getField());
 			jsonGen.writeNumberField("start", this.getStartOffset());
 			jsonGen.writeNumberField("end", this.getEndOffset());
-			Rectangle rect = this.getPayload().getRectangle();
-			jsonGen.writeNumberField("left", rect.x);
-			jsonGen.writeNumberField("top", rect.y);
-			jsonGen.writeNumberField("width", rect.width);
-			jsonGen.writeNumberField("height", rect.height);
-			Rectangle secondaryRect = this.getPayload().getSecondaryRectangle();
-			if (secondaryRect != null) {
-				jsonGen.writeNumberField("left2", secondaryRect.x);
-				jsonGen.writeNumberField("top2", secondaryRect.y);
-				jsonGen.writeNumberField("width2", secondaryRect.width);
-				jsonGen.writeNumberField("height2", secondaryRect.height);
+			JochrePayload payload = this.getPayload();
+			jsonGen.writeNumberField("left", payload.getLeft());
+			jsonGen.writeNumberField("top", payload.getTop());
+			jsonGen.writeNumberField("width", payload.getWidth());
+			jsonGen.writeNumberField("height", payload.getHeight());
+			if (payload.hasSecondaryRectangle()) {
+				jsonGen.writeNumberField("left2", payload.getSecondaryLeft());
+				jsonGen.writeNumberField("top2", payload.getSecondaryTop());
+				jsonGen.writeNumberField("width2", payload.getSecondaryWidth());
+				jsonGen.writeNumberField("height2", payload.getSecondaryHeight());
 			}
 			jsonGen.writeNumberField("pageIndex", this.getPayload().getPageIndex());
 			jsonGen.writeNumberField("paragraphIndex", this.getPayload().getParagraphIndex());
@@ -359,7 +359,7 @@ public class Snippet implements Comparable<Snippet> {
 				if (this.highlightTerms.size() > 0) {
 					startRowIndex = this.highlightTerms.get(0).getPayload().getRowIndex() - 1;
 					endRowIndex = this.highlightTerms.get(this.highlightTerms.size() - 1).getPayload().getRowIndex();
-					if (this.highlightTerms.get(this.highlightTerms.size() - 1).getPayload().getSecondaryRectangle() != null)
+					if (this.highlightTerms.get(this.highlightTerms.size() - 1).getPayload().hasSecondaryRectangle())
 						endRowIndex += 2;
 					else
 						endRowIndex += 1;
@@ -0,0 +1,118 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Assaf Urieli
+//
+//This file is part of Jochre.
+//
+//Jochre is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Jochre is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Jochre.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.jochre.search.lexicon;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+/**
+ * Adds the lemmas of each token as synonyms at the same position, with the
+ * same offsets and payload, each lemma being preceded by
+ * {@link #LEMMA_PREFIX} so that it cannot match a word. Used both when
+ * indexing the text layer and when analysing queries, so that an inflected
+ * query term matches all forms of the same lemma with a single term per
+ * lemma.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class LemmaFilter extends TokenFilter {
+	/**
+	 * Prefix added to lemmas in the index, to distinguish them from words.
+	 */
+	public static final String LEMMA_PREFIX = "⁂";
+
+	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+	private final PositionIncrementAttribute posIncrAtt = addAttribute(PositionIncrementAttribute.class);
+
+	private final Lexicon lexicon;
+	private final String ignoredPrefix;
+	private final Set<String> positionLemmas = new HashSet<>();
+	private final List<String> pendingLemmas = new ArrayList<>();
+	private Iterator<String> iLemmas = null;
+	private State state = null;
+
+	/**
+	 * @param ignoredPrefix
+	 *            tokens starting with this prefix (e.g. punctuation) are never
+	 *            looked up in the lexicon, may be null
+	 */
+	public LemmaFilter(TokenStream input, Lexicon lexicon, String ignoredPrefix) {
+		super(input);
+		this.lexicon = lexicon;
+		this.ignoredPrefix = ignoredPrefix;
+	}
+
+	@Override
+	public final boolean incrementToken() throws IOException {
+		if (iLemmas != null) {
+			if (iLemmas.hasNext()) {
+				restoreState(state);
+				termAtt.setEmpty().append(LEMMA_PREFIX).append(iLemmas.next());
+				posIncrAtt.setPositionIncrement(0);
+				return true;
+			}
+			iLemmas = null;
+			state = null;
+		}
+
+		if (!input.incrementToken())
+			return false;
+
+		if (posIncrAtt.getPositionIncrement() > 0)
+			positionLemmas.clear();
+
+		String term = termAtt.toString();
+		if (ignoredPrefix == null || !term.startsWith(ignoredPrefix)) {
+			Set<String> lemmas = lexicon.getLemmas(term);
+			if (lemmas != null) {
+				// OCR alternatives at the same position often share a lemma,
+				// which only needs to be added once
+				pendingLemmas.clear();
+				for (String lemma : lemmas) {
+					if (positionLemmas.add(lemma))
+						pendingLemmas.add(lemma);
+				}
+				if (pendingLemmas.size() > 0) {
+					state = captureState();
+					iLemmas = pendingLemmas.iterator();
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		positionLemmas.clear();
+		pendingLemmas.clear();
+		iLemmas = null;
+		state = null;
+	}
+}
@@ -0,0 +1,231 @@
+package com.joliciel.jochre.search;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.joliciel.jochre.search.alto.AltoServiceImpl;
+import com.joliciel.jochre.search.feedback.FeedbackQuery;
+import com.joliciel.jochre.search.feedback.FeedbackService;
+import com.joliciel.jochre.search.feedback.FeedbackSuggestion;
+import com.joliciel.jochre.search.lexicon.LexiconServiceLocator;
+
+public class JochreIndexBuilderImplTest {
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private static String getAlto(String... pageWords) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v3#\">\n");
+		sb.append("<Layout>\n");
+		for (int p = 0; p < pageWords.length; p++) {
+			sb.append("<Page ID=\"page" + p + "\" PHYSICAL_IMG_NR=\"" + (p + 1) + "\" HEIGHT=\"3000\" WIDTH=\"2000\">\n");
+			sb.append("<PrintSpace HPOS=\"0\" VPOS=\"0\" WIDTH=\"2000\" HEIGHT=\"3000\">\n");
+			sb.append("<TextBlock HPOS=\"0\" VPOS=\"10\" WIDTH=\"300\" HEIGHT=\"50\">\n");
+			sb.append("<TextLine HPOS=\"0\" VPOS=\"10\" WIDTH=\"300\" HEIGHT=\"20\">\n");
+			String[] words = pageWords[p].split(" ");
+			for (int w = 0; w < words.length; w++) {
+				if (w > 0)
+					sb.append("<SP HPOS=\"" + (w * 100 - 10) + "\" VPOS=\"10\" WIDTH=\"10\"/>\n");
+				sb.append("<String HPOS=\"" + (w * 100) + "\" VPOS=\"10\" WIDTH=\"90\" HEIGHT=\"20\" CONTENT=\"" + words[w] + "\" WC=\"0.9\"/>\n");
+			}
+			sb.append("</TextLine>\n");
+			sb.append("</TextBlock>\n");
+			sb.append("</PrintSpace>\n");
+			sb.append("</Page>\n");
+		}
+		sb.append("</Layout>\n");
+		sb.append("</alto>\n");
+		return sb.toString();
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			writer.write(contents);
+		}
+	}
+
+	private File createWork(File contentDir, String name, String alto) throws IOException {
+		File directory = new File(contentDir, name);
+		directory.mkdirs();
+		new File(directory, name + ".pdf").createNewFile();
+		write(new File(directory, name + "_meta.xml"),
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<metadata><identifier>" + name + "</identifier><title>" + name + "</title></metadata>\n");
+		write(new File(directory, name + ".xml"), alto);
+		return directory;
+	}
+
+	private static void setOld(File directory) {
+		long lastModified = System.currentTimeMillis() - 60000;
+		for (File file : directory.listFiles())
+			file.setLastModified(lastModified);
+	}
+
+	private static FeedbackService getFeedbackService() {
+		return new FeedbackService() {
+			@Override
+			public FeedbackSuggestion makeSuggestion(JochreIndexSearcher indexSearcher, int docId, int offset, String suggestion, String username, String ip,
+					String fontCode, String languageCode) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public List<FeedbackSuggestion> findUnappliedSuggestions() {
+				return new ArrayList<>();
+			}
+
+			@Override
+			public List<FeedbackSuggestion> findSuggestions(String path, int pageIndex) {
+				return new ArrayList<>();
+			}
+
+			@Override
+			public Map<Integer, List<FeedbackSuggestion>> findSuggestions(String path) {
+				return new HashMap<>();
+			}
+
+			@Override
+			public void reloadData() {
+			}
+
+			@Override
+			public FeedbackQuery getEmptyQuery(String user, String ip) {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * The documents indexed for a given work, by section index.
+	 */
+	private static Map<Integer, Document> getSections(File indexDir, String path) throws IOException {
+		Map<Integer, Document> sections = new TreeMap<>();
+		try (IndexReader indexReader = DirectoryReader.open(FSDirectory.open(indexDir.toPath()))) {
+			IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+			TopDocs topDocs = indexSearcher.search(new TermQuery(new Term(JochreIndexField.path.name(), path)), 100);
+			for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+				Document doc = indexSearcher.doc(scoreDoc.doc);
+				assertNull(sections.put(Integer.parseInt(doc.get(JochreIndexField.index.name())), doc));
+			}
+		}
+		return sections;
+	}
+
+	private static Map<String, Map<Integer, List<FeedbackSuggestion>>> getSuggestions(String path, Integer... pageIndexes) {
+		Map<Integer, List<FeedbackSuggestion>> pageSuggestions = new HashMap<>();
+		for (int pageIndex : pageIndexes)
+			pageSuggestions.put(pageIndex, new ArrayList<FeedbackSuggestion>());
+		Map<String, Map<Integer, List<FeedbackSuggestion>>> suggestions = new HashMap<>();
+		suggestions.put(path, pageSuggestions);
+		return suggestions;
+	}
+
+	private static void processDocument(SearchServiceImpl searchService, File directory, Map<String, Map<Integer, List<FeedbackSuggestion>>> suggestions)
+			throws IOException {
+		JochreIndexBuilderImpl builder = (JochreIndexBuilderImpl) searchService.getJochreIndexBuilder();
+		builder.setWordsPerDoc(2);
+		builder.processDocuments(Arrays.asList(directory), false, suggestions);
+		builder.getIndexWriter().commit();
+		builder.getIndexWriter().close();
+	}
+
+	@Test
+	public void testUpdateSections() throws Exception {
+		File indexDir = tempFolder.newFolder("index");
+		File contentDir = tempFolder.newFolder("content");
+		SearchServiceImpl searchService = new SearchServiceImpl(Locale.ENGLISH, indexDir, contentDir);
+		AltoServiceImpl altoService = new AltoServiceImpl();
+		altoService.setSearchService(searchService);
+		searchService.setAltoService(altoService);
+		searchService.setLexiconService(LexiconServiceLocator.getInstance(null).getLexiconService());
+		searchService.setFeedbackService(getFeedbackService());
+
+		// with two words per document, each page is a section of its own
+		File book1 = this.createWork(contentDir, "book1", getAlto("alpha a a", "bravo b b", "charlie c c", "delta d d"));
+		JochreIndexBuilderImpl builder = (JochreIndexBuilderImpl) searchService.getJochreIndexBuilder();
+		builder.setWordsPerDoc(2);
+		builder.updateDocument(book1, -1, -1);
+		setOld(book1);
+
+		String path = searchService.getJochreIndexDirectory(book1).getPath();
+		Map<Integer, Document> sections = getSections(indexDir, path);
+		assertEquals(4, sections.size());
+		for (int i = 0; i < 4; i++) {
+			assertEquals("" + (i + 1), sections.get(i).get(JochreIndexField.startPage.name()));
+			assertEquals("" + (i + 1), sections.get(i).get(JochreIndexField.endPage.name()));
+			assertEquals(JochreIndexDocumentImpl.getSectionId(path, i), sections.get(i).get(JochreIndexField.section.name()));
+		}
+		String firstIndexTime = sections.get(0).get(JochreIndexField.indexTime.name());
+
+		// page 2 is corrected, and page 4 is no longer in the Alto file
+		write(new File(book1, "book1.xml"), getAlto("alpha a a", "bravissimo b b", "charlie c c"));
+		setOld(book1);
+		processDocument(searchService, book1, getSuggestions(path, 2, 4));
+
+		sections = getSections(indexDir, path);
+		assertEquals(3, sections.size());
+		assertTrue(sections.get(1).get(JochreIndexField.text.name()).contains("bravissimo"));
+		assertEquals("2", sections.get(1).get(JochreIndexField.startPage.name()));
+		assertFalse(sections.containsKey(3));
+		// the other sections weren't reindexed
+		assertEquals(firstIndexTime, sections.get(0).get(JochreIndexField.indexTime.name()));
+		assertTrue(sections.get(2).get(JochreIndexField.text.name()).contains("charlie"));
+
+		// a work indexed without the section field is reindexed in full
+		File book2 = this.createWork(contentDir, "book2", getAlto("echo e e", "foxtrot f f"));
+		setOld(book2);
+		String path2 = searchService.getJochreIndexDirectory(book2).getPath();
+		try (IndexWriter indexWriter = new IndexWriter(FSDirectory.open(indexDir.toPath()), new IndexWriterConfig(new KeywordAnalyzer()))) {
+			Document doc = new Document();
+			doc.add(new StringField(JochreIndexField.name.name(), "book2", Field.Store.YES));
+			doc.add(new StringField(JochreIndexField.path.name(), path2, Field.Store.YES));
+			doc.add(new IntField(JochreIndexField.index.name(), 0, Field.Store.YES));
+			doc.add(new StoredField(JochreIndexField.startPage.name(), "1"));
+			doc.add(new StoredField(JochreIndexField.endPage.name(), "2"));
+			doc.add(new LongField(JochreIndexField.indexTime.name(), System.currentTimeMillis(), Field.Store.YES));
+			indexWriter.addDocument(doc);
+		}
+		processDocument(searchService, book2, getSuggestions(path2, 2));
+
+		sections = getSections(indexDir, path2);
+		assertEquals(2, sections.size());
+		assertEquals(JochreIndexDocumentImpl.getSectionId(path2, 0), sections.get(0).get(JochreIndexField.section.name()));
+		assertTrue(sections.get(1).get(JochreIndexField.text.name()).contains("foxtrot"));
+		assertEquals(3, getSections(indexDir, path).size());
+	}
+}
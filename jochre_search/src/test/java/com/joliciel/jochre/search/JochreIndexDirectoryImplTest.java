@@ -0,0 +1,63 @@
+package com.joliciel.jochre.search;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JochreIndexDirectoryImplTest {
+
+	private static void writeMetaData(File metaFile, String title) throws IOException {
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(metaFile), StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<metadata><identifier>book1</identifier><title>" + title + "</title><creator>שלום</creator></metadata>\n");
+		}
+	}
+
+	@Test
+	public void testMetaDataCache() throws Exception {
+		File contentDir = Files.createTempDirectory("jochreContent").toFile();
+		File directory = new File(contentDir, "book1");
+		directory.mkdirs();
+		new File(directory, "book1.pdf").createNewFile();
+		File metaFile = new File(directory, "book1_meta.xml");
+		writeMetaData(metaFile, "First");
+		long now = System.currentTimeMillis();
+		metaFile.setLastModified(now - 60000);
+
+		JochreIndexDirectoryImpl indexDirectory = new JochreIndexDirectoryImpl(contentDir, directory);
+		Map<String, String> metaData = indexDirectory.getMetaData();
+		assertEquals("First", metaData.get(JochreIndexField.title.name()));
+		File cacheFile = indexDirectory.getMetaDataCacheFile();
+		assertTrue(cacheFile.exists());
+
+		// an older metadata file is not read again
+		writeMetaData(metaFile, "Second");
+		metaFile.setLastModified(now - 60000);
+		cacheFile.setLastModified(now - 30000);
+		indexDirectory = new JochreIndexDirectoryImpl(contentDir, directory);
+		metaData = indexDirectory.getMetaData();
+		assertEquals("First", metaData.get(JochreIndexField.title.name()));
+		assertEquals("book1", metaData.get(JochreIndexField.id.name()));
+		assertEquals("שלום", metaData.get(JochreIndexField.author.name()));
+
+		// a newer one is
+		metaFile.setLastModified(now);
+		indexDirectory = new JochreIndexDirectoryImpl(contentDir, directory);
+		metaData = indexDirectory.getMetaData();
+		assertEquals("Second", metaData.get(JochreIndexField.title.name()));
+
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+		contentDir.delete();
+	}
+}
@@ -0,0 +1,122 @@
+package com.joliciel.jochre.search;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Test;
+
+public class JochreIndexSearcherImplTest {
+
+	@Test
+	public void testShards() throws Exception {
+		File indexDir = Files.createTempDirectory("jochreIndex").toFile();
+		String[] names = new String[] { "book1", "book2", "book3", "book4", "book5" };
+		int shardCount = 2;
+		IndexWriter[] writers = new IndexWriter[shardCount];
+		for (int i = 0; i < shardCount; i++) {
+			File shardDir = IndexShards.getShardDir(indexDir, i);
+			shardDir.mkdirs();
+			writers[i] = new IndexWriter(FSDirectory.open(shardDir.toPath()), new IndexWriterConfig(new KeywordAnalyzer()));
+		}
+		for (String name : names) {
+			for (int index = 0; index < 2; index++) {
+				Document doc = new Document();
+				doc.add(new StringField(JochreIndexField.name.name(), name, Field.Store.YES));
+				doc.add(new IntField(JochreIndexField.index.name(), index, Field.Store.YES));
+				writers[IndexShards.getShard(name, shardCount)].addDocument(doc);
+			}
+		}
+		for (IndexWriter writer : writers)
+			writer.close();
+
+		assertEquals(2, IndexShards.getShardCount(indexDir));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			JochreIndexSearcherImpl searcher = new JochreIndexSearcherImpl(indexDir, indexDir, executor);
+			assertEquals(names.length * 2, searcher.getIndexSearcher().getIndexReader().numDocs());
+
+			Set<Integer> docIds = new HashSet<Integer>();
+			for (String name : names) {
+				Map<Integer, Document> docs = searcher.findDocuments(name);
+				assertEquals(2, docs.size());
+				for (int docId : docs.keySet()) {
+					// document ids are global, and can be used to retrieve the
+					// document whichever shard it is in
+					assertEquals(name, searcher.getIndexSearcher().doc(docId).get(JochreIndexField.name.name()));
+					docIds.add(docId);
+				}
+				docs = searcher.findDocument(name, 1);
+				assertEquals(1, docs.size());
+				assertEquals("1", docs.values().iterator().next().get(JochreIndexField.index.name()));
+			}
+			assertEquals(names.length * 2, docIds.size());
+		} finally {
+			executor.shutdown();
+		}
+
+		for (int i = 0; i < shardCount; i++) {
+			File shardDir = IndexShards.getShardDir(indexDir, i);
+			for (File file : shardDir.listFiles())
+				file.delete();
+			shardDir.delete();
+		}
+		indexDir.delete();
+	}
+
+	@Test
+	public void testMixedLemmaIndex() throws Exception {
+		File indexDir = Files.createTempDirectory("jochreIndex").toFile();
+		IndexWriter writer = new IndexWriter(FSDirectory.open(indexDir.toPath()), new IndexWriterConfig(new KeywordAnalyzer()));
+		writer.addDocument(this.getLemmaDocument("book1", true));
+		writer.addDocument(this.getLemmaDocument("book2", false));
+		writer.commit();
+
+		// a work indexed before the lexicon was introduced still needs
+		// inflected forms
+		assertFalse(new JochreIndexSearcherImpl(indexDir, indexDir).isLemmaIndexed());
+
+		writer.updateDocument(new Term(JochreIndexField.name.name(), "book2"), this.getLemmaDocument("book2", true));
+		writer.commit();
+		assertTrue(new JochreIndexSearcherImpl(indexDir, indexDir).isLemmaIndexed());
+
+		// a work indexed without the lexicon disables lemmas again
+		writer.addDocument(this.getLemmaDocument("book3", false));
+		writer.commit();
+		assertFalse(new JochreIndexSearcherImpl(indexDir, indexDir).isLemmaIndexed());
+
+		// until it is deleted
+		writer.deleteDocuments(new Term(JochreIndexField.name.name(), "book3"));
+		writer.commit();
+		assertTrue(new JochreIndexSearcherImpl(indexDir, indexDir).isLemmaIndexed());
+		writer.close();
+
+		for (File file : indexDir.listFiles())
+			file.delete();
+		indexDir.delete();
+	}
+
+	private Document getLemmaDocument(String name, boolean lemmaIndexed) {
+		Document doc = new Document();
+		doc.add(new StringField(JochreIndexField.name.name(), name, Field.Store.YES));
+		if (lemmaIndexed)
+			doc.add(new StringField(JochreIndexField.lemmaIndexed.name(), JochreIndexDocumentImpl.LEMMA_INDEXED, Field.Store.NO));
+		return doc;
+	}
+}
@@ -0,0 +1,61 @@
+package com.joliciel.jochre.search;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+
+import org.apache.lucene.util.BytesRef;
+import org.junit.Test;
+
+public class JochrePayloadTest {
+
+	@Test
+	public void testRoundTrip() {
+		Rectangle rect = new Rectangle(1520, 2210, 85, 40);
+		JochrePayload payload = new JochrePayload(rect, null, 12, 3, 27);
+		BytesRef bytesRef = payload.getBytesRef();
+		assertTrue(bytesRef.length < 14);
+
+		// decode from within a larger array
+		byte[] bytes = new byte[bytesRef.length + 4];
+		System.arraycopy(bytesRef.bytes, bytesRef.offset, bytes, 2, bytesRef.length);
+		JochrePayload decoded = new JochrePayload(new BytesRef(bytes, 2, bytesRef.length));
+		assertEquals(rect, decoded.getRectangle());
+		assertFalse(decoded.hasSecondaryRectangle());
+		assertNull(decoded.getSecondaryRectangle());
+		assertEquals(12, decoded.getPageIndex());
+		assertEquals(3, decoded.getParagraphIndex());
+		assertEquals(27, decoded.getRowIndex());
+
+		// the second half of a hyphenated word, at the start of the next row
+		Rectangle secondaryRect = new Rectangle(120, 2260, 60, 41);
+		payload = new JochrePayload(rect, secondaryRect, 300, 0, 0);
+		bytesRef = payload.getBytesRef();
+		assertTrue(bytesRef.length < 22);
+		decoded = new JochrePayload(bytesRef);
+		assertEquals(rect, decoded.getRectangle());
+		assertTrue(decoded.hasSecondaryRectangle());
+		assertEquals(secondaryRect, decoded.getSecondaryRectangle());
+		assertEquals(120, decoded.getSecondaryLeft());
+		assertEquals(2260, decoded.getSecondaryTop());
+		assertEquals(300, decoded.getPageIndex());
+	}
+
+	@Test
+	public void testFixedFormat() {
+		// the original 2-byte big-endian format
+		byte[] bytes = new byte[] { 5, (byte) 0xF0, 8, (byte) 0xA2, 0, 85, 0, 40, 0, 12, 0, 3, 0, 27 };
+		JochrePayload payload = new JochrePayload(new BytesRef(bytes));
+		assertEquals(new Rectangle(1520, 2210, 85, 40), payload.getRectangle());
+		assertNull(payload.getSecondaryRectangle());
+		assertEquals(12, payload.getPageIndex());
+		assertEquals(3, payload.getParagraphIndex());
+		assertEquals(27, payload.getRowIndex());
+
+		byte[] longBytes = new byte[22];
+		System.arraycopy(bytes, 0, longBytes, 0, 14);
+		System.arraycopy(new byte[] { 0, 120, 8, (byte) 0xD4, 0, 60, 0, (byte) 200 }, 0, longBytes, 14, 8);
+		payload = new JochrePayload(new BytesRef(longBytes));
+		assertEquals(new Rectangle(120, 2260, 60, 200), payload.getSecondaryRectangle());
+	}
+}
@@ -0,0 +1,252 @@
+package com.joliciel.jochre.search.alto;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AltoReaderImplTest {
+
+	private static String getAlto() {
+		return getAlto(3);
+	}
+
+	private static String getAlto(int pageCount) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v3#\">\n");
+		sb.append("<Styles><PageStyle ID=\"s\"/></Styles>\n");
+		sb.append("<Layout>\n");
+		for (int p = 0; p < pageCount; p++) {
+			sb.append("<Page ID=\"page>" + p + "\" PHYSICAL_IMG_NR=\"" + (p + 1) + "\" HEIGHT=\"3000\" WIDTH=\"2000\">\n");
+			sb.append("<PrintSpace HPOS=\"0\" VPOS=\"0\" WIDTH=\"2000\" HEIGHT=\"3000\" PC=\"0." + (7 + p) + "125\">\n");
+			// later pages are smaller, so that pooled objects are left over
+			for (int b = 0; b < 3 - (p % 3); b++) {
+				sb.append("<TextBlock HPOS=\"" + (b * 100) + "\" VPOS=\"10\" WIDTH=\"90\" HEIGHT=\"50\">\n");
+				for (int l = 0; l < 2; l++) {
+					sb.append("<TextLine HPOS=\"" + (b * 100) + "\" VPOS=\"" + (10 + l * 25) + "\" WIDTH=\"90\" HEIGHT=\"20\">\n");
+					sb.append("<String HPOS=\"" + (b * 100 + 50) + "\" VPOS=\"10\" WIDTH=\"40\" HEIGHT=\"20\" CONTENT=\"w" + p + b + l + "\" WC=\"0.9375\">");
+					sb.append("<ALTERNATIVE>a" + p + b + l + "</ALTERNATIVE><ALTERNATIVE>b&amp;" + l + "</ALTERNATIVE></String>\n");
+					sb.append("<SP HPOS=\"" + (b * 100 + 40) + "\" VPOS=\"10\" WIDTH=\"10\"/>\n");
+					if (l == 0) {
+						sb.append("<String HPOS=\"" + (b * 100 + 10) + "\" VPOS=\"10\" WIDTH=\"25\" HEIGHT=\"20\" CONTENT=\"&quot;q\" WC=\"1\" SUBS_TYPE=\"HypPart1\" SUBS_CONTENT=\"qr\"/>\n");
+						sb.append("<HYP HPOS=\"" + (b * 100) + "\" VPOS=\"10\" WIDTH=\"5\" HEIGHT=\"20\" CONTENT=\"-\"/>\n");
+					} else {
+						sb.append("<String HPOS=\"" + (b * 100) + "\" VPOS=\"10\" WIDTH=\"25\" HEIGHT=\"20\" CONTENT=\"r&amp;quot;\" WC=\"0.5\" SUBS_TYPE=\"HypPart2\" SUBS_CONTENT=\"qr\"/>\n");
+					}
+					sb.append("</TextLine>\n");
+				}
+				sb.append("</TextBlock>\n");
+			}
+			sb.append("</PrintSpace>\n");
+			sb.append("</Page>\n");
+		}
+		sb.append("</Layout>\n");
+		sb.append("</alto>\n");
+		return sb.toString();
+	}
+
+	@Test
+	public void testPooling() {
+		String alto = getAlto();
+		AltoService altoService = new AltoServiceImpl();
+
+		RecordingConsumer retainingConsumer = new RecordingConsumer(true);
+		AltoReader reader = altoService.getAltoReader();
+		reader.addConsumer(retainingConsumer);
+		reader.parseFile(new ByteArrayInputStream(alto.getBytes(StandardCharsets.UTF_8)), "doc");
+
+		RecordingConsumer pooledConsumer = new RecordingConsumer(false);
+		reader = altoService.getAltoReader();
+		reader.addConsumer(pooledConsumer);
+		reader.parseFile(new ByteArrayInputStream(alto.getBytes(StandardCharsets.UTF_8)), "doc");
+
+		assertTrue(retainingConsumer.complete);
+		assertTrue(pooledConsumer.complete);
+		assertEquals(3, retainingConsumer.descriptions.size());
+		assertEquals(retainingConsumer.descriptions, pooledConsumer.descriptions);
+
+		assertNotSame(retainingConsumer.pages.get(0), retainingConsumer.pages.get(1));
+		assertSame(pooledConsumer.pages.get(0), pooledConsumer.pages.get(1));
+		assertSame(pooledConsumer.pages.get(1), pooledConsumer.pages.get(2));
+
+		AltoPage page = retainingConsumer.pages.get(0);
+		assertEquals(1, page.getIndex());
+		assertEquals(2000, page.getWidth());
+		assertEquals(0.7125, page.getConfidence(), 0.0);
+		assertEquals(3, page.getTextBlocks().size());
+		assertEquals(6, page.getTextLines().size());
+		AltoTextLine textLine = page.getTextBlocks().get(0).getTextLines().get(0);
+		assertEquals(4, textLine.getStrings().size());
+		AltoString string = textLine.getStrings().get(0);
+		assertEquals("w000", string.getContent());
+		assertEquals(0.9375, string.getConfidence(), 0.0);
+		assertEquals(new TreeSet<String>(Arrays.asList("a000", "b&0")), new TreeSet<String>(string.getAlternatives()));
+		assertEquals(0, string.getSpanStart());
+		assertEquals(4, string.getSpanEnd());
+		assertTrue(textLine.getStrings().get(1).isWhiteSpace());
+		string = textLine.getStrings().get(2);
+		assertEquals("\"q", string.getContent());
+		assertTrue(string.isHyphenStart());
+		assertEquals("qr", string.getHyphenatedContent());
+		assertTrue(textLine.getStrings().get(3).isHyphen());
+		// no space added after a line ending with a hyphen
+		string = page.getTextBlocks().get(0).getTextLines().get(1).getStrings().get(0);
+		assertEquals(8, string.getSpanStart());
+		string = page.getTextBlocks().get(0).getTextLines().get(1).getStrings().get(2);
+		assertEquals("r\"", string.getContent());
+		assertTrue(string.isHyphenEnd());
+	}
+
+	@Test
+	public void testParallel() {
+		String alto = getAlto(50);
+		AltoService altoService = new AltoServiceImpl();
+
+		RecordingConsumer sequentialConsumer = new RecordingConsumer(false);
+		AltoReader reader = altoService.getAltoReader();
+		reader.addConsumer(sequentialConsumer);
+		reader.parseFile(new ByteArrayInputStream(alto.getBytes(StandardCharsets.UTF_8)), "doc");
+
+		RecordingConsumer parallelConsumer = new RecordingConsumer(true);
+		reader = altoService.getAltoReader();
+		reader.setThreads(4);
+		reader.addConsumer(parallelConsumer);
+		reader.parseFile(new ByteArrayInputStream(alto.getBytes(StandardCharsets.UTF_8)), "doc");
+
+		assertTrue(parallelConsumer.complete);
+		assertEquals(50, parallelConsumer.descriptions.size());
+		assertEquals(sequentialConsumer.descriptions, parallelConsumer.descriptions);
+		for (int i = 0; i < 50; i++)
+			assertEquals(i + 1, parallelConsumer.pages.get(i).getIndex());
+	}
+
+	@Test
+	public void testPageRange() {
+		String alto = getAlto(10);
+		AltoService altoService = new AltoServiceImpl();
+
+		for (int threads : new int[] { 1, 4 }) {
+			RecordingConsumer consumer = new RecordingConsumer(true);
+			AltoReader reader = altoService.getAltoReader();
+			reader.setThreads(threads);
+			reader.setPageRange(3, 5);
+			reader.addConsumer(consumer);
+			reader.parseFile(new ByteArrayInputStream(alto.getBytes(StandardCharsets.UTF_8)), "doc");
+
+			assertTrue(consumer.complete);
+			assertEquals(3, consumer.pages.size());
+			for (int i = 0; i < 3; i++)
+				assertEquals(i + 3, consumer.pages.get(i).getIndex());
+			assertEquals(3, consumer.pages.get(1).getTextBlocks().size());
+		}
+
+		// the file isn't scanned to the end once the last page has been read
+		byte[] bytes = getAlto(400).getBytes(StandardCharsets.UTF_8);
+		for (int threads : new int[] { 1, 4 }) {
+			final AtomicInteger bytesRead = new AtomicInteger();
+			InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b >= 0)
+						bytesRead.incrementAndGet();
+					return b;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int count = super.read(b, off, len);
+					if (count > 0)
+						bytesRead.addAndGet(count);
+					return count;
+				}
+			};
+			RecordingConsumer consumer = new RecordingConsumer(true);
+			AltoReader reader = altoService.getAltoReader();
+			reader.setThreads(threads);
+			reader.setPageRange(3, 5);
+			reader.addConsumer(consumer);
+			reader.parseFile(inputStream, "doc");
+
+			assertEquals(3, consumer.pages.size());
+			assertTrue(bytesRead.get() < bytes.length / 2);
+		}
+	}
+
+	@Test
+	public void testSplitter() throws Exception {
+		String alto = "<?xml version='1.0' encoding='ISO-8859-1'?><alto><Page ID=\"a\"/><PageX/><Page\nID='b>'>\u00e9</Page></alto>";
+		AltoPageSplitter splitter = new AltoPageSplitter(new ByteArrayInputStream(alto.getBytes(StandardCharsets.ISO_8859_1)));
+		assertEquals("<Page ID=\"a\"/>", new String(splitter.nextPage(), StandardCharsets.ISO_8859_1));
+		assertEquals("ISO-8859-1", splitter.getEncoding());
+		assertEquals("<Page\nID='b>'>\u00e9</Page>", new String(splitter.nextPage(), StandardCharsets.ISO_8859_1));
+		assertNull(splitter.nextPage());
+	}
+
+	@Test
+	public void testParseDecimal() {
+		String[] values = new String[] { "0", "1", "0.9375", "0.1", "0.3", "-2.5", "+7", "123456789.123456", "0.0000", "1e-3", "12345678901234567890",
+				".5", "5." };
+		for (String value : values) {
+			assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)), Double.doubleToLongBits(AltoReaderImpl.parseDecimal(value)));
+		}
+		for (int i = 0; i < 10000; i++) {
+			String value = String.format(Locale.US, "%.4f", i / 10000.0);
+			assertEquals(value, Double.parseDouble(value), AltoReaderImpl.parseDecimal(value), 0.0);
+		}
+	}
+
+	private static final class RecordingConsumer implements AltoPageConsumer {
+		private final boolean retainingPages;
+		private final List<AltoPage> pages = new ArrayList<AltoPage>();
+		private final List<String> descriptions = new ArrayList<String>();
+		private boolean complete = false;
+
+		public RecordingConsumer(boolean retainingPages) {
+			this.retainingPages = retainingPages;
+		}
+
+		@Override
+		public void onNextPage(AltoPage altoPage) {
+			pages.add(altoPage);
+			StringBuilder sb = new StringBuilder();
+			sb.append(altoPage.getIndex()).append(' ').append(altoPage.getWidth()).append('x').append(altoPage.getHeight()).append(' ')
+					.append(altoPage.getConfidence()).append(' ').append(altoPage.getTextLines().size()).append('\n');
+			for (AltoTextBlock textBlock : altoPage.getTextBlocks()) {
+				sb.append(" block ").append(textBlock.getIndex()).append(' ').append(textBlock.getRectangle()).append('\n');
+				for (AltoTextLine textLine : textBlock.getTextLines()) {
+					sb.append("  line ").append(textLine.getIndex()).append(' ').append(textLine.getRectangle()).append('\n');
+					for (AltoString string : textLine.getStrings()) {
+						sb.append("   ").append(string).append(' ').append(string.getRectangle()).append(' ').append(string.getConfidence()).append(' ')
+								.append(string.isWhiteSpace()).append(string.isPunctuation()).append(string.isHyphen()).append(string.isHyphenStart())
+								.append(string.isHyphenEnd()).append(' ').append(string.getHyphenatedContent()).append(' ')
+								.append(new TreeSet<String>(string.getAlternatives())).append('\n');
+					}
+				}
+			}
+			descriptions.add(sb.toString());
+		}
+
+		@Override
+		public void onComplete() {
+			complete = true;
+		}
+
+		@Override
+		public boolean isRetainingPages() {
+			return retainingPages;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.joliciel.jochre.search.lexicon;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.junit.Test;
+
+public class LemmaFilterTest {
+
+	private static Lexicon getLexicon() {
+		final Map<String, Set<String>> lemmas = new HashMap<>();
+		lemmas.put("geht", new TreeSet<String>(Arrays.asList("gehn")));
+		lemmas.put("gegangen", new TreeSet<String>(Arrays.asList("gehn")));
+		lemmas.put("lid", new TreeSet<String>(Arrays.asList("lid", "lidn")));
+		return new Lexicon() {
+			@Override
+			public Set<String> getWords(String lemma) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Set<String> getLemmas(String word) {
+				return lemmas.get(word);
+			}
+		};
+	}
+
+	private static List<String> analyse(String text, String ignoredPrefix) throws Exception {
+		WhitespaceTokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		TokenStream tokenStream = new LemmaFilter(tokenizer, getLexicon(), ignoredPrefix);
+		CharTermAttribute termAtt = tokenStream.addAttribute(CharTermAttribute.class);
+		PositionIncrementAttribute posIncrAtt = tokenStream.addAttribute(PositionIncrementAttribute.class);
+		OffsetAttribute offsetAtt = tokenStream.addAttribute(OffsetAttribute.class);
+		List<String> tokens = new ArrayList<>();
+		tokenStream.reset();
+		while (tokenStream.incrementToken())
+			tokens.add(termAtt.toString() + "/" + posIncrAtt.getPositionIncrement() + "/" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset());
+		tokenStream.end();
+		tokenStream.close();
+		return tokens;
+	}
+
+	@Test
+	public void testLemmas() throws Exception {
+		String prefix = LemmaFilter.LEMMA_PREFIX;
+		assertEquals(Arrays.asList("er/1/0-2", "geht/1/3-7", prefix + "gehn/0/3-7", "a/1/8-9", "lid/1/10-13", prefix + "lid/0/10-13",
+				prefix + "lidn/0/10-13"), analyse("er geht a lid", null));
+		assertEquals(Arrays.asList("gegangen/1/0-8", prefix + "gehn/0/0-8", "※lid/1/9-13"), analyse("gegangen ※lid", "※"));
+	}
+}
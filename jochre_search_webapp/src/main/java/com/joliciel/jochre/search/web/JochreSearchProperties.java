@@ -109,6 +109,17 @@ public class JochreSearchProperties {
 		return realPath;
 	}
 
+	/**
+	 * The number of threads used to search the index in each query, read from
+	 * search.threads. Default is 1.
+	 */
+	public int getSearchThreads() {
+		String searchThreads = this.properties.getProperty("search.threads");
+		if (searchThreads == null)
+			return 1;
+		return Integer.parseInt(searchThreads);
+	}
+
 	public String getLexiconPath() {
 		return this.properties.getProperty("lexicon");
 	}
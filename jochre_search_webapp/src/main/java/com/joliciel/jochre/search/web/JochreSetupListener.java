@@ -42,6 +42,7 @@ public class JochreSetupListener implements ServletContextListener {
 			
 			SearchServiceLocator searchServiceLocator = SearchServiceLocator.getInstance(props.getLocale(), indexDir, contentDir);
 			SearchService searchService = searchServiceLocator.getSearchService();
+			searchService.setSearchThreads(props.getSearchThreads());
 			String lexiconPath = props.getLexiconPath();
 			if (lexiconPath!=null && searchService.getLexicon()==null) {
 				LOG.debug("Loading lexicon");
@@ -0,0 +1,20 @@
+package com.joliciel.jochre.web;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Releases the shared Jochre session when the web app is stopped or
+ * reloaded.
+ */
+public class JochreContextListener implements ServletContextListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent event) {
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent event) {
+		JochreProperties.close();
+	}
+}
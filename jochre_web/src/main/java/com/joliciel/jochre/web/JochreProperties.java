@@ -10,13 +10,24 @@ public class JochreProperties {
 	private static JochreProperties instance;
 	private final JochreSession jochreSession;
 
-	public static JochreProperties getInstance() {
+	public static synchronized JochreProperties getInstance() {
 		if (instance == null) {
 			instance = new JochreProperties();
 		}
 		return instance;
 	}
 
+	/**
+	 * Close the shared Jochre session, releasing the resources it holds. A new
+	 * session is created if the instance is requested again.
+	 */
+	public static synchronized void close() {
+		if (instance != null) {
+			instance.jochreSession.close();
+			instance = null;
+		}
+	}
+
 	private JochreProperties() {
 		try {
 			LOG.info("config.file: " + System.getProperty("config.file"));
@@ -70,7 +70,11 @@ public class JochreYiddish {
 		} else {
 			Config config = ConfigFactory.load();
 			Jochre jochre = new Jochre(config, argMap);
-			jochre.execute(argMap);
+			try {
+				jochre.execute(argMap);
+			} finally {
+				jochre.close();
+			}
 		}
 	}
 }